@@ -4,6 +4,10 @@ package com.yahoo.bard.webservice.application;
 
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.DRUID_COORDINATOR_METADATA;
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.DRUID_DIMENSIONS_LOADER;
+import static com.yahoo.bard.webservice.data.cache.TwoTierTupleDataCache.FAR_HITS;
+import static com.yahoo.bard.webservice.data.cache.TwoTierTupleDataCache.FAR_MISSES;
+import static com.yahoo.bard.webservice.data.cache.TwoTierTupleDataCache.NEAR_HITS;
+import static com.yahoo.bard.webservice.data.cache.TwoTierTupleDataCache.NEAR_MISSES;
 import static com.yahoo.bard.webservice.web.handlers.CacheRequestHandler.CACHE_HITS;
 import static com.yahoo.bard.webservice.web.handlers.CacheRequestHandler.CACHE_REQUESTS;
 import static com.yahoo.bard.webservice.web.handlers.DefaultWebServiceHandlerSelector.QUERY_REQUEST_TOTAL;
@@ -24,10 +28,15 @@ import com.yahoo.bard.webservice.data.DruidQueryBuilder;
 import com.yahoo.bard.webservice.data.DruidResponseParser;
 import com.yahoo.bard.webservice.data.PartialDataHandler;
 import com.yahoo.bard.webservice.data.cache.DataCache;
+import com.yahoo.bard.webservice.data.cache.DataEntryTranscoder;
 import com.yahoo.bard.webservice.data.cache.HashDataCache;
 import com.yahoo.bard.webservice.data.cache.MemDataCache;
 import com.yahoo.bard.webservice.data.cache.MemTupleDataCache;
 import com.yahoo.bard.webservice.data.cache.StubDataCache;
+import com.yahoo.bard.webservice.data.cache.TupleDataCache;
+import com.yahoo.bard.webservice.data.cache.TwoTierTupleDataCache;
+import com.yahoo.bard.webservice.data.cache.WriteBehindDataCache;
+import com.yahoo.bard.webservice.data.cache.WriteBehindTupleDataCache;
 import com.yahoo.bard.webservice.data.config.ConfigurationLoader;
 import com.yahoo.bard.webservice.data.config.ResourceDictionaries;
 import com.yahoo.bard.webservice.data.config.dimension.DimensionConfig;
@@ -118,6 +127,8 @@ public abstract class AbstractBinderFactory implements BinderFactory {
     public static final String HEALTH_CHECK_NAME_DIMENSION = "dimension check";
 
     private static final String METER_CACHE_HIT_RATIO = "queries.meter.cache.hit_ratio";
+    private static final String METER_CACHE_NEAR_HIT_RATIO = "queries.meter.cache.near.hit_ratio";
+    private static final String METER_CACHE_FAR_HIT_RATIO = "queries.meter.cache.far.hit_ratio";
     private static final String METER_SPLITS_TOTAL_RATIO = "queries.meter.split_queries.total_ratio";
     private static final String METER_SPLITS_RATIO = "queries.meter.split_queries.ratio";
 
@@ -355,6 +366,36 @@ public abstract class AbstractBinderFactory implements BinderFactory {
             );
         }
 
+        if (!metrics.containsKey(METER_CACHE_NEAR_HIT_RATIO)) {
+            metricRegistry.register(
+                    METER_CACHE_NEAR_HIT_RATIO,
+                    new RatioGauge() {
+                        @Override
+                        protected Ratio getRatio() {
+                            long nearRequests = NEAR_HITS.getCount() + NEAR_MISSES.getCount();
+                            return nearRequests != 0
+                                    ? Ratio.of(NEAR_HITS.getCount(), nearRequests)
+                                    : Ratio.of(0, 1);
+                        }
+                    }
+            );
+        }
+
+        if (!metrics.containsKey(METER_CACHE_FAR_HIT_RATIO)) {
+            metricRegistry.register(
+                    METER_CACHE_FAR_HIT_RATIO,
+                    new RatioGauge() {
+                        @Override
+                        protected Ratio getRatio() {
+                            long farRequests = FAR_HITS.getCount() + FAR_MISSES.getCount();
+                            return farRequests != 0
+                                    ? Ratio.of(FAR_HITS.getCount(), farRequests)
+                                    : Ratio.of(0, 1);
+                        }
+                    }
+            );
+        }
+
         if (!metrics.containsKey(METER_SPLITS_TOTAL_RATIO)) {
             metricRegistry.register(
                     METER_SPLITS_TOTAL_RATIO,
@@ -588,8 +629,16 @@ public abstract class AbstractBinderFactory implements BinderFactory {
     protected DataCache<?> buildCache() {
         if (BardFeatureFlag.DRUID_CACHE_V2.isOn()) {
             try {
-                MemTupleDataCache<String> cache = new MemTupleDataCache<>();
+                TupleDataCache<String, Integer, String> cache = new MemTupleDataCache<>(
+                        DataEntryTranscoder.fromConfig()
+                );
                 LOG.info("MemcachedClient Version 2 started {}", cache);
+                if (WriteBehindDataCache.WRITER_THREADS > 0) {
+                    cache = new WriteBehindTupleDataCache<>(cache);
+                }
+                if (TwoTierTupleDataCache.NEAR_MAX_ENTRIES > 0) {
+                    cache = new TwoTierTupleDataCache<>(cache);
+                }
                 return cache;
             } catch (IOException e) {
                 LOG.error("MemcachedClient Version 2 failed to start {}", e);
@@ -597,7 +646,11 @@ public abstract class AbstractBinderFactory implements BinderFactory {
             }
         } else if (BardFeatureFlag.DRUID_CACHE.isOn()) {
             try {
-                DataCache<String> cache = new HashDataCache<>(new MemDataCache<HashDataCache.Pair<String, String>>());
+                DataCache<HashDataCache.Pair<String, String>> memCache = new MemDataCache<>();
+                if (WriteBehindDataCache.WRITER_THREADS > 0) {
+                    memCache = new WriteBehindDataCache<>(memCache);
+                }
+                DataCache<String> cache = new HashDataCache<>(memCache);
                 LOG.info("MemcachedClient started {}", cache);
                 return cache;
             } catch (IOException e) {
@@ -16,7 +16,10 @@ public enum BardFeatureFlag implements FeatureFlag {
     PERMISSIVE_COLUMN_AVAILABILITY("permissive_column_availability_enabled"),
     UPDATED_METADATA_COLLECTION_NAMES("updated_metadata_collection_names_enabled"),
     DRUID_COORDINATOR_METADATA("druid_coordinator_metadata_enabled"),
-    DRUID_DIMENSIONS_LOADER("druid_dimensions_loader_enabled");
+    DRUID_DIMENSIONS_LOADER("druid_dimensions_loader_enabled"),
+    DRUID_STREAMING_RESPONSE("druid_streaming_response_enabled"),
+    COLUMNAR_RESULT_SET("columnar_result_set_enabled"),
+    DRUID_QUERY_COALESCING("druid_query_coalescing_enabled");
 
     private final String propertyName;
     private Boolean on;
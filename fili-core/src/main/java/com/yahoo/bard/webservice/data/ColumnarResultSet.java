@@ -0,0 +1,452 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+import com.yahoo.bard.webservice.table.Schema;
+
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A result set which stores its rows column by column in primitive arrays rather than as one {@link Result} per row.
+ * <ul>
+ *     <li>Timestamps are held as epoch milliseconds in a {@code long[]}.
+ *     <li>Dimension columns are dictionary encoded, as an {@code int[]} of codes into a per column dictionary of
+ *     distinct dimension rows.
+ *     <li>Metric columns whose values are all integral are held in a {@code long[]}, metric columns whose values are
+ *     all doubles are held in a {@code double[]}, and any other metric column falls back to an {@code Object[]}.
+ *     Null values are tracked in a bitmap.
+ * </ul>
+ * The rows are still presented as results: each call to {@link #get(int)} builds a view of the row on demand, so
+ * mappers and responses work unchanged. Rows may only be appended, since rewriting a row would mean re-encoding its
+ * columns. A columnar result set is serialized as a {@link ResultSet} of its rows.
+ */
+public class ColumnarResultSet extends ResultSet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final List<DimensionColumn> dimensionColumns;
+    private final Map<DimensionColumn, Integer> dimensionColumnIndexes;
+    private final List<MetricColumn> metricColumns;
+    private final Map<MetricColumn, Integer> metricColumnIndexes;
+
+    private final List<List<DimensionRow>> dimensionDictionaries;
+    private final List<Map<DimensionRow, Integer>> dimensionDictionaryCodes;
+    private final int[][] dimensionCodes;
+    private final MetricValues[] metricValues;
+
+    private long[] timeStamps;
+    private Chronology chronology;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param schema  The associated schema, whose dimension and metric columns are the columns of the result set
+     */
+    public ColumnarResultSet(Schema schema) {
+        this(schema, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param schema  The associated schema, whose dimension and metric columns are the columns of the result set
+     * @param initialCapacity  The number of rows to allocate space for up front
+     */
+    public ColumnarResultSet(Schema schema, int initialCapacity) {
+        super(schema);
+        int capacity = Math.max(initialCapacity, 1);
+
+        dimensionColumns = new ArrayList<>(schema.getColumns(DimensionColumn.class));
+        dimensionColumnIndexes = new HashMap<>();
+        dimensionDictionaries = new ArrayList<>();
+        dimensionDictionaryCodes = new ArrayList<>();
+        dimensionCodes = new int[dimensionColumns.size()][];
+        for (int i = 0; i < dimensionColumns.size(); i++) {
+            dimensionColumnIndexes.put(dimensionColumns.get(i), i);
+            dimensionDictionaries.add(new ArrayList<>());
+            dimensionDictionaryCodes.add(new HashMap<>());
+            dimensionCodes[i] = new int[capacity];
+        }
+
+        metricColumns = new ArrayList<>(schema.getColumns(MetricColumn.class));
+        metricColumnIndexes = new HashMap<>();
+        metricValues = new MetricValues[metricColumns.size()];
+        for (int i = 0; i < metricColumns.size(); i++) {
+            metricColumnIndexes.put(metricColumns.get(i), i);
+            metricValues[i] = new MetricValues(capacity);
+        }
+
+        timeStamps = new long[capacity];
+    }
+
+    /**
+     * Constructor which encodes a list of results.
+     *
+     * @param results  The list of results
+     * @param schema  The associated schema, whose dimension and metric columns are the columns of the result set
+     */
+    public ColumnarResultSet(List<Result> results, Schema schema) {
+        this(schema, results.size());
+        addAll(results);
+    }
+
+    @Override
+    public Result get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        Map<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+        for (int i = 0; i < dimensionColumns.size(); i++) {
+            int code = dimensionCodes[i][index];
+            if (code >= 0) {
+                dimensionRows.put(dimensionColumns.get(i), dimensionDictionaries.get(i).get(code));
+            }
+        }
+
+        Map<MetricColumn, Object> metrics = new LinkedHashMap<>();
+        for (int i = 0; i < metricColumns.size(); i++) {
+            if (!metricValues[i].isAbsent(index)) {
+                metrics.put(metricColumns.get(i), metricValues[i].get(index));
+            }
+        }
+
+        return new Result(dimensionRows, metrics, new DateTime(timeStamps[index], chronology));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a result to the end of the result set.
+     * <p>
+     * Timestamps are stored as instants, and are presented in the chronology of the first result appended.
+     *
+     * @param index  The index to insert at, which must be the size of the result set
+     * @param result  The result to append
+     *
+     * @throws UnsupportedOperationException if the index is not the end of the result set
+     * @throws IllegalArgumentException if the result has a column which is not in the schema of the result set
+     */
+    @Override
+    public void add(int index, Result result) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Columnar result sets can only be appended to");
+        }
+        // Resolve every column before writing anything, so a rejected result leaves no trace
+        int[] rowDimensionColumns = result.getDimensionRows().keySet().stream()
+                .mapToInt(column -> getColumnIndex(dimensionColumnIndexes, column))
+                .toArray();
+        int[] rowMetricColumns = result.getMetricValues().keySet().stream()
+                .mapToInt(column -> getColumnIndex(metricColumnIndexes, column))
+                .toArray();
+
+        ensureCapacity(size + 1);
+
+        for (int[] codes : dimensionCodes) {
+            codes[size] = -1;
+        }
+        int i = 0;
+        for (DimensionRow dimensionRow : result.getDimensionRows().values()) {
+            int column = rowDimensionColumns[i++];
+            dimensionCodes[column][size] = encode(column, dimensionRow);
+        }
+
+        for (MetricValues values : metricValues) {
+            values.setAbsent(size);
+        }
+        i = 0;
+        for (Object value : result.getMetricValues().values()) {
+            metricValues[rowMetricColumns[i++]].set(size, value, size);
+        }
+
+        DateTime timeStamp = result.getTimeStamp();
+        if (chronology == null) {
+            chronology = timeStamp.getChronology();
+        }
+        timeStamps[size] = timeStamp.getMillis();
+
+        modCount++;
+        size++;
+    }
+
+    @Override
+    public Result set(int index, Result result) {
+        throw new UnsupportedOperationException("Columnar result sets can only be appended to");
+    }
+
+    @Override
+    public Result remove(int index) {
+        throw new UnsupportedOperationException("Columnar result sets can only be appended to");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Columnar result sets can only be appended to");
+    }
+
+    /**
+     * Serialize the result set as a row result set, since the columns are not serializable.
+     *
+     * @return a result set holding the results of this one
+     */
+    private Object writeReplace() {
+        return new ResultSet(this, getSchema());
+    }
+
+    /**
+     * Find the position of a column in the result set.
+     *
+     * @param columnIndexes  The positions of the columns of one kind
+     * @param column  The column to find
+     * @param <T>  The kind of column
+     *
+     * @return the position of the column
+     *
+     * @throws IllegalArgumentException if the column is not in the result set
+     */
+    private <T> int getColumnIndex(Map<T, Integer> columnIndexes, T column) {
+        Integer index = columnIndexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Column " + column + " is not in the result set schema " + getSchema());
+        }
+        return index;
+    }
+
+    /**
+     * Get the dictionary code of a dimension row, adding the row to the dictionary of its column if it is new.
+     *
+     * @param column  The position of the dimension column
+     * @param dimensionRow  The dimension row to encode
+     *
+     * @return the dictionary code of the dimension row
+     */
+    private int encode(int column, DimensionRow dimensionRow) {
+        Map<DimensionRow, Integer> codes = dimensionDictionaryCodes.get(column);
+        Integer code = codes.get(dimensionRow);
+        if (code == null) {
+            List<DimensionRow> dictionary = dimensionDictionaries.get(column);
+            code = dictionary.size();
+            dictionary.add(dimensionRow);
+            codes.put(dimensionRow, code);
+        }
+        return code;
+    }
+
+    /**
+     * Grow the column arrays so that they can hold at least the given number of rows.
+     *
+     * @param minCapacity  The number of rows which need to fit
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= timeStamps.length) {
+            return;
+        }
+        int capacity = Math.max(minCapacity, timeStamps.length * 2);
+        timeStamps = Arrays.copyOf(timeStamps, capacity);
+        for (int i = 0; i < dimensionCodes.length; i++) {
+            dimensionCodes[i] = Arrays.copyOf(dimensionCodes[i], capacity);
+        }
+        for (MetricValues values : metricValues) {
+            values.ensureCapacity(capacity);
+        }
+    }
+
+    /**
+     * The values of one metric column, held in the narrowest storage which represents all of them exactly.
+     * <p>
+     * Numbers are presented as BigDecimals. Integral values (scale 0, fitting in a long) are stored as longs and
+     * rebuilt with {@link BigDecimal#valueOf(long)}. Values which {@link BigDecimal#valueOf(double)} reproduces
+     * exactly, as it does for every floating point value read from a druid response, are stored as doubles. Once a
+     * value doesn't fit the storage in use, the column falls back to storing objects.
+     */
+    private static final class MetricValues {
+
+        /**
+         * The kinds of storage a metric column can use.
+         */
+        private enum Storage {
+            UNDECIDED,
+            LONG,
+            DOUBLE,
+            OBJECT
+        }
+
+        private Storage storage = Storage.UNDECIDED;
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+        private final BitSet nulls = new BitSet();
+        private final BitSet absent = new BitSet();
+        private int capacity;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity  The number of rows to allocate space for
+         */
+        MetricValues(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Grow the storage so that it can hold at least the given number of rows.
+         *
+         * @param newCapacity  The number of rows which need to fit
+         */
+        void ensureCapacity(int newCapacity) {
+            capacity = newCapacity;
+            if (longs != null) {
+                longs = Arrays.copyOf(longs, capacity);
+            }
+            if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, capacity);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+        }
+
+        /**
+         * Mark a row as not having a value for this column.
+         *
+         * @param row  The row
+         */
+        void setAbsent(int row) {
+            absent.set(row);
+        }
+
+        /**
+         * Whether a row has no value for this column.
+         *
+         * @param row  The row
+         *
+         * @return true if the row has no value
+         */
+        boolean isAbsent(int row) {
+            return absent.get(row);
+        }
+
+        /**
+         * Set the value of a row.
+         *
+         * @param row  The row
+         * @param value  The value of the row
+         * @param rowCount  The number of rows before this one, all of which have been set
+         */
+        void set(int row, Object value, int rowCount) {
+            absent.clear(row);
+            if (value == null) {
+                nulls.set(row);
+                return;
+            }
+
+            Storage valueStorage = Storage.OBJECT;
+            if (value instanceof BigDecimal && storage != Storage.OBJECT) {
+                BigDecimal number = (BigDecimal) value;
+                if (number.scale() == 0 && number.unscaledValue().bitLength() < Long.SIZE) {
+                    valueStorage = Storage.LONG;
+                } else if (BigDecimal.valueOf(number.doubleValue()).equals(number)) {
+                    valueStorage = Storage.DOUBLE;
+                }
+            }
+
+            if (storage == Storage.UNDECIDED) {
+                allocate(valueStorage);
+            } else if (storage != valueStorage) {
+                fallBackToObjects(rowCount);
+            }
+
+            switch (storage) {
+                case LONG:
+                    longs[row] = ((BigDecimal) value).longValue();
+                    break;
+                case DOUBLE:
+                    doubles[row] = ((BigDecimal) value).doubleValue();
+                    break;
+                default:
+                    objects[row] = value;
+                    break;
+            }
+        }
+
+        /**
+         * Get the value of a row.
+         *
+         * @param row  The row
+         *
+         * @return the value of the row
+         */
+        Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            switch (storage) {
+                case LONG:
+                    return BigDecimal.valueOf(longs[row]);
+                case DOUBLE:
+                    return BigDecimal.valueOf(doubles[row]);
+                case OBJECT:
+                    return objects[row];
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Allocate storage of the given kind.
+         *
+         * @param newStorage  The kind of storage to use
+         */
+        private void allocate(Storage newStorage) {
+            storage = newStorage;
+            switch (storage) {
+                case LONG:
+                    longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                default:
+                    objects = new Object[capacity];
+                    break;
+            }
+        }
+
+        /**
+         * Move the values stored so far into object storage.
+         *
+         * @param rowCount  The number of rows stored so far
+         */
+        private void fallBackToObjects(int rowCount) {
+            Object[] values = new Object[capacity];
+            for (int row = 0; row < rowCount; row++) {
+                if (!absent.get(row)) {
+                    values[row] = get(row);
+                }
+            }
+            longs = null;
+            doubles = null;
+            objects = values;
+            storage = Storage.OBJECT;
+        }
+    }
+}
@@ -4,23 +4,35 @@ package com.yahoo.bard.webservice.data;
 
 import static com.yahoo.bard.webservice.web.ErrorMessageFormat.RESULT_SET_ERROR;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.metric.MetricColumn;
 import com.yahoo.bard.webservice.druid.model.QueryType;
 import com.yahoo.bard.webservice.table.ZonedSchema;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.inject.Singleton;
 
@@ -33,6 +45,16 @@ public class DruidResponseParser {
 
     private static final Logger LOG = LoggerFactory.getLogger(DruidResponseParser.class);
 
+    /**
+     * Codec used to read complex (non scalar) metric values when the parser handed to us does not have one.
+     */
+    private static final ObjectMapper COMPLEX_VALUE_CODEC = new ObjectMapper();
+
+    /**
+     * Number of streamed rows whose dimension rows are looked up together.
+     */
+    private static final int STREAMED_ROWS_PER_LOOKUP = 1000;
+
     /**
      * Parse Druid GroupBy result into ResultSet.
      *
@@ -50,19 +72,57 @@ public class DruidResponseParser {
         Set<DimensionColumn> dimensionColumns = schema.getColumns(DimensionColumn.class);
         Set<MetricColumn> metricColumns = schema.getColumns(MetricColumn.class);
 
-        List<Result> results;
+        ResultSet results = makeResultSet(schema);
+        DimensionRowResolver resolver = new DimensionRowResolver();
         switch (queryType) {
             case GROUP_BY:
-                results = makeGroupByResults(jsonResult, dimensionColumns, metricColumns, schema.getDateTimeZone());
+                for (JsonNode record : jsonResult) {
+                    requestDimensionRows(dimensionColumns, record.get("event"), resolver);
+                }
+                resolver.resolve();
+                makeGroupByResults(
+                        jsonResult,
+                        dimensionColumns,
+                        metricColumns,
+                        schema.getDateTimeZone(),
+                        results,
+                        resolver
+                );
                 break;
             case TOP_N:
-                results = makeTopNResults(jsonResult, dimensionColumns, metricColumns, schema.getDateTimeZone());
+                for (JsonNode record : jsonResult) {
+                    for (JsonNode entry : record.get("result")) {
+                        requestDimensionRows(dimensionColumns, entry, resolver);
+                    }
+                }
+                resolver.resolve();
+                makeTopNResults(
+                        jsonResult,
+                        dimensionColumns,
+                        metricColumns,
+                        schema.getDateTimeZone(),
+                        results,
+                        resolver
+                );
                 break;
             case TIMESERIES:
-                results = makeTimeSeriesResults(jsonResult, metricColumns, schema.getDateTimeZone());
+                makeTimeSeriesResults(jsonResult, metricColumns, schema.getDateTimeZone(), results);
                 break;
             case LOOKBACK:
-                results = makeLookbackResults(jsonResult, dimensionColumns, metricColumns, schema.getDateTimeZone());
+                if (dimensionColumns != null) {
+                    for (JsonNode record : jsonResult) {
+                        requestDimensionRows(dimensionColumns, record.get("result"), resolver);
+                    }
+                    resolver.resolve();
+                }
+                makeLookbackResults(
+                        jsonResult,
+                        dimensionColumns,
+                        metricColumns,
+                        schema.getDateTimeZone(),
+                        results,
+                        resolver
+                );
                 break;
             default:
                 String msg = RESULT_SET_ERROR.logFormat(queryType);
@@ -71,58 +131,211 @@ public class DruidResponseParser {
         }
 
         LOG.trace("Parsed druid query {} results: {}", queryType, results);
-        return new ResultSet(results, schema);
+        return results;
     }
 
     /**
-     * Create a list of results from a JsonNode of a groupBy response.
+     * Parse a Druid response into a ResultSet by consuming its json tokens directly, without first materializing the
+     * whole response as a json tree.
+     * <p>
+     * The rows produced are identical to those produced by {@link #parse(JsonNode, ZonedSchema, QueryType)} for the
+     * same response.
+     *
+     * @param jsonParser  Parser over the druid response, positioned before the first token
+     * @param schema  Schema for results
+     * @param queryType  the type of query
+     *
+     * @return the set of results
+     *
+     * @throws IOException if the response cannot be read or does not have the shape expected for the query type
+     */
+    public ResultSet parse(JsonParser jsonParser, ZonedSchema schema, QueryType queryType) throws IOException {
+
+        LOG.trace("Streaming parse of druid query {} using schema: {}", queryType, schema);
+
+        /* Get dimension and metric columns */
+        Set<DimensionColumn> dimensionColumns = schema.getColumns(DimensionColumn.class);
+        Set<MetricColumn> metricColumns = schema.getColumns(MetricColumn.class);
+        Set<String> dimensionNames = dimensionColumns.stream()
+                .map(DimensionColumn::getName)
+                .collect(Collectors.toSet());
+
+        if (jsonParser.getCodec() == null) {
+            jsonParser.setCodec(COMPLEX_VALUE_CODEC);
+        }
+
+        String rowFieldName;
+        switch (queryType) {
+            case GROUP_BY:
+                rowFieldName = "event";
+                break;
+            case TOP_N:
+            case TIMESERIES:
+            case LOOKBACK:
+                rowFieldName = "result";
+                break;
+            default:
+                String msg = RESULT_SET_ERROR.logFormat(queryType);
+                LOG.error(msg);
+                throw new UnsupportedOperationException(msg);
+        }
+
+        expectToken(jsonParser, jsonParser.nextToken(), JsonToken.START_ARRAY);
+
+        ResultSet results = makeResultSet(schema);
+        DimensionRowResolver resolver = new DimensionRowResolver();
+        List<DateTime> pendingTimeStamps = new ArrayList<>();
+        List<Map<String, Object>> pendingRows = new ArrayList<>();
+        Set<DimensionColumn> rowDimensions = queryType == QueryType.TIMESERIES ?
+                Collections.emptySet() :
+                dimensionColumns;
+
+        /* loop over all records */
+        JsonToken token;
+        while ((token = jsonParser.nextToken()) == JsonToken.START_OBJECT) {
+            String timeStampText = null;
+            List<Map<String, Object>> rows = new ArrayList<>();
+
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = jsonParser.getCurrentName();
+                JsonToken valueToken = jsonParser.nextToken();
+                if ("timestamp".equals(fieldName)) {
+                    timeStampText = jsonParser.getText();
+                } else if (rowFieldName.equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    /* loop over records per timebucket */
+                    while (jsonParser.nextToken() == JsonToken.START_OBJECT) {
+                        rows.add(readRow(jsonParser, dimensionNames));
+                    }
+                } else if (rowFieldName.equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                    rows.add(readRow(jsonParser, dimensionNames));
+                } else {
+                    jsonParser.skipChildren();
+                }
+            }
+
+            if (timeStampText == null) {
+                throw new IOException("Druid response record has no timestamp at " + jsonParser.getCurrentLocation());
+            }
+            DateTime timeStamp = new DateTime(timeStampText, schema.getDateTimeZone());
+
+            for (Map<String, Object> row : rows) {
+                pendingTimeStamps.add(timeStamp);
+                pendingRows.add(row);
+                for (DimensionColumn dc : rowDimensions) {
+                    resolver.request(dc, dimensionValue(row, dc));
+                }
+            }
+
+            // Rows are held back until enough are read to look their dimension rows up together
+            if (pendingRows.size() >= STREAMED_ROWS_PER_LOOKUP) {
+                addStreamedResults(pendingTimeStamps, pendingRows, rowDimensions, metricColumns, resolver, results);
+            }
+        }
+        expectToken(jsonParser, token, JsonToken.END_ARRAY);
+        addStreamedResults(pendingTimeStamps, pendingRows, rowDimensions, metricColumns, resolver, results);
+
+        LOG.trace("Streamed druid query {} into {} results", queryType, results.size());
+        return results;
+    }
+
+    /**
+     * Add the results of the streamed rows held back, once their dimension rows are looked up, and clear them.
+     *
+     * @param timeStamps  the time stamps of the rows
+     * @param rows  the field values of the rows, with dimension values already read as text
+     * @param dimensionColumns  set of dimension columns, or an empty set for timeseries responses
+     * @param metricColumns  set of metric columns
+     * @param resolver  resolver of the dimension rows of the response, with the rows' dimension values requested
+     * @param results  list to add the results to
+     */
+    private void addStreamedResults(
+            List<DateTime> timeStamps,
+            List<Map<String, Object>> rows,
+            Set<DimensionColumn> dimensionColumns,
+            Set<MetricColumn> metricColumns,
+            DimensionRowResolver resolver,
+            List<Result> results
+    ) {
+        resolver.resolve();
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
+                    dimensionColumns,
+                    row,
+                    resolver
+            );
+            LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, row);
+
+            results.add(new Result(dimensionRows, metricValues, timeStamps.get(i)));
+        }
+        timeStamps.clear();
+        rows.clear();
+    }
+
+    /**
+     * Create an empty result set for the parsed results to be added to.
+     *
+     * @param schema  Schema for results
+     *
+     * @return a columnar result set if columnar result sets are enabled, otherwise a list backed result set
+     */
+    private ResultSet makeResultSet(ZonedSchema schema) {
+        return BardFeatureFlag.COLUMNAR_RESULT_SET.isOn() ?
+                new ColumnarResultSet(schema) :
+                new ResultSet(Collections.emptyList(), schema);
+    }
+
+    /**
+     * Add the results from a JsonNode of a groupBy response to a list of results.
      *
      * @param jsonResult  current results to parse in json
      * @param dimensionColumns  set of dimension columns
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
-     *
-     * @return list of results
+     * @param results  list to add the results to
+     * @param resolver  resolver of the dimension rows of the response
      */
-    private List<Result> makeGroupByResults(
+    private void makeGroupByResults(
             JsonNode jsonResult,
             Set<DimensionColumn> dimensionColumns,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            List<Result> results,
+            DimensionRowResolver resolver
     ) {
-        List<Result> results = new ArrayList<>();
-
         for (JsonNode record : jsonResult) {
             DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
 
             JsonNode event = record.get("event");
-            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(dimensionColumns, event);
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
+                    dimensionColumns,
+                    event,
+                    resolver
+            );
             LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, event);
 
             results.add(new Result(dimensionRows, metricValues, timeStamp));
         }
-
-        return results;
     }
 
     /**
-     * Create a list of results from a JsonNode of a topN response.
+     * Add the results from a JsonNode of a topN response to a list of results.
      *
      * @param jsonResult  current record to parse
      * @param dimensionColumns  set of dimension columns
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
-     *
-     * @return list of results
+     * @param results  list to add the results to
+     * @param resolver  resolver of the dimension rows of the response
      */
-    private List<Result> makeTopNResults(
+    private void makeTopNResults(
             JsonNode jsonResult,
             Set<DimensionColumn> dimensionColumns,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            List<Result> results,
+            DimensionRowResolver resolver
     ) {
-        List<Result> results = new ArrayList<>();
-
         /* loop over all records */
         for (JsonNode record : jsonResult) {
             DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
@@ -132,33 +345,30 @@ public class DruidResponseParser {
             for (final JsonNode entry : result) {
                 LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
                         dimensionColumns,
-                        entry
+                        entry,
+                        resolver
                 );
                 LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, entry);
 
                 results.add(new Result(dimensionRows, metricValues, timeStamp));
             }
         }
-
-        return results;
     }
 
     /**
-     * Create a list of results from a JsonNode of a timeseries response.
+     * Add the results from a JsonNode of a timeseries response to a list of results.
      *
      * @param jsonResult  current record to parse
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
-     *
-     * @return list of results
+     * @param results  list to add the results to
      */
-    private List<Result> makeTimeSeriesResults(
+    private void makeTimeSeriesResults(
             JsonNode jsonResult,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            List<Result> results
     ) {
-        List<Result> results = new ArrayList<>();
-
         /* loop over all records */
         for (JsonNode record : jsonResult) {
             DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
@@ -168,28 +378,26 @@ public class DruidResponseParser {
 
             results.add(new Result(new LinkedHashMap<>(), metricValues, timeStamp));
         }
-
-        return results;
     }
 
     /**
-     * Create a list of results from a JsonNode of a lookback response.
+     * Add the results from a JsonNode of a lookback response to a list of results.
      *
      * @param jsonResult  current results to parse in json
      * @param dimensionColumns  set of dimension columns
      * @param metricColumns  set of metric columns
      * @param dateTimeZone  The date time zone to apply to timestamps
-     *
-     * @return list of results
+     * @param results  list to add the results to
+     * @param resolver  resolver of the dimension rows of the response
      */
-    private List<Result> makeLookbackResults(
+    private void makeLookbackResults(
             JsonNode jsonResult,
             Set<DimensionColumn> dimensionColumns,
             Set<MetricColumn> metricColumns,
-            DateTimeZone dateTimeZone
+            DateTimeZone dateTimeZone,
+            List<Result> results,
+            DimensionRowResolver resolver
     ) {
-        List<Result> results = new ArrayList<>();
-
         for (JsonNode record : jsonResult) {
             DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
 
@@ -201,12 +409,11 @@ public class DruidResponseParser {
 
             dimensionRows = dimensionColumns == null ?
                     new LinkedHashMap<>() :
-                    extractDimensionRows(dimensionColumns, result);
+                    extractDimensionRows(dimensionColumns, result, resolver);
 
 
             results.add(new Result(dimensionRows, metricValues, timeStamp));
         }
-        return results;
     }
 
     /**
@@ -215,27 +422,85 @@ public class DruidResponseParser {
      *
      * @param dimensionColumns  the set of dimension columns
      * @param entry  the json object
+     * @param resolver  resolver of the dimension rows of the response
      *
      * @return map of dimension columns to dimension rows
      */
     private LinkedHashMap<DimensionColumn, DimensionRow> extractDimensionRows(
             Set<DimensionColumn> dimensionColumns,
-            JsonNode entry
+            JsonNode entry,
+            DimensionRowResolver resolver
     ) {
         LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
 
         for (DimensionColumn dc : dimensionColumns) {
-            JsonNode fieldNode = entry.get(dc.getName());
-            String fieldValue = "";
-            if (fieldNode != null) {
-                fieldValue = fieldNode.asText("");
-            }
+            dimensionRows.put(dc, resolver.get(dc, dimensionValue(entry, dc)));
+        }
 
-            DimensionRow drow = dc.getDimension().findDimensionRowByKeyValue(fieldValue);
-            if (drow == null) {
-                drow = dc.getDimension().createEmptyDimensionRow(fieldValue);
-            }
-            dimensionRows.put(dc, drow);
+        return dimensionRows;
+    }
+
+    /**
+     * Request the dimension rows of a json object from the resolver, to be looked up with those of the other objects.
+     *
+     * @param dimensionColumns  the set of dimension columns
+     * @param entry  the json object
+     * @param resolver  resolver of the dimension rows of the response
+     */
+    private void requestDimensionRows(
+            Set<DimensionColumn> dimensionColumns,
+            JsonNode entry,
+            DimensionRowResolver resolver
+    ) {
+        for (DimensionColumn dc : dimensionColumns) {
+            resolver.request(dc, dimensionValue(entry, dc));
+        }
+    }
+
+    /**
+     * Get the value of a dimension in a json object.
+     *
+     * @param entry  the json object
+     * @param dimensionColumn  the column of the dimension
+     *
+     * @return the value of the dimension, or the empty string if it has none
+     */
+    private String dimensionValue(JsonNode entry, DimensionColumn dimensionColumn) {
+        JsonNode fieldNode = entry.get(dimensionColumn.getName());
+        return fieldNode == null ? "" : fieldNode.asText("");
+    }
+
+    /**
+     * Get the value of a dimension in a streamed row.
+     *
+     * @param row  the field values of the row, with dimension values already read as text
+     * @param dimensionColumn  the column of the dimension
+     *
+     * @return the value of the dimension, or the empty string if it has none
+     */
+    private String dimensionValue(Map<String, Object> row, DimensionColumn dimensionColumn) {
+        Object fieldValue = row.get(dimensionColumn.getName());
+        return fieldValue == null ? "" : (String) fieldValue;
+    }
+
+    /**
+     * Extract the dimension rows for a streamed row given the set of all available dimension columns and the row.
+     *
+     * @param dimensionColumns  the set of dimension columns
+     * @param row  the field values of the row, with dimension values already read as text
+     * @param resolver  resolver of the dimension rows of the response
+     *
+     * @return map of dimension columns to dimension rows
+     */
+    private LinkedHashMap<DimensionColumn, DimensionRow> extractDimensionRows(
+            Set<DimensionColumn> dimensionColumns,
+            Map<String, Object> row,
+            DimensionRowResolver resolver
+    ) {
+        LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
+
+        for (DimensionColumn dc : dimensionColumns) {
+            dimensionRows.put(dc, resolver.get(dc, dimensionValue(row, dc)));
         }
 
         return dimensionRows;
@@ -267,6 +532,108 @@ public class DruidResponseParser {
         return metricValues;
     }
 
+    /**
+     * Extract the metric values for a streamed row given the set of all available metric columns and the row.
+     *
+     * @param metricColumns  the set of metric columns
+     * @param row  the field values of the row
+     *
+     * @return map of metric columns to metric values
+     */
+    private LinkedHashMap<MetricColumn, Object> extractMetricValues(
+            Set<MetricColumn> metricColumns,
+            Map<String, Object> row
+    ) {
+        LinkedHashMap<MetricColumn, Object> metricValues = new LinkedHashMap<>();
+
+        for (MetricColumn mc : metricColumns) {
+            if (!row.containsKey(mc.getName())) {
+                LOG.warn("Found null node for metric column {}", mc.getName());
+            } else {
+                metricValues.put(mc, row.get(mc.getName()));
+            }
+        }
+
+        return metricValues;
+    }
+
+    /**
+     * Read the fields of a json object into a map, leaving the parser on the closing token of the object.
+     * <p>
+     * Dimension fields are read as text, the same way {@link JsonNode#asText(String)} would read them, and all other
+     * fields are read the same way {@link #getNodeValue(JsonNode)} would read them.
+     *
+     * @param jsonParser  Parser positioned on the opening token of the object
+     * @param dimensionNames  Names of the fields which hold dimension values
+     *
+     * @return map of field names to values
+     *
+     * @throws IOException if the object cannot be read
+     */
+    private Map<String, Object> readRow(JsonParser jsonParser, Set<String> dimensionNames) throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = jsonParser.getCurrentName();
+            jsonParser.nextToken();
+            if (dimensionNames.contains(fieldName)) {
+                row.put(fieldName, jsonParser.getValueAsString(""));
+                jsonParser.skipChildren();
+            } else {
+                row.put(fieldName, getTokenValue(jsonParser));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Extracts the value at the current token of a parser, consuming the whole value if it is an object or array.
+     *
+     * @param jsonParser  The parser positioned on the value to be extracted
+     *
+     * @return the value as a BigDecimal if the token is a number, the value as a String if the token is textual,
+     * the value as a boolean if the token is a boolean, null if the token is null, and a JsonNode otherwise.
+     *
+     * @throws IOException if the value cannot be read
+     */
+    private Object getTokenValue(JsonParser jsonParser) throws IOException {
+        switch (jsonParser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+                return jsonParser.getDecimalValue();
+            case VALUE_NUMBER_FLOAT:
+                // Match the tree path, which reads floating point values as doubles
+                return BigDecimal.valueOf(jsonParser.getDoubleValue());
+            case VALUE_STRING:
+                return jsonParser.getText();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return jsonParser.getBooleanValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                return jsonParser.readValueAsTree();
+        }
+    }
+
+    /**
+     * Verify that a token read from the response is the one expected.
+     *
+     * @param jsonParser  The parser which read the token
+     * @param actual  The token read
+     * @param expected  The token expected
+     *
+     * @throws IOException if the token is not the one expected
+     */
+    private void expectToken(JsonParser jsonParser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException(String.format(
+                    "Unexpected token %s in druid response at %s, expected %s",
+                    actual,
+                    jsonParser.getCurrentLocation(),
+                    expected
+            ));
+        }
+    }
+
     /**
      * Extracts the value from a JsonNode.
      *
@@ -282,4 +649,68 @@ public class DruidResponseParser {
                 node.isNull() ? null :
                 node;
     }
+
+    /**
+     * Resolves the dimension values of a response to dimension rows.
+     * <p>
+     * Each distinct value of a dimension is looked up once, and the values requested since the last resolution are
+     * looked up in one batch per dimension. Values not known to their dimension resolve to an empty row.
+     */
+    private static class DimensionRowResolver {
+        private final Map<DimensionColumn, Map<String, DimensionRow>> resolved = new HashMap<>();
+        private final Map<DimensionColumn, Set<String>> requested = new HashMap<>();
+
+        /**
+         * Request the dimension row of a dimension value, to be looked up at the next resolution.
+         *
+         * @param dimensionColumn  the column whose dimension holds the row
+         * @param value  the key value of the row
+         */
+        void request(DimensionColumn dimensionColumn, String value) {
+            Map<String, DimensionRow> dimensionRows = resolved.get(dimensionColumn);
+            if (dimensionRows == null || !dimensionRows.containsKey(value)) {
+                requested.computeIfAbsent(dimensionColumn, ignored -> new LinkedHashSet<>()).add(value);
+            }
+        }
+
+        /**
+         * Look the requested dimension rows up, one batch per dimension.
+         */
+        void resolve() {
+            for (Map.Entry<DimensionColumn, Set<String>> entry : requested.entrySet()) {
+                Dimension dimension = entry.getKey().getDimension();
+                Map<String, DimensionRow> found = dimension.findDimensionRowsByKeyValues(entry.getValue());
+                Map<String, DimensionRow> dimensionRows = resolved.computeIfAbsent(
+                        entry.getKey(),
+                        ignored -> new HashMap<>()
+                );
+                for (String value : entry.getValue()) {
+                    DimensionRow dimensionRow = found.get(value);
+                    if (dimensionRow == null) {
+                        dimensionRow = dimension.createEmptyDimensionRow(value);
+                    }
+                    dimensionRows.put(value, dimensionRow);
+                }
+            }
+            requested.clear();
+        }
+
+        /**
+         * Get the dimension row of a dimension value, looking it up on its own if it wasn't requested beforehand.
+         *
+         * @param dimensionColumn  the column whose dimension holds the row
+         * @param value  the key value of the row
+         *
+         * @return the dimension row
+         */
+        DimensionRow get(DimensionColumn dimensionColumn, String value) {
+            Map<String, DimensionRow> dimensionRows = resolved.get(dimensionColumn);
+            if (dimensionRows == null || !dimensionRows.containsKey(value)) {
+                request(dimensionColumn, value);
+                resolve();
+                dimensionRows = resolved.get(dimensionColumn);
+            }
+            return dimensionRows.get(value);
+        }
+    }
 }
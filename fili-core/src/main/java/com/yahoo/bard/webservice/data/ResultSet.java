@@ -4,15 +4,28 @@ package com.yahoo.bard.webservice.data;
 
 import com.yahoo.bard.webservice.table.Schema;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * ResultSet
+ * <p>
+ * By default the rows of a result set are held as a list of {@link Result}s. Subclasses may store the rows some other
+ * way (see {@link ColumnarResultSet}) as long as they can present them as results.
+ * <p>
+ * Result sets are serializable, as they were when they extended {@link ArrayList}, but no longer have the
+ * {@code ArrayList} methods such as {@code ensureCapacity}, {@code trimToSize} and {@code clone}.
  */
-public class ResultSet extends ArrayList<Result> {
+public class ResultSet extends AbstractList<Result> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final Schema schema;
+    private final List<Result> results;
 
     /**
      * Constructor
@@ -21,7 +34,17 @@ public class ResultSet extends ArrayList<Result> {
      * @param schema  The associated schema
      */
     public ResultSet(List<Result> results, Schema schema) {
-        super(results);
+        this.results = new ArrayList<>(results);
+        this.schema = schema;
+    }
+
+    /**
+     * Constructor for subclasses which provide their own storage of the results.
+     *
+     * @param schema  The associated schema
+     */
+    protected ResultSet(Schema schema) {
+        this.results = Collections.emptyList();
         this.schema = schema;
     }
 
@@ -33,6 +56,39 @@ public class ResultSet extends ArrayList<Result> {
         return this.schema;
     }
 
+    @Override
+    public Result get(int index) {
+        return results.get(index);
+    }
+
+    @Override
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public Result set(int index, Result result) {
+        return results.set(index, result);
+    }
+
+    @Override
+    public void add(int index, Result result) {
+        modCount++;
+        results.add(index, result);
+    }
+
+    @Override
+    public Result remove(int index) {
+        modCount++;
+        return results.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        results.clear();
+    }
+
     @Override
     public String toString() {
         return "Schema: " + schema;
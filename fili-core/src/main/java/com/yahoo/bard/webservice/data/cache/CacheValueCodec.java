@@ -0,0 +1,43 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * Converts the json values of cache entries to and from the bytes stored in the cache.
+ */
+public interface CacheValueCodec {
+
+    /**
+     * Get the id of the format written by this codec, which is stored with each value so that values written in one
+     * format are never read in another.
+     *
+     * @return the format id
+     */
+    byte getFormatId();
+
+    /**
+     * Encode a json value.
+     *
+     * @param json  The json text to encode
+     *
+     * @return the encoded value
+     * @throws IOException if the json is not well formed
+     */
+    byte[] encode(String json) throws IOException;
+
+    /**
+     * Decode a json value.
+     *
+     * @param bytes  The buffer holding the encoded value
+     * @param offset  The offset of the encoded value in the buffer
+     * @param length  The length of the encoded value
+     *
+     * @return the decoded json
+     * @throws IOException if the bytes are not a value encoded by this codec
+     */
+    JsonNode decode(byte[] bytes, int offset, int length) throws IOException;
+}
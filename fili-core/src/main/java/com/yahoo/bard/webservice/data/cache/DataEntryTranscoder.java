@@ -0,0 +1,302 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Memcached transcoder which stores the json entries of the tuple data cache in a compact binary form rather than
+ * through Java serialization.
+ * <p>
+ * An entry is stored as a header (format version, value codec id, compression, metadata) and the key, followed by the
+ * value encoded by a {@link CacheValueCodec}, optionally deflated. Entries are decoded straight into their parsed json
+ * (see {@link ParsedDataEntry}), and their json text is only rendered if asked for. Any other object, and any entry
+ * written before this transcoder was enabled, goes through the default serializing transcoder.
+ */
+public class DataEntryTranscoder implements Transcoder<Object> {
+    private static final Logger LOG = LoggerFactory.getLogger(DataEntryTranscoder.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * Format of the values in the data cache: "java" serialization or binary "smile".
+     */
+    public static final String VALUE_FORMAT = SYSTEM_CONFIG.getStringProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_value_format"),
+            "java"
+    );
+
+    /**
+     * Whether binary values are deflated.
+     */
+    public static final boolean COMPRESSION_ENABLED = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_value_compression_enabled"),
+            false
+    );
+
+    /**
+     * Flag marking memcached items written by this transcoder. Clear of the flags of the serializing transcoder.
+     */
+    public static final int FLAG = 1 << 16;
+
+    private static final byte VERSION = 1;
+
+    private static final byte COMPRESSED = 1;
+
+    private static final byte META_NULL = 0;
+    private static final byte META_INTEGER = 1;
+    private static final byte META_LONG = 2;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final CacheValueCodec codec;
+    private final boolean compress;
+    private final Transcoder<Object> fallback = new SerializingTranscoder();
+
+    /**
+     * Constructor.
+     *
+     * @param codec  The codec for the json values of the entries
+     * @param compress  Whether to deflate the encoded values
+     */
+    public DataEntryTranscoder(CacheValueCodec codec, boolean compress) {
+        this.codec = codec;
+        this.compress = compress;
+    }
+
+    /**
+     * Build the transcoder for the configured value format.
+     *
+     * @return the transcoder, or null if values are stored with Java serialization
+     */
+    public static DataEntryTranscoder fromConfig() {
+        switch (VALUE_FORMAT.toLowerCase(Locale.ENGLISH)) {
+            case "java":
+                return null;
+            case "smile":
+                return new DataEntryTranscoder(new SmileCacheValueCodec(), COMPRESSION_ENABLED);
+            default:
+                throw new IllegalArgumentException("Unknown data cache value format: " + VALUE_FORMAT);
+        }
+    }
+
+    @Override
+    public boolean asyncDecode(CachedData data) {
+        return false;
+    }
+
+    @Override
+    public CachedData encode(Object object) {
+        if (!isEncodable(object)) {
+            return fallback.encode(object);
+        }
+        TupleDataCache.DataEntry<?, ?, ?> entry = (TupleDataCache.DataEntry<?, ?, ?>) object;
+        Object meta = entry.getMeta();
+        try {
+            byte[] value = codec.encode((String) entry.getValue());
+            if (compress) {
+                value = deflate(value);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length + 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeByte(codec.getFormatId());
+            out.writeByte(compress ? COMPRESSED : 0);
+            if (meta == null) {
+                out.writeByte(META_NULL);
+            } else if (meta instanceof Integer) {
+                out.writeByte(META_INTEGER);
+                out.writeInt((Integer) meta);
+            } else {
+                out.writeByte(META_LONG);
+                out.writeLong((Long) meta);
+            }
+            byte[] key = ((String) entry.getKey()).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(key.length);
+            out.write(key);
+            out.write(value);
+            return new CachedData(FLAG, bytes.toByteArray(), getMaxSize());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to encode cache entry for " + entry.getKey(), e);
+        }
+    }
+
+    @Override
+    public Object decode(CachedData data) {
+        if ((data.getFlags() & FLAG) == 0) {
+            return fallback.decode(data);
+        }
+        byte[] bytes = data.getData();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte version = in.readByte();
+            byte formatId = in.readByte();
+            if (version != VERSION || formatId != codec.getFormatId()) {
+                // Written by a different version or codec, so treat it as a miss
+                LOG.debug("Ignoring cache entry of version {} and format {}", version, formatId);
+                return null;
+            }
+            boolean compressed = in.readByte() == COMPRESSED;
+            Serializable meta;
+            byte metaType = in.readByte();
+            if (metaType == META_INTEGER) {
+                meta = in.readInt();
+            } else if (metaType == META_LONG) {
+                meta = in.readLong();
+            } else {
+                meta = null;
+            }
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+
+            int offset = bytes.length - in.available();
+            byte[] value = compressed ? inflate(bytes, offset, bytes.length - offset) : bytes;
+            int valueOffset = compressed ? 0 : offset;
+            JsonNode json = codec.decode(value, valueOffset, value.length - valueOffset);
+            return new DecodedDataEntry(new String(key, StandardCharsets.UTF_8), meta, json, bytes.length);
+        } catch (IOException | DataFormatException e) {
+            LOG.warn("Unable to decode cache entry {}", e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return CachedData.MAX_SIZE;
+    }
+
+    /**
+     * Check whether an object is a tuple data cache entry of json text, with metadata this transcoder can store.
+     *
+     * @param object  The object to check
+     *
+     * @return true if the object is encoded by this transcoder rather than serialized
+     */
+    private static boolean isEncodable(Object object) {
+        if (!(object instanceof TupleDataCache.DataEntry)) {
+            return false;
+        }
+        TupleDataCache.DataEntry<?, ?, ?> entry = (TupleDataCache.DataEntry<?, ?, ?>) object;
+        Object meta = entry.getMeta();
+        return entry.getKey() instanceof String &&
+                entry.getValue() instanceof String &&
+                (meta == null || meta instanceof Integer || meta instanceof Long);
+    }
+
+    /**
+     * Deflate bytes.
+     *
+     * @param bytes  The bytes to deflate
+     *
+     * @return the deflated bytes
+     */
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate bytes.
+     *
+     * @param bytes  The buffer holding the deflated bytes
+     * @param offset  The offset of the deflated bytes in the buffer
+     * @param length  The number of deflated bytes
+     *
+     * @return the inflated bytes
+     * @throws DataFormatException if the bytes are not deflated
+     */
+    private static byte[] inflate(byte[] bytes, int offset, int length) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated deflated value");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Entry decoded from the binary form, which renders its json text only if asked for it.
+     */
+    private static class DecodedDataEntry extends ParsedDataEntry<Serializable, String> {
+        private static final long serialVersionUID = -6102617946113342158L;
+
+        private final long storedSize;
+        private transient volatile String value;
+
+        /**
+         * Constructor.
+         *
+         * @param key  The key of the entry
+         * @param meta  The metadata of the entry
+         * @param json  The decoded json value of the entry
+         * @param storedSize  The size of the entry as it was stored, in bytes
+         */
+        DecodedDataEntry(String key, Serializable meta, JsonNode json, long storedSize) {
+            super(key, meta, null);
+            this.storedSize = storedSize;
+            setParsedValue(json);
+        }
+
+        @Override
+        public long getStoredSize() {
+            return storedSize;
+        }
+
+        @Override
+        public String getValue() {
+            if (value == null) {
+                try {
+                    value = MAPPER.writeValueAsString(getParsedValue());
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import net.spy.memcached.AddrUtil;
 import net.spy.memcached.BinaryConnectionFactory;
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.transcoders.Transcoder;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -45,6 +46,7 @@ public class MemDataCache<T extends Serializable> implements DataCache<T> {
     private static final int EXPIRATION = SYSTEM_CONFIG.getIntProperty(EXPIRATION_KEY, EXPIRATION_DEFAULT_VALUE);
 
     final private MemcachedClient client;
+    final private Transcoder<Object> transcoder;
 
     /**
      * Constructor using a default Memcached Client
@@ -53,7 +55,18 @@ public class MemDataCache<T extends Serializable> implements DataCache<T> {
      */
     @Inject
     public MemDataCache() throws IOException {
-        this(new MemcachedClient(new BinaryConnectionFactory(), AddrUtil.getAddresses(SERVER_CONFIG)));
+        this((Transcoder<Object>) null);
+    }
+
+    /**
+     * Constructor using a default Memcached Client and a custom transcoder.
+     *
+     * @param transcoder  The transcoder converting values to and from memcached items, or null for the client default
+     *
+     * @throws IOException if the memcached client fails to start
+     */
+    public MemDataCache(Transcoder<Object> transcoder) throws IOException {
+        this(new MemcachedClient(new BinaryConnectionFactory(), AddrUtil.getAddresses(SERVER_CONFIG)), transcoder);
     }
 
     /**
@@ -62,18 +75,29 @@ public class MemDataCache<T extends Serializable> implements DataCache<T> {
      * @param client  The Memcached client to support this cache
      */
     public MemDataCache(MemcachedClient client) {
+        this(client, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param client  The Memcached client to support this cache
+     * @param transcoder  The transcoder converting values to and from memcached items, or null for the client default
+     */
+    public MemDataCache(MemcachedClient client, Transcoder<Object> transcoder) {
         // validate expiration value
         if (EXPIRATION > EXPIRATION_MAX_VALUE) {
             throw new SystemConfigException("memcached_expiration_seconds exceeds " + EXPIRATION_MAX_VALUE);
         }
         this.client = client;
+        this.transcoder = transcoder;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public T get(String key) {
         try {
-            return (T) client.get(key);
+            return (T) (transcoder == null ? client.get(key) : client.get(key, transcoder));
         } catch (RuntimeException warnThenIgnore) {
             LOG.warn(warnThenIgnore.getMessage(), warnThenIgnore);
             return null;
@@ -85,7 +109,10 @@ public class MemDataCache<T extends Serializable> implements DataCache<T> {
         try {
             // Omitting null checking for key since it should be rare.
             // An exception will be thrown by the memcached client.
-            return client.set(key, EXPIRATION, value).get();
+            return (transcoder == null ?
+                    client.set(key, EXPIRATION, value) :
+                    client.set(key, EXPIRATION, value, transcoder)
+            ).get();
         } catch (Exception e) {
             LOG.warn("set failed {} {}", key, e.toString());
             throw new IllegalStateException(e);
@@ -2,16 +2,23 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.cache;
 
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.transcoders.Transcoder;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Locale;
 
 import javax.inject.Singleton;
 
@@ -26,23 +33,20 @@ public class MemTupleDataCache<V extends Serializable>
         implements TupleDataCache<String, Integer, V> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MemTupleDataCache.class);
-    private static final String DEFAULT_HASH_ALGORITHM = "SHA-512";
-
-    // To reuse a MessageDigest and avoiding locking, every thread puts its hash generator in thread local storage
-    private static final ThreadLocal<MessageDigest> HASH_GENERATOR = ThreadLocal.withInitial(
-            () -> {
-                try {
-                    return MessageDigest.getInstance(DEFAULT_HASH_ALGORITHM);
-                } catch (NoSuchAlgorithmException nsae) {
-                    String msg = "Unable to initialize hash generator with default algorithm: " +
-                            DEFAULT_HASH_ALGORITHM;
-
-                    LOG.warn(msg, nsae);
-                    throw new IllegalStateException(msg, nsae);
-                }
-            }
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * Hash of the keys of the entries in memcached: "sha512", or the faster, non cryptographic "murmur3" (128 bits).
+     * <p>
+     * Changing it makes every entry already in memcached unreachable, as if the cache had been flushed.
+     */
+    public static final String KEY_HASH = SYSTEM_CONFIG.getStringProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_key_hash"),
+            "sha512"
     );
 
+    // Entries keep their full key, so collisions are told apart on read
+    private static final HashFunction HASH_FUNCTION = getHashFunction(KEY_HASH);
     private static final Base64.Encoder ENCODER = Base64.getEncoder();
 
     /**
@@ -54,6 +58,17 @@ public class MemTupleDataCache<V extends Serializable>
         super();
     }
 
+    /**
+     * Constructor using a default memcached client and a custom transcoder.
+     *
+     * @param transcoder  The transcoder converting entries to and from memcached items, or null for the client default
+     *
+     * @throws IOException if the memcached client fails to start.
+     */
+    public MemTupleDataCache(Transcoder<Object> transcoder) throws IOException {
+        super(transcoder);
+    }
+
     /**
      * Constructor.
      *
@@ -63,6 +78,34 @@ public class MemTupleDataCache<V extends Serializable>
         super(client);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param client  The memcached client to support this cache.
+     * @param transcoder  The transcoder converting entries to and from memcached items, or null for the client default
+     */
+    public MemTupleDataCache(MemcachedClient client, Transcoder<Object> transcoder) {
+        super(client, transcoder);
+    }
+
+    /**
+     * Get the hash function of the keys of the entries in memcached.
+     *
+     * @param name  The name of the hash: sha512 or murmur3
+     *
+     * @return the hash function
+     */
+    static HashFunction getHashFunction(String name) {
+        switch (name.toLowerCase(Locale.ENGLISH)) {
+            case "sha512":
+                return Hashing.sha512();
+            case "murmur3":
+                return Hashing.murmur3_128();
+            default:
+                throw new IllegalArgumentException("Unknown data cache key hash: " + name);
+        }
+    }
+
     /**
      * Get the hash encoding of a key string.
      *
@@ -72,12 +115,7 @@ public class MemTupleDataCache<V extends Serializable>
      */
     protected String hash(String key) {
         try {
-            MessageDigest gen = HASH_GENERATOR.get();
-            byte[] keyBytes = key.getBytes("UTF-8");
-            gen.update(keyBytes, 0, keyBytes.length);
-            byte[] binaryhash = gen.digest();
-
-            return ENCODER.encodeToString(binaryhash);
+            return ENCODER.encodeToString(HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asBytes());
         } catch (Exception e) {
             LOG.warn("Failed to get hash encoding for key: {}", key, e);
         }
@@ -0,0 +1,77 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+/**
+ * Data cache entry which can also hold on to the parsed form of its value, so that readers of the entry don't parse
+ * the value again.
+ * <p>
+ * The parsed value is shared by every reader of the entry, so it must be treated as read only.
+ *
+ * @param <M>  The metadata type
+ * @param <V>  The raw data value type
+ */
+public class ParsedDataEntry<M, V> implements TupleDataCache.DataEntry<String, M, V> {
+    private static final long serialVersionUID = -3281409581264911046L;
+
+    private final String key;
+    private final M meta;
+    private final V value;
+    private transient volatile Object parsedValue;
+
+    /**
+     * Constructor.
+     *
+     * @param key  The key of the entry
+     * @param meta  The metadata of the entry
+     * @param value  The raw data of the entry
+     */
+    public ParsedDataEntry(String key, M meta, V value) {
+        this.key = key;
+        this.meta = meta;
+        this.value = value;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public M getMeta() {
+        return meta;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    /**
+     * Get the size of the entry as it was stored in the cache it was read from, which weighs the entry without
+     * rendering its value again.
+     *
+     * @return the stored size in bytes, or -1 if it isn't known
+     */
+    public long getStoredSize() {
+        return -1;
+    }
+
+    /**
+     * Get the parsed form of the value, if one has been kept.
+     *
+     * @return the parsed value, or null if the value hasn't been parsed yet
+     */
+    public Object getParsedValue() {
+        return parsedValue;
+    }
+
+    /**
+     * Keep the parsed form of the value for later readers of this entry.
+     *
+     * @param parsedValue  The parsed value
+     */
+    public void setParsedValue(Object parsedValue) {
+        this.parsedValue = parsedValue;
+    }
+}
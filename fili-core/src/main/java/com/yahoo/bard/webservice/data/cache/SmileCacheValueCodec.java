@@ -0,0 +1,56 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Codec storing json values as Smile, Jackson's binary json format.
+ * <p>
+ * Field names and short string values which repeat, such as the dimension values of a grouped response, are written
+ * once and back referenced after that. Values are transcoded token by token, so no json tree is built when encoding.
+ */
+public class SmileCacheValueCodec implements CacheValueCodec {
+
+    public static final byte FORMAT_ID = 1;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(SMILE_FACTORY);
+
+    @Override
+    public byte getFormatId() {
+        return FORMAT_ID;
+    }
+
+    @Override
+    public byte[] encode(String json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() / 2);
+        try (
+                JsonParser parser = JSON_FACTORY.createParser(json);
+                JsonGenerator generator = SMILE_FACTORY.createGenerator(out)
+        ) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public JsonNode decode(byte[] bytes, int offset, int length) throws IOException {
+        try (JsonParser parser = SMILE_FACTORY.createParser(bytes, offset, length)) {
+            return SMILE_MAPPER.readTree(parser);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * TupleDataCache which keeps a bounded, in process, least recently used near cache in front of a (remote) far cache.
+ * <p>
+ * A near hit skips the network fetch, the key hashing and the deserialization of the far cache entirely, and the
+ * entries it returns can also hold on to the parsed form of their value (see {@link ParsedDataEntry}) so that repeated
+ * hits don't parse the value again. Entries are returned with their metadata, so callers validate near hits exactly
+ * as they validate far hits. The near cache is bounded both by a number of entries and by the estimated size of the
+ * values it holds. Far hits which know the size they were stored with (see {@link ParsedDataEntry#getStoredSize()})
+ * are weighed by it, so that entries decoded straight into their parsed form don't render their value just to be
+ * weighed.
+ *
+ * @param <M>  The metadata type
+ * @param <V>  The raw data value type
+ */
+public class TwoTierTupleDataCache<M extends Serializable, V extends Serializable>
+        implements TupleDataCache<String, M, V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwoTierTupleDataCache.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final Meter NEAR_HITS = REGISTRY.meter("queries.meter.cache.near.hits");
+    public static final Meter NEAR_MISSES = REGISTRY.meter("queries.meter.cache.near.misses");
+    public static final Meter FAR_HITS = REGISTRY.meter("queries.meter.cache.far.hits");
+    public static final Meter FAR_MISSES = REGISTRY.meter("queries.meter.cache.far.misses");
+
+    /**
+     * Maximum number of entries in the near cache. The near cache is disabled when this is 0.
+     */
+    public static final int NEAR_MAX_ENTRIES = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_near_max_entries"),
+            0
+    );
+
+    /**
+     * Maximum estimated size of the values in the near cache, in bytes.
+     */
+    public static final long NEAR_MAX_BYTES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_near_max_bytes"),
+            64L * 1024 * 1024
+    );
+
+    private final TupleDataCache<String, M, V> farCache;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+
+    // Access ordered, so iteration starts at the least recently used entry. Guarded by itself.
+    private final LinkedHashMap<String, NearDataEntry<M, V>> nearCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long nearBytes = 0;
+
+    /**
+     * Constructor using the configured bounds and estimating value sizes with {@link #estimateSize(Object)}.
+     *
+     * @param farCache  The cache behind the near cache
+     */
+    public TwoTierTupleDataCache(TupleDataCache<String, M, V> farCache) {
+        this(farCache, NEAR_MAX_ENTRIES, NEAR_MAX_BYTES, TwoTierTupleDataCache::estimateSize);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param farCache  The cache behind the near cache
+     * @param maxEntries  The maximum number of entries in the near cache
+     * @param maxBytes  The maximum estimated size of the values in the near cache
+     * @param weigher  Estimates the size of a value in bytes
+     */
+    public TwoTierTupleDataCache(
+            TupleDataCache<String, M, V> farCache,
+            int maxEntries,
+            long maxBytes,
+            ToLongFunction<V> weigher
+    ) {
+        this.farCache = farCache;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        LOG.info("Near cache of {} entries and {} bytes in front of {}", maxEntries, maxBytes, farCache);
+    }
+
+    /**
+     * Estimate the in memory size of a value: two bytes per character for character sequences, nothing otherwise.
+     *
+     * @param value  The value to weigh
+     *
+     * @return the estimated size of the value in bytes
+     */
+    public static long estimateSize(Object value) {
+        return value instanceof CharSequence ? 2L * ((CharSequence) value).length() : 0;
+    }
+
+    /**
+     * Get the entry for a key, from the near cache if it has it and from the far cache otherwise.
+     * <p>
+     * Entries found in the far cache are kept in the near cache.
+     *
+     * @param key  The key whose associated value is to be returned
+     *
+     * @return the entry for the key, or null if neither cache has one
+     */
+    @Override
+    public NearDataEntry<M, V> get(String key) {
+        NearDataEntry<M, V> entry;
+        synchronized (nearCache) {
+            entry = nearCache.get(key);
+        }
+        if (entry != null) {
+            NEAR_HITS.mark();
+            return entry;
+        }
+        NEAR_MISSES.mark();
+
+        DataEntry<String, M, V> farEntry = farCache.get(key);
+        if (farEntry == null) {
+            FAR_MISSES.mark();
+            return null;
+        }
+        FAR_HITS.mark();
+
+        entry = new NearDataEntry<>(farEntry);
+        // An entry stored under a different key is a collision in the far cache, so it doesn't belong to this key
+        if (key.equals(entry.getKey())) {
+            putNear(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public V getDataValue(String key) {
+        DataEntry<String, M, V> entry = get(key);
+        return entry != null && key.equals(entry.getKey()) ? entry.getValue() : null;
+    }
+
+    @Override
+    public boolean set(String key, DataEntry<String, M, V> value) throws IllegalStateException {
+        putNear(key, new NearDataEntry<>(value.getKey(), value.getMeta(), value.getValue()));
+        return farCache.set(key, value);
+    }
+
+    @Override
+    public boolean set(String key, M meta, V value) throws IllegalStateException {
+        putNear(key, new NearDataEntry<>(key, meta, value));
+        return farCache.set(key, meta, value);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (nearCache) {
+            nearCache.clear();
+            nearBytes = 0;
+        }
+        farCache.clear();
+    }
+
+    /**
+     * Put an entry in the near cache, evicting the least recently used entries until the cache is back in bounds.
+     * <p>
+     * Entries too large to ever fit are not kept, and any older entry for the key is dropped.
+     *
+     * @param key  The key of the entry
+     * @param entry  The entry
+     */
+    private void putNear(String key, NearDataEntry<M, V> entry) {
+        long storedSize = entry.getStoredSize();
+        entry.weight = storedSize >= 0 ? storedSize : weigher.applyAsLong(entry.getValue());
+        synchronized (nearCache) {
+            NearDataEntry<M, V> previous = entry.weight <= maxBytes && maxEntries > 0 ?
+                    nearCache.put(key, entry) :
+                    nearCache.remove(key);
+            if (previous != null) {
+                nearBytes -= previous.weight;
+            }
+            if (entry.weight > maxBytes || maxEntries <= 0) {
+                return;
+            }
+            nearBytes += entry.weight;
+
+            Iterator<NearDataEntry<M, V>> leastRecentlyUsed = nearCache.values().iterator();
+            while (nearCache.size() > maxEntries || nearBytes > maxBytes) {
+                nearBytes -= leastRecentlyUsed.next().weight;
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of entries in the near cache.
+     *
+     * @return the number of near cache entries
+     */
+    public int getNearSize() {
+        synchronized (nearCache) {
+            return nearCache.size();
+        }
+    }
+
+    /**
+     * Get the estimated size of the values in the near cache.
+     *
+     * @return the near cache size in bytes
+     */
+    public long getNearBytes() {
+        synchronized (nearCache) {
+            return nearBytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Near cache in front of " + farCache;
+    }
+
+    /**
+     * Entry of the near cache, which also knows its estimated size.
+     * <p>
+     * An entry read from the far cache reads its raw data from the far entry only when asked for it, so that far
+     * entries which only hold their parsed value don't render their raw data for nothing.
+     *
+     * @param <M>  The metadata type
+     * @param <V>  The raw data value type
+     */
+    public static class NearDataEntry<M, V> extends ParsedDataEntry<M, V> {
+        private static final long serialVersionUID = 5727960297462213546L;
+
+        private final TupleDataCache.DataEntry<String, M, V> farEntry;
+        private transient long weight;
+
+        /**
+         * Constructor.
+         *
+         * @param key  The key of the entry
+         * @param meta  The metadata of the entry
+         * @param value  The raw data of the entry
+         */
+        public NearDataEntry(String key, M meta, V value) {
+            super(key, meta, value);
+            this.farEntry = null;
+        }
+
+        /**
+         * Constructor for an entry read from the far cache, keeping its parsed value if it has one.
+         *
+         * @param farEntry  The entry read from the far cache
+         */
+        public NearDataEntry(TupleDataCache.DataEntry<String, M, V> farEntry) {
+            super(farEntry.getKey(), farEntry.getMeta(), null);
+            this.farEntry = farEntry;
+            if (farEntry instanceof ParsedDataEntry) {
+                setParsedValue(((ParsedDataEntry<?, ?>) farEntry).getParsedValue());
+            }
+        }
+
+        @Override
+        public V getValue() {
+            return farEntry == null ? super.getValue() : farEntry.getValue();
+        }
+
+        @Override
+        public long getStoredSize() {
+            return farEntry instanceof ParsedDataEntry ? ((ParsedDataEntry<?, ?>) farEntry).getStoredSize() : -1;
+        }
+    }
+}
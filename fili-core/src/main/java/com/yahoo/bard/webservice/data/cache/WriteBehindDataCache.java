@@ -0,0 +1,228 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataCache which hands writes to a bounded queue drained by a pool of writer threads, so that the caller never waits
+ * on the underlying cache to store a value.
+ * <p>
+ * Reads go straight to the underlying cache, so a value may not be readable until its write has been drained. When
+ * the queue is full a write is dropped according to the {@link DropPolicy}. Writes to the same key may be applied out
+ * of order when there is more than one writer thread.
+ *
+ * @param <T> The value type being stored
+ */
+public class WriteBehindDataCache<T extends Serializable> implements DataCache<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindDataCache.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String QUEUE_DEPTH_GAUGE = "queries.gauge.cache.write_behind.queue_depth";
+    public static final Meter DROPPED_WRITES = REGISTRY.meter("queries.meter.cache.write_behind.dropped");
+    public static final Meter FAILED_WRITES = REGISTRY.meter("queries.meter.cache.write_behind.failed");
+    public static final Timer WRITE_LATENCY = REGISTRY.timer("queries.timer.cache.write_behind.latency");
+
+    /**
+     * Number of writer threads. Write behind is disabled when this is 0.
+     */
+    public static final int WRITER_THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_write_behind_threads"),
+            0
+    );
+
+    public static final int QUEUE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_write_behind_queue_size"),
+            1000
+    );
+
+    public static final DropPolicy DROP_POLICY = DropPolicy.valueOf(
+            SYSTEM_CONFIG.getStringProperty(
+                    SYSTEM_CONFIG.getPackageVariableName("druid_cache_write_behind_drop_policy"),
+                    DropPolicy.NEWEST.name()
+            ).toUpperCase(Locale.ENGLISH)
+    );
+
+    /**
+     * Which write to drop when the write queue is full.
+     */
+    public enum DropPolicy {
+        /**
+         * Drop the write being submitted.
+         */
+        NEWEST,
+        /**
+         * Drop the write which has been waiting longest, and queue the write being submitted.
+         */
+        OLDEST
+    }
+
+    private final DataCache<T> cache;
+    private final ThreadPoolExecutor writers;
+
+    /**
+     * Constructor using the configured number of writer threads, queue size and drop policy.
+     *
+     * @param cache  The cache to write behind
+     */
+    public WriteBehindDataCache(DataCache<T> cache) {
+        this(cache, WRITER_THREADS, QUEUE_SIZE, DROP_POLICY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cache  The cache to write behind
+     * @param writerThreads  The number of threads writing to the cache
+     * @param queueSize  The number of writes which may wait for a writer thread
+     * @param dropPolicy  Which write to drop when the queue is full
+     */
+    public WriteBehindDataCache(DataCache<T> cache, int writerThreads, int queueSize, DropPolicy dropPolicy) {
+        this.cache = cache;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "cache-write-behind-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        RejectedExecutionHandler dropHandler = dropPolicy == DropPolicy.OLDEST ?
+                new DropOldestPolicy() :
+                new ThreadPoolExecutor.AbortPolicy();
+
+        this.writers = new ThreadPoolExecutor(
+                writerThreads,
+                writerThreads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                threadFactory,
+                dropHandler
+        );
+
+        // The most recently built cache reports the queue depth
+        REGISTRY.remove(QUEUE_DEPTH_GAUGE);
+        REGISTRY.register(QUEUE_DEPTH_GAUGE, (Gauge<Integer>) () -> writers.getQueue().size());
+
+        LOG.info(
+                "Writing behind {} with {} threads, queue size {}, dropping {} writes when full",
+                cache,
+                writerThreads,
+                queueSize,
+                dropPolicy
+        );
+    }
+
+    @Override
+    public T get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Queue a value to be put on a key in the underlying cache.
+     *
+     * @param key  the key under which this object should be added.
+     * @param value  the object to store
+     *
+     * @return true if the write was queued, false if it was dropped because the queue is full
+     */
+    @Override
+    public boolean set(String key, T value) {
+        return submit(key, () -> cache.set(key, value));
+    }
+
+    /**
+     * Drop any queued writes and remove all of the mappings from the underlying cache.
+     */
+    @Override
+    public void clear() {
+        writers.getQueue().clear();
+        cache.clear();
+    }
+
+    /**
+     * Stop the writer threads once the queued writes have been applied.
+     */
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    /**
+     * Queue a write to the underlying cache.
+     *
+     * @param key  The key being written, for logging
+     * @param write  The write, returning whether the underlying cache accepted it
+     *
+     * @return true if the write was queued, false if it was dropped because the queue is full
+     */
+    protected boolean submit(String key, WriteOperation write) {
+        try {
+            writers.execute(() -> {
+                try (Timer.Context ignored = WRITE_LATENCY.time()) {
+                    if (!write.write()) {
+                        FAILED_WRITES.mark();
+                        LOG.debug("Write behind of {} was not accepted by the cache", key);
+                    }
+                } catch (RuntimeException e) {
+                    FAILED_WRITES.mark();
+                    LOG.warn("Write behind of {} failed {}", key, e.toString());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            DROPPED_WRITES.mark();
+            LOG.debug("Write behind queue full, dropped write of {}", key);
+            return false;
+        }
+    }
+
+    /**
+     * A write to the underlying cache.
+     */
+    @FunctionalInterface
+    protected interface WriteOperation {
+        /**
+         * Apply the write.
+         *
+         * @return whether the underlying cache accepted the write
+         */
+        boolean write();
+    }
+
+    /**
+     * Rejection policy which makes room for a new write by dropping the oldest queued write.
+     */
+    private static class DropOldestPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Write behind cache is shut down");
+            }
+            if (executor.getQueue().poll() != null) {
+                DROPPED_WRITES.mark();
+            }
+            executor.execute(runnable);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * TupleDataCache which queues its writes to the underlying tuple cache, see {@link WriteBehindDataCache}.
+ *
+ * @param <K>  The key type
+ * @param <M>  The metadata type
+ * @param <V>  The raw data value type
+ */
+public class WriteBehindTupleDataCache<K, M extends Serializable, V extends Serializable>
+        extends WriteBehindDataCache<TupleDataCache.DataEntry<K, M, V>>
+        implements TupleDataCache<K, M, V> {
+
+    private final TupleDataCache<K, M, V> cache;
+
+    /**
+     * Constructor using the configured number of writer threads, queue size and drop policy.
+     *
+     * @param cache  The tuple cache to write behind
+     */
+    public WriteBehindTupleDataCache(TupleDataCache<K, M, V> cache) {
+        this(cache, WRITER_THREADS, QUEUE_SIZE, DROP_POLICY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cache  The tuple cache to write behind
+     * @param writerThreads  The number of threads writing to the cache
+     * @param queueSize  The number of writes which may wait for a writer thread
+     * @param dropPolicy  Which write to drop when the queue is full
+     */
+    public WriteBehindTupleDataCache(
+            TupleDataCache<K, M, V> cache,
+            int writerThreads,
+            int queueSize,
+            DropPolicy dropPolicy
+    ) {
+        super(cache, writerThreads, queueSize, dropPolicy);
+        this.cache = cache;
+    }
+
+    @Override
+    public V getDataValue(K key) {
+        return cache.getDataValue(key);
+    }
+
+    /**
+     * Queue an entry to be put in the underlying tuple cache.
+     *
+     * @param key  The key of the entry
+     * @param meta  The metadata of the entry
+     * @param value  The raw data of the entry
+     *
+     * @return true if the write was queued, false if it was dropped because the queue is full
+     */
+    @Override
+    public boolean set(K key, M meta, V value) {
+        return submit(Objects.toString(key), () -> cache.set(key, meta, value));
+    }
+}
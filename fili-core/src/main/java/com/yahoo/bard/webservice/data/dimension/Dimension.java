@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.JsonValue;
 
 import org.joda.time.DateTime;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -108,6 +110,26 @@ public interface Dimension {
      */
     DimensionRow findDimensionRowByKeyValue(String value);
 
+    /**
+     * Get the dimension rows for several key values at once.
+     * <p>
+     * Dimensions which can look several rows up at once should override this one row at a time default.
+     *
+     * @param values  key values
+     *
+     * @return the dimension rows found, by key value. Key values with no matching row are left out.
+     */
+    default Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, DimensionRow> dimensionRows = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            DimensionRow dimensionRow = findDimensionRowByKeyValue(value);
+            if (dimensionRow != null) {
+                dimensionRows.put(value, dimensionRow);
+            }
+        }
+        return dimensionRows;
+    }
+
     /**
      * Get primary key field for this dimension
      *
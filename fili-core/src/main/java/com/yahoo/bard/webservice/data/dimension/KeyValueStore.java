@@ -3,6 +3,8 @@
 package com.yahoo.bard.webservice.data.dimension;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
@@ -47,6 +49,31 @@ public interface KeyValueStore extends Closeable {
      */
     String get(@NotNull String key);
 
+    /**
+     * Get the values for several keys from store.
+     * <p>
+     * Stores which can read several keys at once, such as in one round trip, should override this one key at a time
+     * default.
+     *
+     * @param keys  Keys to get the values for
+     *
+     * @return the values of the keys which are set, by key
+     */
+    default Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new HashMap<>(keys.size());
+        for (String key : keys) {
+            String value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
     /**
      * Get the health status of the store.
      *
@@ -76,4 +103,16 @@ public interface KeyValueStore extends Closeable {
      * @return The previous values for the keys
      */
     Map<String, String> putAll(@NotNull Map<String, String> entries);
+
+    /**
+     * Set multiple key/value pairs, without reading their previous values.
+     * <p>
+     * Removes any keys with a null value. Stores which can skip reading the previous values, such as to write in bulk,
+     * should override this default.
+     *
+     * @param entries  Map of key/value pairs to set
+     */
+    default void setAll(@NotNull Map<String, String> entries) {
+        putAll(entries);
+    }
 }
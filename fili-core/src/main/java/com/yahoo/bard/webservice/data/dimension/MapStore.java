@@ -2,24 +2,41 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.validation.constraints.NotNull;
 
 /**
- * A HashMap-based implementation of KeyValueStore.
+ * A map based implementation of KeyValueStore, safe for concurrent use.
+ * <p>
+ * Reads don't block, and writes are serialized. Every write goes to the concurrent map in place, so a write of several
+ * keys costs the number of keys written, not the size of the store. To have readers see either none or all of the
+ * keys of such a write, the keys are first published together as the pending write, which readers look at before the
+ * map, and only then written to the map. Reads of several keys start over if a write of several keys began while they
+ * were reading, and only wait for writes if that keeps happening.
  */
 public class MapStore implements KeyValueStore {
 
+    private static final int MAX_READ_ATTEMPTS = 3;
+
     // The actual key/value store
-    private final Map<String, String> store;
+    private final ConcurrentHashMap<String, String> store = new ConcurrentHashMap<>();
+
+    // The keys of the write of several keys in progress, null values standing for removed keys. Written under this.
+    private volatile Map<String, String> pending = Collections.emptyMap();
+
+    // The number of writes of several keys published so far. Written under this.
+    private volatile long published = 0;
 
     /**
      * Private constructor for the singleton pattern.
      */
     public MapStore() {
-        store = new HashMap<>();
+        // Nothing to initialize
     }
 
     @Override
@@ -39,7 +56,7 @@ public class MapStore implements KeyValueStore {
     }
 
     @Override
-    public String remove(@NotNull String key) {
+    public synchronized String remove(@NotNull String key) {
         if (key == null) {
             throw new IllegalArgumentException("Cannot remove null key");
         }
@@ -53,7 +70,26 @@ public class MapStore implements KeyValueStore {
             throw new IllegalArgumentException("Cannot get null key");
         }
 
-        return store.get(key);
+        return read(pending, key);
+    }
+
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        // Read every key again if a write of several keys was published meanwhile, and block writes if that keeps on
+        for (int attempt = 1; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long publishedBefore = published;
+            Map<String, String> values = readAll(keys);
+            if (published == publishedBefore) {
+                return values;
+            }
+        }
+        synchronized (this) {
+            return readAll(keys);
+        }
     }
 
     @Override
@@ -63,29 +99,85 @@ public class MapStore implements KeyValueStore {
     }
 
     @Override
-    public String put(@NotNull String key, String value) {
+    public synchronized String put(@NotNull String key, String value) {
         if (key == null) {
             throw new IllegalArgumentException("Cannot set null key");
         }
 
-        if (value == null) {
-            return store.remove(key);
-        } else {
-            return store.put(key, value);
-        }
+        return write(store, key, value);
     }
 
     @Override
-    public Map<String, String> putAll(@NotNull Map<String, String> entries) {
+    public synchronized Map<String, String> putAll(@NotNull Map<String, String> entries) {
         if (entries == null) {
             throw new IllegalArgumentException("Cannot set null entries");
         }
+        for (String key : entries.keySet()) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot set null key");
+            }
+        }
 
+        // A single key is written atomically in place, several keys are published together before they are written
+        boolean several = entries.size() > 1;
+        if (several) {
+            pending = new HashMap<>(entries);
+            published++;
+        }
         Map<String, String> oldValues = new HashMap<>(entries.size());
-        for (String key : entries.keySet()) {
-            String oldValue = put(key, entries.get(key));
-            oldValues.put(key, oldValue);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            oldValues.put(entry.getKey(), write(store, entry.getKey(), entry.getValue()));
+        }
+        if (several) {
+            pending = Collections.emptyMap();
         }
         return oldValues;
     }
+
+    /**
+     * Read a key, from the pending write if it has the key and from the store otherwise.
+     *
+     * @param pendingWrite  The pending write, as seen by the reader
+     * @param key  Key to read
+     *
+     * @return the value of the key, or null if it is not set
+     */
+    private String read(Map<String, String> pendingWrite, String key) {
+        return pendingWrite.containsKey(key) ? pendingWrite.get(key) : store.get(key);
+    }
+
+    /**
+     * Read keys, looking at the same pending write for all of them.
+     *
+     * @param keys  Keys to read
+     *
+     * @return the values of the keys which are set
+     */
+    private Map<String, String> readAll(Collection<String> keys) {
+        Map<String, String> pendingWrite = pending;
+        Map<String, String> values = new HashMap<>(keys.size());
+        for (String key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot get null key");
+            }
+            String value = read(pendingWrite, key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Set or remove a key in the store.
+     *
+     * @param map  The map to write to
+     * @param key  Key to set
+     * @param value  Value to set for the key, or null to remove it
+     *
+     * @return the previous value of the key, or null if it was not set
+     */
+    private static String write(Map<String, String> map, String key, String value) {
+        return value == null ? map.remove(key) : map.put(key, value);
+    }
 }
@@ -2,8 +2,8 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Map Store instance manager
@@ -11,7 +11,7 @@ import java.util.Map;
 public class MapStoreManager {
 
     // Hold singleton instances by name
-    private static final Map<String, MapStore> MAP_STORES = new HashMap<>();
+    private static final Map<String, MapStore> MAP_STORES = new ConcurrentHashMap<>();
 
     /**
      * Factory for singleton instances by name.
@@ -22,15 +22,8 @@ public class MapStoreManager {
      *
      * @return The singleton instance for the given name
      */
-    public static synchronized MapStore getInstance(String storeName) {
-        MapStore mapStore = MAP_STORES.get(storeName);
-
-        if (mapStore == null) {
-            mapStore = new MapStore();
-            MAP_STORES.put(storeName, mapStore);
-        }
-
-        return mapStore;
+    public static MapStore getInstance(String storeName) {
+        return MAP_STORES.computeIfAbsent(storeName, name -> new MapStore());
     }
 
     /**
@@ -38,7 +31,7 @@ public class MapStoreManager {
      *
      * @param storeName Name of the singleton instance to delete
      */
-    public static synchronized void removeInstance(String storeName) {
+    public static void removeInstance(String storeName) {
         MAP_STORES.remove(storeName);
     }
 }
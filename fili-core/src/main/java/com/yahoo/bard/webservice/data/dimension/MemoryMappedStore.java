@@ -0,0 +1,762 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A KeyValueStore backed by an off heap hash table in a memory mapped file.
+ * <p>
+ * Keys and values live in the file rather than on the heap, so large dimensions neither need a large heap nor add to
+ * garbage collection, and the store is still there after a restart, without reloading. The file holds a header, an
+ * open addressing table of slots pointing at records, and records appended in chunks of the data region. A record is
+ * never changed once written: a new value is appended and its slot pointed at it, and a removed key has its slot
+ * marked as removed. When the slots fill up or most records are dead, the live records are copied to a new file which
+ * then replaces the old one.
+ * <p>
+ * Reads take no lock, and can run alongside the single writer: a record is published by a volatile write of the end
+ * of the data before any slot points at it. A reader finding a slot pointing past the end of the data it has seen
+ * waits briefly for the record to be published, and otherwise treats the key as absent, so a read never fails on a
+ * write in progress. A reader keeps reading the file it started on even if the writer replaces it meanwhile. Writes
+ * are serialized, and a lock file keeps any other process from opening the same store.
+ * <p>
+ * Writes reach the file through the page cache, so they survive the process stopping, and are forced to disk when the
+ * store is closed. They are not forced as they are made: after the host itself stops uncleanly, writes since the
+ * store was last closed may be lost, or reach the disk only in part, leaving keys missing or pointing past the end of
+ * the data. The store should be reloaded in that case. A file which can't be opened as a store is moved aside, rather
+ * than overwritten, and the store starts empty.
+ */
+public class MemoryMappedStore implements KeyValueStore {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryMappedStore.class);
+
+    /**
+     * Default size of each chunk of the data region, which the file grows by.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final String DATA_FILE_NAME = "store.dat";
+    private static final String LOCK_FILE_NAME = "store.lock";
+    private static final String REBUILD_FILE_NAME = "store.dat.rebuild";
+    private static final String CORRUPT_FILE_SUFFIX = ".corrupt-";
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    private final Path directory;
+    private final int chunkSize;
+
+    private volatile Table table;
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    /**
+     * Build a store in a directory, opening what is already stored there.
+     *
+     * @param directory  The directory holding the files of the store
+     */
+    public MemoryMappedStore(@NotNull Path directory) {
+        this(directory, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Build a store in a directory, opening what is already stored there.
+     *
+     * @param directory  The directory holding the files of the store
+     * @param chunkSize  The size in bytes of each chunk of the data region of a new file, which bounds the size of a
+     * record. Existing files keep the size they were created with.
+     */
+    public MemoryMappedStore(@NotNull Path directory, int chunkSize) {
+        if (chunkSize < Table.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Chunk size is too small: " + chunkSize);
+        }
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        open();
+    }
+
+    @Override
+    public synchronized void open() {
+        if (table != null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(
+                    directory.resolve(LOCK_FILE_NAME),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE
+            );
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Store is already open elsewhere: " + directory);
+            }
+            Path dataFile = directory.resolve(DATA_FILE_NAME);
+            Table existing = null;
+            if (Files.exists(dataFile)) {
+                existing = Table.open(dataFile);
+                if (existing == null) {
+                    String corruptFileName = DATA_FILE_NAME + CORRUPT_FILE_SUFFIX + System.currentTimeMillis();
+                    Path corruptFile = directory.resolve(corruptFileName);
+                    Files.move(dataFile, corruptFile);
+                    LOG.error("Store file {} is not a valid store, moved it to {}", dataFile, corruptFile);
+                }
+            }
+            table = existing != null ? existing : Table.create(dataFile, MIN_CAPACITY, chunkSize);
+        } catch (IOException e) {
+            String msg = String.format("Unable to open store %s", directory);
+            LOG.error(msg);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (table == null) {
+            return;
+        }
+        try {
+            table.force();
+            table.channel.close();
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close store {} cleanly: {}", directory, e.getMessage());
+        } finally {
+            table = null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return table != null;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return isOpen();
+    }
+
+    @Override
+    public String get(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot get null key");
+        }
+        Table current = getTable();
+        long record = current.findRecord(key.hashCode(), key.getBytes(StandardCharsets.UTF_8));
+        return record == Table.EMPTY ? null : current.readValue(record);
+    }
+
+    @Override
+    public synchronized String remove(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot remove null key");
+        }
+        return write(key, null);
+    }
+
+    @Override
+    public synchronized String put(@NotNull String key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot set null key");
+        }
+        return write(key, value);
+    }
+
+    @Override
+    public synchronized Map<String, String> putAll(@NotNull Map<String, String> entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("Cannot set null entries");
+        }
+
+        Map<String, String> oldValues = new HashMap<>(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new IllegalArgumentException("Cannot set null key");
+            }
+            oldValues.put(entry.getKey(), write(entry.getKey(), entry.getValue()));
+        }
+        return oldValues;
+    }
+
+    /**
+     * Remove all keys of the store, replacing its file with an empty one.
+     */
+    public synchronized void removeAllKeys() {
+        rebuild(getTable(), 0, false);
+    }
+
+    /**
+     * Get the number of keys in the store.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return getTable().size;
+    }
+
+    /**
+     * Set or remove a key, replacing the file with a larger or compacted one first if needed. Only called by the
+     * writer, holding the lock of the store.
+     *
+     * @param key  Key to set
+     * @param value  Value to set for the key, or null to remove it
+     *
+     * @return the previous value of the key, or null if it was not set
+     */
+    private String write(String key, String value) {
+        Table current = getTable();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = key.hashCode();
+        int slot = current.find(hash, keyBytes);
+        long previousRecord = slot < 0 ? Table.EMPTY : current.getSlot(slot);
+        String previousValue = slot < 0 ? null : current.readValue(previousRecord);
+
+        if (value == null) {
+            if (slot >= 0) {
+                current.setSlot(slot, Table.REMOVED);
+                current.size--;
+                current.garbage += current.recordSize(previousRecord);
+                current.writeHeader();
+            }
+            return previousValue;
+        }
+
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (Table.RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length > current.chunkSize) {
+            throw new IllegalArgumentException("Entry is larger than a chunk of the store: " + key);
+        }
+        if (slot < 0 && current.used + 1 > current.capacity * MAX_LOAD_FACTOR || current.needsCompaction()) {
+            current = rebuild(current, slot < 0 ? current.size + 1 : current.size, true);
+            slot = current.find(hash, keyBytes);
+            previousRecord = slot < 0 ? Table.EMPTY : current.getSlot(slot);
+        }
+
+        long record = current.append(hash, keyBytes, valueBytes);
+        if (slot >= 0) {
+            current.setSlot(slot, record);
+            current.garbage += current.recordSize(previousRecord);
+        } else {
+            int free = current.findFree(hash);
+            if (current.getSlot(free) == Table.EMPTY) {
+                current.used++;
+            }
+            current.setSlot(free, record);
+            current.size++;
+        }
+        current.writeHeader();
+        return previousValue;
+    }
+
+    /**
+     * Copy the live records to a new file with room for them, and swap it in for the current file.
+     *
+     * @param current  The table of the current file
+     * @param expectedSize  The number of keys the new file must have room for
+     * @param copyRecords  Whether to copy the live records, or leave the new file empty
+     *
+     * @return the table of the new file
+     */
+    private Table rebuild(Table current, int expectedSize, boolean copyRecords) {
+        long capacity = Long.highestOneBit(Math.max((long) expectedSize * 4, MIN_CAPACITY) - 1) << 1;
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Store is full: " + directory);
+        }
+        LOG.debug("Rebuilding store {} with {} keys for {} slots", directory, current.size, capacity);
+        Path rebuildFile = directory.resolve(REBUILD_FILE_NAME);
+        try {
+            Files.deleteIfExists(rebuildFile);
+            Table rebuilt = Table.create(rebuildFile, (int) capacity, current.chunkSize);
+            for (int slot = 0; copyRecords && slot < current.capacity; slot++) {
+                long record = current.getSlot(slot);
+                if (record != Table.EMPTY && record != Table.REMOVED && record <= current.dataEnd) {
+                    byte[] keyBytes = current.readKey(record);
+                    int hash = current.readHash(record);
+                    long copy = rebuilt.append(hash, keyBytes, current.readValueBytes(record));
+                    rebuilt.setSlot(rebuilt.findFree(hash), copy);
+                    rebuilt.used++;
+                    rebuilt.size++;
+                }
+            }
+            rebuilt.writeHeader();
+            rebuilt.force();
+            // Readers still on the old file keep reading it through its mapping
+            Files.move(
+                    rebuildFile,
+                    directory.resolve(DATA_FILE_NAME),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING
+            );
+            table = rebuilt;
+            current.channel.close();
+            return rebuilt;
+        } catch (IOException e) {
+            String msg = String.format("Unable to rebuild store %s", directory);
+            LOG.error(msg);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Get the table of the current file.
+     *
+     * @return the current table
+     */
+    private Table getTable() {
+        Table current = table;
+        if (current == null) {
+            throw new IllegalStateException("Store is closed: " + directory);
+        }
+        return current;
+    }
+
+    /**
+     * The hash table of a store file.
+     * <p>
+     * The file starts with a header, then the slots, each holding the position of a record in the data region plus 1,
+     * 0 for an empty slot or -1 for a removed key, then the data region. A record holds the hash of its key, the
+     * lengths of its key and value, then their UTF-8 bytes.
+     */
+    private static final class Table {
+        static final long EMPTY = 0;
+        static final long REMOVED = -1;
+
+        static final int RECORD_HEADER_SIZE = 12;
+
+        private static final int MAGIC = 0x46494C49;
+        private static final int VERSION = 1;
+        private static final int HEADER_SIZE = 64;
+        private static final int PAGE_SIZE = 4096;
+        private static final int MAX_PUBLISH_WAITS = 1000;
+
+        private static final int MAGIC_OFFSET = 0;
+        private static final int VERSION_OFFSET = 4;
+        private static final int CAPACITY_OFFSET = 8;
+        private static final int CHUNK_SIZE_OFFSET = 12;
+        private static final int SIZE_OFFSET = 16;
+        private static final int USED_OFFSET = 20;
+        private static final int DATA_END_OFFSET = 24;
+        private static final int GARBAGE_OFFSET = 32;
+
+        final FileChannel channel;
+        final int capacity;
+        final int chunkSize;
+        final long dataStart;
+        final MappedByteBuffer index;
+        volatile MappedByteBuffer[] chunks;
+        volatile long dataEnd;
+        int size;
+        int used;
+        long garbage;
+
+        /**
+         * Constructor.
+         *
+         * @param channel  The channel of the file
+         * @param capacity  The number of slots
+         * @param chunkSize  The size of each chunk of the data region
+         *
+         * @throws IOException if the file cannot be mapped
+         */
+        private Table(FileChannel channel, int capacity, int chunkSize) throws IOException {
+            this.channel = channel;
+            this.capacity = capacity;
+            this.chunkSize = chunkSize;
+            long slotsEnd = HEADER_SIZE + (long) capacity * Long.BYTES;
+            this.dataStart = (slotsEnd + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+            this.index = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotsEnd);
+            this.chunks = new MappedByteBuffer[0];
+        }
+
+        /**
+         * Create an empty file.
+         *
+         * @param file  The file to create, replacing any file there
+         * @param capacity  The number of slots, a power of 2
+         * @param chunkSize  The size of each chunk of the data region
+         *
+         * @return the table of the file
+         *
+         * @throws IOException if the file cannot be created
+         */
+        static Table create(Path file, int capacity, int chunkSize) throws IOException {
+            FileChannel channel = FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+            Table table = new Table(channel, capacity, chunkSize);
+            table.index.putInt(VERSION_OFFSET, VERSION);
+            table.index.putInt(CAPACITY_OFFSET, capacity);
+            table.index.putInt(CHUNK_SIZE_OFFSET, chunkSize);
+            table.writeHeader();
+            table.index.putInt(MAGIC_OFFSET, MAGIC);
+            return table;
+        }
+
+        /**
+         * Open an existing file.
+         *
+         * @param file  The file to open
+         *
+         * @return the table of the file, or null if it isn't a valid store file, which is left unchanged
+         *
+         * @throws IOException if the file cannot be read
+         */
+        static Table open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = channel.read(header);
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            int chunkSize = header.getInt(CHUNK_SIZE_OFFSET);
+            long dataEnd = header.getLong(DATA_END_OFFSET);
+            if (header.hasRemaining()
+                    || header.getInt(MAGIC_OFFSET) != MAGIC
+                    || header.getInt(VERSION_OFFSET) != VERSION
+                    || capacity < MIN_CAPACITY || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1
+                    || chunkSize < RECORD_HEADER_SIZE || dataEnd < 0) {
+                LOG.error("Invalid store file {}", file);
+                channel.close();
+                return null;
+            }
+            Table table = new Table(channel, capacity, chunkSize);
+            if (table.dataStart + dataEnd > channel.size()) {
+                LOG.error("Truncated store file {}", file);
+                channel.close();
+                return null;
+            }
+            table.size = header.getInt(SIZE_OFFSET);
+            table.used = header.getInt(USED_OFFSET);
+            table.garbage = header.getLong(GARBAGE_OFFSET);
+            long mapped = 0;
+            while (mapped < dataEnd) {
+                table.addChunk();
+                mapped += chunkSize;
+            }
+            table.dataEnd = dataEnd;
+            return table;
+        }
+
+        /**
+         * Find the slot of a key, for the writer.
+         *
+         * @param hash  The hash of the key
+         * @param keyBytes  The UTF-8 bytes of the key
+         *
+         * @return the slot of the key, or -1 if it is not set
+         */
+        int find(int hash, byte[] keyBytes) {
+            int mask = capacity - 1;
+            for (int i = 0, slot = spread(hash) & mask; i < capacity; i++, slot = (slot + 1) & mask) {
+                long record = getSlot(slot);
+                if (record == EMPTY) {
+                    return -1;
+                }
+                // Records past the end of the data are only left by writes which didn't all reach the disk
+                if (record != REMOVED
+                        && record <= dataEnd
+                        && readHash(record) == hash
+                        && Arrays.equals(readKey(record), keyBytes)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Find the record of a key, for a reader which may run alongside the writer.
+         * <p>
+         * Each slot is read once, so a slot changed by the writer meanwhile is never read as two different records.
+         * Slots pointing at records which aren't published are skipped.
+         *
+         * @param hash  The hash of the key
+         * @param keyBytes  The UTF-8 bytes of the key
+         *
+         * @return the position of the record of the key plus 1, or EMPTY if it is not set
+         */
+        long findRecord(int hash, byte[] keyBytes) {
+            int mask = capacity - 1;
+            for (int i = 0, slot = spread(hash) & mask; i < capacity; i++, slot = (slot + 1) & mask) {
+                long record = getSlot(slot);
+                if (record == EMPTY) {
+                    return EMPTY;
+                }
+                if (record != REMOVED
+                        && isPublished(record)
+                        && readHash(record) == hash
+                        && Arrays.equals(readKey(record), keyBytes)) {
+                    return record;
+                }
+            }
+            return EMPTY;
+        }
+
+        /**
+         * Check whether a record is published, waiting briefly for a record whose slot was seen before the end of the
+         * data it was published by.
+         * <p>
+         * The writer publishes a record before pointing a slot at it, but the slot is a plain write, so a reader may
+         * see it before the end of the data. A record still not published after waiting only comes from a file whose
+         * writes didn't all reach the disk.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return true if the record is published and can be read
+         */
+        boolean isPublished(long record) {
+            for (int i = 0; record > dataEnd; i++) {
+                if (i == MAX_PUBLISH_WAITS) {
+                    return false;
+                }
+                Thread.yield();
+            }
+            return true;
+        }
+
+        /**
+         * Find a slot to insert a key which is not set.
+         *
+         * @param hash  The hash of the key
+         *
+         * @return the first empty or removed slot of the key's probe sequence
+         */
+        int findFree(int hash) {
+            int mask = capacity - 1;
+            int slot = spread(hash) & mask;
+            for (long record = getSlot(slot); record != EMPTY && record != REMOVED; record = getSlot(slot)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Get the record a slot points at.
+         *
+         * @param slot  The slot
+         *
+         * @return the position of the record plus 1, or EMPTY or REMOVED
+         */
+        long getSlot(int slot) {
+            return index.getLong(HEADER_SIZE + slot * Long.BYTES);
+        }
+
+        /**
+         * Point a slot at a record.
+         *
+         * @param slot  The slot
+         * @param record  The position of the record plus 1, or EMPTY or REMOVED
+         */
+        void setSlot(int slot, long record) {
+            index.putLong(HEADER_SIZE + slot * Long.BYTES, record);
+        }
+
+        /**
+         * Append a record to the data region and publish it, growing the file by a chunk if needed.
+         *
+         * @param hash  The hash of the key
+         * @param keyBytes  The UTF-8 bytes of the key
+         * @param valueBytes  The UTF-8 bytes of the value
+         *
+         * @return the position of the record plus 1, to store in a slot
+         */
+        long append(int hash, byte[] keyBytes, byte[] valueBytes) {
+            int recordSize = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+            long position = dataEnd;
+            if (position % chunkSize + recordSize > chunkSize) {
+                // Records don't span chunks, so skip the end of this one
+                long next = (position / chunkSize + 1) * chunkSize;
+                garbage += next - position;
+                position = next;
+            }
+            while (position / chunkSize >= chunks.length) {
+                addChunk();
+            }
+            ByteBuffer chunk = chunks[(int) (position / chunkSize)].duplicate();
+            chunk.position((int) (position % chunkSize));
+            chunk.putInt(hash).putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+            // The volatile write publishes the record before any slot points at it
+            dataEnd = position + recordSize;
+            index.putLong(DATA_END_OFFSET, dataEnd);
+            return position + 1;
+        }
+
+        /**
+         * Map one more chunk of the data region, growing the file.
+         */
+        private void addChunk() {
+            try {
+                MappedByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = channel.map(
+                        FileChannel.MapMode.READ_WRITE,
+                        dataStart + (long) chunks.length * chunkSize,
+                        chunkSize
+                );
+                chunks = grown;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to grow store file", e);
+            }
+        }
+
+        /**
+         * Get the chunk holding a record, which must be published.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the chunk holding the record
+         */
+        private ByteBuffer chunkOf(long record) {
+            // Reading the volatile end of the data makes the records published before it, and their chunks, visible
+            if (record > dataEnd) {
+                throw new IllegalStateException("Record was not published: " + record);
+            }
+            return chunks[(int) ((record - 1) / chunkSize)];
+        }
+
+        /**
+         * Get the offset of a record in its chunk.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the offset of the record
+         */
+        private int offsetOf(long record) {
+            return (int) ((record - 1) % chunkSize);
+        }
+
+        /**
+         * Read the hash of the key of a record.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the hash
+         */
+        int readHash(long record) {
+            return chunkOf(record).getInt(offsetOf(record));
+        }
+
+        /**
+         * Read the key of a record.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the UTF-8 bytes of the key
+         */
+        byte[] readKey(long record) {
+            ByteBuffer chunk = chunkOf(record).duplicate();
+            int offset = offsetOf(record);
+            byte[] keyBytes = new byte[chunk.getInt(offset + 4)];
+            chunk.position(offset + RECORD_HEADER_SIZE);
+            chunk.get(keyBytes);
+            return keyBytes;
+        }
+
+        /**
+         * Read the value of a record.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the UTF-8 bytes of the value
+         */
+        byte[] readValueBytes(long record) {
+            ByteBuffer chunk = chunkOf(record).duplicate();
+            int offset = offsetOf(record);
+            byte[] valueBytes = new byte[chunk.getInt(offset + 8)];
+            chunk.position(offset + RECORD_HEADER_SIZE + chunk.getInt(offset + 4));
+            chunk.get(valueBytes);
+            return valueBytes;
+        }
+
+        /**
+         * Read the value of a record.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the value
+         */
+        String readValue(long record) {
+            return new String(readValueBytes(record), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Get the size of a record.
+         *
+         * @param record  The position of the record plus 1
+         *
+         * @return the size of the record in bytes
+         */
+        long recordSize(long record) {
+            ByteBuffer chunk = chunkOf(record);
+            int offset = offsetOf(record);
+            return RECORD_HEADER_SIZE + chunk.getInt(offset + 4) + chunk.getInt(offset + 8);
+        }
+
+        /**
+         * Check whether most of the data region is taken by dead records, and worth compacting.
+         *
+         * @return true if the table should be compacted
+         */
+        boolean needsCompaction() {
+            return dataEnd > chunkSize && garbage > dataEnd / 2;
+        }
+
+        /**
+         * Write the counters of the table to the header.
+         */
+        void writeHeader() {
+            index.putInt(SIZE_OFFSET, size);
+            index.putInt(USED_OFFSET, used);
+            index.putLong(DATA_END_OFFSET, dataEnd);
+            index.putLong(GARBAGE_OFFSET, garbage);
+        }
+
+        /**
+         * Force the file to disk.
+         */
+        void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+            index.force();
+        }
+
+        /**
+         * Spread the bits of a hash, so that keys with close hashes don't cluster in the slots.
+         *
+         * @param hash  The hash
+         *
+         * @return the spread hash
+         */
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
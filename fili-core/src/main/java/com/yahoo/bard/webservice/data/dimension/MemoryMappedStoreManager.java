@@ -0,0 +1,75 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.util.Utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Memory Mapped Store instance manager
+ * <p>
+ * Each instance has a name, and only one instance with that name exists. Its files are kept under the
+ * {@code mapped_store_path} directory, so an instance built again with the same name, such as after a restart, opens
+ * what was stored before.
+ */
+public class MemoryMappedStoreManager {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    private static final @NotNull String MAPPED_STORE_PATH = SYSTEM_CONFIG.getPackageVariableName("mapped_store_path");
+
+    // Hold singleton instances by name
+    private static final Map<String, MemoryMappedStore> MAPPED_STORES = new ConcurrentHashMap<>();
+
+    /**
+     * Factory for singleton instances by name.
+     * <p>
+     * Only a single instance can exist for each name.
+     *
+     * @param storeName Name for the singleton instance
+     *
+     * @return The singleton instance for the given name
+     */
+    public static MemoryMappedStore getInstance(String storeName) {
+        return MAPPED_STORES.computeIfAbsent(storeName, name -> new MemoryMappedStore(getStorePath(name)));
+    }
+
+    /**
+     * Delete the named singleton instance.
+     * <p>
+     * Also closes the instance and deletes its files.
+     *
+     * @param storeName Name of the singleton instance to delete
+     */
+    public static void removeInstance(String storeName) {
+        // Delete the files while holding the name, so a new instance isn't opened over them
+        MAPPED_STORES.compute(storeName, (name, mappedStore) -> {
+            if (mappedStore != null) {
+                mappedStore.close();
+            }
+            Path storePath = getStorePath(name);
+            if (Files.exists(storePath)) {
+                Utils.deleteFiles(storePath.toString());
+            }
+            return null;
+        });
+    }
+
+    private static Path getStorePath(String storeName) {
+        // Path eg: /home/y/var/bard_webservice/dimensionCache/dimension1/key_value_store/
+        return Paths.get(
+                SYSTEM_CONFIG.getStringProperty(MAPPED_STORE_PATH),
+                "dimensionCache",
+                storeName,
+                "key_value_store"
+        );
+    }
+}
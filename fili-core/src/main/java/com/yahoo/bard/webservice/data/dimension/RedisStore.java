@@ -7,12 +7,19 @@ import org.slf4j.LoggerFactory;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.jedis.exceptions.JedisException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.validation.constraints.NotNull;
 
@@ -22,10 +29,35 @@ import javax.validation.constraints.NotNull;
 public class RedisStore implements KeyValueStore {
     private static final Logger LOG = LoggerFactory.getLogger(RedisStore.class);
 
+    /**
+     * Maximum number of keys read by a single MGET, to keep each command and its reply bounded.
+     */
+    private static final int MGET_BATCH_SIZE = 1000;
+
+    /**
+     * Number of keys asked of each SCAN and removed by each UNLINK when clearing the store, to keep both bounded.
+     * <p>
+     * The keys are handed to UNLINK through a Lua script, which limits how many can be unpacked at once.
+     */
+    private static final int CLEAR_BATCH_SIZE = 1000;
+
+    /**
+     * Removes its keys without blocking the server on freeing their values, on Redis 4 and later.
+     */
+    private static final String UNLINK_SCRIPT = "return redis.call('UNLINK', unpack(KEYS))";
+
+    /**
+     * Default number of entries written by a single pipeline round trip.
+     */
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 1000;
+
     private boolean redisIsHealthy;
     private final JedisPool pool;
     private final String storeName;
     private final String redisNamespace;
+    private final int writeBatchSize;
+    private final boolean transactionalWrites;
+    private volatile boolean unlinkSupported = true;
 
     /**
      * Build a connection to a Redis provider.
@@ -35,10 +67,34 @@ public class RedisStore implements KeyValueStore {
      * @param redisNamespace  The first part of the prefix to the keyspace names for this store
      */
     public RedisStore(String storeName, JedisPool pool, String redisNamespace) {
+        this(storeName, pool, redisNamespace, DEFAULT_WRITE_BATCH_SIZE, false);
+    }
+
+    /**
+     * Build a connection to a Redis provider, writing entries in pipelined batches.
+     *
+     * @param storeName  The second part of the prefix to keyspace names for this store
+     * @param pool  A pool of Jedis connection instances
+     * @param redisNamespace  The first part of the prefix to the keyspace names for this store
+     * @param writeBatchSize  The number of entries written by a single pipeline round trip
+     * @param transactionalWrites  Whether each batch is wrapped in MULTI/EXEC, so readers never see it half applied
+     */
+    public RedisStore(
+            String storeName,
+            JedisPool pool,
+            String redisNamespace,
+            int writeBatchSize,
+            boolean transactionalWrites
+    ) {
+        if (writeBatchSize <= 0) {
+            throw new IllegalArgumentException("Write batch size must be positive: " + writeBatchSize);
+        }
         this.pool = pool;
         this.storeName = storeName;
         this.redisIsHealthy = true;
         this.redisNamespace = redisNamespace;
+        this.writeBatchSize = writeBatchSize;
+        this.transactionalWrites = transactionalWrites;
         open();
     }
 
@@ -59,12 +115,13 @@ public class RedisStore implements KeyValueStore {
 
     /**
      * Remove all keys associated with the store.
-     * <p>
-     * This is mainly used for tests; the Redis command used to get the associated keys (KEYS) is rather expensive and
-     * shouldn't be run frequently.
+     *
+     * @return the number of keys removed
+     *
+     * @see #removeAllKeys(String)
      */
-    public void removeAllKeys() {
-        removeAllKeys(storeName);
+    public long removeAllKeys() {
+        return removeAllKeys(storeName);
     }
 
     @Override
@@ -105,6 +162,45 @@ public class RedisStore implements KeyValueStore {
         }
     }
 
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+
+        Map<String, String> values = new HashMap<>(keys.size());
+        if (keys.isEmpty()) {
+            return values;
+        }
+
+        List<String> keyList = new ArrayList<>(keys);
+        try (Jedis jedis = pool.getResource()) {
+            for (int start = 0; start < keyList.size(); start += MGET_BATCH_SIZE) {
+                List<String> batch = keyList.subList(start, Math.min(start + MGET_BATCH_SIZE, keyList.size()));
+                String[] rKeys = new String[batch.size()];
+                for (int i = 0; i < rKeys.length; i++) {
+                    if (batch.get(i) == null) {
+                        throw new IllegalArgumentException("Cannot get null key");
+                    }
+                    rKeys[i] = redisKey(storeName, batch.get(i));
+                }
+
+                List<String> batchValues = jedis.mget(rKeys);
+                for (int i = 0; i < rKeys.length; i++) {
+                    if (batchValues.get(i) != null) {
+                        values.put(batch.get(i), batchValues.get(i));
+                    }
+                }
+            }
+            return values;
+        } catch (JedisException e) {
+            redisIsHealthy = false;
+            String msg = String.format("Unable to get %d keys", keys.size());
+            LOG.error(msg);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
     @Override
     public boolean isHealthy() {
         // If we know we're not healthy, don't bother pinging.
@@ -123,41 +219,80 @@ public class RedisStore implements KeyValueStore {
 
     @Override
     public Map<String, String> putAll(@NotNull Map<String, String> entries) {
+        return write(entries, true);
+    }
+
+    @Override
+    public void setAll(@NotNull Map<String, String> entries) {
+        write(entries, false);
+    }
+
+    /**
+     * Write entries in pipelined batches, one round trip per batch, deleting the keys with a null value.
+     * <p>
+     * If transactional writes are enabled, each batch is wrapped in MULTI/EXEC, so it's applied all at once.
+     *
+     * @param entries  Map of key/value pairs to write
+     * @param readPrevious  Whether to read the previous values of the keys along with the writes
+     *
+     * @return The previous values for the keys if they were read, an empty map otherwise
+     */
+    private Map<String, String> write(@NotNull Map<String, String> entries, boolean readPrevious) {
         if (entries == null) {
             throw new IllegalArgumentException("Cannot set null entries");
         }
+        for (String key : entries.keySet()) {
+            if (key == null) {
+                throw new IllegalArgumentException("Cannot set null key");
+            }
+        }
 
-        try (Jedis jedis = pool.getResource()) {
+        Map<String, String> oldValues = new HashMap<>(readPrevious ? entries.size() : 0);
+        if (entries.isEmpty()) {
+            return oldValues;
+        }
 
-            Map<String, String> oldValues = new HashMap<>(entries.size());
-            for (String key : entries.keySet()) {
-                if (key == null) {
-                    throw new IllegalArgumentException("Cannot set null key");
+        List<Map.Entry<String, String>> entryList = new ArrayList<>(entries.entrySet());
+        try (Jedis jedis = pool.getResource()) {
+            for (int start = 0; start < entryList.size(); start += writeBatchSize) {
+                List<Map.Entry<String, String>> batch = entryList.subList(
+                        start,
+                        Math.min(start + writeBatchSize, entryList.size())
+                );
+                Map<String, Response<String>> oldValueResponses = new HashMap<>(readPrevious ? batch.size() : 0);
+                List<Response<String>> setResponses = new ArrayList<>(batch.size());
+
+                Pipeline pipeline = jedis.pipelined();
+                if (transactionalWrites) {
+                    pipeline.multi();
                 }
-
-                String rKey = redisKey(storeName, key);
-
-                String oldValue = jedis.get(rKey);
-                String newValue = entries.get(key);
-
-                oldValues.put(key, oldValue);
-
-                if (newValue == null) {
-                    if (oldValue != null) {
-                        jedis.del(rKey);
+                for (Map.Entry<String, String> entry : batch) {
+                    String rKey = redisKey(storeName, entry.getKey());
+                    if (readPrevious) {
+                        oldValueResponses.put(entry.getKey(), pipeline.get(rKey));
+                    }
+                    if (entry.getValue() == null) {
+                        pipeline.del(rKey);
+                    } else {
+                        setResponses.add(pipeline.set(rKey, entry.getValue()));
                     }
-                } else {
-                    String result = jedis.set(rKey, entries.get(key));
-                    if (!"OK".equals(result)) {
+                }
+                if (transactionalWrites) {
+                    pipeline.exec();
+                }
+                pipeline.sync();
+
+                for (Response<String> setResponse : setResponses) {
+                    if (!"OK".equals(setResponse.get())) {
                         redisIsHealthy = false;
                         String msg = "Redis failed to store key";
                         LOG.error(msg);
                         throw new RuntimeException(msg);
                     }
                 }
+                oldValueResponses.forEach((key, response) -> oldValues.put(key, response.get()));
             }
             return oldValues;
-
         } catch (JedisException e) {
             redisIsHealthy = false;
             String msg = "Unable to put keys into Redis";
@@ -178,35 +313,79 @@ public class RedisStore implements KeyValueStore {
         }
     }
 
-    public synchronized void removeAllKeys(String storeName) {
-        if (storeName != null) {
-            // According to http://redis.io/commands/keys, the special
-            // characters allowed in KEYS are: '?', '*', '[', ']'. They are
-            // escaped with '\'.  Escape '\' first to prevent
-            // double-escaping; then escape the storeName.
-            String escapedStoreName = storeName;
-            escapedStoreName = escapedStoreName.replace("\\", "\\\\"); // escape '\'
-            escapedStoreName = escapedStoreName.replace("*", "\\*");   // escape '*'
-            escapedStoreName = escapedStoreName.replace("[", "\\[");   // escape '['
-            escapedStoreName = escapedStoreName.replace("]", "\\]");   // escape ']'
-            escapedStoreName = escapedStoreName.replace("?", "\\?");   // escape '?'
-            String pattern = redisKey(escapedStoreName, "*");   // e.g., bard-escaped_dimension-*
-
-            try (Jedis jedis = pool.getResource()) {
-                Set<String> keys = jedis.keys(pattern);
-
-                // Jedis crashes when passed an empty array, so only run del if
-                // there are actually things to delete.
-                if (!keys.isEmpty()) {
-                    jedis.del(keys.toArray(new String[keys.size()]));
+    /**
+     * Remove all keys associated with a store, incrementally.
+     * <p>
+     * The keys are found with SCAN cursors and removed with UNLINK in bounded batches, so the server is never blocked
+     * on the whole keyspace or on freeing large values. Servers without UNLINK get DEL instead. Readers may see the
+     * store partly cleared until this returns.
+     *
+     * @param storeName  The name of the store whose keys to remove
+     *
+     * @return the number of keys removed
+     */
+    public long removeAllKeys(String storeName) {
+        if (storeName == null) {
+            return 0;
+        }
+
+        // According to http://redis.io/commands/keys, the special
+        // characters allowed in KEYS and SCAN patterns are: '?', '*', '[', ']'. They are
+        // escaped with '\'.  Escape '\' first to prevent
+        // double-escaping; then escape the storeName.
+        String escapedStoreName = storeName;
+        escapedStoreName = escapedStoreName.replace("\\", "\\\\"); // escape '\'
+        escapedStoreName = escapedStoreName.replace("*", "\\*");   // escape '*'
+        escapedStoreName = escapedStoreName.replace("[", "\\[");   // escape '['
+        escapedStoreName = escapedStoreName.replace("]", "\\]");   // escape ']'
+        escapedStoreName = escapedStoreName.replace("?", "\\?");   // escape '?'
+        String pattern = redisKey(escapedStoreName, "*");   // e.g., bard-escaped_dimension-*
+        ScanParams scanParams = new ScanParams().match(pattern).count(CLEAR_BATCH_SIZE);
+
+        long removed = 0;
+        try (Jedis jedis = pool.getResource()) {
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
+                List<String> keys = scanResult.getResult();
+                for (int start = 0; start < keys.size(); start += CLEAR_BATCH_SIZE) {
+                    removed += unlink(jedis, keys.subList(start, Math.min(start + CLEAR_BATCH_SIZE, keys.size())));
                 }
-            } catch (JedisException e) {
-                redisIsHealthy = false;
-                String msg = "Unable to remove all keys";
-                LOG.error(msg);
-                throw new RuntimeException(msg, e);
+                cursor = scanResult.getStringCursor();
+                LOG.debug("Removed {} keys of store {} so far", removed, storeName);
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        } catch (JedisException e) {
+            redisIsHealthy = false;
+            String msg = String.format("Unable to remove all keys, %d were removed", removed);
+            LOG.error(msg);
+            throw new RuntimeException(msg, e);
+        }
+        LOG.info("Removed {} keys of store {}", removed, storeName);
+        return removed;
+    }
+
+    /**
+     * Remove keys with UNLINK, or with DEL if the server doesn't know UNLINK.
+     *
+     * @param jedis  The connection to remove the keys on
+     * @param keys  The Redis keys to remove
+     *
+     * @return the number of keys removed
+     */
+    private long unlink(Jedis jedis, List<String> keys) {
+        // Jedis crashes when passed an empty array, so only remove if there are actually things to remove.
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        if (unlinkSupported) {
+            try {
+                return (Long) jedis.eval(UNLINK_SCRIPT, keys, Collections.emptyList());
+            } catch (JedisDataException e) {
+                LOG.warn("Redis doesn't support UNLINK, removing keys with DEL instead: {}", e.getMessage());
+                unlinkSupported = false;
             }
         }
+        return jedis.del(keys.toArray(new String[keys.size()]));
     }
 
     private String redisKey(@NotNull String storeName, @NotNull String key) {
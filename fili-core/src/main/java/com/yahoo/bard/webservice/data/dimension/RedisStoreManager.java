@@ -8,8 +8,8 @@ import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Redis Store Manager
@@ -41,13 +41,24 @@ public class RedisStoreManager {
             5000
     );
 
+    // Number of entries written by a single pipeline round trip
+    private static final int REDIS_WRITE_BATCH_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("redis_write_batch_size"),
+            RedisStore.DEFAULT_WRITE_BATCH_SIZE
+    );
+    // Whether each batch of writes is applied atomically with MULTI/EXEC
+    private static final boolean REDIS_TRANSACTIONAL_WRITES = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("redis_transactional_writes_enabled"),
+            false
+    );
+
     // A single connection pool is shared between all instances
     protected static final JedisPool POOL = new JedisPool(
             new JedisPoolConfig(), REDIS_HOST, REDIS_PORT, REDIS_TIMEOUT_MS
     );
 
     // Hold singleton instances by name
-    private static final Map<String, RedisStore> REDIS_STORES = new HashMap<>();
+    private static final Map<String, RedisStore> REDIS_STORES = new ConcurrentHashMap<>();
 
     /**
      * Factory for singleton instances by name.
@@ -58,14 +69,11 @@ public class RedisStoreManager {
      *
      * @return The singleton instance for the given name
      */
-    public static synchronized RedisStore getInstance(String storeName) {
-        RedisStore redisStore = REDIS_STORES.get(storeName);
-
-        if (redisStore == null) {
-            redisStore = new RedisStore(storeName, POOL, REDIS_NAMESPACE);
-            REDIS_STORES.put(storeName, redisStore);
-        }
-        return redisStore;
+    public static RedisStore getInstance(String storeName) {
+        return REDIS_STORES.computeIfAbsent(
+                storeName,
+                name -> new RedisStore(name, POOL, REDIS_NAMESPACE, REDIS_WRITE_BATCH_SIZE, REDIS_TRANSACTIONAL_WRITES)
+        );
     }
 
     /**
@@ -75,13 +83,13 @@ public class RedisStoreManager {
      *
      * @param storeName Name of the singleton instance to delete
      */
-    public static synchronized void removeInstance(String storeName) {
+    public static void removeInstance(String storeName) {
         if (storeName != null) {
-            RedisStore redisStore = REDIS_STORES.get(storeName);
-            if (redisStore != null) {
+            // Clear the keys while holding the name, so a new instance isn't built over them half cleared
+            REDIS_STORES.computeIfPresent(storeName, (name, redisStore) -> {
                 redisStore.removeAllKeys();
-                REDIS_STORES.remove(storeName);
-            }
+                return null;
+            });
         }
     }
 }
@@ -3,7 +3,9 @@
 package com.yahoo.bard.webservice.data.dimension;
 
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
+import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.web.ApiFilter;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import java.util.Map;
 import java.util.Set;
@@ -74,6 +76,39 @@ public interface SearchProvider {
      */
     TreeSet<DimensionRow> findFilteredDimensionRows(Set<ApiFilter> filters);
 
+    /**
+     * Get a page of the dimension rows, ordered as by {@link #findAllOrderedDimensionRows()}.
+     * <p>
+     * By default, all the rows are found and the page is then taken from them. Search providers which can fetch a page
+     * on its own should override this.
+     *
+     * @param paginationParameters  The page to get and the number of rows per page
+     *
+     * @return the page of dimension rows, along with the total number of rows
+     */
+    default Pagination<DimensionRow> findAllDimensionRowsPaged(PaginationParameters paginationParameters) {
+        return new Pagination<>(findAllOrderedDimensionRows(), paginationParameters);
+    }
+
+    /**
+     * Get a page of the dimension rows matching a set of ApiFilters, ordered as by
+     * {@link #findFilteredDimensionRows(Set)}.
+     * <p>
+     * By default, all the matching rows are found and the page is then taken from them. Search providers which can
+     * fetch a page on its own should override this.
+     *
+     * @param filters  ApiFilters to use for finding matching dimension rows
+     * @param paginationParameters  The page to get and the number of rows per page
+     *
+     * @return the page of matching dimension rows, along with the total number of matching rows
+     */
+    default Pagination<DimensionRow> findFilteredDimensionRowsPaged(
+            Set<ApiFilter> filters,
+            PaginationParameters paginationParameters
+    ) {
+        return new Pagination<>(findFilteredDimensionRows(filters), paginationParameters);
+    }
+
     /**
      * Method to add / update indexes
      *
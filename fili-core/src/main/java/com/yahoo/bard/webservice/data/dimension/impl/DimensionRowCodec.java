@@ -0,0 +1,133 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Encodes dimension rows to the strings stored in a key value store, and decodes them back.
+ * <p>
+ * Rows are either stored as json objects of field name to value, or in a compact positional form. The compact form is
+ * a format version character followed by the value of each field of the dimension, in the order of its fields, each
+ * prefixed by its length and a colon, for example the version character then {@code 3:1232:us} for the fields
+ * {@code id, desc}. Field names are not stored, so rows are smaller and decode without a json parse.
+ * <p>
+ * Both forms are always decoded, whichever form rows are encoded to, so rows already stored as json are still read
+ * after switching to the compact form. Compact rows are decoded against the current fields of the dimension: fields
+ * added after the last ones read as missing in rows stored before, but fields must not be reordered or removed without
+ * reloading the rows.
+ */
+public class DimensionRowCodec {
+
+    /**
+     * Leading character of rows in the compact form, version 1. Json rows never start with it.
+     */
+    public static final char COMPACT_FORMAT_VERSION = '\u0001';
+
+    private static final char LENGTH_SEPARATOR = ':';
+
+    private final List<DimensionField> dimensionFields;
+    private final boolean compact;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionFields  The fields of the dimension, in the order their values are stored in compact rows
+     * @param compact  Whether to encode rows to the compact form rather than to json
+     * @param objectMapper  The mapper to encode and decode json rows with
+     */
+    public DimensionRowCodec(
+            @NotNull LinkedHashSet<DimensionField> dimensionFields,
+            boolean compact,
+            @NotNull ObjectMapper objectMapper
+    ) {
+        this.dimensionFields = new ArrayList<>(dimensionFields);
+        this.compact = compact;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Encode a dimension row, in the compact form or as json.
+     * <p>
+     * In the compact form, values of fields the dimension doesn't have are dropped, and missing values are stored as
+     * empty strings.
+     *
+     * @param dimensionRow  The row to encode
+     *
+     * @return the encoded row
+     *
+     * @throws JsonProcessingException if the row cannot be encoded as json
+     */
+    public String encode(DimensionRow dimensionRow) throws JsonProcessingException {
+        if (!compact) {
+            return objectMapper.writeValueAsString(dimensionRow);
+        }
+
+        StringBuilder encoded = new StringBuilder().append(COMPACT_FORMAT_VERSION);
+        for (DimensionField field : dimensionFields) {
+            String value = dimensionRow.get(field);
+            if (value == null) {
+                value = "";
+            }
+            encoded.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Decode a row stored in either form to its values by field name, to be parsed by the dimension.
+     *
+     * @param encodedRow  The row to decode
+     *
+     * @return the values of the row by field name
+     *
+     * @throws IOException if the row is neither valid json nor a valid compact row
+     */
+    public LinkedHashMap<String, String> decode(String encodedRow) throws IOException {
+        if (encodedRow.isEmpty() || encodedRow.charAt(0) != COMPACT_FORMAT_VERSION) {
+            return objectMapper.readValue(encodedRow, new TypeReference<LinkedHashMap<String, String>>() { });
+        }
+
+        LinkedHashMap<String, String> fieldNameValueMap = new LinkedHashMap<>(dimensionFields.size());
+        int position = 1;
+        for (DimensionField field : dimensionFields) {
+            if (position == encodedRow.length()) {
+                // Rows stored before fields were added end early
+                break;
+            }
+            int separator = encodedRow.indexOf(LENGTH_SEPARATOR, position);
+            if (separator <= position) {
+                throw new IOException("Missing length in compact dimension row at position " + position);
+            }
+            int length = 0;
+            for (; position < separator; position++) {
+                char c = encodedRow.charAt(position);
+                if (c < '0' || c > '9') {
+                    throw new IOException("Invalid length in compact dimension row at position " + position);
+                }
+                length = length * 10 + (c - '0');
+            }
+            position++;
+            if (position + length > encodedRow.length()) {
+                throw new IOException("Truncated compact dimension row at position " + position);
+            }
+            fieldNameValueMap.put(field.getName(), encodedRow.substring(position, position + length));
+            position += length;
+        }
+        return fieldNameValueMap;
+    }
+}
@@ -0,0 +1,379 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
+import com.yahoo.bard.webservice.web.ApiFilter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Search provider keeping in memory inverted indexes of every field of the dimension rows, to filter them without
+ * reading and scanning every row.
+ * <p>
+ * Rows are kept in process under dense row ids, and each field has
+ * <ul>
+ *     <li>a hash index of the rows by value, for {@code eq}, {@code in} and {@code notin} filters</li>
+ *     <li>a sorted set of its distinct values, for {@code startswith} filters</li>
+ *     <li>an index of the rows by the trigrams of their values, for {@code contains} filters</li>
+ * </ul>
+ * The rows matching each filter are bitsets of row ids, intersected across filters, and only the rows of the result
+ * are built into the returned set. Unlike {@link ScanSearchProvider}, filter values are matched literally rather than
+ * as regular expressions.
+ * <p>
+ * Rows are still stored and indexed in the key value store as by {@link ScanSearchProvider}, which serves every lookup
+ * other than filters. The in memory indexes are built from the store on the first filtered search, and kept up to date
+ * with the rows written through this provider. Rows written to a shared store by another instance are only seen once
+ * the indexes are rebuilt, such as when the dimension is cleared or reloaded.
+ */
+public class InvertedIndexSearchProvider extends ScanSearchProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(InvertedIndexSearchProvider.class);
+
+    /**
+     * Length of the n-grams indexed for contains filters. Shorter filter values are matched against distinct values.
+     */
+    private static final int GRAM_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<DimensionRow> rows = new ArrayList<>();
+    private final Map<String, Integer> rowIds = new HashMap<>();
+    private final Map<DimensionField, FieldIndex> fieldIndexes = new LinkedHashMap<>();
+    private volatile boolean indexed = false;
+
+    private Dimension dimension;
+
+    @Override
+    public void setDimension(Dimension dimension) {
+        super.setDimension(dimension);
+        this.dimension = dimension;
+        clearIndexes();
+    }
+
+    @Override
+    public void setKeyValueStore(KeyValueStore keyValueStore) {
+        super.setKeyValueStore(keyValueStore);
+        clearIndexes();
+    }
+
+    @Override
+    public TreeSet<DimensionRow> findFilteredDimensionRows(Set<ApiFilter> filters) {
+        buildIndexes();
+        lock.readLock().lock();
+        try {
+            BitSet matches = new BitSet(rows.size());
+            matches.set(0, rows.size());
+            for (ApiFilter filter : filters) {
+                if (matches.isEmpty()) {
+                    break;
+                }
+                FieldIndex fieldIndex = fieldIndexes.get(filter.getDimensionField());
+                switch (filter.getOperation()) {
+                    case eq:
+                        // fall through on purpose since eq and in have the same functionality
+                    case in:
+                        matches.and(fieldIndex == null ? new BitSet() : fieldIndex.equalTo(filter.getValues()));
+                        break;
+                    case notin:
+                        if (fieldIndex != null) {
+                            matches.andNot(fieldIndex.equalTo(filter.getValues()));
+                        }
+                        break;
+                    case startswith:
+                        matches.and(fieldIndex == null ? new BitSet() : fieldIndex.startingWith(filter.getValues()));
+                        break;
+                    case contains:
+                        matches.and(fieldIndex == null ? new BitSet() : fieldIndex.containing(filter.getValues()));
+                        break;
+                    default:
+                        LOG.debug("Illegal Filter operation : {}", filter.getOperation());
+                        throw new IllegalArgumentException("Invalid Filter Operation.");
+                }
+            }
+
+            TreeSet<DimensionRow> filteredDimensionRows = new TreeSet<>();
+            for (int rowId = matches.nextSetBit(0); rowId >= 0; rowId = matches.nextSetBit(rowId + 1)) {
+                filteredDimensionRows.add(rows.get(rowId));
+            }
+            return filteredDimensionRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clearDimension() {
+        super.clearDimension();
+        clearIndexes();
+    }
+
+    /**
+     * Refresh the indexes in the key value store, then the in memory indexes if they have been built.
+     * <p>
+     * Whether the in memory indexes have been built is only checked under the write lock, after the store is written.
+     * Indexes being built meanwhile either read the rows from the store, or are built before the rows are indexed here.
+     *
+     * @param changedRows  Pairs of the new and old dimension rows, by row id
+     */
+    @Override
+    public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
+        super.refreshIndex(changedRows);
+        lock.writeLock().lock();
+        try {
+            if (indexed) {
+                changedRows.values().forEach(changedRow -> indexRow(changedRow.getKey()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Build the in memory indexes from the rows in the key value store, unless they have been built already.
+     */
+    private void buildIndexes() {
+        if (indexed) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!indexed) {
+                findAllDimensionRows().forEach(this::indexRow);
+                indexed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the in memory indexes, to be built again on the next filtered search.
+     */
+    private void clearIndexes() {
+        lock.writeLock().lock();
+        try {
+            rows.clear();
+            rowIds.clear();
+            fieldIndexes.clear();
+            indexed = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a row to the in memory indexes, or replace the row with the same key value. Must hold the write lock.
+     *
+     * @param dimensionRow  The row to index
+     */
+    private void indexRow(DimensionRow dimensionRow) {
+        String keyValue = dimensionRow.get(dimension.getKey());
+        Integer rowId = rowIds.get(keyValue);
+        if (rowId == null) {
+            rowId = rows.size();
+            rows.add(dimensionRow);
+            rowIds.put(keyValue, rowId);
+        } else {
+            DimensionRow dimensionRowOld = rows.set(rowId, dimensionRow);
+            for (Map.Entry<DimensionField, FieldIndex> fieldIndex : fieldIndexes.entrySet()) {
+                fieldIndex.getValue().remove(rowId, dimensionRowOld.get(fieldIndex.getKey()));
+            }
+        }
+        for (DimensionField field : dimension.getDimensionFields()) {
+            fieldIndexes.computeIfAbsent(field, FieldIndex::new).add(rowId, dimensionRow.get(field));
+        }
+    }
+
+    /**
+     * Get the distinct n-grams of a value.
+     *
+     * @param value  The value to split into n-grams
+     *
+     * @return the n-grams, empty if the value is shorter than an n-gram
+     */
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * The in memory indexes of the values of a field, by row id.
+     */
+    private class FieldIndex {
+        private final DimensionField field;
+        private final Map<String, BitSet> rowsByValue = new HashMap<>();
+        private final NavigableSet<String> sortedValues = new TreeSet<>();
+        private final Map<String, BitSet> rowsByGram = new HashMap<>();
+
+        /**
+         * Constructor.
+         *
+         * @param field  The field indexed
+         */
+        FieldIndex(DimensionField field) {
+            this.field = field;
+        }
+
+        /**
+         * Index the value of a row.
+         *
+         * @param rowId  The id of the row
+         * @param value  The value of the field in the row, null if it has none
+         */
+        void add(int rowId, String value) {
+            if (value == null) {
+                return;
+            }
+            rowsByValue.computeIfAbsent(value, ignored -> {
+                sortedValues.add(value);
+                return new BitSet();
+            }).set(rowId);
+            for (String gram : grams(value)) {
+                rowsByGram.computeIfAbsent(gram, ignored -> new BitSet()).set(rowId);
+            }
+        }
+
+        /**
+         * Drop the value of a row from the index.
+         *
+         * @param rowId  The id of the row
+         * @param value  The value of the field in the row, null if it has none
+         */
+        void remove(int rowId, String value) {
+            if (value == null) {
+                return;
+            }
+            if (clear(rowsByValue, value, rowId)) {
+                sortedValues.remove(value);
+            }
+            for (String gram : grams(value)) {
+                clear(rowsByGram, gram, rowId);
+            }
+        }
+
+        /**
+         * Find the rows whose value is one of the given values.
+         *
+         * @param values  The values to match
+         *
+         * @return the ids of the matching rows
+         */
+        BitSet equalTo(Collection<String> values) {
+            BitSet matches = new BitSet();
+            for (String value : values) {
+                BitSet valueRows = rowsByValue.get(value);
+                if (valueRows != null) {
+                    matches.or(valueRows);
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * Find the rows whose value starts with one of the given prefixes.
+         *
+         * @param prefixes  The prefixes to match
+         *
+         * @return the ids of the matching rows
+         */
+        BitSet startingWith(Collection<String> prefixes) {
+            BitSet matches = new BitSet();
+            for (String prefix : prefixes) {
+                for (String value : sortedValues.tailSet(prefix, true)) {
+                    if (!value.startsWith(prefix)) {
+                        break;
+                    }
+                    matches.or(rowsByValue.get(value));
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * Find the rows whose value contains one of the given substrings.
+         * <p>
+         * Substrings at least as long as an n-gram are matched against the rows having all their n-grams, then checked
+         * on those rows. Shorter substrings are matched against the distinct values of the field.
+         *
+         * @param substrings  The substrings to match
+         *
+         * @return the ids of the matching rows
+         */
+        BitSet containing(Collection<String> substrings) {
+            BitSet matches = new BitSet();
+            for (String substring : substrings) {
+                if (substring.length() < GRAM_LENGTH) {
+                    rowsByValue.entrySet().stream()
+                            .filter(valueRows -> valueRows.getKey().contains(substring))
+                            .forEach(valueRows -> matches.or(valueRows.getValue()));
+                    continue;
+                }
+
+                BitSet candidates = null;
+                for (String gram : grams(substring)) {
+                    BitSet gramRows = rowsByGram.get(gram);
+                    if (gramRows == null) {
+                        candidates = new BitSet();
+                        break;
+                    }
+                    if (candidates == null) {
+                        candidates = (BitSet) gramRows.clone();
+                    } else {
+                        candidates.and(gramRows);
+                    }
+                }
+                candidates.andNot(matches);
+                for (int rowId = candidates.nextSetBit(0); rowId >= 0; rowId = candidates.nextSetBit(rowId + 1)) {
+                    if (rows.get(rowId).get(field).contains(substring)) {
+                        matches.set(rowId);
+                    }
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * Clear the bit of a row in an index, dropping the entry once no row has it.
+         *
+         * @param index  The index to clear the row from
+         * @param entry  The entry of the index holding the row
+         * @param rowId  The id of the row
+         *
+         * @return true if the entry was dropped
+         */
+        private boolean clear(Map<String, BitSet> index, String entry, int rowId) {
+            BitSet entryRows = index.get(entry);
+            if (entryRows == null) {
+                return false;
+            }
+            entryRows.clear(rowId);
+            if (entryRows.isEmpty()) {
+                index.remove(entry);
+                return true;
+            }
+            return false;
+        }
+    }
+}
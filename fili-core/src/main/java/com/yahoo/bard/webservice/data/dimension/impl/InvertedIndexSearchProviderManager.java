@@ -0,0 +1,34 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index search provider instances factory.
+ */
+public class InvertedIndexSearchProviderManager {
+    private static final Map<String, InvertedIndexSearchProvider> INVERTED_INDEX_PROVIDERS = new ConcurrentHashMap<>();
+
+    /**
+     * Get instance pointing to a search provider. This method makes sure that there just one instance of search
+     * provider for a given dimension.
+     *
+     * @param providerName name unique identifier for search provider instances
+     *
+     * @return The search provider instance
+     */
+    public static InvertedIndexSearchProvider getInstance(String providerName) {
+        return INVERTED_INDEX_PROVIDERS.computeIfAbsent(providerName, name -> new InvertedIndexSearchProvider());
+    }
+
+    /**
+     * Cleanup the existing instance
+     *
+     * @param providerName The name of the provider
+     */
+    public static void removeInstance(String providerName) {
+        INVERTED_INDEX_PROVIDERS.remove(providerName);
+    }
+}
@@ -2,6 +2,9 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
 import com.yahoo.bard.webservice.data.config.dimension.DimensionConfig;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
@@ -11,9 +14,12 @@ import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
 import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -21,12 +27,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
@@ -38,12 +47,33 @@ import javax.validation.constraints.NotNull;
  * <ul>
  *     <li>Id {@literal ->} DimensionRow
  * </ul>
+ * <p>
+ * If {@code dimension_row_cache_max_entries} is above 0, rows looked up by key value are kept decoded in a bounded in
+ * process cache, absent rows included, so repeated lookups skip the store and the parse. The cache is cleared whenever
+ * rows are written through the dimension or the dimension is marked as updated. Writes made to the store by other
+ * means, such as by another instance sharing it, are only seen once the dimension is marked as updated here.
  */
 public class KeyValueStoreDimension implements Dimension {
     private static final String MISSING_ROW_KEY_FORMAT = "Dimension row '%s' doesn't contain expected key '%s'";
     private static final String FIELD_UNDEFINED_FORMAT = "Unknown dimensionField: '%s' on dimension: '%s'.";
 
     private static final Logger LOG = LoggerFactory.getLogger(KeyValueStoreDimension.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    /**
+     * Property holding the maximum number of decoded rows cached for each dimension, read as dimensions are built.
+     * 0 disables the cache.
+     */
+    public static final String ROW_CACHE_MAX_ENTRIES_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("dimension_row_cache_max_entries");
+
+    /**
+     * Property holding whether rows are stored in the compact form of {@link DimensionRowCodec} rather than as json,
+     * read as dimensions are built. Rows are read in either form.
+     */
+    public static final String ROW_COMPACT_FORMAT_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("dimension_row_compact_format_enabled");
 
     private final String apiName;
     private final String longName;
@@ -57,6 +87,7 @@ public class KeyValueStoreDimension implements Dimension {
 
     private final KeyValueStore keyValueStore;
     private final ObjectMapper objectMapper;
+    private final DimensionRowCodec rowCodec;
     private final SearchProvider searchProvider;
 
     private final String lastUpdatedKey;
@@ -65,6 +96,13 @@ public class KeyValueStoreDimension implements Dimension {
 
     private final boolean isAggregatable;
 
+    private final Cache<String, Optional<DimensionRow>> rowCache;
+    // Bumped by every write through the dimension, so that rows read from the store before a write aren't cached after
+    private final AtomicLong rowCacheGeneration = new AtomicLong();
+    private final Meter rowCacheHits;
+    private final Meter rowCacheMisses;
+    private final Meter rowCacheEvictions;
+
     /**
      * Constructor.
      *
@@ -106,6 +144,11 @@ public class KeyValueStoreDimension implements Dimension {
         this.keyValueStore = keyValueStore;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.configure(SerializationFeature.INDENT_OUTPUT, true);
+        this.rowCodec = new DimensionRowCodec(
+                dimensionFields,
+                SYSTEM_CONFIG.getBooleanProperty(ROW_COMPACT_FORMAT_KEY, false),
+                objectMapper
+        );
         this.key = dimensionFields.isEmpty() ? null : dimensionFields.iterator().next();
         this.searchProvider = searchProvider;
 
@@ -113,6 +156,19 @@ public class KeyValueStoreDimension implements Dimension {
         this.searchProvider.setKeyValueStore(keyValueStore);
 
         this.isAggregatable = isAggregatable;
+
+        this.rowCacheHits = REGISTRY.meter("dimension.row_cache.hits." + dimensionName);
+        this.rowCacheMisses = REGISTRY.meter("dimension.row_cache.misses." + dimensionName);
+        this.rowCacheEvictions = REGISTRY.meter("dimension.row_cache.evictions." + dimensionName);
+        long rowCacheMaxEntries = SYSTEM_CONFIG.getLongProperty(ROW_CACHE_MAX_ENTRIES_KEY, 0);
+        this.rowCache = rowCacheMaxEntries <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(rowCacheMaxEntries)
+                .<String, Optional<DimensionRow>>removalListener(removal -> {
+                    if (removal.wasEvicted()) {
+                        rowCacheEvictions.mark();
+                    }
+                })
+                .build();
     }
 
     /**
@@ -326,6 +382,7 @@ public class KeyValueStoreDimension implements Dimension {
         } else {
             keyValueStore.put(lastUpdatedKey, lastUpdated.toString());
         }
+        invalidateRowCache();
     }
 
     @Override
@@ -420,17 +477,13 @@ public class KeyValueStoreDimension implements Dimension {
                 DimensionRow dimensionRowOld = null;
                 String row = keyValueStore.get(rowIdKey);
                 if (row != null) {
-                    LinkedHashMap<String, String> fieldNameValueMap = objectMapper.readValue(
-                            row,
-                            new TypeReference<LinkedHashMap<String, String>>() { }
-                    );
-                    dimensionRowOld = parseDimensionRow(fieldNameValueMap);
+                    dimensionRowOld = parseDimensionRow(rowCodec.decode(row));
                     if (dimensionRow.equals(dimensionRowOld)) {
                         continue;
                     }
                 }
 
-                String dimRowSerialized = objectMapper.writeValueAsString(dimensionRow);
+                String dimRowSerialized = rowCodec.encode(dimensionRow);
                 storeRows.put(rowIdKey, dimRowSerialized);
 
                 //update indexes
@@ -442,8 +495,9 @@ public class KeyValueStoreDimension implements Dimension {
             }
         }
 
-        keyValueStore.putAll(storeRows);
+        keyValueStore.setAll(storeRows);
         searchProvider.refreshIndex(indexRows);
+        invalidateRowCache();
     }
 
     @Override
@@ -467,29 +521,123 @@ public class KeyValueStoreDimension implements Dimension {
 
     @Override
     public DimensionRow findDimensionRowByKeyValue(String value) {
+        if (rowCache == null) {
+            return readDimensionRow(value);
+        }
+        Optional<DimensionRow> cachedRow = rowCache.getIfPresent(value);
+        if (cachedRow != null) {
+            rowCacheHits.mark();
+        } else {
+            rowCacheMisses.mark();
+            long generation = rowCacheGeneration.get();
+            cachedRow = Optional.ofNullable(readDimensionRow(value));
+            cacheRow(value, cachedRow, generation);
+        }
+        // Rows are mutable, so callers get their own copy of the cached row
+        return cachedRow.map(row -> new DimensionRow(getKey(), row)).orElse(null);
+    }
+
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, DimensionRow> dimensionRows = new LinkedHashMap<>(values.size());
+        Map<String, String> rowKeys = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            Optional<DimensionRow> cachedRow = rowCache == null ? null : rowCache.getIfPresent(value);
+            if (cachedRow != null) {
+                rowCacheHits.mark();
+                cachedRow.ifPresent(row -> dimensionRows.put(value, new DimensionRow(getKey(), row)));
+            } else {
+                if (rowCache != null) {
+                    rowCacheMisses.mark();
+                }
+                rowKeys.put(value, DimensionStoreKeyUtils.getRowKey(getKey().getName(), value));
+            }
+        }
+        if (rowKeys.isEmpty()) {
+            return dimensionRows;
+        }
+
+        // Read every row which isn't cached in one go
+        long generation = rowCacheGeneration.get();
+        Map<String, String> dimRowJsons = keyValueStore.getAll(rowKeys.values());
+        for (Map.Entry<String, String> rowKey : rowKeys.entrySet()) {
+            String dimRowJson = dimRowJsons.get(rowKey.getValue());
+            DimensionRow dimensionRow = dimRowJson == null ? null : decodeDimensionRow(dimRowJson);
+            if (rowCache != null) {
+                cacheRow(rowKey.getKey(), Optional.ofNullable(dimensionRow), generation);
+                if (dimensionRow != null) {
+                    dimensionRow = new DimensionRow(getKey(), dimensionRow);
+                }
+            }
+            if (dimensionRow != null) {
+                dimensionRows.put(rowKey.getKey(), dimensionRow);
+            }
+        }
+        return dimensionRows;
+    }
+
+    /**
+     * Read a dimension row from the key value store.
+     *
+     * @param value  The key value of the row
+     *
+     * @return the dimension row, or null if there is none
+     */
+    private DimensionRow readDimensionRow(String value) {
         /*
          * Key to fetch row from keyValueStore
          * eg: if key column is ID and value is 12345
          * rowKey would be id_12345_row_key
          */
         String rowKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), value);
-        DimensionRow drByKey = null;
+        String dimRowJson = keyValueStore.get(rowKey);
+        return dimRowJson == null ? null : decodeDimensionRow(dimRowJson);
+    }
+
+    /**
+     * Decode a dimension row as serialized in the key value store.
+     *
+     * @param dimRowJson  The serialized dimension row
+     *
+     * @return the dimension row
+     */
+    private DimensionRow decodeDimensionRow(String dimRowJson) {
         try {
-            String dimRowJson = keyValueStore.get(rowKey);
-            if (dimRowJson != null) {
-                Map<String, String> dimensionRowMap = objectMapper.readValue(
-                        dimRowJson,
-                        new TypeReference<LinkedHashMap<String, String>>() { }
-                );
-                drByKey = parseDimensionRow(dimensionRowMap);
-            }
+            return parseDimensionRow(rowCodec.decode(dimRowJson));
         } catch (IOException e) {
             LOG.error("Cannot map string to DimensionRow object. {}", e);
             throw new RuntimeException(e);
         }
-        return drByKey;
     }
 
+    /**
+     * Cache a row read from the store, unless the dimension has been written to since the read started.
+     * <p>
+     * The row is cached first and dropped again if the generation moved, so that a write clearing the cache while the
+     * row is being cached can't leave the row it replaced behind.
+     *
+     * @param value  The key value of the row
+     * @param row  The row read from the store, or empty if there is none
+     * @param generation  The generation of the row cache when the read started
+     */
+    private void cacheRow(String value, Optional<DimensionRow> row, long generation) {
+        rowCache.put(value, row);
+        if (rowCacheGeneration.get() != generation) {
+            rowCache.asMap().remove(value, row);
+        }
+    }
+
+    /**
+     * Clear the cache of decoded dimension rows, if any, once the store has been written to.
+     * <p>
+     * Moving to a new generation first keeps reads which started before the write from caching what they read.
+     */
+    private void invalidateRowCache() {
+        if (rowCache != null) {
+            rowCacheGeneration.incrementAndGet();
+            rowCache.invalidateAll();
+        }
+    }
 
     /**
      * Internal method for cleaning the dimension rows.
@@ -521,6 +669,8 @@ public class KeyValueStoreDimension implements Dimension {
         } catch (IOException e) {
             LOG.error("Exception while reading dimension rows {}", e);
             throw new RuntimeException(e);
+        } finally {
+            invalidateRowCache();
         }
     }
 
@@ -9,18 +9,28 @@ import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
 import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils;
+import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.ApiFilter;
 import com.yahoo.bard.webservice.web.RowLimitReachedException;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -28,23 +38,38 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -53,30 +78,77 @@ import java.util.stream.Stream;
 /**
  * LuceneSearchProvider
  * Search provider which uses lucene
+ * <p>
+ * The index is written by a single long lived IndexWriter, and searched through a SearcherManager reopening near real
+ * time searchers from it after each update, so readers acquire and release searchers without waiting on writers.
+ * Updates are committed to disk as they are made, or every commit interval in the background if one is set.
+ * <p>
+ * Only the key of each row is stored in the index by default, and the rows of hits are looked up in the dimension by
+ * their keys. Every field can be stored instead, so rows are rebuilt from the hits without reading the dimension.
  */
 public class LuceneSearchProvider implements SearchProvider {
     private static final Logger LOG = LoggerFactory.getLogger(LuceneSearchProvider.class);
 
     private static final Analyzer LUCENE_ANALYZER = new StandardAnalyzer();
     private static final double BUFFER_SIZE = 48;
+    private static final int MAX_PAGE_CURSORS = 1000;
 
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private final String luceneIndexPath;
     private final int hitsPerPage;
+    private final long commitIntervalMillis;
+    private final boolean storeAllFields;
     private int maxResultsWithoutFilters;
 
     private Directory luceneDirectory;
     private KeyValueStore keyValueStore;
     private Dimension dimension;
     private boolean luceneIndexIsHealthy;
-    private IndexSearcher luceneIndexSearcher;
+    private IndexWriter luceneIndexWriter;
+    private volatile SearcherManager searcherManager;
+    private volatile boolean uncommittedChanges;
+    private ScheduledFuture<?> scheduledCommit;
+    // Last hit of each page recently served, to search the page after it from
+    private final Cache<PageCursor, ScoreDoc> pageCursors = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PAGE_CURSORS)
+            .build();
 
+    /**
+     * Constructor, committing updates to the index as they are made.
+     *
+     * @param luceneIndexPath  Directory of the index
+     * @param hitsPerPage  Maximum number of hits of a search
+     * @param maxResultsWithoutFilters  Maximum number of rows returned without filters
+     */
     public LuceneSearchProvider(String luceneIndexPath, int hitsPerPage, int maxResultsWithoutFilters) {
+        this(luceneIndexPath, hitsPerPage, maxResultsWithoutFilters, 0, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param luceneIndexPath  Directory of the index
+     * @param hitsPerPage  Maximum number of hits of a search
+     * @param maxResultsWithoutFilters  Maximum number of rows returned without filters
+     * @param commitIntervalMillis  Interval between background commits of updates to the index, 0 to commit updates as
+     * they are made
+     * @param storeAllFields  Whether to store every field of the rows in the index, so rows are rebuilt from the hits
+     * rather than looked up in the dimension, or only the key
+     */
+    public LuceneSearchProvider(
+            String luceneIndexPath,
+            int hitsPerPage,
+            int maxResultsWithoutFilters,
+            long commitIntervalMillis,
+            boolean storeAllFields
+    ) {
         this.luceneIndexPath = luceneIndexPath;
         Utils.createParentDirectories(this.luceneIndexPath);
 
         this.hitsPerPage = hitsPerPage;
         this.maxResultsWithoutFilters = maxResultsWithoutFilters;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.storeAllFields = storeAllFields;
 
         try {
             luceneDirectory = new MMapDirectory(Paths.get(this.luceneIndexPath));
@@ -88,49 +160,202 @@ public class LuceneSearchProvider implements SearchProvider {
         }
     }
 
-    private IndexSearcher getIndexSearcher() {
-        // Open the searcher if we don't have one
-        if (luceneIndexSearcher == null) {
-            reopenIndexSearcher(true);
+    /**
+     * Get the searcher manager of the index, opening the index if it isn't open.
+     *
+     * @return the searcher manager
+     */
+    private SearcherManager getSearcherManager() {
+        SearcherManager manager = searcherManager;
+        return manager == null ? openIndex() : manager;
+    }
+
+    /**
+     * Open the index writer and its searcher manager, writing an empty index if there is none yet.
+     *
+     * @return the searcher manager
+     */
+    private synchronized SearcherManager openIndex() {
+        if (searcherManager != null) {
+            return searcherManager;
         }
-        return luceneIndexSearcher;
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER).setRAMBufferSizeMB(BUFFER_SIZE);
+        try {
+            luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig);
+            // Commit right away, so there is an index on disk even before any rows are written
+            luceneIndexWriter.commit();
+            searcherManager = new SearcherManager(luceneIndexWriter, true, null);
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            String message = String.format("Unable to open index at %s:", luceneIndexPath);
+            LOG.error(message, e);
+            throw new RuntimeException(e);
+        }
+        if (commitIntervalMillis > 0) {
+            scheduledCommit = CommitScheduler.EXECUTOR.scheduleWithFixedDelay(
+                    this::commitChanges,
+                    commitIntervalMillis,
+                    commitIntervalMillis,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+        return searcherManager;
+    }
+
+    /**
+     * Get the index writer, opening the index if it isn't open.
+     *
+     * @return the index writer
+     */
+    private synchronized IndexWriter getIndexWriter() {
+        getSearcherManager();
+        return luceneIndexWriter;
     }
 
-    private synchronized void reopenIndexSearcher(boolean firstTimeThrough) {
+    /**
+     * Search the index, and get the dimension rows of the hits.
+     * <p>
+     * The searcher is acquired from the searcher manager for the search and released after it, without locking.
+     *
+     * @param query  The query to search for
+     *
+     * @return the dimension rows of the hits, in hit order
+     *
+     * @throws IOException if the index cannot be searched
+     */
+    private List<DimensionRow> searchDimensionRows(Query query) throws IOException {
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher indexSearcher = manager.acquire();
         try {
-            // Close the current reader if open
-            if (luceneIndexSearcher != null) {
-                luceneIndexSearcher.getIndexReader().close();
-            }
+            TopScoreDocCollector topScoreDocCollector = TopScoreDocCollector.create(hitsPerPage);
+            indexSearcher.search(query, topScoreDocCollector);
+            return readDimensionRows(indexSearcher, topScoreDocCollector.topDocs().scoreDocs);
+        } finally {
+            manager.release(indexSearcher);
+        }
+    }
 
-            // Open a new IndexSearcher on a new DirectoryReader
-            luceneIndexSearcher = new IndexSearcher(DirectoryReader.open(luceneDirectory));
-
-        } catch (IOException reopenException) {
-            // If there is no index file, this is expected. On the 1st time through, write an empty index and try again
-            if (firstTimeThrough) {
-                IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER);
-                lock.writeLock().lock();
-                try (IndexWriter luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig)) {
-                    //Closed automatically by the try-resource block
-                } catch (IOException emptyIndexWriteException) {
-                    // We can't move past this, so puke
-                    luceneIndexIsHealthy = false;
-                    String message = String.format("Unable to write empty index to %s:", luceneIndexPath);
-                    LOG.error(message, emptyIndexWriteException);
-                    throw new RuntimeException(emptyIndexWriteException);
-                } finally {
-                    lock.writeLock().unlock();
+    /**
+     * Get the dimension rows of the hits of a search.
+     * <p>
+     * When all fields are stored, rows are rebuilt from their documents. Otherwise, and for documents written before
+     * all fields were stored, rows are looked up by the key values of the hits, all at once.
+     *
+     * @param indexSearcher  The searcher the hits were found by
+     * @param hits  The hits
+     *
+     * @return the dimension rows of the hits, in hit order
+     *
+     * @throws IOException if the documents of the hits cannot be read
+     */
+    private List<DimensionRow> readDimensionRows(IndexSearcher indexSearcher, ScoreDoc[] hits) throws IOException {
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        List<String> keyValues = new ArrayList<>(hits.length);
+        Map<String, DimensionRow> storedRows = new HashMap<>();
+        for (ScoreDoc hit : hits) {
+            Document document = indexSearcher.doc(hit.doc);
+            String keyValue = document.get(idKey);
+            keyValues.add(keyValue);
+            if (storeAllFields) {
+                DimensionRow storedRow = parseStoredDimensionRow(document);
+                if (storedRow != null) {
+                    storedRows.put(keyValue, storedRow);
                 }
+            }
+        }
+        if (storedRows.size() == keyValues.size()) {
+            return keyValues.stream().map(storedRows::get).collect(Collectors.toList());
+        }
+
+        List<String> unstoredKeyValues = keyValues.stream()
+                .filter(keyValue -> !storedRows.containsKey(keyValue))
+                .collect(Collectors.toList());
+        Map<String, DimensionRow> dimensionRows = new HashMap<>(storedRows);
+        dimensionRows.putAll(dimension.findDimensionRowsByKeyValues(unstoredKeyValues));
+        return keyValues.stream().map(dimensionRows::get).collect(Collectors.toList());
+    }
 
-                reopenIndexSearcher(false);
-            } else {
-                // We've been here before, so puke
-                luceneIndexIsHealthy = false;
-                String message = String.format("Unable to open index searcher for %s:", luceneIndexPath);
-                LOG.error(message, reopenException);
-                throw new RuntimeException(reopenException);
+    /**
+     * Rebuild a dimension row from the stored fields of its document.
+     *
+     * @param document  The document of the row
+     *
+     * @return the dimension row, or null if a field of the dimension isn't stored in the document
+     */
+    private DimensionRow parseStoredDimensionRow(Document document) {
+        LinkedHashMap<DimensionField, String> fieldValues = new LinkedHashMap<>();
+        for (DimensionField field : dimension.getDimensionFields()) {
+            String value = document.get(DimensionStoreKeyUtils.getColumnKey(field.getName()));
+            if (value == null) {
+                return null;
             }
+            fieldValues.put(field, value);
+        }
+        return new DimensionRow(dimension.getKey(), fieldValues);
+    }
+
+    /**
+     * Make the updates written to the index visible to searches, and commit them unless they are committed in the
+     * background.
+     *
+     * @throws IOException if the searchers cannot be reopened or the updates cannot be committed
+     */
+    private void publishChanges() throws IOException {
+        getSearcherManager().maybeRefreshBlocking();
+        refreshCardinality();
+        if (commitIntervalMillis > 0) {
+            uncommittedChanges = true;
+        } else {
+            getIndexWriter().commit();
+        }
+    }
+
+    /**
+     * Commit the updates made since the last commit, if any. Run in the background when there is a commit interval.
+     */
+    private void commitChanges() {
+        lock.writeLock().lock();
+        try {
+            if (uncommittedChanges && luceneIndexWriter != null) {
+                luceneIndexWriter.commit();
+                uncommittedChanges = false;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Left uncommitted, to be retried by the next commit
+            LOG.error(String.format("Unable to commit index at %s:", luceneIndexPath), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Close the index, committing the updates not yet committed.
+     * <p>
+     * The index is opened again if the provider is used after it is closed.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (scheduledCommit != null) {
+                    scheduledCommit.cancel(false);
+                    scheduledCommit = null;
+                }
+                if (searcherManager != null) {
+                    searcherManager.close();
+                    luceneIndexWriter.close();
+                    searcherManager = null;
+                    luceneIndexWriter = null;
+                    uncommittedChanges = false;
+                    pageCursors.invalidateAll();
+                }
+            }
+        } catch (IOException e) {
+            String message = String.format("Unable to close index at %s:", luceneIndexPath);
+            LOG.error(message, e);
+            throw new RuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -161,32 +386,12 @@ public class LuceneSearchProvider implements SearchProvider {
     public Set<DimensionRow> findAllDimensionRows() {
         int numRows = getDimensionCardinality();
         if (numRows <= maxResultsWithoutFilters) {
-
-            TopScoreDocCollector topScoreDocCollector = TopScoreDocCollector.create(hitsPerPage);
-            IndexSearcher indexSearcher = getIndexSearcher();
-
             try {
-                indexSearcher.search(new MatchAllDocsQuery(), topScoreDocCollector);
+                return new LinkedHashSet<>(searchDimensionRows(new MatchAllDocsQuery()));
             } catch (IOException e) {
                 LOG.error("Unable to find all dimension rows");
                 throw new RuntimeException(e);
             }
-
-            String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-            return Arrays.stream(topScoreDocCollector.topDocs().scoreDocs)
-                    .map(
-                            hit -> {
-                                try {
-                                    return indexSearcher.doc(hit.doc);
-                                } catch (IOException e) {
-                                    LOG.error("Unable to find all dimension rows");
-                                    throw new RuntimeException(e);
-                                }
-                            }
-                    )
-                    .map(document -> document.get(idKey))
-                    .map(dimension::findDimensionRowByKeyValue)
-                    .collect(Collectors.toCollection(LinkedHashSet::new));
         } else {
             String msg = String.format(
                     "Cardinality = %d exceeds maximum number of rows = %d allowed without filters",
@@ -218,40 +423,17 @@ public class LuceneSearchProvider implements SearchProvider {
          */
 
         String fieldKey = DimensionStoreKeyUtils.getColumnKey(dimField.getName());
-        TopScoreDocCollector topScoreDocCollector = TopScoreDocCollector.create(hitsPerPage);
-        IndexSearcher indexSearcher = getIndexSearcher();
-
         try {
             /**
              * TODO: There is scope for optimization here by using TermQuery instead of WildcardQuery,
              * For some reason I couldn't get the TermQuery to work here, it always returns empty response
              */
             Query q = new WildcardQuery(new Term(fieldKey, "*" + fieldValue + "*"));
-            indexSearcher.search(q, topScoreDocCollector);
+            return new LinkedHashSet<>(searchDimensionRows(q));
         } catch (IOException e) {
             LOG.error("Unable to find dimension rows by field {} with value {}", dimField, fieldValue);
             throw new RuntimeException(e);
         }
-
-        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-        return Arrays.stream(topScoreDocCollector.topDocs().scoreDocs)
-                .map(
-                        hit -> {
-                            try {
-                                return indexSearcher.doc(hit.doc);
-                            } catch (IOException e) {
-                                LOG.error(
-                                        "Unable to find dimension rows by field {} with value {}",
-                                        dimField,
-                                        fieldValue
-                                );
-                                throw new RuntimeException(e);
-                            }
-                        }
-                )
-                .map(document -> document.get(idKey))
-                .map(dimension::findDimensionRowByKeyValue)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
     @Override
@@ -292,7 +474,7 @@ public class LuceneSearchProvider implements SearchProvider {
             Field luceneField = new StringField(
                     DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
                     "",
-                    dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
+                    storeAllFields || dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
             );
 
             // Store the lucene field in the doc and in our lookup map
@@ -300,20 +482,28 @@ public class LuceneSearchProvider implements SearchProvider {
             doc.add(luceneField);
         }
 
+        // The key is also kept as a sorted doc value, to page through rows in key order
+        SortedDocValuesField keySortField = new SortedDocValuesField(
+                DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName()),
+                new BytesRef()
+        );
+        doc.add(keySortField);
+
         // Write the rows to the document
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER).setRAMBufferSizeMB(BUFFER_SIZE);
         lock.writeLock().lock();
-        try (IndexWriter luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+        try {
+            IndexWriter writer = getIndexWriter();
             // Update the document fields for each row and update the document
             for (String rowId : changedRows.keySet()) {
                 // Get the new row from the pair
                 DimensionRow newDimensionRow = changedRows.get(rowId).getKey();
 
                 // Update the index
-                updateDimensionRow(doc, dimFieldToLuceneField, luceneIndexWriter, newDimensionRow);
+                updateDimensionRow(doc, dimFieldToLuceneField, keySortField, writer, newDimensionRow);
             }
 
-            // Commit all the changes to the index (on .close, called by try-resources) and refresh the cardinality
+            // Make the changes visible to searches, refresh the cardinality and commit
+            publishChanges();
         } catch (IOException e) {
             luceneIndexIsHealthy = false;
             LOG.error("Failed to refresh index for dimension rows", e);
@@ -321,8 +511,6 @@ public class LuceneSearchProvider implements SearchProvider {
         } finally {
             lock.writeLock().unlock();
         }
-        reopenIndexSearcher(true);
-        refreshCardinality();
     }
 
     /**
@@ -330,6 +518,7 @@ public class LuceneSearchProvider implements SearchProvider {
      *
      * @param luceneDimensionRowDoc  Document to use for doing the update
      * @param fieldMap  Mapping of DimensionFields to the Document's fields
+     * @param keySortField  The Document's sorted doc values field of the key
      * @param writer  Lucene IndexWriter to update the indexes of
      * @param newRow  Row to update
      *
@@ -338,6 +527,7 @@ public class LuceneSearchProvider implements SearchProvider {
     private void updateDimensionRow(
             Document luceneDimensionRowDoc,
             Map<DimensionField, Field> fieldMap,
+            SortedDocValuesField keySortField,
             IndexWriter writer,
             DimensionRow newRow
     ) throws IOException {
@@ -349,6 +539,7 @@ public class LuceneSearchProvider implements SearchProvider {
             // Set field value to updated value
             fieldToUpdate.setStringValue(newRow.get(field));
         }
+        keySortField.setBytesValue(new BytesRef(newRow.get(dimension.getKey())));
 
         // Build the term to delete the old document by the key value (which should be unique)
         Term keyTerm = new Term(fieldMap.get(dimension.getKey()).name(), newRow.get(dimension.getKey()));
@@ -360,9 +551,9 @@ public class LuceneSearchProvider implements SearchProvider {
     @Override
     public void clearDimension() {
         Set<DimensionRow> dimensionRows = findAllDimensionRows();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_ANALYZER).setRAMBufferSizeMB(BUFFER_SIZE);
         lock.writeLock().lock();
-        try (IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+        try {
+            IndexWriter writer = getIndexWriter();
             //Remove all dimension data from the store.
             String rowId = dimension.getKey().getName();
             dimensionRows.stream()
@@ -381,7 +572,8 @@ public class LuceneSearchProvider implements SearchProvider {
             //In addition to clearing the keyValueStore, we also need to delete all of Lucene's segment files.
             writer.deleteAll();
             writer.commit();
-            reopenIndexSearcher(true);
+            uncommittedChanges = false;
+            getSearcherManager().maybeRefreshBlocking();
             refreshCardinality();
         } catch (IOException e) {
             LOG.error("Failed to wipe Lucene index at directory: {}", luceneDirectory);
@@ -393,12 +585,20 @@ public class LuceneSearchProvider implements SearchProvider {
 
     /**
      * Update the cardinality count.
+     *
+     * @throws IOException if a searcher cannot be acquired or released
      */
-    private void refreshCardinality() {
-        keyValueStore.put(
-                DimensionStoreKeyUtils.getCardinalityKey(),
-                Integer.toString(getIndexSearcher().getIndexReader().numDocs())
-        );
+    private void refreshCardinality() throws IOException {
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher indexSearcher = manager.acquire();
+        try {
+            keyValueStore.put(
+                    DimensionStoreKeyUtils.getCardinalityKey(),
+                    Integer.toString(indexSearcher.getIndexReader().numDocs())
+            );
+        } finally {
+            manager.release(indexSearcher);
+        }
     }
 
     /**
@@ -409,8 +609,117 @@ public class LuceneSearchProvider implements SearchProvider {
      * @return The set of dimension rows
      */
     @Override
-    @SuppressWarnings("checkstyle:cyclomaticcomplexity")
     public TreeSet<DimensionRow> findFilteredDimensionRows(Set<ApiFilter> filters) {
+        //Search for documents that match the final query
+        try {
+            return new TreeSet<>(searchDimensionRows(getFilterQuery(filters)));
+        } catch (IOException e) {
+            LOG.error("Unable to fetch filtered rows");
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Pagination<DimensionRow> findAllDimensionRowsPaged(PaginationParameters paginationParameters) {
+        int numRows = getDimensionCardinality();
+        if (numRows > maxResultsWithoutFilters) {
+            String msg = String.format(
+                    "Cardinality = %d exceeds maximum number of rows = %d allowed without filters",
+                    numRows,
+                    maxResultsWithoutFilters
+            );
+            throw new RowLimitReachedException(msg);
+        }
+        return searchPage(new MatchAllDocsQuery(), paginationParameters)
+                .orElseGet(() -> new Pagination<>(findAllOrderedDimensionRows(), paginationParameters));
+    }
+
+    @Override
+    public Pagination<DimensionRow> findFilteredDimensionRowsPaged(
+            Set<ApiFilter> filters,
+            PaginationParameters paginationParameters
+    ) {
+        return searchPage(getFilterQuery(filters), paginationParameters)
+                .orElseGet(() -> new Pagination<>(findFilteredDimensionRows(filters), paginationParameters));
+    }
+
+    /**
+     * Search a page of the hits of a query, in key order.
+     * <p>
+     * Pages are searched like a cursor: the last hit of each page served is kept, so the next page is searched after
+     * it, collecting no more hits than a page holds. A page whose previous page hasn't been served from the current
+     * state of the index, such as a page jumped to, collects the hits up to its end in a single search instead. Either
+     * way, only the documents and dimension rows of the requested page are read.
+     *
+     * @param query  The query to search for
+     * @param paginationParameters  The page to get and the number of rows per page
+     *
+     * @return the page of dimension rows, along with the total number of hits, or empty if the index holds rows written
+     * before keys were kept as sorted doc values, which can't be paged in key order
+     */
+    private Optional<Pagination<DimensionRow>> searchPage(Query query, PaginationParameters paginationParameters) {
+        int page = paginationParameters.getPage();
+        int perPage = paginationParameters.getPerPage();
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        Sort keyOrder = new Sort(new SortField(idKey, SortField.Type.STRING));
+
+        List<DimensionRow> pageOfRows = Collections.emptyList();
+        int numResults;
+        try {
+            SearcherManager manager = getSearcherManager();
+            IndexSearcher indexSearcher = manager.acquire();
+            try {
+                IndexReader indexReader = indexSearcher.getIndexReader();
+                FieldInfo keyFieldInfo = MultiFields.getMergedFieldInfos(indexReader).fieldInfo(idKey);
+                if (keyFieldInfo != null && keyFieldInfo.getDocValuesType() != DocValuesType.SORTED) {
+                    LOG.warn("Keys of index {} can't be sorted, reload its rows to page through them", luceneIndexPath);
+                    return Optional.empty();
+                }
+
+                long indexVersion = ((DirectoryReader) indexReader).getVersion();
+                ScoreDoc[] pageHits;
+                ScoreDoc after = page > 1 ? pageCursors.getIfPresent(
+                        new PageCursor(query, perPage, page - 1, indexVersion)
+                ) : null;
+                if (page == 1 || after != null) {
+                    TopDocs hits = indexSearcher.searchAfter(after, query, Math.max(1, perPage), keyOrder);
+                    numResults = hits.totalHits;
+                    pageHits = hits.scoreDocs;
+                } else {
+                    // No more hits than there are documents are kept, however far the page is
+                    long firstHit = (long) (page - 1) * perPage;
+                    int numHits = (int) Math.max(1, Math.min(firstHit + perPage, indexReader.maxDoc()));
+                    TopDocs hits = indexSearcher.search(query, numHits, keyOrder);
+                    numResults = hits.totalHits;
+                    // Pages past the last one are left empty, to be rejected as not found
+                    pageHits = firstHit < hits.scoreDocs.length ?
+                            Arrays.copyOfRange(hits.scoreDocs, (int) firstHit, hits.scoreDocs.length) :
+                            new ScoreDoc[0];
+                }
+                if (pageHits.length > 0) {
+                    pageCursors.put(new PageCursor(query, perPage, page, indexVersion), pageHits[pageHits.length - 1]);
+                    pageOfRows = readDimensionRows(indexSearcher, pageHits);
+                }
+            } finally {
+                manager.release(indexSearcher);
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to fetch page of rows");
+            throw new RuntimeException(e);
+        }
+        return Optional.of(new Pagination<>(pageOfRows, numResults, paginationParameters));
+    }
+
+    /**
+     * Build the query matching a set of filters.
+     * An empty set of filters matches every dimension row.
+     *
+     * @param filters  The set of filters
+     *
+     * @return The query
+     */
+    @SuppressWarnings("checkstyle:cyclomaticcomplexity")
+    private Query getFilterQuery(Set<ApiFilter> filters) {
         /*
         Intuitively, Lucene performs searching for each BooleanQuery as follows:
         1. Start with an empty set of results.
@@ -472,33 +781,7 @@ public class LuceneSearchProvider implements SearchProvider {
             //the negative queries.
             filterQueryBuilder.add(new BooleanClause(new MatchAllDocsQuery(), BooleanClause.Occur.MUST));
         }
-
-        TopScoreDocCollector topScoreDocCollector = TopScoreDocCollector.create(hitsPerPage);
-        IndexSearcher indexSearcher = getIndexSearcher();
-
-        //Search for documents that match the final query
-        try {
-            indexSearcher.search(filterQueryBuilder.build(), topScoreDocCollector);
-        } catch (IOException e) {
-            LOG.error("Unable to fetch filtered rows");
-            throw new RuntimeException(e);
-        }
-
-        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-        return Arrays.stream(topScoreDocCollector.topDocs().scoreDocs)
-                .map(
-                        hit -> {
-                            try {
-                                return indexSearcher.doc(hit.doc);
-                            } catch (IOException e) {
-                                LOG.error("Unable to fetch filtered rows");
-                                throw new RuntimeException(e);
-                            }
-                        }
-                )
-                .map(document -> document.get(idKey))
-                .map(dimension::findDimensionRowByKeyValue)
-                .collect(Collectors.toCollection(TreeSet::new));
+        return filterQueryBuilder.build();
     }
 
     /**
@@ -579,4 +862,58 @@ public class LuceneSearchProvider implements SearchProvider {
                 .collect(getBooleanQueryCollector(BooleanClause.Occur.SHOULD))
                 .build();
     }
+
+    /**
+     * Identifies a page served from a state of the index, whose last hit the next page is searched after.
+     */
+    private static class PageCursor {
+        private final Query query;
+        private final int perPage;
+        private final int page;
+        private final long indexVersion;
+
+        /**
+         * Constructor.
+         *
+         * @param query  The query the page was searched for
+         * @param perPage  The number of rows per page
+         * @param page  The page number
+         * @param indexVersion  The version of the index the page was searched in
+         */
+        PageCursor(Query query, int perPage, int page, long indexVersion) {
+            this.query = query;
+            this.perPage = perPage;
+            this.page = page;
+            this.indexVersion = indexVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof PageCursor)) { return false; }
+            PageCursor that = (PageCursor) o;
+            return perPage == that.perPage &&
+                    page == that.page &&
+                    indexVersion == that.indexVersion &&
+                    Objects.equals(query, that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, perPage, page, indexVersion);
+        }
+    }
+
+    /**
+     * Holder of the thread committing the indexes with a commit interval, started the first time one is opened.
+     */
+    private static class CommitScheduler {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "lucene-index-commit");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
 }
@@ -6,8 +6,8 @@ import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.util.Utils;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.validation.constraints.NotNull;
 
@@ -30,8 +30,18 @@ public class LuceneSearchProviderManager {
             HITS_PER_PAGE_PKG_NAME,
             DEFAULT_HITS_PER_PAGE
     );
+    // Interval between background commits of index updates, 0 to commit each update as it is made
+    private static final long COMMIT_INTERVAL_MILLIS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_commit_interval_ms"),
+            0L
+    );
+    // Whether every field of the rows is stored in the index, rather than only the key
+    private static final boolean STORE_ALL_FIELDS = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_store_all_fields_enabled"),
+            false
+    );
 
-    private static final Map<String, LuceneSearchProvider> LUCENE_SEARCH_PROVIDERS = new HashMap<>();
+    private static final Map<String, LuceneSearchProvider> LUCENE_SEARCH_PROVIDERS = new ConcurrentHashMap<>();
 
     /**
      * Get instance pointing to a search provider This method makes sure that there just one instance of search provider
@@ -41,29 +51,35 @@ public class LuceneSearchProviderManager {
      *
      * @return The lucene search provider
      */
-    public static synchronized LuceneSearchProvider getInstance(String providerName) {
-        LuceneSearchProvider luceneProvider = LUCENE_SEARCH_PROVIDERS.get(providerName);
-
-        if (luceneProvider == null) {
-            luceneProvider = new LuceneSearchProvider(
-                    getProviderPath(providerName),
-                    HITS_PER_PAGE,
-                    MAX_RESULTS_WITHOUT_FILTER
-            );
-            LUCENE_SEARCH_PROVIDERS.put(providerName, luceneProvider);
-        }
-
-        return luceneProvider;
+    public static LuceneSearchProvider getInstance(String providerName) {
+        return LUCENE_SEARCH_PROVIDERS.computeIfAbsent(
+                providerName,
+                name -> new LuceneSearchProvider(
+                        getProviderPath(name),
+                        HITS_PER_PAGE,
+                        MAX_RESULTS_WITHOUT_FILTER,
+                        COMMIT_INTERVAL_MILLIS,
+                        STORE_ALL_FIELDS
+                )
+        );
     }
 
     /**
      * Cleanup the existing instance
+     * <p>
+     * Also closes the instance and deletes its index.
      *
      * @param providerName The name of the provider
      */
-    public static synchronized void removeInstance(String providerName) {
-        LUCENE_SEARCH_PROVIDERS.remove(providerName);
-        Utils.deleteFiles(getProviderPath(providerName));
+    public static void removeInstance(String providerName) {
+        // Delete the index while holding the name, so a new instance isn't opened over it
+        LUCENE_SEARCH_PROVIDERS.compute(providerName, (name, luceneProvider) -> {
+            if (luceneProvider != null) {
+                luceneProvider.close();
+            }
+            Utils.deleteFiles(getProviderPath(name));
+            return null;
+        });
     }
 
     private static String getProviderPath(String providerName) {
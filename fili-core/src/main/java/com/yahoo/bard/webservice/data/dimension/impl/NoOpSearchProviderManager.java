@@ -7,8 +7,8 @@ import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.web.util.QueryWeightUtil;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * NoOpSearchProvider factory.
@@ -16,7 +16,7 @@ import java.util.Map;
 public class NoOpSearchProviderManager {
 
     private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
-    private static Map<String, NoOpSearchProvider> noOpProviders = new HashMap<>();
+    private static final Map<String, NoOpSearchProvider> NO_OP_PROVIDERS = new ConcurrentHashMap<>();
 
     private static final int DEFAULT_QUERY_WEIGHT_LIMIT = 100000;
 
@@ -29,17 +29,13 @@ public class NoOpSearchProviderManager {
      * @return The search provider instance
      */
 
-    public static synchronized SearchProvider getInstance(String providerName) {
-        NoOpSearchProvider noOpProvider = noOpProviders.get(providerName);
-
-        if (noOpProvider == null) {
-            noOpProvider = new NoOpSearchProvider(
-                    SYSTEM_CONFIG.getIntProperty(QueryWeightUtil.QUERY_WEIGHT_LIMIT_KEY, DEFAULT_QUERY_WEIGHT_LIMIT)
-            );
-            noOpProviders.put(providerName, noOpProvider);
-        }
-
-        return noOpProvider;
+    public static SearchProvider getInstance(String providerName) {
+        return NO_OP_PROVIDERS.computeIfAbsent(
+                providerName,
+                name -> new NoOpSearchProvider(
+                        SYSTEM_CONFIG.getIntProperty(QueryWeightUtil.QUERY_WEIGHT_LIMIT_KEY, DEFAULT_QUERY_WEIGHT_LIMIT)
+                )
+        );
     }
 
     /**
@@ -47,7 +43,7 @@ public class NoOpSearchProviderManager {
      *
      * @param providerName the search provider name
      */
-    public static synchronized void removeInstance(String providerName) {
-        noOpProviders.remove(providerName);
+    public static void removeInstance(String providerName) {
+        NO_OP_PROVIDERS.remove(providerName);
     }
 }
@@ -12,7 +12,6 @@ import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils;
 import com.yahoo.bard.webservice.web.ApiFilter;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.slf4j.Logger;
@@ -20,7 +19,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +39,7 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
 
     private KeyValueStore keyValueStore;
     private Dimension dimension;
+    private DimensionRowCodec rowCodec;
 
     public ScanSearchProvider() {
         this.objectMapper = new ObjectMapper();
@@ -45,6 +48,8 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
     @Override
     public void setDimension(Dimension dimension) {
         this.dimension = dimension;
+        // Only used to decode rows, which are read in either form
+        this.rowCodec = new DimensionRowCodec(dimension.getDimensionFields(), false, objectMapper);
     }
 
     @Override
@@ -91,14 +96,11 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
 
             LinkedHashSet<String> dimRowKeys = new LinkedHashSet<>(Arrays.asList(keys));
 
+            Map<String, String> dimRowJsons = keyValueStore.getAll(dimRowKeys);
             for (String dimRowKey : dimRowKeys) {
-                String dimRowJson = keyValueStore.get(dimRowKey);
+                String dimRowJson = dimRowJsons.get(dimRowKey);
                 if (dimRowJson != null) {
-                    Map<String, String> dimensionRowMap = objectMapper.readValue(
-                            dimRowJson,
-                            new TypeReference<Map<String, String>>() { }
-                    );
-                    DimensionRow dimensionRow = dimension.parseDimensionRow(dimensionRowMap);
+                    DimensionRow dimensionRow = dimension.parseDimensionRow(rowCodec.decode(dimRowJson));
                     dimensionRows.add(dimensionRow);
                 }
             }
@@ -149,14 +151,11 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
             }
             Set<String> refKeySet = new LinkedHashSet<>(Arrays.asList(objectMapper.readValue(refKeys, String[].class)));
 
+            Map<String, String> dimRowJsons = keyValueStore.getAll(refKeySet);
             for (String key : refKeySet) {
-                String dimRowJson = keyValueStore.get(key);
+                String dimRowJson = dimRowJsons.get(key);
                 if (dimRowJson != null) {
-                    Map<String, String> dimensionRowMap = objectMapper.readValue(
-                            dimRowJson,
-                            new TypeReference<Map<String, String>>() { }
-                    );
-                    result.add(dimension.parseDimensionRow(dimensionRowMap));
+                    result.add(dimension.parseDimensionRow(rowCodec.decode(dimRowJson)));
                 }
             }
         } catch (IOException e) {
@@ -219,20 +218,31 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
 
     @Override
     public void refreshIndex(String rowId, DimensionRow dimensionRow, DimensionRow dimensionRowOld) {
-        refreshIndexForDimensionKey(rowId);
-        refreshIndexForDimensionFields(rowId, dimensionRow, dimensionRowOld);
-        refreshCardinality();
+        refreshIndex(Collections.singletonMap(rowId, new Pair<>(dimensionRow, dimensionRowOld)));
     }
 
+    /**
+     * Refresh the indexes for a batch of changed rows.
+     * <p>
+     * Each index key is read once and written once for the whole batch, and the all values list, the cardinality and
+     * the field indexes are written together in a single bulk write.
+     *
+     * @param changedRows  Pairs of the new and old dimension rows, by row id
+     */
     @Override
     public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
-        for (String rowId : changedRows.keySet()) {
-            // Get old and new rows from the pair
-            DimensionRow newRow = changedRows.get(rowId).getKey();
-            DimensionRow oldRow = changedRows.get(rowId).getValue();
-
-            // Refresh index for the row
-            refreshIndex(rowId, newRow, oldRow);
+        if (changedRows.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> updates = new LinkedHashMap<>();
+            Set<String> allValues = refreshIndexForDimensionKey(changedRows.keySet(), updates);
+            updates.put(DimensionStoreKeyUtils.getCardinalityKey(), Integer.toString(allValues.size()));
+            refreshIndexForDimensionFields(changedRows, updates);
+            keyValueStore.setAll(updates);
+        } catch (IOException e) {
+            LOG.error("Exception while adding dimension entries in KeyValueStore : {}", e);
+            throw new RuntimeException(e);
         }
     }
 
@@ -248,23 +258,20 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
      *
      * This is useful to list all values for <blah>/dim1/values endpoint
      *
-     * @param rowId  The row id to be added
+     * @param rowIds  The row ids to be added
+     * @param updates  The updates to the store, to add the update of the all values key to
+     *
+     * @return the updated set of row ids
+     *
+     * @throws IOException if the set of row ids cannot be read or written
      */
-    private void refreshIndexForDimensionKey(String rowId) {
-        try {
-            String allValuesKey = DimensionStoreKeyUtils.getAllValuesKey();
-            String dimensionRows = keyValueStore.get(allValuesKey);
-            Set<String> dimensionRowsSet = new LinkedHashSet<>();
-            if (dimensionRows != null) {
-                dimensionRowsSet.addAll(Arrays.asList(objectMapper.readValue(dimensionRows, String[].class)));
-            }
-            dimensionRowsSet.add(rowId);
-            String dimRows = objectMapper.writeValueAsString(dimensionRowsSet);
-            keyValueStore.put(allValuesKey, dimRows);
-        } catch (IOException e) {
-            LOG.error("Exception while adding dimension entry in KeyValueStore : {}", e);
-            throw new RuntimeException(e);
-        }
+    private Set<String> refreshIndexForDimensionKey(Collection<String> rowIds, Map<String, String> updates)
+            throws IOException {
+        String allValuesKey = DimensionStoreKeyUtils.getAllValuesKey();
+        Set<String> dimensionRowsSet = readRowIds(keyValueStore.get(allValuesKey));
+        dimensionRowsSet.addAll(rowIds);
+        updates.put(allValuesKey, objectMapper.writeValueAsString(dimensionRowsSet));
+        return dimensionRowsSet;
     }
 
     /**
@@ -291,56 +298,69 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
      * desc_value1_row_key -> [id_v1_row_key]
      * desc_value2_row_key -> [id_v2_row_key]
      *
-     * @param rowId  The id to be associated with the new dimension row
-     * @param dimensionRow  The new dimension row to be added to the index
-     * @param dimensionRowOld  The original dimension row associated to the given row id
+     * The changes of every row are gathered by field value first, so each field value key is read once and written
+     * once for the whole batch. Old values are removed before new ones are added, so rows trading values keep both.
+     *
+     * @param changedRows  Pairs of the new and old dimension rows, by row id
+     * @param updates  The updates to the store, to add the updates of the field value keys to
+     *
+     * @throws IOException if a set of row ids cannot be read or written
      */
     private void refreshIndexForDimensionFields(
-            String rowId,
-            DimensionRow dimensionRow,
-            DimensionRow dimensionRowOld
-    ) {
-        try {
-            // oldRowValue - key to associate a Value to its dimensionRow/rows
+            Map<String, Pair<DimensionRow, DimensionRow>> changedRows,
+            Map<String, String> updates
+    ) throws IOException {
+        Map<String, Set<String>> removedRowIds = new LinkedHashMap<>();
+        Map<String, Set<String>> addedRowIds = new LinkedHashMap<>();
+        for (Map.Entry<String, Pair<DimensionRow, DimensionRow>> changedRow : changedRows.entrySet()) {
+            String rowId = changedRow.getKey();
+            DimensionRow dimensionRow = changedRow.getValue().getKey();
+            DimensionRow dimensionRowOld = changedRow.getValue().getValue();
             for (DimensionField field : dimension.getDimensionFields()) {
                 // skip key field
                 if (field == dimension.getKey()) {
                     continue;
                 }
+                String fieldName = field.getName();
                 if (dimensionRowOld != null) {
-                    String oldRowValue = dimensionRowOld.get(field);
-                    String oldRowValueKey = DimensionStoreKeyUtils.getRowKey(field.getName(), oldRowValue);
-
-                    // oldRowValueSKeys holds all the secondary keys i.e. ref. to dimension rows in dimension storage
-                    String oldRowValuesKeysJson = keyValueStore.get(oldRowValueKey);
-                    String[] oldRowValueSKeys = objectMapper.readValue(oldRowValuesKeysJson, String[].class);
-                    Set<String> oldRowValuesKeySet = new LinkedHashSet<>(Arrays.asList(oldRowValueSKeys));
-                    oldRowValuesKeySet.remove(rowId);
-                    if (oldRowValuesKeySet.isEmpty()) {
-                        keyValueStore.remove(oldRowValueKey);
-                    } else {
-                        String updatedOldRowValueSKeys = objectMapper.writeValueAsString(oldRowValuesKeySet);
-                        keyValueStore.put(oldRowValueKey, updatedOldRowValueSKeys);
-                    }
+                    String oldRowValueKey = DimensionStoreKeyUtils.getRowKey(fieldName, dimensionRowOld.get(field));
+                    removedRowIds.computeIfAbsent(oldRowValueKey, ignored -> new HashSet<>()).add(rowId);
                 }
+                String rowValueKey = DimensionStoreKeyUtils.getRowKey(fieldName, dimensionRow.get(field));
+                addedRowIds.computeIfAbsent(rowValueKey, ignored -> new LinkedHashSet<>()).add(rowId);
+            }
+        }
 
-                String rowValue = dimensionRow.get(field);
-                String rowValueKey = DimensionStoreKeyUtils.getRowKey(field.getName(), rowValue);
+        // rowValueSKeys holds all the secondary keys i.e. ref. to dimension rows in store, for each field value
+        Set<String> rowValueKeys = new LinkedHashSet<>(removedRowIds.keySet());
+        rowValueKeys.addAll(addedRowIds.keySet());
+        Map<String, String> rowValueSKeys = keyValueStore.getAll(rowValueKeys);
+        for (String rowValueKey : rowValueKeys) {
+            Set<String> rowValueSKeySet = readRowIds(rowValueSKeys.get(rowValueKey));
+            rowValueSKeySet.removeAll(removedRowIds.getOrDefault(rowValueKey, Collections.emptySet()));
+            rowValueSKeySet.addAll(addedRowIds.getOrDefault(rowValueKey, Collections.emptySet()));
+            updates.put(
+                    rowValueKey,
+                    rowValueSKeySet.isEmpty() ? null : objectMapper.writeValueAsString(rowValueSKeySet)
+            );
+        }
+    }
 
-                // rowValueSKeys holds all the secondary keys i.e. ref. to dimension rows in store
-                String rowValueSKeys = keyValueStore.get(rowValueKey);
-                Set<String> rowValueSKeySet = new LinkedHashSet<>();
-                if (rowValueSKeys != null) {
-                    rowValueSKeySet.addAll(Arrays.asList(objectMapper.readValue(rowValueSKeys, String[].class)));
-                }
-                rowValueSKeySet.add(rowId);
-                String updatedRowValueSKeys = objectMapper.writeValueAsString(rowValueSKeySet);
-                keyValueStore.put(rowValueKey, updatedRowValueSKeys);
-            }
-        } catch (IOException e) {
-            LOG.error("Exception while adding dimension description entry in Dimension Store : {}", e);
-            throw new RuntimeException(e);
+    /**
+     * Read a set of row ids stored as a json array.
+     *
+     * @param rowIdsJson  The json array, or null if there is none
+     *
+     * @return the set of row ids, in stored order, empty if there is none
+     *
+     * @throws IOException if the json array cannot be read
+     */
+    private Set<String> readRowIds(String rowIdsJson) throws IOException {
+        Set<String> rowIds = new LinkedHashSet<>();
+        if (rowIdsJson != null) {
+            rowIds.addAll(Arrays.asList(objectMapper.readValue(rowIdsJson, String[].class)));
         }
+        return rowIds;
     }
 
     /**
@@ -2,15 +2,15 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Scan search provider instances factory.
  */
 
 public class ScanSearchProviderManager {
-    private static Map<String, ScanSearchProvider> scanProviders = new HashMap<>();
+    private static final Map<String, ScanSearchProvider> SCAN_PROVIDERS = new ConcurrentHashMap<>();
 
     /**
      * Get instance pointing to a search provider This method makes sure that there just one instance of search provider
@@ -20,15 +20,8 @@ public class ScanSearchProviderManager {
      *
      * @return The search provider instance
      */
-    public static synchronized ScanSearchProvider getInstance(String providerName) {
-        ScanSearchProvider scanProvider = scanProviders.get(providerName);
-
-        if (scanProvider == null) {
-            scanProvider = new ScanSearchProvider();
-            scanProviders.put(providerName, scanProvider);
-        }
-
-        return scanProvider;
+    public static ScanSearchProvider getInstance(String providerName) {
+        return SCAN_PROVIDERS.computeIfAbsent(providerName, name -> new ScanSearchProvider());
     }
 
     /**
@@ -36,7 +29,7 @@ public class ScanSearchProviderManager {
      *
      * @param providerName The name of the provider
      */
-    public static synchronized void removeInstance(String providerName) {
-        scanProviders.remove(providerName);
+    public static void removeInstance(String providerName) {
+        SCAN_PROVIDERS.remove(providerName);
     }
 }
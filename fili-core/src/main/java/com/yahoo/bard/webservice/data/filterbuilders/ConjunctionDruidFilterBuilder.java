@@ -2,19 +2,30 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.filterbuilders;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException;
 import com.yahoo.bard.webservice.druid.model.filter.AndFilter;
 import com.yahoo.bard.webservice.druid.model.filter.Filter;
+import com.yahoo.bard.webservice.druid.model.filter.InFilter;
 import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter;
 import com.yahoo.bard.webservice.web.ApiFilter;
 import com.yahoo.bard.webservice.web.ErrorMessageFormat;
+import com.yahoo.bard.webservice.web.FilterOperation;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,9 +34,47 @@ import java.util.stream.Collectors;
 /**
  * A ConjunctionDruidFilterBuilder builds a Druid filter by taking the conjunction of filter clauses, one for
  * each dimension being filtered on.
+ * <p>
+ * If {@code druid_filter_cache_max_entries} is above 0, the filter clause built for the filters of a dimension is kept
+ * in a bounded in process cache, keyed by the dimension, its filters and the time it was last updated, so repeated
+ * filters skip the search provider. Clauses are built again once the dimension is marked as updated, so rows changed
+ * without marking the dimension as updated are only seen once it is.
  */
 public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilder {
     private static final Logger LOG = LoggerFactory.getLogger(ConjunctionDruidFilterBuilder.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    /**
+     * Maximum number of dimension filter clauses cached by each filter builder. 0 disables the cache.
+     */
+    public static final long FILTER_CACHE_MAX_ENTRIES = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_filter_cache_max_entries"),
+            0
+    );
+
+    private static final Meter FILTER_CACHE_HITS = REGISTRY.meter("druid_filter.cache.hits");
+    private static final Meter FILTER_CACHE_MISSES = REGISTRY.meter("druid_filter.cache.misses");
+
+    private final Cache<List<Object>, Filter> filterCache;
+
+    /**
+     * Constructor, caching filter clauses as configured by {@code druid_filter_cache_max_entries}.
+     */
+    protected ConjunctionDruidFilterBuilder() {
+        this(FILTER_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param filterCacheMaxEntries  The maximum number of dimension filter clauses to cache, 0 for no cache
+     */
+    protected ConjunctionDruidFilterBuilder(long filterCacheMaxEntries) {
+        this.filterCache = filterCacheMaxEntries <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumSize(filterCacheMaxEntries)
+                .build();
+    }
 
     @Override
     public Filter buildFilters(Map<Dimension, Set<ApiFilter>> filterMap) throws DimensionRowNotFoundException {
@@ -38,7 +87,7 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
 
         List<Filter> dimensionFilters = new ArrayList<>(filterMap.size());
         for (Map.Entry<Dimension, Set<ApiFilter>> entry : filterMap.entrySet()) {
-            dimensionFilters.add(buildDimensionFilter(entry.getKey(), entry.getValue()));
+            dimensionFilters.add(buildCachedDimensionFilter(entry.getKey(), entry.getValue()));
         }
 
         // for a single filter just return the entry and not a collection containing one entry
@@ -51,6 +100,45 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
         return newFilter;
     }
 
+    /**
+     * Take the conjunction of all the filters on a single dimension, from the cache if it has been built before.
+     *
+     * @param dimension  Dimension for the filters
+     * @param filters  All filters belonging to that dimension
+     *
+     * @return A druid query filter object representing the filtering on a given dimension
+     *
+     * @throws DimensionRowNotFoundException if we attempt to filter a dimension without dimension rows
+     */
+    private Filter buildCachedDimensionFilter(Dimension dimension, Set<ApiFilter> filters)
+            throws DimensionRowNotFoundException {
+        if (filterCache == null) {
+            return buildDimensionFilter(dimension, filters);
+        }
+
+        // Keyed by the dimension, its filters with eq normalized to in, and the time the dimension was last updated
+        List<Object> key = Arrays.asList(
+                dimension,
+                filters.stream()
+                        .map(filter -> filter.getOperation() == FilterOperation.eq ?
+                                filter.withOperation(FilterOperation.in) :
+                                filter
+                        )
+                        .collect(Collectors.toSet()),
+                dimension.getLastUpdated()
+        );
+        Filter filter = filterCache.getIfPresent(key);
+        if (filter != null) {
+            FILTER_CACHE_HITS.mark();
+            return filter;
+        }
+        FILTER_CACHE_MISSES.mark();
+        // Filters matching no rows throw, and are not cached
+        filter = buildDimensionFilter(dimension, filters);
+        filterCache.put(key, filter);
+        return filter;
+    }
+
     /**
      * Take the conjunction of all the filters on a single dimension.
      *
@@ -99,4 +187,19 @@ public abstract class ConjunctionDruidFilterBuilder implements DruidFilterBuilde
                 .map(row -> new SelectorFilter(dimension, row.get(dimension.getKey())))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Builds a Druid in filter, or a selector filter if there is a single row.
+     *
+     * @param dimension  The dimension to build the filter on
+     * @param rows  The set of dimension rows to match
+     *
+     * @return a Druid filter matching the rows
+     */
+    protected Filter buildInFilter(Dimension dimension, Set<DimensionRow> rows) {
+        List<String> values = rows.stream()
+                .map(row -> row.get(dimension.getKey()))
+                .collect(Collectors.toList());
+        return values.size() == 1 ? new SelectorFilter(dimension, values.get(0)) : new InFilter(dimension, values);
+    }
 }
@@ -0,0 +1,138 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.filterbuilders;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException;
+import com.yahoo.bard.webservice.druid.model.filter.AndFilter;
+import com.yahoo.bard.webservice.druid.model.filter.Filter;
+import com.yahoo.bard.webservice.druid.model.filter.NotFilter;
+import com.yahoo.bard.webservice.druid.model.filter.RegularExpressionFilter;
+import com.yahoo.bard.webservice.web.ApiFilter;
+import com.yahoo.bard.webservice.web.FilterOperation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A DruidInFilterBuilder builds a conjunction of in filters for each Dimension, one for each filter term. So, the
+ * filter terms on dimension {@code category}:
+ * <p>
+ * {@code category|id-in[finance,sports],category|desc-contains[ball]}
+ * <p>
+ * are translated into:
+ * <p>
+ * {@code AndFilter(in(category, [finance, sports]), in(category, [baseball, basketball]))}
+ * <p>
+ * Each filter term is resolved independently of the other filter terms, as by {@link DefaultDruidFilterBuilder}, but
+ * the matching rows are sent as a single list of values rather than as a disjunction of selector filters, so queries
+ * stay small to build, serialize, hash and send.
+ * <p>
+ * A {@code startswith} or {@code contains} filter term on the key field of a dimension may match a large share of its
+ * rows. Once the dimension has at least {@code druid_filter_pushdown_min_cardinality} rows, such terms are not
+ * resolved, and are sent to Druid as a regular expression filter instead. Filter values are then matched literally
+ * against the values Druid has, rather than against the rows of the dimension.
+ */
+public class DruidInFilterBuilder extends ConjunctionDruidFilterBuilder {
+    private static final Logger LOG = LoggerFactory.getLogger(DruidInFilterBuilder.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * Dimension cardinality from which key field startswith and contains filters are sent to Druid as they are.
+     * 0 always resolves them.
+     */
+    public static final int PUSHDOWN_MIN_CARDINALITY = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_filter_pushdown_min_cardinality"),
+            0
+    );
+
+    private final int pushdownMinCardinality;
+
+    /**
+     * Constructor, pushing filters down as configured by {@code druid_filter_pushdown_min_cardinality}.
+     */
+    public DruidInFilterBuilder() {
+        this(PUSHDOWN_MIN_CARDINALITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pushdownMinCardinality  The dimension cardinality from which key field startswith and contains filters
+     * are sent to Druid as they are, 0 to always resolve them
+     */
+    public DruidInFilterBuilder(int pushdownMinCardinality) {
+        this.pushdownMinCardinality = pushdownMinCardinality;
+    }
+
+    @Override
+    protected Filter buildDimensionFilter(Dimension dimension, Set<ApiFilter> filters)
+            throws DimensionRowNotFoundException {
+        LOG.trace("Building dimension filter using dimension: {} and set of filters: {}", dimension, filters);
+
+        List<Filter> druidFilters = new ArrayList<>(filters.size());
+        for (ApiFilter filter : filters) {
+            if (isPushedDown(dimension, filter)) {
+                druidFilters.add(buildPushedDownFilter(dimension, filter));
+                continue;
+            }
+            boolean negated = filter.getOperation().equals(FilterOperation.notin);
+            Filter inFilter = buildInFilter(
+                    dimension,
+                    getFilteredDimensionRows(
+                            dimension,
+                            Collections.singleton(negated ? filter.withOperation(FilterOperation.in) : filter)
+                    )
+            );
+            druidFilters.add(negated ? new NotFilter(inFilter) : inFilter);
+        }
+
+        Filter newFilter = druidFilters.size() == 1 ? druidFilters.get(0) : new AndFilter(druidFilters);
+        LOG.trace("Filter: {}", newFilter);
+        return newFilter;
+    }
+
+    /**
+     * Decide whether to send a filter term to Druid as it is, rather than resolving it into the matching rows.
+     * <p>
+     * By default, startswith and contains filter terms on the key field are sent as they are once the dimension has
+     * at least the configured cardinality, since resolving them may match about as many rows.
+     *
+     * @param dimension  The dimension being filtered
+     * @param filter  The filter term
+     *
+     * @return true if the filter term is to be sent to Druid as it is
+     */
+    protected boolean isPushedDown(Dimension dimension, ApiFilter filter) {
+        FilterOperation operation = filter.getOperation();
+        return pushdownMinCardinality > 0 &&
+                (operation == FilterOperation.startswith || operation == FilterOperation.contains) &&
+                filter.getDimensionField().equals(dimension.getKey()) &&
+                dimension.getCardinality() >= pushdownMinCardinality;
+    }
+
+    /**
+     * Build the regular expression filter matching a startswith or contains filter term on the key field.
+     *
+     * @param dimension  The dimension being filtered
+     * @param filter  The filter term
+     *
+     * @return a Druid regular expression filter matching any of the filter values
+     */
+    protected Filter buildPushedDownFilter(Dimension dimension, ApiFilter filter) {
+        String alternatives = filter.getValues().stream()
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|", "(", ")"));
+        String regex = filter.getOperation() == FilterOperation.startswith ? "^" + alternatives : alternatives;
+        return new RegularExpressionFilter(dimension, Pattern.compile(regex));
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * Callback from the async HTTP client on success which consumes the response body as a stream of json tokens rather
+ * than as a materialized json tree.
+ * <p>
+ * Web services which support streaming hand the callback a parser positioned before the first token of the response
+ * body. Web services which do not support streaming fall back to {@link #invoke(JsonNode)}, which replays the tree as
+ * tokens.
+ */
+public interface StreamingSuccessCallback extends SuccessCallback {
+
+    /**
+     * Consume the response body token by token.
+     *
+     * @param jsonParser  A parser over the response body, positioned before the first token
+     *
+     * @throws IOException if the response body cannot be read or is not well formed json
+     */
+    void invoke(JsonParser jsonParser) throws IOException;
+
+    @Override
+    default void invoke(JsonNode rootNode) {
+        try (JsonParser jsonParser = rootNode.traverse()) {
+            invoke(jsonParser);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.yahoo.bard.webservice.druid.client.DruidServiceConfig;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.StreamingSuccessCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 import com.yahoo.bard.webservice.druid.model.query.WeightEvaluationQuery;
@@ -172,12 +173,20 @@ public class AsyncDruidWebServiceImpl implements DruidWebService {
                         } else {
                             MappingJsonFactory jsonFactory = new MappingJsonFactory();
                             try {
-                                JsonNode rootNode;
-                                try (InputStream responseStream = response.getResponseBodyAsStream();
-                                    JsonParser jp = jsonFactory.createParser(responseStream)) {
-                                    rootNode = jp.readValueAsTree();
+                                if (success instanceof StreamingSuccessCallback) {
+                                    // Hand the tokens straight to the callback without building a json tree
+                                    try (InputStream responseStream = response.getResponseBodyAsStream();
+                                        JsonParser jp = jsonFactory.createParser(responseStream)) {
+                                        ((StreamingSuccessCallback) success).invoke(jp);
+                                    }
+                                } else {
+                                    JsonNode rootNode;
+                                    try (InputStream responseStream = response.getResponseBodyAsStream();
+                                        JsonParser jp = jsonFactory.createParser(responseStream)) {
+                                        rootNode = jp.readValueAsTree();
+                                    }
+                                    success.invoke(rootNode);
                                 }
-                                success.invoke(rootNode);
                             } catch (RuntimeException | IOException e) {
                                 failure.invoke(e);
                             }
@@ -25,7 +25,7 @@ public abstract class Filter {
      * Valid types for druid filters
      */
     public enum DefaultFilterType implements FilterType {
-        SELECTOR, REGEX, AND, OR, NOT, EXTRACTION;
+        SELECTOR, IN, REGEX, AND, OR, NOT, EXTRACTION;
 
         final String jsonName;
 
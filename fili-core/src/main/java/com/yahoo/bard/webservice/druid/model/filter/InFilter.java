@@ -0,0 +1,61 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.filter;
+
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filter for matching a column against a list of values in druid, equivalent to a disjunction of selector filters.
+ */
+public class InFilter extends Filter {
+
+    private final Dimension dimension;
+
+    private final List<String> values;
+
+    public InFilter(Dimension dimension, Collection<String> values) {
+        super(DefaultFilterType.IN);
+        this.dimension = dimension;
+        this.values = Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    public InFilter withDimension(Dimension dimension) {
+        return new InFilter(dimension, values);
+    }
+
+    public InFilter withValues(Collection<String> values) {
+        return new InFilter(dimension, values);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = super.hashCode();
+        result = prime * result + ((dimension == null) ? 0 : dimension.hashCode());
+        result = prime * result + values.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) { return true; }
+        if (!super.equals(obj)) { return false; }
+        if (getClass() != obj.getClass()) { return false; }
+        InFilter other = (InFilter) obj;
+        if (dimension == null ? other.dimension != null : !dimension.equals(other.dimension)) { return false; }
+        return values.equals(other.values);
+    }
+}
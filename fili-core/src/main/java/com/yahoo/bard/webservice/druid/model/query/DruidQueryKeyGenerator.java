@@ -0,0 +1,178 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.query;
+
+import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation;
+import com.yahoo.bard.webservice.druid.model.filter.Filter;
+import com.yahoo.bard.webservice.druid.model.postaggregation.PostAggregation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.google.common.collect.MapMaker;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Builds the cache keys of druid queries.
+ * <p>
+ * The key of a query is its json serialization with the context of every (nested) query left empty, since the context
+ * doesn't change the result of a query. The key is serialized straight from the query, without building a json tree,
+ * and the serialization of filters, aggregations and post aggregations is kept for as long as those (immutable)
+ * objects live, so queries sharing them (such as the queries a request is split into) only serialize them once.
+ * <p>
+ * Keys can be long, so caches usually store values under a hash of the key and keep the full key with the value, to
+ * tell hash collisions apart (see {@link com.yahoo.bard.webservice.data.cache.MemTupleDataCache}).
+ */
+public class DruidQueryKeyGenerator {
+
+    private final ObjectWriter keyWriter;
+
+    /**
+     * Constructor.
+     *
+     * @param mapper  The mapper which serializes queries for druid
+     */
+    public DruidQueryKeyGenerator(ObjectMapper mapper) {
+        SimpleModule keyModule = new SimpleModule("DruidQueryKey");
+        keyModule.addSerializer(QueryContext.class, new EmptyContextSerializer());
+        keyModule.setSerializerModifier(new MemoizingSerializerModifier());
+        this.keyWriter = mapper.copy().registerModule(keyModule).writer();
+    }
+
+    /**
+     * Get the cache key of a query.
+     *
+     * @param druidQuery  The query
+     *
+     * @return the json of the query, without its context
+     * @throws JsonProcessingException if the query cannot be serialized to json
+     */
+    public String getKey(DruidQuery<?> druidQuery) throws JsonProcessingException {
+        return keyWriter.writeValueAsString(druidQuery);
+    }
+
+    /**
+     * Serializes every query context as an empty object.
+     */
+    private static class EmptyContextSerializer extends StdSerializer<QueryContext> {
+
+        /**
+         * Constructor.
+         */
+        EmptyContextSerializer() {
+            super(QueryContext.class);
+        }
+
+        @Override
+        public void serialize(QueryContext value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Wraps the serializers of the immutable query components whose serialization is worth keeping.
+     */
+    private static class MemoizingSerializerModifier extends BeanSerializerModifier {
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> modifySerializer(
+                SerializationConfig config,
+                BeanDescription beanDesc,
+                JsonSerializer<?> serializer
+        ) {
+            Class<?> beanClass = beanDesc.getBeanClass();
+            boolean memoize = Filter.class.isAssignableFrom(beanClass) ||
+                    Aggregation.class.isAssignableFrom(beanClass) ||
+                    PostAggregation.class.isAssignableFrom(beanClass);
+            return memoize ? new MemoizingSerializer((JsonSerializer<Object>) serializer) : serializer;
+        }
+    }
+
+    /**
+     * Serializer which keeps the json written by another serializer for each object it serializes, for as long as the
+     * object lives, and writes the kept json when it serializes the same object again.
+     */
+    private static class MemoizingSerializer extends JsonSerializer<Object>
+            implements ContextualSerializer, ResolvableSerializer {
+
+        private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+        private final JsonSerializer<Object> serializer;
+        // Weakly keyed by identity, so equal but distinct objects don't share an entry
+        private final Map<Object, String> serialized = new MapMaker().weakKeys().makeMap();
+
+        /**
+         * Constructor.
+         *
+         * @param serializer  The serializer whose output is kept
+         */
+        MemoizingSerializer(JsonSerializer<Object> serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            String json = serialized.get(value);
+            if (json == null) {
+                StringWriter writer = new StringWriter();
+                try (JsonGenerator valueGenerator = JSON_FACTORY.createGenerator(writer)) {
+                    serializer.serialize(value, valueGenerator, provider);
+                }
+                json = writer.toString();
+                serialized.put(value, json);
+            }
+            gen.writeRawValue(json);
+        }
+
+        @Override
+        public void serializeWithType(
+                Object value,
+                JsonGenerator gen,
+                SerializerProvider provider,
+                TypeSerializer typeSer
+        ) throws IOException {
+            serializer.serializeWithType(value, gen, provider, typeSer);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Object value) {
+            return serializer.isEmpty(provider, value);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (serializer instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) serializer).resolve(provider);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+                throws JsonMappingException {
+            if (!(serializer instanceof ContextualSerializer)) {
+                return this;
+            }
+            JsonSerializer<?> contextual = ((ContextualSerializer) serializer).createContextual(provider, property);
+            return contextual == serializer ? this : new MemoizingSerializer((JsonSerializer<Object>) contextual);
+        }
+    }
+}
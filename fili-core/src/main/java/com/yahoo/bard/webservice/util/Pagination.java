@@ -16,8 +16,10 @@ import java.util.stream.Collectors;
  */
 public class Pagination<T> {
 
-    // Collection to be paginated
+    // Collection to be paginated, null for a page fetched on its own
     private final Collection<T> entireCollection;
+    // Number of entries across all pages
+    private final int numResults;
     private final List<T> pageOfData;
 
     private final int pageToFetch;
@@ -36,13 +38,41 @@ public class Pagination<T> {
      */
     public Pagination(Collection<T> entireCollection, PaginationParameters paginationParameters) {
         this.entireCollection = entireCollection;
+        this.numResults = entireCollection.size();
         this.pageToFetch = paginationParameters.getPage();
         this.countPerPage = paginationParameters.getPerPage();
-        this.lastPage = entireCollection.size() > 0 ? 1 + (entireCollection.size() - 1) / countPerPage : 1;
+        this.lastPage = numResults > 0 ? 1 + (numResults - 1) / countPerPage : 1;
+        validatePage();
+        this.pageOfData = buildCurrentPage();
+    }
+
+    /**
+     * Constructor for a page fetched on its own, such as by a search provider paginating its own results.
+     *
+     * @param pageOfData  Entries of the requested page, in order
+     * @param numResults  Number of entries across all pages
+     * @param paginationParameters  The parameters the page was fetched with
+     * @throws PageNotFoundException if pageToFetch is greater than the number of pages.
+     */
+    public Pagination(List<T> pageOfData, int numResults, PaginationParameters paginationParameters) {
+        this.entireCollection = null;
+        this.numResults = numResults;
+        this.pageToFetch = paginationParameters.getPage();
+        this.countPerPage = paginationParameters.getPerPage();
+        this.lastPage = numResults > 0 ? 1 + (numResults - 1) / countPerPage : 1;
+        validatePage();
+        this.pageOfData = pageOfData;
+    }
+
+    /**
+     * Check that the page to fetch is one of the pages.
+     *
+     * @throws PageNotFoundException if pageToFetch is greater than the number of pages.
+     */
+    private void validatePage() {
         if (this.pageToFetch > this.lastPage || this.pageToFetch < FIRST_PAGE) {
             throw new PageNotFoundException(this.pageToFetch, this.countPerPage, lastPage);
         }
-        this.pageOfData = buildCurrentPage();
     }
 
     /**
@@ -119,6 +149,8 @@ public class Pagination<T> {
 
     /**
      * Builds a list of paginated results
+     * <p>
+     * Only called when paginating an entire collection, not for a page fetched on its own.
      *
      * @return A list of paginated results
      */
@@ -143,6 +175,6 @@ public class Pagination<T> {
      * @return The data size
      */
     public int getNumResults() {
-        return entireCollection.size();
+        return numResults;
     }
 }
@@ -256,6 +256,15 @@ public abstract class ApiRequest {
         return DEFAULT_PAGINATION;
     }
 
+    /**
+     * Get the pagination parameters of this request, or the default ones for this type of API request if it has none.
+     *
+     * @return The pagination parameters pages of this request are fetched with
+     */
+    public PaginationParameters getPaginationParametersOrDefault() {
+        return getPaginationParameters().orElse(getDefaultPagination());
+    }
+
     /**
      * Add page links to the header of the response builder.
      *
@@ -286,12 +295,22 @@ public abstract class ApiRequest {
      * @return A stream corresponding to the requested page.
      */
     public <T> Stream<T> getPage(Collection<T> data) {
-        // To avoid several explicit casts after type erasure, use a local pagination object in this method
-        Pagination<T> local = new Pagination<>(data, getPaginationParameters().orElse(getDefaultPagination()));
-        this.pagination = local;
+        return getPage(new Pagination<>(data, getPaginationParametersOrDefault()));
+    }
+
+    /**
+     * Add links to the response builder and return a stream with the data of a page fetched on its own.
+     *
+     * @param <T>  The type of the page elements
+     * @param page  The page, fetched with this request's pagination parameters, or the default ones if it has none
+     *
+     * @return A stream corresponding to the requested page.
+     */
+    public <T> Stream<T> getPage(Pagination<T> page) {
+        this.pagination = page;
 
-        Arrays.stream(PaginationLink.values()).forEachOrdered(link -> addPageLink(link, local));
+        Arrays.stream(PaginationLink.values()).forEachOrdered(link -> addPageLink(link, page));
 
-        return local.getPageOfData().stream();
+        return page.getPageOfData().stream();
     }
 }
@@ -13,8 +13,10 @@ import com.yahoo.bard.webservice.data.metric.TemplateDruidQuery;
 import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation;
 import com.yahoo.bard.webservice.druid.model.aggregation.FilteredAggregation;
 import com.yahoo.bard.webservice.druid.model.filter.Filter;
+import com.yahoo.bard.webservice.druid.model.filter.InFilter;
 import com.yahoo.bard.webservice.druid.model.filter.MultiClauseFilter;
 import com.yahoo.bard.webservice.druid.model.filter.NotFilter;
+import com.yahoo.bard.webservice.druid.model.filter.RegularExpressionFilter;
 import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter;
 import com.yahoo.bard.webservice.druid.model.postaggregation.ConstantPostAggregation;
 import com.yahoo.bard.webservice.druid.model.postaggregation.FieldAccessorPostAggregation;
@@ -469,6 +471,10 @@ public class FilteredSketchMetricsHelper implements MetricsFilterSetBuilder {
 
         if (filter instanceof SelectorFilter) {
             dimensions.add(((SelectorFilter) filter).getDimension());
+        } else if (filter instanceof InFilter) {
+            dimensions.add(((InFilter) filter).getDimension());
+        } else if (filter instanceof RegularExpressionFilter) {
+            dimensions.add(((RegularExpressionFilter) filter).getDimension());
         } else if (filter instanceof MultiClauseFilter) {
             for (Filter multiclauseFilter: ((MultiClauseFilter) filter).getFields()) {
                 gatherFilterDimensions(multiclauseFilter, dimensions);
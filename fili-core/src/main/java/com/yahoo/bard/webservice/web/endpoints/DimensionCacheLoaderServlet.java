@@ -4,7 +4,10 @@ package com.yahoo.bard.webservice.web.endpoints;
 
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.cache.DataCache;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
@@ -13,8 +16,14 @@ import com.yahoo.bard.webservice.data.dimension.DimensionRow;
 import com.yahoo.bard.webservice.data.dimension.DimensionUpdateDate;
 import com.yahoo.bard.webservice.web.PATCH;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -22,10 +31,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -48,11 +61,24 @@ import javax.ws.rs.core.Response.Status;
 @Singleton
 public class DimensionCacheLoaderServlet {
     private static final Logger LOG = LoggerFactory.getLogger(DimensionCacheLoaderServlet.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    /**
+     * Number of rows of a streamed upload parsed and written to the dimension at a time.
+     */
+    public static final int STREAM_CHUNK_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("dimension_stream_load_chunk_size"),
+            10000
+    );
+
+    private static final String DIMENSION_ROWS = "dimensionRows";
 
     private final DimensionDictionary dimensionDictionary;
     private final ObjectMapper mapper;
     @SuppressWarnings("rawtypes")
     private final DataCache dataCache;
+    private final int streamChunkSize;
 
     @SuppressWarnings("rawtypes") // This issue is enforced by binder limitations for matching DataCaches
     @Inject
@@ -60,10 +86,29 @@ public class DimensionCacheLoaderServlet {
             DimensionDictionary dimensionDictionary,
             @NotNull DataCache dataCache,
             ObjectMappersSuite objectMappers
+    ) {
+        this(dimensionDictionary, dataCache, objectMappers, STREAM_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionDictionary  The dimensions to load rows into
+     * @param dataCache  The data cache to clear
+     * @param objectMappers  The mappers to read and write json with
+     * @param streamChunkSize  The number of rows of a streamed upload written to the dimension at a time
+     */
+    @SuppressWarnings("rawtypes")
+    public DimensionCacheLoaderServlet(
+            DimensionDictionary dimensionDictionary,
+            @NotNull DataCache dataCache,
+            ObjectMappersSuite objectMappers,
+            int streamChunkSize
     ) {
         this.mapper = objectMappers.getMapper();
         this.dimensionDictionary = dimensionDictionary;
         this.dataCache = dataCache;
+        this.streamChunkSize = streamChunkSize;
     }
 
     /**
@@ -295,18 +340,7 @@ public class DimensionCacheLoaderServlet {
             for (LinkedHashMap<String, String> fieldnameValueMap: dimensionRows.get("dimensionRows")) {
                 DimensionRow newRow = dimension.parseDimensionRow(fieldnameValueMap);
                 DimensionRow oldRow = dimension.findDimensionRowByKeyValue(newRow.get(key));
-                if (oldRow == null) {
-                    drs.add(newRow);
-                } else {
-                    for (DimensionField field : dimension.getDimensionFields()) {
-                        String fieldName = field.getName();
-                        // only overwrite if the field was in the original JSON
-                        if (fieldnameValueMap.containsKey(fieldName)) {
-                            oldRow.put(field, newRow.get(field));
-                        }
-                        drs.add(oldRow);
-                    }
-                }
+                drs.add(mergeDimensionRow(dimension, oldRow, newRow, fieldnameValueMap));
             }
             dimension.addAllDimensionRows(drs);
 
@@ -320,6 +354,301 @@ public class DimensionCacheLoaderServlet {
         return Response.status(Status.OK).build();
     }
 
+    /**
+     * Endpoint to add/replace dimension rows, streaming them from the request body.
+     * <p>
+     * Behaves as the POST to {@code dimensionRows}, but the body is parsed as it is read, and rows are written to the
+     * dimension (and so to its search provider) in chunks of {@code dimension_stream_load_chunk_size} rows, so memory
+     * use doesn't grow with the size of the upload. The body is read only as fast as the chunks are written. The body
+     * is either the json object taken by the POST to {@code dimensionRows}, a json array of rows, or rows as newline
+     * delimited json objects:
+     * <pre><code>
+     * { "id":"usa", "description":"United_States_of_America" }
+     * { "id":"can", "description":"Canada" }
+     * </code></pre>
+     * Chunks written before an invalid row are kept.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified. (path parameter)
+     * @param body  post data describing dimension rows
+     *
+     * @return OK(200) with the number of rows loaded if successfully added/replaced else Bad Request(400)
+     */
+    @POST
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows/stream")
+    @Consumes({"application/json", "application/x-ndjson"})
+    public Response addReplaceDimensionRowsStream(@PathParam("dimensionName") String dimensionName, InputStream body) {
+        return streamDimensionRows(dimensionName, body, false);
+    }
+
+    /**
+     * Endpoint to add/update dimension rows, with update semantics, streaming them from the request body.
+     * <p>
+     * Behaves as the PATCH to {@code dimensionRows}, merging the rows into the existing ones, but the body is streamed
+     * as by the POST to {@code dimensionRows/stream}.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified. (path parameter)
+     * @param body  post data describing dimension rows
+     *
+     * @return OK(200) with the number of rows loaded if successfully added/updated else Bad Request(400)
+     */
+    @PATCH
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows/stream")
+    @Consumes({"application/json", "application/x-ndjson"})
+    public Response addUpdateDimensionRowsStream(@PathParam("dimensionName") String dimensionName, InputStream body) {
+        return streamDimensionRows(dimensionName, body, true);
+    }
+
+    /**
+     * Stream dimension rows from a request body into a dimension, a chunk at a time.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified
+     * @param body  The request body
+     * @param merge  Whether to merge the rows into the existing ones, rather than replacing them
+     *
+     * @return OK(200) with the number of rows loaded if successful else Bad Request(400)
+     */
+    private Response streamDimensionRows(String dimensionName, InputStream body, boolean merge) {
+        Dimension dimension = dimensionDictionary.findByApiName(dimensionName);
+        // if dimension is not located return bad request response
+        if (dimension == null) {
+            LOG.error("Missing dimensionRows for dimension: {}", dimensionName);
+            return Response.status(BAD_REQUEST).build();
+        }
+
+        StreamedRows rows = new StreamedRows(dimension, merge);
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                readRowArray(parser, rows);
+                readEnd(parser);
+            } else if (token == JsonToken.START_OBJECT) {
+                token = parser.nextToken();
+                if (token == JsonToken.FIELD_NAME && DIMENSION_ROWS.equals(parser.getCurrentName())) {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        throw new JsonParseException("Expected an array of dimension rows", parser.getTokenLocation());
+                    }
+                    readRowArray(parser, rows);
+                    if (parser.nextToken() != JsonToken.END_OBJECT) {
+                        throw new JsonParseException("Expected the end of dimension rows", parser.getTokenLocation());
+                    }
+                    readEnd(parser);
+                } else {
+                    // Newline delimited rows, the first of which is already open
+                    rows.add(readRowFields(parser, token));
+                    for (token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                        rows.add(readRow(parser, token));
+                    }
+                }
+            } else if (token != null) {
+                throw new JsonParseException("Expected dimension rows", parser.getTokenLocation());
+            }
+            rows.flush();
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.error("Failed to stream dimension rows after {} row(s)", rows.loaded, e);
+            String message = String.format(
+                    "Failed to load dimension rows after %d row(s) were loaded: %s",
+                    rows.loaded,
+                    e.getMessage()
+            );
+            return Response.status(BAD_REQUEST).entity(message).build();
+        }
+
+        LOG.info(
+                "Successfully streamed {} row(s) in {} chunk(s) for dimension: {}",
+                rows.loaded,
+                rows.chunks,
+                dimensionName
+        );
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", dimensionName);
+        result.put("rows", rows.loaded);
+        result.put("chunks", rows.chunks);
+        try {
+            return Response.status(Status.OK).entity(mapper.writeValueAsString(result)).build();
+        } catch (JsonProcessingException e) {
+            return Response.status(Status.OK).build();
+        }
+    }
+
+    /**
+     * Read the rows of a json array of rows, whose start has been read.
+     *
+     * @param parser  The parser reading the body
+     * @param rows  The rows to add the rows read to
+     *
+     * @throws IOException if the rows cannot be read or written
+     */
+    private void readRowArray(JsonParser parser, StreamedRows rows) throws IOException {
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            rows.add(readRow(parser, token));
+        }
+    }
+
+    /**
+     * Check that nothing follows the dimension rows in the body.
+     *
+     * @param parser  The parser reading the body
+     *
+     * @throws IOException if anything follows the dimension rows
+     */
+    private void readEnd(JsonParser parser) throws IOException {
+        if (parser.nextToken() != null) {
+            throw new JsonParseException("Unexpected content after dimension rows", parser.getTokenLocation());
+        }
+    }
+
+    /**
+     * Read a row, a json object of field name to value.
+     *
+     * @param parser  The parser reading the body
+     * @param token  The current token, the start of the row
+     *
+     * @return the values of the row by field name
+     *
+     * @throws IOException if the row cannot be read
+     */
+    private LinkedHashMap<String, String> readRow(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected a dimension row", parser.getTokenLocation());
+        }
+        return readRowFields(parser, parser.nextToken());
+    }
+
+    /**
+     * Read the fields of a row, whose start has been read.
+     *
+     * @param parser  The parser reading the body
+     * @param token  The current token, the first field name of the row or its end
+     *
+     * @return the values of the row by field name
+     *
+     * @throws IOException if the row cannot be read
+     */
+    private LinkedHashMap<String, String> readRowFields(JsonParser parser, JsonToken token) throws IOException {
+        LinkedHashMap<String, String> fieldnameValueMap = new LinkedHashMap<>();
+        for (; token != JsonToken.END_OBJECT; token = parser.nextToken()) {
+            if (token != JsonToken.FIELD_NAME) {
+                throw new JsonParseException("Expected a dimension field name", parser.getTokenLocation());
+            }
+            String fieldName = parser.getCurrentName();
+            if (!parser.nextToken().isScalarValue()) {
+                throw new JsonParseException("Expected a dimension field value", parser.getTokenLocation());
+            }
+            fieldnameValueMap.put(fieldName, parser.getValueAsString());
+        }
+        return fieldnameValueMap;
+    }
+
+    /**
+     * Merge a row into the existing row with the same key, overwriting only the fields given for the new row.
+     *
+     * @param dimension  The dimension of the rows
+     * @param oldRow  The existing row, or null if there is none
+     * @param newRow  The new row
+     * @param fieldnameValueMap  The values given for the new row, by field name
+     *
+     * @return the merged row, or the new row if there is no existing row
+     */
+    private DimensionRow mergeDimensionRow(
+            Dimension dimension,
+            DimensionRow oldRow,
+            DimensionRow newRow,
+            Map<String, String> fieldnameValueMap
+    ) {
+        if (oldRow == null) {
+            return newRow;
+        }
+        for (DimensionField field : dimension.getDimensionFields()) {
+            // only overwrite if the field was in the original JSON
+            if (fieldnameValueMap.containsKey(field.getName())) {
+                oldRow.put(field, newRow.get(field));
+            }
+        }
+        return oldRow;
+    }
+
+    /**
+     * Rows streamed into a dimension, written a chunk at a time.
+     */
+    private class StreamedRows {
+        private final Dimension dimension;
+        private final boolean merge;
+        private final List<LinkedHashMap<String, String>> chunk = new ArrayList<>();
+        private final Meter rowsMeter;
+        private final Timer chunkTimer;
+        private long loaded = 0;
+        private int chunks = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param dimension  The dimension to write the rows to
+         * @param merge  Whether to merge the rows into the existing ones, rather than replacing them
+         */
+        StreamedRows(Dimension dimension, boolean merge) {
+            this.dimension = dimension;
+            this.merge = merge;
+            this.rowsMeter = REGISTRY.meter("dimension.stream_load.rows." + dimension.getApiName());
+            this.chunkTimer = REGISTRY.timer("dimension.stream_load.chunks." + dimension.getApiName());
+        }
+
+        /**
+         * Add a row, writing the chunk once it is full.
+         *
+         * @param fieldnameValueMap  The values of the row by field name
+         */
+        void add(LinkedHashMap<String, String> fieldnameValueMap) {
+            chunk.add(fieldnameValueMap);
+            if (chunk.size() >= streamChunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Write the rows of the chunk to the dimension.
+         */
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+
+            List<DimensionRow> newRows = new ArrayList<>(chunk.size());
+            for (LinkedHashMap<String, String> fieldnameValueMap : chunk) {
+                newRows.add(dimension.parseDimensionRow(fieldnameValueMap));
+            }
+            Set<DimensionRow> drs = new LinkedHashSet<>();
+            if (merge) {
+                DimensionField key = dimension.getKey();
+                Map<String, DimensionRow> oldRows = dimension.findDimensionRowsByKeyValues(
+                        newRows.stream().map(row -> row.get(key)).collect(Collectors.toList())
+                );
+                for (int i = 0; i < newRows.size(); i++) {
+                    DimensionRow newRow = newRows.get(i);
+                    drs.add(mergeDimensionRow(dimension, oldRows.get(newRow.get(key)), newRow, chunk.get(i)));
+                }
+            } else {
+                drs.addAll(newRows);
+            }
+            dimension.addAllDimensionRows(drs);
+
+            long duration = System.nanoTime() - start;
+            chunkTimer.update(duration, TimeUnit.NANOSECONDS);
+            rowsMeter.mark(chunk.size());
+            loaded += chunk.size();
+            chunks++;
+            LOG.debug(
+                    "Streamed {} row(s) so far for dimension: {}, at {} row(s) per second",
+                    loaded,
+                    dimension.getApiName(),
+                    (long) rowsMeter.getMeanRate()
+            );
+            chunk.clear();
+        }
+    }
+
     /**
      * Endpoint to update cache status.
      *
@@ -11,14 +11,17 @@ import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.DimensionRequest;
 import com.yahoo.bard.webservice.table.LogicalTableDictionary;
+import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.util.StreamUtils;
 import com.yahoo.bard.webservice.web.DimensionsApiRequest;
 import com.yahoo.bard.webservice.web.RequestMapper;
 import com.yahoo.bard.webservice.web.RequestValidationException;
 import com.yahoo.bard.webservice.web.RowLimitReachedException;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -273,10 +276,12 @@ public class DimensionsServlet extends EndpointServlet {
                 apiRequest = (DimensionsApiRequest) requestMapper.apply(apiRequest, containerRequestContext);
             }
 
-            // build filtered dimension rows
-            Collection<DimensionRow> filteredDimRows = !apiRequest.getFilters().isEmpty() ?
-                apiRequest.getDimension().getSearchProvider().findFilteredDimensionRows(apiRequest.getFilters()) :
-                apiRequest.getDimension().getSearchProvider().findAllOrderedDimensionRows();
+            // fetch the requested page of filtered dimension rows
+            SearchProvider searchProvider = apiRequest.getDimension().getSearchProvider();
+            PaginationParameters paginationParameters = apiRequest.getPaginationParametersOrDefault();
+            Pagination<DimensionRow> filteredDimRows = !apiRequest.getFilters().isEmpty() ?
+                searchProvider.findFilteredDimensionRowsPaged(apiRequest.getFilters(), paginationParameters) :
+                searchProvider.findAllDimensionRowsPaged(paginationParameters);
 
             Stream<Map<String, String>> rows = apiRequest.getPage(filteredDimRows)
                     .map(DimensionRow::entrySet)
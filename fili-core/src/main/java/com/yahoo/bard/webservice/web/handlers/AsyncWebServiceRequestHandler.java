@@ -2,16 +2,20 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers;
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag;
 import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.client.StreamingSuccessCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.StreamingResponseProcessor;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -42,12 +46,27 @@ public class AsyncWebServiceRequestHandler extends BaseDataRequestHandler {
             final DruidAggregationQuery<?> druidQuery,
             final ResponseProcessor response
     ) {
-        SuccessCallback success = new SuccessCallback() {
-            @Override
-            public void invoke(JsonNode rootNode) {
-                response.processResponse(rootNode, druidQuery, new ResponseContext(RequestLog.copy(), request));
-            }
-        };
+        SuccessCallback success;
+        if (BardFeatureFlag.DRUID_STREAMING_RESPONSE.isOn() && response instanceof StreamingResponseProcessor) {
+            StreamingResponseProcessor streamingResponse = (StreamingResponseProcessor) response;
+            success = new StreamingSuccessCallback() {
+                @Override
+                public void invoke(JsonParser jsonParser) {
+                    streamingResponse.processResponse(
+                            jsonParser,
+                            druidQuery,
+                            new ResponseContext(RequestLog.copy(), request)
+                    );
+                }
+            };
+        } else {
+            success = new SuccessCallback() {
+                @Override
+                public void invoke(JsonNode rootNode) {
+                    response.processResponse(rootNode, druidQuery, new ResponseContext(RequestLog.copy(), request));
+                }
+            };
+        }
         HttpErrorCallback error = response.getErrorCallback(druidQuery);
         FailureCallback failure = response.getFailureCallback(druidQuery);
 
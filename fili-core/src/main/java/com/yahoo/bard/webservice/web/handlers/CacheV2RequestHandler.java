@@ -7,13 +7,18 @@ import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQU
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.cache.DataCache;
+import com.yahoo.bard.webservice.data.cache.ParsedDataEntry;
 import com.yahoo.bard.webservice.data.cache.TupleDataCache;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.DruidQueryKeyGenerator;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
 import com.yahoo.bard.webservice.metadata.QuerySigningService;
-import com.yahoo.bard.webservice.util.Utils;
 import com.yahoo.bard.webservice.web.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
@@ -29,7 +34,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.validation.constraints.NotNull;
 
@@ -38,39 +49,135 @@ import javax.validation.constraints.NotNull;
  * handler.
  * <p>
  * It also wraps the response processor so that valid, non-partial JSON responses are cached
+ * <p>
+ * If stale-while-revalidate is enabled, a cache entry whose segment set id no longer matches is still served, flagged
+ * as stale in the response context, as long as it hasn't been known to be stale for longer than the maximum staleness.
+ * The entry is then refreshed in the background by a {@link StaleRefreshScheduler}, which should be shared by the
+ * cache handlers of a workflow so that its bound and its deduplication of refreshes hold across all of them.
  */
 public class CacheV2RequestHandler extends BaseDataRequestHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(CacheV2RequestHandler.class);
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * Number of threads refreshing stale cache entries in the background. 0 disables stale-while-revalidate.
+     */
+    public static final int STALE_REFRESH_THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_stale_refresh_threads"),
+            0
+    );
+
+    /**
+     * Number of refreshes which may wait for a refresh thread. Stale entries are served without a refresh beyond that.
+     */
+    public static final int STALE_REFRESH_QUEUE_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_stale_refresh_queue_size"),
+            100
+    );
+
+    /**
+     * Time in milliseconds for which an entry known to be stale may still be served.
+     */
+    public static final long MAX_STALENESS_MILLIS = SYSTEM_CONFIG.getLongProperty(
+            SYSTEM_CONFIG.getPackageVariableName("druid_cache_max_staleness_millis"),
+            300000L
+    );
+
+    /**
+     * Name of the response context key and header flagging a response served from a stale cache entry.
+     */
+    public static final String STALE_DATA_HEADER = "staleData";
+
     public static final Meter CACHE_HITS = REGISTRY.meter("queries.meter.cache.hits");
     public static final Meter CACHE_POTENTIAL_HITS = REGISTRY.meter("queries.meter.cache.potential_hits");
     public static final Meter CACHE_MISSES = REGISTRY.meter("queries.meter.cache.misses");
     public static final Meter CACHE_REQUESTS = REGISTRY.meter("queries.meter.cache.total");
+    public static final Meter CACHE_STALE_HITS = REGISTRY.meter("queries.meter.cache.stale_hits");
+    public static final Meter CACHE_STALE_REFRESHES = REGISTRY.meter("queries.meter.cache.stale_refreshes");
+    public static final Meter CACHE_DROPPED_REFRESHES = REGISTRY.meter("queries.meter.cache.stale_refreshes_dropped");
 
     protected final @NotNull DataRequestHandler next;
     protected final @NotNull TupleDataCache<String, Long, String> dataCache;
     protected final @NotNull QuerySigningService<Long> querySigningService;
+    protected final DruidQueryKeyGenerator keyGenerator;
+
+    private final StaleRefreshScheduler refreshScheduler;
 
     /**
-     * Build a Cache request handler.
+     * Build a Cache request handler, with a stale refresh scheduler of its own if stale-while-revalidate is enabled.
      *
      * @param next  The next handler in the chain
      * @param dataCache  The cache instance
      * @param querySigningService The service to generate query signatures
      * @param mapper  The mapper for all JSON processing
      */
-    @SuppressWarnings("unchecked")
     public CacheV2RequestHandler(
             DataRequestHandler next,
             @NotNull DataCache<?> dataCache,
             QuerySigningService<?> querySigningService,
             ObjectMapper mapper
+    ) {
+        this(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                buildRefreshScheduler()
+        );
+    }
+
+    /**
+     * Build a Cache request handler, serving stale entries while they are refreshed.
+     *
+     * @param next  The next handler in the chain
+     * @param dataCache  The cache instance
+     * @param querySigningService The service to generate query signatures
+     * @param mapper  The mapper for all JSON processing
+     * @param refreshExecutor  The executor refreshing stale entries, or null to treat stale entries as misses
+     * @param maxStalenessMillis  The time in milliseconds for which an entry known to be stale may still be served
+     */
+    public CacheV2RequestHandler(
+            DataRequestHandler next,
+            @NotNull DataCache<?> dataCache,
+            QuerySigningService<?> querySigningService,
+            ObjectMapper mapper,
+            Executor refreshExecutor,
+            long maxStalenessMillis
+    ) {
+        this(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                refreshExecutor == null ? null : new StaleRefreshScheduler(refreshExecutor, maxStalenessMillis)
+        );
+    }
+
+    /**
+     * Build a Cache request handler, serving stale entries while they are refreshed by a shared scheduler.
+     *
+     * @param next  The next handler in the chain
+     * @param dataCache  The cache instance
+     * @param querySigningService The service to generate query signatures
+     * @param mapper  The mapper for all JSON processing
+     * @param refreshScheduler  The scheduler refreshing stale entries, or null to treat stale entries as misses
+     */
+    @SuppressWarnings("unchecked")
+    public CacheV2RequestHandler(
+            DataRequestHandler next,
+            @NotNull DataCache<?> dataCache,
+            QuerySigningService<?> querySigningService,
+            ObjectMapper mapper,
+            StaleRefreshScheduler refreshScheduler
     ) {
         super(mapper);
         this.next = next;
         this.dataCache = (TupleDataCache<String, Long, String>) dataCache;
         this.querySigningService = (QuerySigningService<Long>) querySigningService;
+        this.keyGenerator = new DruidQueryKeyGenerator(mapper);
+        this.refreshScheduler = refreshScheduler;
     }
 
     @Override
@@ -90,14 +197,23 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                 final TupleDataCache.DataEntry<String, Long, String> cacheEntry = dataCache.get(cacheKey);
                 CACHE_REQUESTS.mark(1);
 
-                if (cacheEntry != null) {
+                if (cacheEntry != null && !cacheKey.equals(cacheEntry.getKey())) {
+                    LOG.warn("Cache entry collision detected for query with id: {}", RequestLog.getId());
+                    CACHE_MISSES.mark(1);
+                } else if (cacheEntry != null) {
                     // Make sure that if the optional return value is empty, the statement always evaluates to false
                     // Metadata type needs to be int.
-                    if (Objects.equals(
+                    boolean valid = Objects.equals(
                             cacheEntry.getMeta(),
                             querySigningService.getSegmentSetId(druidQuery).orElse(null)
-                    )) {
+                    );
+                    if (!valid) {
+                        CACHE_POTENTIAL_HITS.mark(1);
+                    }
+                    if (valid || isServableStale(cacheKey)) {
                         try {
+                            JsonNode cachedValue = readCachedValue(cacheEntry);
+
                             if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
                                 RequestLog.record(new BardQueryInfo(druidQuery.getQueryType().toJson(), true));
                                 RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
@@ -107,10 +223,17 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                                 RequestLog.startTiming(RESPONSE_WORKFLOW_TIMER);
                             }
 
-                            CACHE_HITS.mark(1);
+                            if (valid) {
+                                CACHE_HITS.mark(1);
+                            } else {
+                                LOG.debug("Serving stale cache entry for query with id: {}", RequestLog.getId());
+                                CACHE_STALE_HITS.mark(1);
+                                refresh(request, druidQuery, nextResponse, cacheKey);
+                                nextResponse.getResponseContext().put(STALE_DATA_HEADER, true);
+                            }
                             RequestLog logCtx = RequestLog.dump();
                             nextResponse.processResponse(
-                                    mapper.readTree(cacheEntry.getValue()),
+                                    cachedValue,
                                     druidQuery,
                                     new ResponseContext(logCtx, request)
                             );
@@ -122,7 +245,6 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
                         }
                     } else {
                         LOG.debug("Cache entry present but invalid for query with id: {}", RequestLog.getId());
-                        CACHE_POTENTIAL_HITS.mark(1);
                         CACHE_MISSES.mark(1);
                     }
                 } else {
@@ -145,6 +267,98 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
         return next.handleRequest(context, request, druidQuery, nextResponse);
     }
 
+    /**
+     * Check whether a stale cache entry may be served, which is when stale-while-revalidate is enabled and the entry
+     * hasn't been known to be stale for longer than the maximum staleness.
+     *
+     * @param cacheKey  The key of the stale entry
+     *
+     * @return true if the stale entry may be served
+     */
+    protected boolean isServableStale(String cacheKey) {
+        return refreshScheduler != null && refreshScheduler.isServable(cacheKey);
+    }
+
+    /**
+     * Refresh a stale cache entry in the background, unless it is already being refreshed.
+     * <p>
+     * The query is sent down the rest of the chain as a request of its own, and its response is cached as usual. A
+     * refresh thread waits for the response, up to the maximum staleness, so that the refresh threads bound the number
+     * of refreshes in flight. The entry stops being stale only once the response is stored with the current segment
+     * set id, and not when it can't be cached, such as when its intervals are partial or volatile. Refreshes which
+     * can't be queued are dropped.
+     *
+     * @param request  The request served from the stale entry
+     * @param druidQuery  The query of the stale entry
+     * @param response  The response processor of the request, whose context is copied for the refresh
+     * @param cacheKey  The key of the stale entry
+     */
+    protected void refresh(
+            DataApiRequest request,
+            DruidAggregationQuery<?> druidQuery,
+            ResponseProcessor response,
+            String cacheKey
+    ) {
+        Map<String, Object> responseContext = new HashMap<>(response.getResponseContext());
+        Runnable refresh = () -> {
+            CountDownLatch done = new CountDownLatch(1);
+            CacheV2ResponseProcessor refreshResponse = new CacheV2ResponseProcessor(
+                    new RefreshResponseProcessor(responseContext, done::countDown),
+                    cacheKey,
+                    dataCache,
+                    querySigningService,
+                    mapper
+            );
+            try {
+                next.handleRequest(new RequestContext(null, false), request, druidQuery, refreshResponse);
+                if (!done.await(refreshScheduler.getMaxStalenessMillis(), TimeUnit.MILLISECONDS)) {
+                    LOG.warn("Timed out refreshing stale cache entry");
+                } else if (refreshResponse.isCached()) {
+                    refreshScheduler.refreshed(cacheKey);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to refresh stale cache entry: ", e);
+            } finally {
+                RequestLog.dump();
+            }
+        };
+        try {
+            if (refreshScheduler.schedule(cacheKey, refresh)) {
+                CACHE_STALE_REFRESHES.mark(1);
+            }
+        } catch (RejectedExecutionException e) {
+            CACHE_DROPPED_REFRESHES.mark(1);
+            LOG.debug("Refresh queue full, dropped refresh of stale cache entry");
+        }
+    }
+
+    /**
+     * Parse the json of a cache entry.
+     * <p>
+     * Entries which can keep their parsed json (such as those of a near cache, or those decoded from a binary format)
+     * are only parsed once.
+     *
+     * @param cacheEntry  The cache entry
+     *
+     * @return The parsed json of the entry
+     * @throws IOException if the cached value is not well formed json
+     */
+    protected JsonNode readCachedValue(TupleDataCache.DataEntry<String, Long, String> cacheEntry) throws IOException {
+        if (!(cacheEntry instanceof ParsedDataEntry)) {
+            return mapper.readTree(cacheEntry.getValue());
+        }
+        ParsedDataEntry<?, ?> parsedEntry = (ParsedDataEntry<?, ?>) cacheEntry;
+        Object parsedValue = parsedEntry.getParsedValue();
+        if (parsedValue instanceof JsonNode) {
+            return (JsonNode) parsedValue;
+        }
+        JsonNode json = mapper.readTree(cacheEntry.getValue());
+        parsedEntry.setParsedValue(json);
+        return json;
+    }
+
     /**
      * Construct the cache key.
      * Current implementation includes all the fields of the druidQuery besides the context.
@@ -155,8 +369,63 @@ public class CacheV2RequestHandler extends BaseDataRequestHandler {
      * @throws JsonProcessingException if the druid query cannot be serialized to JSON
      */
     protected String getKey(DruidAggregationQuery<?> druidQuery) throws JsonProcessingException {
-        JsonNode root = mapper.valueToTree(druidQuery);
-        Utils.emitField(root, "context", mapper);
-        return writer.writeValueAsString(root);
+        return keyGenerator.getKey(druidQuery);
+    }
+
+    /**
+     * Build the scheduler refreshing stale entries from the configuration.
+     *
+     * @return the scheduler, or null if stale-while-revalidate is disabled
+     */
+    public static StaleRefreshScheduler buildRefreshScheduler() {
+        if (STALE_REFRESH_THREADS <= 0) {
+            return null;
+        }
+        return new StaleRefreshScheduler(STALE_REFRESH_THREADS, STALE_REFRESH_QUEUE_SIZE, MAX_STALENESS_MILLIS);
+    }
+
+    /**
+     * Last response processor of a background refresh, which only reports when the refresh is over.
+     */
+    private static class RefreshResponseProcessor implements ResponseProcessor {
+        private final Map<String, Object> responseContext;
+        private final Runnable onDone;
+
+        /**
+         * Constructor.
+         *
+         * @param responseContext  The response context of the refresh
+         * @param onDone  Called once the refresh is over
+         */
+        RefreshResponseProcessor(Map<String, Object> responseContext, Runnable onDone) {
+            this.responseContext = responseContext;
+            this.onDone = onDone;
+        }
+
+        @Override
+        public Map<String, Object> getResponseContext() {
+            return responseContext;
+        }
+
+        @Override
+        public FailureCallback getFailureCallback(DruidAggregationQuery<?> druidQuery) {
+            return error -> {
+                LOG.warn("Failed to refresh stale cache entry: ", error);
+                onDone.run();
+            };
+        }
+
+        @Override
+        public HttpErrorCallback getErrorCallback(DruidAggregationQuery<?> druidQuery) {
+            return (statusCode, reasonPhrase, responseBody) -> {
+                LOG.warn("Failed to refresh stale cache entry: {} {}", statusCode, reasonPhrase);
+                onDone.run();
+            };
+        }
+
+        @Override
+        public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, ResponseContext metadata) {
+            onDone.run();
+        }
     }
 }
@@ -0,0 +1,104 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.DruidQueryKeyGenerator;
+import com.yahoo.bard.webservice.web.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.CoalescingResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Request handler which sends only one of identical druid queries in flight at the same time.
+ * <p>
+ * Queries are identified by the same key as the data cache. The first request for a query sends it to the next handler,
+ * and identical requests arriving before its response subscribe to it rather than sending the query again. The response
+ * is then handed to every subscribed request.
+ */
+public class CoalescingRequestHandler extends BaseDataRequestHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingRequestHandler.class);
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+    public static final Meter COALESCING_REQUESTS = REGISTRY.meter("queries.meter.coalesced_queries.total");
+    public static final Meter COALESCED_REQUESTS = REGISTRY.meter("queries.meter.coalesced_queries.coalesced");
+
+    protected final @NotNull DataRequestHandler next;
+    protected final DruidQueryKeyGenerator keyGenerator;
+    protected final ConcurrentMap<String, CoalescingResponseProcessor> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Build a coalescing request handler.
+     *
+     * @param next  The next handler in the chain
+     * @param mapper  The mapper for all JSON processing
+     */
+    public CoalescingRequestHandler(DataRequestHandler next, ObjectMapper mapper) {
+        super(mapper);
+        this.next = next;
+        this.keyGenerator = new DruidQueryKeyGenerator(mapper);
+    }
+
+    @Override
+    public boolean handleRequest(
+            final RequestContext context,
+            final DataApiRequest request,
+            final DruidAggregationQuery<?> druidQuery,
+            final ResponseProcessor response
+    ) {
+        String key;
+        try {
+            key = keyGenerator.getKey(druidQuery);
+        } catch (JsonProcessingException e) {
+            LOG.warn("Query key cannot be built, sending the query without coalescing: ", e);
+            return next.handleRequest(context, request, druidQuery, response);
+        }
+        COALESCING_REQUESTS.mark(1);
+
+        while (true) {
+            CoalescingResponseProcessor coalescingResponse = new CoalescingResponseProcessor(response, key, inFlight);
+            CoalescingResponseProcessor pending = inFlight.putIfAbsent(key, coalescingResponse);
+            if (pending == null) {
+                boolean handled;
+                try {
+                    handled = next.handleRequest(context, request, druidQuery, coalescingResponse);
+                } catch (RuntimeException e) {
+                    coalescingResponse.abandon(e);
+                    throw e;
+                }
+                if (!handled) {
+                    // The query will never be answered, so it mustn't keep the requests waiting on it
+                    coalescingResponse.abandon(new IllegalStateException("Coalesced query was not sent"));
+                }
+                return handled;
+            }
+            if (pending.subscribe(context, request, druidQuery, response)) {
+                COALESCED_REQUESTS.mark(1);
+                return true;
+            }
+            // The pending query completed in the meantime and left the in flight queries, so try again
+        }
+    }
+
+    /**
+     * Get the number of distinct queries currently in flight.
+     *
+     * @return the number of queries in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
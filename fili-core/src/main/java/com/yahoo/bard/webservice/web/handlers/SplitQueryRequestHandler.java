@@ -35,6 +35,8 @@ import javax.ws.rs.core.Response;
  * <p>
  * It creates a common response processor which serves as an accumulator to receive all replies before delegating to the
  * result set processing.
+ * <p>
+ * The split queries are sent through a {@link SplitQueryScheduler}, which bounds how many of them are in flight.
  */
 public class SplitQueryRequestHandler implements DataRequestHandler {
 
@@ -44,14 +46,29 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
     public static final Meter SPLITS = REGISTRY.meter("queries.meter.split_queries.splits");
 
     protected final @NotNull DataRequestHandler next;
+    protected final SplitQueryScheduler scheduler;
+    protected final int priority;
 
     /**
-     * Build a Split Query Request Handler
+     * Build a Split Query Request Handler sending all the split queries at once.
      *
      * @param next  The next handler in the chain
      */
     public SplitQueryRequestHandler(DataRequestHandler next) {
+        this(next, new SplitQueryScheduler(0, 0), SplitQueryScheduler.NON_UI_PRIORITY);
+    }
+
+    /**
+     * Build a Split Query Request Handler sending the split queries through a scheduler.
+     *
+     * @param next  The next handler in the chain
+     * @param scheduler  The scheduler bounding the split queries in flight
+     * @param priority  The priority of the requests of this handler in the scheduler
+     */
+    public SplitQueryRequestHandler(DataRequestHandler next, SplitQueryScheduler scheduler, int priority) {
         this.next = next;
+        this.scheduler = scheduler;
+        this.priority = priority;
     }
 
     @Override
@@ -100,20 +117,28 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
         // Save RequestLog up to here
         final RequestLog logCtx = RequestLog.dump();
 
+        final SplitQueryScheduler.Batch batch = scheduler.newBatch(priority, logCtx);
         final SplitQueryResponseProcessor mergingResponse =
-                new SplitQueryResponseProcessor(response, request, druidQuery, expectedIntervals, logCtx);
+                new SplitQueryResponseProcessor(response, request, druidQuery, expectedIntervals, logCtx, batch);
 
         if (numberOfIntervals > 1) {
             SPLITS.mark(1);
             SPLIT_QUERIES.mark(numberOfIntervals);
         }
 
-        queries.stream().forEach(
-                q -> {
-                    RequestLog.restore(logCtx);
-                    next.handleRequest(context, request, q, mergingResponse);
-                }
+        // Each split query completes its slot in the batch, even if it cannot be sent
+        List<Runnable> splitQueries = new ArrayList<>(numberOfIntervals);
+        queries.stream().forEachOrdered(
+                q -> splitQueries.add(() -> {
+                    try {
+                        next.handleRequest(context, request, q, mergingResponse);
+                    } catch (RuntimeException e) {
+                        LOG.error("Unable to send split query", e);
+                        mergingResponse.getFailureCallback(q).invoke(e);
+                    }
+                })
         );
+        batch.submit(splitQueries);
 
         return true;
     }
@@ -0,0 +1,286 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.logging.RequestLog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler bounding the number of split queries in flight, both for each request and across all requests.
+ * <p>
+ * The split queries of a request are submitted to a batch. Split queries are sent as long as their batch and the
+ * scheduler are below their limits, and the others wait for split queries in flight to complete. Waiting batches of a
+ * higher priority are served first, and batches of the same priority in the order they were submitted.
+ * <p>
+ * Split queries are sent on the thread submitting the batch. Those which completed split queries make room for are sent
+ * by the sender executor rather than on the completing thread, which is usually an IO thread of the http client and
+ * mustn't be held up by the cache reads and handlers of other requests. Split queries which complete while being sent
+ * (such as cache hits) don't send the next ones recursively: the thread already sending split queries picks them up.
+ */
+public class SplitQueryScheduler {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    /**
+     * Maximum number of split queries in flight across all requests. 0 doesn't limit them.
+     */
+    public static final int MAX_IN_FLIGHT = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("query_split_max_in_flight"),
+            0
+    );
+
+    /**
+     * Maximum number of split queries in flight for each request. 0 doesn't limit them.
+     */
+    public static final int MAX_IN_FLIGHT_PER_REQUEST = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("query_split_max_in_flight_per_request"),
+            0
+    );
+
+    /**
+     * Number of threads sending the split queries which completed split queries make room for.
+     */
+    public static final int SENDER_THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("query_split_sender_threads"),
+            4
+    );
+
+    public static final int UI_PRIORITY = 1;
+    public static final int NON_UI_PRIORITY = 0;
+
+    private static final ThreadLocal<Boolean> SENDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final int maxInFlight;
+    private final int maxInFlightPerRequest;
+    private final Executor sender;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Queue<Batch> ready = new PriorityQueue<>(
+            Comparator.comparingInt((Batch batch) -> -batch.priority).thenComparingLong(batch -> batch.sequence)
+    );
+    private int inFlight = 0;
+
+    /**
+     * Constructor, sending the split queries completions make room for on a pool of daemon threads.
+     *
+     * @param maxInFlight  The maximum number of split queries in flight across all requests, 0 for no limit
+     * @param maxInFlightPerRequest  The maximum number of split queries in flight for each request, 0 for no limit
+     */
+    public SplitQueryScheduler(int maxInFlight, int maxInFlightPerRequest) {
+        this(maxInFlight, maxInFlightPerRequest, buildSender(SENDER_THREADS));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlight  The maximum number of split queries in flight across all requests, 0 for no limit
+     * @param maxInFlightPerRequest  The maximum number of split queries in flight for each request, 0 for no limit
+     * @param sender  The executor sending the split queries completions make room for
+     */
+    public SplitQueryScheduler(int maxInFlight, int maxInFlightPerRequest, Executor sender) {
+        this.maxInFlight = maxInFlight;
+        this.maxInFlightPerRequest = maxInFlightPerRequest;
+        this.sender = sender;
+    }
+
+    /**
+     * Start a batch for the split queries of a request.
+     *
+     * @param priority  The priority of the request
+     * @param logCtx  The request log of the request, restored before each split query is sent
+     *
+     * @return the batch, to submit the split queries to and to tell when they complete
+     */
+    public Batch newBatch(int priority, RequestLog logCtx) {
+        return new Batch(priority, sequence.getAndIncrement(), logCtx);
+    }
+
+    /**
+     * Get the number of split queries in flight across all requests.
+     *
+     * @return the number of split queries in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Queue a batch for sending if it has split queries waiting and room for them.
+     *
+     * @param batch  The batch to queue
+     */
+    private void enqueue(Batch batch) {
+        if (!batch.queued && batch.hasRoom()) {
+            batch.queued = true;
+            ready.add(batch);
+        }
+    }
+
+    /**
+     * Take the split queries which can be sent now.
+     *
+     * @return the split queries to send, each under the request log of its request
+     */
+    private synchronized List<Runnable> takeReady() {
+        List<Runnable> taken = new ArrayList<>();
+        while (!ready.isEmpty() && (maxInFlight <= 0 || inFlight < maxInFlight)) {
+            Batch batch = ready.peek();
+            if (batch.hasRoom()) {
+                Runnable splitQuery = batch.waiting.poll();
+                batch.inFlight++;
+                inFlight++;
+                taken.add(() -> {
+                    RequestLog.restore(batch.logCtx);
+                    splitQuery.run();
+                });
+            }
+            if (!batch.hasRoom()) {
+                ready.poll();
+                batch.queued = false;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Send split queries until none can be sent, unless this thread is already sending split queries.
+     */
+    private void sendReady() {
+        if (SENDING.get()) {
+            return;
+        }
+        SENDING.set(true);
+        RequestLog callerLogCtx = RequestLog.dump();
+        try {
+            for (List<Runnable> taken = takeReady(); !taken.isEmpty(); taken = takeReady()) {
+                taken.forEach(Runnable::run);
+            }
+        } finally {
+            RequestLog.restore(callerLogCtx);
+            SENDING.set(false);
+        }
+    }
+
+    /**
+     * The split queries of a request.
+     */
+    public class Batch {
+        private final int priority;
+        private final long sequence;
+        private final RequestLog logCtx;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight = 0;
+        private boolean queued = false;
+
+        /**
+         * Constructor.
+         *
+         * @param priority  The priority of the request
+         * @param sequence  The order in which the batch was submitted
+         * @param logCtx  The request log of the request
+         */
+        private Batch(int priority, long sequence, RequestLog logCtx) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.logCtx = logCtx;
+        }
+
+        /**
+         * Submit split queries, sending as many of them as the limits allow.
+         *
+         * @param splitQueries  Send one split query each
+         */
+        public void submit(List<Runnable> splitQueries) {
+            synchronized (SplitQueryScheduler.this) {
+                waiting.addAll(splitQueries);
+                enqueue(this);
+            }
+            sendReady();
+        }
+
+        /**
+         * Record that a split query of the batch completed, and have the sender send the split queries it makes room
+         * for.
+         */
+        public void complete() {
+            boolean hasReady;
+            synchronized (SplitQueryScheduler.this) {
+                inFlight--;
+                SplitQueryScheduler.this.inFlight--;
+                enqueue(this);
+                hasReady = !ready.isEmpty();
+            }
+            if (hasReady) {
+                sender.execute(SplitQueryScheduler.this::sendReady);
+            }
+        }
+
+        /**
+         * Drop the split queries of the batch which haven't been sent, such as when the request has failed.
+         */
+        public void cancel() {
+            synchronized (SplitQueryScheduler.this) {
+                waiting.clear();
+            }
+        }
+
+        /**
+         * Get the number of split queries of the batch which haven't been sent.
+         *
+         * @return the number of waiting split queries
+         */
+        public int getWaiting() {
+            synchronized (SplitQueryScheduler.this) {
+                return waiting.size();
+            }
+        }
+
+        /**
+         * Check whether the batch has a split query waiting and room to send it.
+         *
+         * @return true if a split query of the batch can be sent
+         */
+        private boolean hasRoom() {
+            return !waiting.isEmpty() && (maxInFlightPerRequest <= 0 || inFlight < maxInFlightPerRequest);
+        }
+    }
+
+    /**
+     * Build the executor sending the split queries completions make room for.
+     *
+     * @param threads  The number of sender threads
+     *
+     * @return the executor
+     */
+    private static Executor buildSender(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "split-query-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
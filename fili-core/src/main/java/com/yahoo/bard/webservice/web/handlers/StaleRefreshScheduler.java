@@ -0,0 +1,151 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers;
+
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler of the background refreshes of stale cache entries, tracking how long each entry has been stale.
+ * <p>
+ * A single scheduler is shared by the cache handlers of a workflow, so that the refresh threads bound the refreshes in
+ * flight across all of them, and an entry found stale by several handlers is only refreshed once at a time.
+ * <p>
+ * Staleness is measured from the first time the entry is found stale, and only starts over once the entry has been
+ * stored again with a current segment set id. An entry which is never stored again, such as one whose refreshes fail
+ * or aren't cacheable, stays a miss once it is too stale. Entries which aren't looked up for {@value #IDLE_FACTOR}
+ * times the maximum staleness are forgotten, as are the least recently looked up ones beyond a bound.
+ */
+public class StaleRefreshScheduler {
+
+    private static final int MAX_STALE_ENTRIES = 10000;
+    private static final long IDLE_FACTOR = 10;
+
+    private final Executor executor;
+    private final long maxStalenessMillis;
+    private final ConcurrentMap<String, Long> staleSince;
+    private final ConcurrentMap<String, Boolean> refreshing = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, refreshing entries on a pool of daemon threads.
+     *
+     * @param threads  The number of refresh threads
+     * @param queueSize  The number of refreshes which may wait for a thread
+     * @param maxStalenessMillis  The time in milliseconds for which an entry known to be stale may still be served
+     */
+    public StaleRefreshScheduler(int threads, int queueSize, long maxStalenessMillis) {
+        this(buildExecutor(threads, queueSize), maxStalenessMillis);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor  The executor refreshing stale entries, which rejects refreshes it can't take
+     * @param maxStalenessMillis  The time in milliseconds for which an entry known to be stale may still be served
+     */
+    public StaleRefreshScheduler(Executor executor, long maxStalenessMillis) {
+        this.executor = executor;
+        this.maxStalenessMillis = maxStalenessMillis;
+        long idleMillis = Math.max(maxStalenessMillis, 1) > Long.MAX_VALUE / IDLE_FACTOR ?
+                Long.MAX_VALUE :
+                Math.max(maxStalenessMillis, 1) * IDLE_FACTOR;
+        this.staleSince = CacheBuilder.newBuilder()
+                .maximumSize(MAX_STALE_ENTRIES)
+                .expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+                .<String, Long>build()
+                .asMap();
+    }
+
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    /**
+     * Check whether a stale cache entry may be served, which is when it hasn't been known to be stale for longer than
+     * the maximum staleness.
+     * <p>
+     * Once an entry is too stale, it isn't servable until it has been {@link #refreshed(String)}.
+     *
+     * @param cacheKey  The key of the stale entry
+     *
+     * @return true if the stale entry may be served
+     */
+    public boolean isServable(String cacheKey) {
+        long now = System.currentTimeMillis();
+        Long since = staleSince.putIfAbsent(cacheKey, now);
+        return since == null || now - since <= maxStalenessMillis;
+    }
+
+    /**
+     * Record that an entry has been stored again with a current segment set id, so it is no longer stale.
+     *
+     * @param cacheKey  The key of the entry
+     */
+    public void refreshed(String cacheKey) {
+        staleSince.remove(cacheKey);
+    }
+
+    /**
+     * Schedule the refresh of a stale entry, unless it is already being refreshed.
+     *
+     * @param cacheKey  The key of the stale entry
+     * @param refresh  The refresh of the entry, which returns once the refresh is over
+     *
+     * @return true if the refresh was scheduled, false if the entry is already being refreshed
+     *
+     * @throws RejectedExecutionException if the refresh can't be queued
+     */
+    public boolean schedule(String cacheKey, Runnable refresh) throws RejectedExecutionException {
+        if (refreshing.putIfAbsent(cacheKey, Boolean.TRUE) != null) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                } finally {
+                    refreshing.remove(cacheKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(cacheKey);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Build the executor refreshing stale entries.
+     *
+     * @param threads  The number of refresh threads
+     * @param queueSize  The number of refreshes which may wait for a thread
+     *
+     * @return the executor
+     */
+    private static Executor buildExecutor(int threads, int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "cache-stale-refresh-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
@@ -11,11 +11,14 @@ import com.yahoo.bard.webservice.table.PhysicalTableDictionary;
 import com.yahoo.bard.webservice.web.handlers.AsyncWebServiceRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.CacheRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.CacheV2RequestHandler;
+import com.yahoo.bard.webservice.web.handlers.CoalescingRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.DataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.DebugRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.PaginationRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.PartialDataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.SplitQueryRequestHandler;
+import com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler;
+import com.yahoo.bard.webservice.web.handlers.StaleRefreshScheduler;
 import com.yahoo.bard.webservice.web.handlers.TopNMapperRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.WebServiceSelectorRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.WeightCheckRequestHandler;
@@ -33,7 +36,9 @@ import javax.validation.constraints.NotNull;
  * <ul>
  *     <li>Partial data filtering is attached to the response. (Feature flagged)
  *     <li>Requests are routed by selecting a druid web service.
+ *     <li>Queries are split by time bucket, with a bounded number of split queries in flight. (Feature flagged)
  *     <li>The cache is checked for responses matching the query. (Feature flagged)
+ *     <li>Identical queries already in flight are waited on rather than sent again. (Feature flagged)
  *     <li>Non UI requests may pass through an asynchronous druid query to test the aggregation cost.
  *     <li>Requests are sent asynchronously to the druid web service
  * </ul>
@@ -80,20 +85,45 @@ public class DruidWorkflow implements RequestWorkflowProvider {
         DataRequestHandler uiHandler = new AsyncWebServiceRequestHandler(uiWebService, mapper);
         DataRequestHandler nonUiHandler = new AsyncWebServiceRequestHandler(nonUiWebService, mapper);
 
+        // If query coalescing is enabled, identical queries in flight at the same time are only sent once
+        if (BardFeatureFlag.DRUID_QUERY_COALESCING.isOn()) {
+            uiHandler = new CoalescingRequestHandler(uiHandler, mapper);
+            nonUiHandler = new CoalescingRequestHandler(nonUiHandler, mapper);
+        }
+
         // If query caching is enabled, the cache is checked before sending the request
         if (BardFeatureFlag.DRUID_CACHE.isOn()) {
             if (BardFeatureFlag.DRUID_CACHE_V2.isOn()) {
-                uiHandler = new CacheV2RequestHandler(uiHandler, dataCache, querySigningService, mapper);
-                nonUiHandler = new CacheV2RequestHandler(nonUiHandler, dataCache, querySigningService, mapper);
+                // Stale entries are refreshed by a scheduler shared by both handlers, bounding refreshes across them
+                StaleRefreshScheduler refreshScheduler = CacheV2RequestHandler.buildRefreshScheduler();
+                uiHandler = new CacheV2RequestHandler(
+                        uiHandler,
+                        dataCache,
+                        querySigningService,
+                        mapper,
+                        refreshScheduler
+                );
+                nonUiHandler = new CacheV2RequestHandler(
+                        nonUiHandler,
+                        dataCache,
+                        querySigningService,
+                        mapper,
+                        refreshScheduler
+                );
             } else {
                 uiHandler = new CacheRequestHandler(uiHandler, dataCache, mapper);
                 nonUiHandler = new CacheRequestHandler(nonUiHandler, dataCache, mapper);
             }
         }
 
+        // If query splitting is enabled, split queries share a bound on those in flight, UI requests first
         if (BardFeatureFlag.QUERY_SPLIT.isOn()) {
-            uiHandler = new SplitQueryRequestHandler(uiHandler);
-            nonUiHandler = new SplitQueryRequestHandler(nonUiHandler);
+            SplitQueryScheduler scheduler = new SplitQueryScheduler(
+                    SplitQueryScheduler.MAX_IN_FLIGHT,
+                    SplitQueryScheduler.MAX_IN_FLIGHT_PER_REQUEST
+            );
+            uiHandler = new SplitQueryRequestHandler(uiHandler, scheduler, SplitQueryScheduler.UI_PRIORITY);
+            nonUiHandler = new SplitQueryRequestHandler(nonUiHandler, scheduler, SplitQueryScheduler.NON_UI_PRIORITY);
         }
 
         // Requests sent to the NonUI we service are checked to see if they are too heavy to process
@@ -20,11 +20,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.Optional;
 
 import javax.validation.constraints.NotNull;
 
 /**
  * A response processor which caches the results if appropriate after completing a query
+ * <p>
+ * Results are cached unless the intervals of the query they answer are partial or volatile. When queries are split,
+ * each split query is cached on its own, so the buckets of a request which are complete and settled are cached even
+ * when other buckets of the request are not.
  */
 public class CacheV2ResponseProcessor implements ResponseProcessor {
 
@@ -37,6 +42,8 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
 
     protected final ObjectWriter writer;
 
+    private volatile boolean cached = false;
+
     public CacheV2ResponseProcessor(
             ResponseProcessor next,
             String cacheKey,
@@ -68,15 +75,12 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
 
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, ResponseContext metadata) {
-        if (isCacheable()) {
+        if (isCacheable(druidQuery)) {
             String valueString = null;
             try {
                 valueString = writer.writeValueAsString(json);
-                dataCache.set(
-                        cacheKey,
-                        querySigningService.getSegmentSetId(druidQuery).orElse(null),
-                        valueString
-                );
+                Optional<Long> segmentSetId = querySigningService.getSegmentSetId(druidQuery);
+                cached = dataCache.set(cacheKey, segmentSetId.orElse(null), valueString) && segmentSetId.isPresent();
             } catch (Exception e) {
                 LOG.warn(
                         "Unable to cache {}value of size: {}",
@@ -90,14 +94,36 @@ public class CacheV2ResponseProcessor implements ResponseProcessor {
     }
 
     /**
-     * A request is cacheable if it does not refer to partial data.
+     * Whether the response was stored in the cache, with the current segment set id of its query.
+     * <p>
+     * A response isn't stored when it can't be cached, when its query has no segment set id, or when the cache doesn't
+     * accept the write. A write accepted by a write behind cache may still be dropped from its queue later.
      *
-     * @return whether request can be cached
+     * @return true if the response was stored in the cache
      */
-    private boolean isCacheable() {
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * A query is cacheable if none of its intervals refer to partial or volatile data.
+     * <p>
+     * The missing and volatile intervals of the response context cover the whole request, so only the part of them
+     * overlapping the intervals of this query matters.
+     *
+     * @param druidQuery  The query whose results are being cached
+     *
+     * @return whether the results of the query can be cached
+     */
+    private boolean isCacheable(DruidAggregationQuery<?> druidQuery) {
         SimplifiedIntervalList missingIntervals = getPartialIntervalsWithDefault(getResponseContext());
         SimplifiedIntervalList volatileIntervals = getVolatileIntervalsWithDefault(getResponseContext());
+        if (missingIntervals.isEmpty() && volatileIntervals.isEmpty()) {
+            return true;
+        }
 
-        return missingIntervals.isEmpty() && volatileIntervals.isEmpty();
+        SimplifiedIntervalList queryIntervals = new SimplifiedIntervalList(druidQuery.getIntervals());
+        return missingIntervals.intersect(queryIntervals).isEmpty() &&
+                volatileIntervals.intersect(queryIntervals).isEmpty();
     }
 }
@@ -0,0 +1,240 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.responseprocessors;
+
+import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
+import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
+
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.web.DataApiRequest;
+import com.yahoo.bard.webservice.web.handlers.RequestContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Response processor of a druid query which is in flight, which fans the response out to the requests subscribed to
+ * the same query while it was in flight, before passing it on to its own next processor.
+ * <p>
+ * The processor is registered under the key of its query while the query is in flight, and removes itself once the
+ * query completes, after which no more requests can subscribe to it. Each subscriber gets the response (or the error)
+ * with its own query and its own request log restored. The json of the response is shared by every subscriber, so it
+ * must be treated as read only.
+ */
+public class CoalescingResponseProcessor implements ResponseProcessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingResponseProcessor.class);
+
+    public static final String COALESCED_QUERY_TIMER = "CoalescedDruidQuery_Q_";
+
+    private final ResponseProcessor next;
+    private final String key;
+    private final ConcurrentMap<String, CoalescingResponseProcessor> inFlight;
+
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private boolean completed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param next  The next response processor of the request sending the query
+     * @param key  The key of the query
+     * @param inFlight  The in flight queries, which this processor leaves once its query completes
+     */
+    public CoalescingResponseProcessor(
+            ResponseProcessor next,
+            String key,
+            ConcurrentMap<String, CoalescingResponseProcessor> inFlight
+    ) {
+        this.next = next;
+        this.key = key;
+        this.inFlight = inFlight;
+    }
+
+    @Override
+    public Map<String, Object> getResponseContext() {
+        return next.getResponseContext();
+    }
+
+    @Override
+    public FailureCallback getFailureCallback(final DruidAggregationQuery<?> druidQuery) {
+        return new FailureCallback() {
+            final FailureCallback nextFail = next.getFailureCallback(druidQuery);
+
+            @Override
+            public void invoke(Throwable error) {
+                fanOut(subscriber -> subscriber.failure.invoke(error));
+                nextFail.invoke(error);
+            }
+        };
+    }
+
+    @Override
+    public HttpErrorCallback getErrorCallback(final DruidAggregationQuery<?> druidQuery) {
+        return new HttpErrorCallback() {
+            final HttpErrorCallback nextError = next.getErrorCallback(druidQuery);
+
+            @Override
+            public void invoke(int statusCode, String reasonPhrase, String responseBody) {
+                fanOut(subscriber -> subscriber.error.invoke(statusCode, reasonPhrase, responseBody));
+                nextError.invoke(statusCode, reasonPhrase, responseBody);
+            }
+        };
+    }
+
+    @Override
+    public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, ResponseContext metadata) {
+        fanOut(subscriber -> subscriber.response.processResponse(
+                json,
+                subscriber.druidQuery,
+                new ResponseContext(RequestLog.copy(), subscriber.request)
+        ));
+        next.processResponse(json, druidQuery, metadata);
+    }
+
+    /**
+     * Subscribe a request to the response of the query in flight.
+     * <p>
+     * If the subscription succeeds, the request is accounted for as if its query was sent, and the request log of the
+     * calling thread is handed over to the subscription.
+     *
+     * @param context  The context of the subscribing request
+     * @param request  The subscribing request
+     * @param druidQuery  The query of the subscribing request, identical to the query in flight
+     * @param response  The response processor of the subscribing request
+     *
+     * @return true if the request is subscribed, false if the query has already completed
+     */
+    public synchronized boolean subscribe(
+            RequestContext context,
+            DataApiRequest request,
+            DruidAggregationQuery<?> druidQuery,
+            ResponseProcessor response
+    ) {
+        if (completed) {
+            return false;
+        }
+        if (context.getNumberOfOutgoing().decrementAndGet() == 0) {
+            RequestLog.stopTiming(REQUEST_WORKFLOW_TIMER);
+        }
+        String timerName = COALESCED_QUERY_TIMER + druidQuery.getContext().getSequenceNumber();
+        RequestLog.startTiming(timerName);
+        subscribers.add(new Subscriber(context, request, druidQuery, response, timerName, RequestLog.dump()));
+        return true;
+    }
+
+    /**
+     * Abandon the query, failing the subscribed requests, when it could not be sent.
+     *
+     * @param error  The reason the query could not be sent
+     */
+    public void abandon(Throwable error) {
+        fanOut(subscriber -> subscriber.failure.invoke(error));
+    }
+
+    /**
+     * Get the number of requests subscribed to the query.
+     *
+     * @return the number of subscribers
+     */
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Mark the query as completed, leave the in flight queries and take the subscribers.
+     *
+     * @return the requests subscribed to the query
+     */
+    private synchronized List<Subscriber> complete() {
+        if (completed) {
+            return Collections.emptyList();
+        }
+        completed = true;
+        inFlight.remove(key, this);
+        return subscribers;
+    }
+
+    /**
+     * Complete the query and hand its outcome to each subscriber, under the subscriber's own request log.
+     *
+     * @param outcome  Hands the outcome of the query to a subscriber
+     */
+    private void fanOut(Consumer<Subscriber> outcome) {
+        List<Subscriber> completedSubscribers = complete();
+        if (completedSubscribers.isEmpty()) {
+            return;
+        }
+
+        RequestLog ownLogCtx = RequestLog.dump();
+        for (Subscriber subscriber : completedSubscribers) {
+            RequestLog.restore(subscriber.logCtx);
+            RequestLog.stopTiming(subscriber.timerName);
+            if (subscriber.context.getNumberOfIncoming().decrementAndGet() == 0) {
+                RequestLog.startTiming(RESPONSE_WORKFLOW_TIMER);
+            }
+            try {
+                outcome.accept(subscriber);
+            } catch (RuntimeException e) {
+                LOG.error("Unable to process the response of a coalesced query", e);
+            } finally {
+                RequestLog.dump();
+            }
+        }
+        RequestLog.restore(ownLogCtx);
+    }
+
+    /**
+     * A request waiting on the response of the query in flight.
+     */
+    private static class Subscriber {
+        private final RequestContext context;
+        private final DataApiRequest request;
+        private final DruidAggregationQuery<?> druidQuery;
+        private final ResponseProcessor response;
+        private final HttpErrorCallback error;
+        private final FailureCallback failure;
+        private final String timerName;
+        private final RequestLog logCtx;
+
+        /**
+         * Constructor.
+         *
+         * @param context  The context of the request
+         * @param request  The request
+         * @param druidQuery  The query of the request
+         * @param response  The response processor of the request
+         * @param timerName  The name of the timer of the wait for the response
+         * @param logCtx  The request log of the request
+         */
+        Subscriber(
+                RequestContext context,
+                DataApiRequest request,
+                DruidAggregationQuery<?> druidQuery,
+                ResponseProcessor response,
+                String timerName,
+                RequestLog logCtx
+        ) {
+            this.context = context;
+            this.request = request;
+            this.druidQuery = druidQuery;
+            this.response = response;
+            this.error = response.getErrorCallback(druidQuery);
+            this.failure = response.getFailureCallback(druidQuery);
+            this.timerName = timerName;
+            this.logCtx = logCtx;
+        }
+    }
+}
@@ -2,6 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.responseprocessors;
 
+import static com.yahoo.bard.webservice.web.handlers.CacheV2RequestHandler.STALE_DATA_HEADER;
 import static com.yahoo.bard.webservice.web.handlers.PartialDataRequestHandler.getPartialIntervalsWithDefault;
 import static com.yahoo.bard.webservice.web.handlers.VolatileDataRequestHandler.getVolatileIntervalsWithDefault;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
@@ -30,15 +31,18 @@ import com.yahoo.bard.webservice.web.ResponseFormatType;
 import com.yahoo.bard.webservice.web.handlers.RequestHandlerUtils;
 import com.yahoo.bard.webservice.web.util.ResponseFormat;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.core.HttpHeaders;
@@ -48,7 +52,7 @@ import javax.ws.rs.core.Response.Status;
 /**
  * Callback handler for JSON to be processed into result sets
  */
-public class ResultSetResponseProcessor extends MappingResponseProcessor implements ResponseProcessor {
+public class ResultSetResponseProcessor extends MappingResponseProcessor implements StreamingResponseProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(ResultSetResponseProcessor.class);
 
@@ -80,9 +84,37 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
 
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, ResponseContext metadata) {
+        processResultSet(
+                () -> buildResultSet(json, druidQuery, metadata.getDateTimeZone()),
+                druidQuery,
+                metadata
+        );
+    }
+
+    @Override
+    public void processResponse(JsonParser jsonParser, DruidAggregationQuery<?> druidQuery, ResponseContext metadata) {
+        processResultSet(
+                () -> buildResultSet(jsonParser, druidQuery, metadata.getDateTimeZone()),
+                druidQuery,
+                metadata
+        );
+    }
+
+    /**
+     * Build, map and respond with the result set of a druid response, responding with an error if any step fails.
+     *
+     * @param resultSetBuilder  Builds the initial result set from the druid response
+     * @param druidQuery  The druid query being processed
+     * @param metadata  The ResponseContext to use
+     */
+    protected void processResultSet(
+            Callable<ResultSet> resultSetBuilder,
+            DruidAggregationQuery<?> druidQuery,
+            ResponseContext metadata
+    ) {
         try {
             RequestLog.restore(metadata.getRequestLog());
-            ResultSet resultSet = buildResultSet(json, druidQuery, metadata.getDateTimeZone());
+            ResultSet resultSet = resultSetBuilder.call();
             resultSet = mapResultSet(resultSet);
             javax.ws.rs.core.Response rsp = buildResponse(resultSet);
             if (RequestLog.isStarted(RESPONSE_WORKFLOW_TIMER)) {
@@ -112,6 +144,10 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
 
     protected javax.ws.rs.core.Response buildResponse(ResultSet resultSet) {
         javax.ws.rs.core.Response.ResponseBuilder rspBuilder = createResponseBuilder(resultSet);
+        // Flag responses answered, at least in part, from stale cache entries
+        if (Boolean.TRUE.equals(responseContext.get(STALE_DATA_HEADER))) {
+            getHeaders().putSingle(STALE_DATA_HEADER, true);
+        }
         //Headers are a multivalued map, and we want to add each element of each value to the builder.
         getHeaders().entrySet().stream().flatMap(entry -> entry.getValue().stream()
                 .peek(value -> rspBuilder.header(entry.getKey(), value))).forEach(ignored -> { });
@@ -182,6 +218,45 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
      * @return The initial result set from the json node.
      */
     public ResultSet buildResultSet(JsonNode json, DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone) {
+        return druidResponseParser.parse(
+                json,
+                buildResultSetSchema(druidQuery, dateTimeZone),
+                druidQuery.getQueryType()
+        );
+    }
+
+    /**
+     * Build a result set using the api request time grain, reading the druid response as a stream of json tokens.
+     *
+     * @param jsonParser  Parser over the json representing the druid response.
+     * @param druidQuery  The druid query being processed
+     * @param dateTimeZone  The date time zone for parsing result rows
+     *
+     * @return The initial result set from the json tokens.
+     *
+     * @throws IOException if the druid response cannot be read
+     */
+    public ResultSet buildResultSet(
+            JsonParser jsonParser,
+            DruidAggregationQuery<?> druidQuery,
+            DateTimeZone dateTimeZone
+    ) throws IOException {
+        return druidResponseParser.parse(
+                jsonParser,
+                buildResultSetSchema(druidQuery, dateTimeZone),
+                druidQuery.getQueryType()
+        );
+    }
+
+    /**
+     * Build the schema of the result set for a druid query using the api request time grain.
+     *
+     * @param druidQuery  The druid query being processed
+     * @param dateTimeZone  The date time zone for parsing result rows
+     *
+     * @return The schema of the result set
+     */
+    protected ZonedSchema buildResultSetSchema(DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone) {
         ZonedSchema resultSetSchema = new ZonedSchema(granularity, dateTimeZone);
 
         for (Aggregation aggregation : druidQuery.getAggregations()) {
@@ -196,6 +271,6 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
             DimensionColumn.addNewDimensionColumn(resultSetSchema, dimension);
         }
 
-        return druidResponseParser.parse(json, resultSetSchema, druidQuery.getQueryType());
+        return resultSetSchema;
     }
 }
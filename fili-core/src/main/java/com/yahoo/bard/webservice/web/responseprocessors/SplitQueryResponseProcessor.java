@@ -8,6 +8,7 @@ import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.web.DataApiRequest;
+import com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -27,6 +28,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This response processor receives a list of expected intervals.  As responses arrives, it stores the responses until
  * all expected intervals have arrived, at which point it passes the concatenated Json content from each of the calls
  * to its next processor.
+ * <p>
+ * Responses are merged as soon as all the responses before them have arrived, so only the responses arriving ahead of
+ * an earlier one are held on their own. If the split queries are sent by a {@link SplitQueryScheduler}, their batch is
+ * told as each of them completes, and the split queries not sent yet are dropped once the request fails.
  */
 public class SplitQueryResponseProcessor implements ResponseProcessor {
 
@@ -34,6 +39,11 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     public static final String EXTRA_RETURN_FORMAT = "Split query received the same interval more than once: %s";
     public static final String UNEXPECTED_INTERVAL_FORMAT = "Split query received an interval it wasn't expecting: %s";
 
+    /**
+     * Marks a response which has been merged.
+     */
+    private static final Pair<JsonNode, ResponseContext> MERGED = new Pair<>(null, null);
+
     private final ResponseProcessor next;
 
     private final DruidAggregationQuery<?> queryBeforeSplit;
@@ -41,8 +51,12 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     private final List<Pair<JsonNode, ResponseContext>> completedIntervals;
     private final AtomicInteger completed;
     private final AtomicBoolean failed = new AtomicBoolean(false);
-    private final RequestLog logCtx;
     private final DataApiRequest request;
+    private final SplitQueryScheduler.Batch batch;
+
+    private final ArrayNode mergedJson = new JsonNodeFactory(true).arrayNode();
+    private RequestLog mergedLogCtx;
+    private int merged = 0;
 
     /**
      * @param next  The next delegate response processor
@@ -57,6 +71,25 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
             DruidAggregationQuery<?> druidQuery,
             Map<Interval, AtomicInteger> expectedIntervals,
             final RequestLog logCtx
+    ) {
+        this(next, request, druidQuery, expectedIntervals, logCtx, null);
+    }
+
+    /**
+     * @param next  The next delegate response processor
+     * @param request  The request for this response
+     * @param druidQuery  The unmodified druid query for this response
+     * @param expectedIntervals A map of expected interval status flags
+     * @param logCtx  The request log logging context
+     * @param batch  The scheduler batch sending the split queries, or null if they are all sent at once
+     */
+    public SplitQueryResponseProcessor(
+            ResponseProcessor next,
+            DataApiRequest request,
+            DruidAggregationQuery<?> druidQuery,
+            Map<Interval, AtomicInteger> expectedIntervals,
+            final RequestLog logCtx,
+            SplitQueryScheduler.Batch batch
     ) {
         this.next = next;
         this.request = request;
@@ -64,7 +97,8 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         this.expectedIntervals = expectedIntervals;
         this.completedIntervals = Arrays.asList(new Pair[expectedIntervals.size()]);
         this.completed = new AtomicInteger(expectedIntervals.size());
-        this.logCtx = logCtx;
+        this.mergedLogCtx = logCtx;
+        this.batch = batch;
     }
 
     @Override
@@ -80,8 +114,10 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
             @Override
             public void invoke(Throwable error) {
                 if (failed.compareAndSet(false, true)) {
+                    cancelSplitQueries();
                     nextFail.invoke(error);
                 }
+                completeSplitQuery();
             }
         };
     }
@@ -94,8 +130,10 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
             @Override
             public void invoke(int statusCode, String reasonPhrase, String responseBody) {
                 if (failed.compareAndSet(false, true)) {
+                    cancelSplitQueries();
                     nextError.invoke(statusCode, reasonPhrase, responseBody);
                 }
+                completeSplitQuery();
             }
         };
     }
@@ -103,6 +141,7 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, ResponseContext metadata) {
         if (failed.get()) {
+            completeSplitQuery();
             return;
         }
 
@@ -120,14 +159,22 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         }
 
         completedIntervals.set(index, new Pair<>(json, metadata));
+        mergeContiguousResponses();
 
         if (completed.decrementAndGet() == 0) {
-            Pair<JsonNode, ResponseContext> mergedResponse = mergeResponses(completedIntervals);
-            RequestLog.restore(mergedResponse.getValue().getRequestLog());
-            next.processResponse(mergedResponse.getKey(), queryBeforeSplit, mergedResponse.getValue());
+            RequestLog.restore(mergedLogCtx);
+            next.processResponse(mergedJson, queryBeforeSplit, new ResponseContext(mergedLogCtx, request));
         }
+        completeSplitQuery();
     }
 
+    /**
+     * Fail the request because of an unexpected split query response.
+     *
+     * @param format  The format of the error message
+     * @param druidQuery  The split query
+     * @param interval  The interval of the split query
+     */
     private void fail(String format, DruidAggregationQuery<?> druidQuery, Interval interval) {
         String message = String.format(format, interval);
         Exception e = new IllegalStateException(message);
@@ -136,22 +183,45 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     }
 
     /**
-     * Take a list of Jackson ArrayNodes and merge their contents, preserving order
-     *
-     * @param responses  A list of pairs that encompass JSON nodes and response metadata
-     * @return A new pair holding the merged json and the aggregate request log context
+     * Merge the responses which have arrived after all the responses before them, preserving order, and let go of
+     * them.
+     * <p>
+     * The request log of each merged response is accumulated into the merged request log.
      */
-    private Pair<JsonNode, ResponseContext> mergeResponses(List<Pair<JsonNode, ResponseContext>> responses) {
-        JsonNodeFactory factory = new JsonNodeFactory(true);
-        ArrayNode result = factory.arrayNode();
-        RequestLog.restore(logCtx);
-        for (Pair<JsonNode, ResponseContext> entry : responses) {
+    private synchronized void mergeContiguousResponses() {
+        if (merged == completedIntervals.size() || completedIntervals.get(merged) == null) {
+            return;
+        }
+        RequestLog callerLogCtx = RequestLog.dump();
+        RequestLog.restore(mergedLogCtx);
+        while (merged < completedIntervals.size() && completedIntervals.get(merged) != null) {
+            Pair<JsonNode, ResponseContext> entry = completedIntervals.set(merged++, MERGED);
             for (JsonNode jsonNode : entry.getKey()) {
-                result.add(jsonNode);
+                mergedJson.add(jsonNode);
             }
-            RequestLog.accumulate(entry.getValue().getRequestLog());
+            if (entry.getValue() != null) {
+                RequestLog.accumulate(entry.getValue().getRequestLog());
+            }
+        }
+        mergedLogCtx = RequestLog.dump();
+        RequestLog.restore(callerLogCtx);
+    }
+
+    /**
+     * Tell the scheduler batch, if any, that a split query has completed.
+     */
+    private void completeSplitQuery() {
+        if (batch != null) {
+            batch.complete();
+        }
+    }
+
+    /**
+     * Drop the split queries which haven't been sent yet, if any.
+     */
+    private void cancelSplitQueries() {
+        if (batch != null) {
+            batch.cancel();
         }
-        RequestLog updatedCtx = RequestLog.dump();
-        return new Pair<>(result, new ResponseContext(updatedCtx, request));
     }
 }
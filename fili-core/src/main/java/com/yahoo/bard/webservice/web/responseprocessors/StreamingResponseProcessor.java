@@ -0,0 +1,23 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.responseprocessors;
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * A response processor which can consume a druid response as a stream of json tokens, without the response being
+ * materialized as a json tree first.
+ */
+public interface StreamingResponseProcessor extends ResponseProcessor {
+
+    /**
+     * Process the response json tokens and respond to the original web request.
+     *
+     * @param jsonParser  Parser over the json representing a druid data response, positioned before the first token
+     * @param query  The query with the schema for processing this response
+     * @param metadata  The ResponseContext to use
+     */
+    void processResponse(JsonParser jsonParser, DruidAggregationQuery<?> query, ResponseContext metadata);
+}
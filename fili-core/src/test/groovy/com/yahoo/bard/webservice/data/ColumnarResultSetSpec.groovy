@@ -0,0 +1,160 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.table.ZonedSchema
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ColumnarResultSetSpec extends Specification {
+
+    ZonedSchema schema
+    DimensionColumn genderColumn
+    MetricColumn metricColumn
+    MetricColumn otherMetricColumn
+    KeyValueStoreDimension gender
+
+    def setup() {
+        LinkedHashSet<DimensionField> dimensionFields = [BardDimensionField.ID, BardDimensionField.DESC]
+        gender = new KeyValueStoreDimension(
+                "gender",
+                "gender",
+                "gender",
+                dimensionFields,
+                MapStoreManager.getInstance("gender"),
+                ScanSearchProviderManager.getInstance("gender")
+        )
+
+        schema = new ZonedSchema(DAY, DateTimeZone.forID("America/Chicago"))
+        genderColumn = DimensionColumn.addNewDimensionColumn(schema, gender)
+        metricColumn = MetricColumn.addNewMetricColumn(schema, "metric")
+        otherMetricColumn = MetricColumn.addNewMetricColumn(schema, "otherMetric")
+    }
+
+    Result makeResult(String genderValue, Object metricValue, long millis = 0) {
+        Map<DimensionColumn, DimensionRow> dimensionRows = genderValue == null ?
+                [:] :
+                [(genderColumn): BardDimensionField.makeDimensionRow(gender, genderValue, genderValue + "Desc")]
+        Map<MetricColumn, Object> metricValues = new LinkedHashMap<>()
+        metricValues.put(metricColumn, metricValue)
+        metricValues.put(otherMetricColumn, 1 as BigDecimal)
+        return new Result(dimensionRows, metricValues, new DateTime(millis, schema.getDateTimeZone()))
+    }
+
+    @Unroll
+    def "A column of #description values is presented as the results it was built from"() {
+        given:
+        List<Result> results = values.withIndex().collect { value, i -> makeResult(i % 2 ? "f" : "m", value, i) }
+
+        when:
+        ColumnarResultSet resultSet = new ColumnarResultSet(results, schema)
+
+        then:
+        resultSet == results
+        resultSet.collect { it.getMetricValue(metricColumn) } == values
+        resultSet.getSchema() == schema
+        resultSet[1].getTimeStamp() == new DateTime(1, schema.getDateTimeZone())
+
+        where:
+        description     | values
+        "integral"      | [1 as BigDecimal, BigDecimal.valueOf(-5L), null, BigDecimal.valueOf(Long.MAX_VALUE)]
+        "floating"      | [BigDecimal.valueOf(1.1d), BigDecimal.valueOf(1.0e20d), null, BigDecimal.valueOf(5.0d)]
+        "mixed numeric" | [1 as BigDecimal, BigDecimal.valueOf(2.5d), new BigDecimal("1.10"), null]
+        "huge numeric"  | [new BigDecimal("123456789012345678901234567890"), 1 as BigDecimal, null, null]
+        "string"        | ["a", null, "b", "c"]
+        "mixed"         | [1 as BigDecimal, "a", true, new ObjectMapper().readTree('{"a": 1}')]
+        "null"          | [null, null, null, null]
+    }
+
+    def "Missing dimensions and metrics stay missing"() {
+        given:
+        Result result = new Result([:], [(otherMetricColumn): 2 as BigDecimal], new DateTime(0, DateTimeZone.UTC))
+
+        when:
+        ColumnarResultSet resultSet = new ColumnarResultSet([result, makeResult("m", null)], schema)
+
+        then:
+        resultSet[0] == result
+        !resultSet[0].getMetricValues().containsKey(metricColumn)
+        resultSet[1].getMetricValues().containsKey(metricColumn)
+        resultSet[0].getDimensionRows().isEmpty()
+    }
+
+    def "Results can be appended but not replaced or removed"() {
+        given:
+        ColumnarResultSet resultSet = new ColumnarResultSet(schema, 1)
+
+        when:
+        (0..<100).each { resultSet.add(makeResult("m", it as BigDecimal, it)) }
+
+        then:
+        resultSet.size() == 100
+        resultSet[99].getMetricValue(metricColumn) == 99 as BigDecimal
+
+        when:
+        resultSet.set(0, makeResult("f", null))
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        resultSet.remove(0)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        resultSet.add(0, makeResult("f", null))
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "A columnar result set is serialized as a result set of its rows"() {
+        given:
+        List<Result> results = [makeResult("m", 1 as BigDecimal), makeResult("f", "a", 1)]
+        ColumnarResultSet resultSet = new ColumnarResultSet(results, schema)
+
+        when:
+        Object replacement = resultSet.writeReplace()
+
+        then:
+        resultSet instanceof Serializable
+        replacement.getClass() == ResultSet
+        replacement == results
+        replacement.getSchema() == schema
+    }
+
+    def "A result with a column outside the schema is rejected"() {
+        given:
+        ColumnarResultSet resultSet = new ColumnarResultSet(schema)
+        Result result = new Result(
+                [:],
+                [(new MetricColumn("unknown")): 1 as BigDecimal],
+                new DateTime(0, DateTimeZone.UTC)
+        )
+
+        when:
+        resultSet.add(result)
+
+        then:
+        thrown(IllegalArgumentException)
+        resultSet.isEmpty()
+    }
+}
@@ -3,11 +3,15 @@
 package com.yahoo.bard.webservice.data
 
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+import static com.yahoo.bard.webservice.druid.model.QueryType.GROUP_BY
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionColumn
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
 import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
 import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
@@ -383,6 +387,116 @@ class DruidResponseParserSpec extends Specification {
         queryType << [QueryType.GROUP_BY, QueryType.TOP_N, QueryType.TIMESERIES]
     }
 
+    @Unroll
+    def "Streaming a Druid #queryType result builds the same ResultSet as parsing its json tree"() {
+        given: "A response from Druid containing metrics of every kind of json value"
+        String druidResponse = buildResponse(
+                queryType,
+                [
+                        '"pageViews"': 101,
+                        '"time_spent"': 1.10,
+                        '"bigNumber"': 123456789012345678901234567890,
+                        '"luckyNumbers"': '"1, 3, 7"',
+                        '"true"': true,
+                        '"null"': null,
+                        '"sketch"': '{"values": [1, 2.5], "length": 2}'
+                ]
+        )
+        ZonedSchema schema = buildSchema(["pageViews", "time_spent", "bigNumber", "luckyNumbers", "true", "null",
+                                          "sketch", "missing"])
+
+        when: "We build a result set by streaming the response tokens"
+        ResultSet streamedResultSet = new DruidResponseParser().parse(
+                new JsonFactory().createParser(druidResponse),
+                schema,
+                queryType
+        )
+
+        then: "It has the same rows as the result set built from the json tree"
+        streamedResultSet == buildResultSet(druidResponse, schema, queryType)
+        streamedResultSet.getSchema() == schema
+
+        where:
+        queryType << [QueryType.GROUP_BY, QueryType.TOP_N, QueryType.TIMESERIES, QueryType.LOOKBACK]
+    }
+
+    @Unroll
+    def "With columnar result sets enabled a Druid #queryType result parses to the same results"() {
+        given: "A response from Druid containing metrics of every kind of json value"
+        boolean columnarStatus = BardFeatureFlag.COLUMNAR_RESULT_SET.isOn()
+        String druidResponse = buildResponse(
+                queryType,
+                ['"pageViews"': 101, '"time_spent"': 1.10, '"luckyNumbers"': '"1, 3, 7"', '"null"': null]
+        )
+        ZonedSchema schema = buildSchema(["pageViews", "time_spent", "luckyNumbers", "null", "missing"])
+        ResultSet expected = buildResultSet(druidResponse, schema, queryType)
+
+        when: "We parse the response into a columnar result set"
+        BardFeatureFlag.COLUMNAR_RESULT_SET.setOn(true)
+        ResultSet resultSet = buildResultSet(druidResponse, schema, queryType)
+        ResultSet streamedResultSet = new DruidResponseParser().parse(
+                new JsonFactory().createParser(druidResponse),
+                schema,
+                queryType
+        )
+
+        then: "The rows are the same as those of a list backed result set"
+        resultSet instanceof ColumnarResultSet
+        streamedResultSet instanceof ColumnarResultSet
+        resultSet == expected
+        streamedResultSet == expected
+
+        cleanup:
+        BardFeatureFlag.COLUMNAR_RESULT_SET.setOn(columnarStatus)
+
+        where:
+        queryType << [QueryType.GROUP_BY, QueryType.TOP_N, QueryType.TIMESERIES, QueryType.LOOKBACK]
+    }
+
+    @Unroll
+    def "The distinct values of a dimension are looked up in one batch when #description"() {
+        given: "A response repeating the values of a dimension"
+        Dimension dimension = Mock(Dimension)
+        dimension.getDruidName() >> "platform"
+        DimensionRow rowA = BardDimensionField.makeDimensionRow(dimensionDictionary.findByApiName("gender"), "a", "A")
+        DimensionRow rowB = BardDimensionField.makeDimensionRow(dimensionDictionary.findByApiName("gender"), "b", "")
+        ZonedSchema schema = new ZonedSchema(DAY, DateTimeZone.UTC)
+        DimensionColumn.addNewDimensionColumn(schema, dimension)
+        MetricColumn.addNewMetricColumn(schema, "pageViews")
+        String druidResponse = """[
+            {"timestamp": "2012-01-01T00:00:00.000Z", "event": {"platform": "a", "pageViews": 1}},
+            {"timestamp": "2012-01-01T00:00:00.000Z", "event": {"platform": "b", "pageViews": 2}},
+            {"timestamp": "2012-01-01T00:00:00.000Z", "event": {"platform": "a", "pageViews": 3}}
+        ]"""
+
+        when:
+        ResultSet resultSet = streaming ?
+                new DruidResponseParser().parse(new JsonFactory().createParser(druidResponse), schema, GROUP_BY) :
+                buildResultSet(druidResponse, schema, GROUP_BY)
+
+        then: "Unknown values get an empty row"
+        1 * dimension.findDimensionRowsByKeyValues({ it as List == ["a", "b"] }) >> ["a": rowA]
+        1 * dimension.createEmptyDimensionRow("b") >> rowB
+        0 * dimension.findDimensionRowByKeyValue(_)
+        resultSet*.getDimensionRow(schema.getColumn("platform")) == [rowA, rowB, rowA]
+
+        where:
+        streaming | description
+        false     | "parsing the json tree"
+        true      | "streaming the response"
+    }
+
+    def "Streaming a Druid response which is not an array of records fails"() {
+        when:
+        new DruidResponseParser().parse(
+                new JsonFactory().createParser('{"error": "not a result"}'),
+                buildSchema(["pageViews"]),
+                QueryType.GROUP_BY
+        )
+
+        then:
+        thrown(IOException)
+    }
 
     String buildResponse(QueryType queryType, Map complexMetrics) {
         //Strip off the brackets from the String representation of the Map.
@@ -0,0 +1,118 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import net.spy.memcached.CachedData
+import net.spy.memcached.transcoders.SerializingTranscoder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DataEntryTranscoderSpec extends Specification {
+
+    ObjectMapper mapper = new ObjectMapper()
+
+    /**
+     * A grouped druid response, with the repetition typical of one.
+     */
+    String response = mapper.writeValueAsString(
+            (0..<200).collect {
+                [
+                        version: "v1",
+                        timestamp: "2014-09-01T00:00:00.000Z",
+                        event: [gender: it % 2 ? "f" : "m", country: "US", pageViews: it * 1000, ratio: it / 7.0d]
+                ]
+            }
+    )
+
+    @Unroll
+    def "An entry with #meta metadata round trips #description"() {
+        given:
+        DataEntryTranscoder transcoder = new DataEntryTranscoder(new SmileCacheValueCodec(), compress)
+        ParsedDataEntry<Serializable, String> entry = new ParsedDataEntry<Serializable, String>("key", meta, response)
+
+        when:
+        CachedData data = transcoder.encode(entry)
+        TupleDataCache.DataEntry<String, ?, String> decoded = transcoder.decode(data)
+
+        then:
+        data.getFlags() & DataEntryTranscoder.FLAG
+        decoded.getKey() == "key"
+        decoded.getMeta() == meta
+        ((ParsedDataEntry) decoded).getParsedValue() == mapper.readTree(response)
+        ((ParsedDataEntry) decoded).getStoredSize() == data.getData().length
+        mapper.readTree(decoded.getValue()) == mapper.readTree(response)
+
+        where:
+        meta                 | compress
+        1234                 | false
+        null                 | false
+        Long.MAX_VALUE       | false
+        -1234                | true
+        description = compress ? "deflated" : "uncompressed"
+    }
+
+    @Unroll
+    def "Encoded entries are smaller than serialized ones when both are #description"() {
+        given:
+        DataEntryTranscoder transcoder = new DataEntryTranscoder(new SmileCacheValueCodec(), compress)
+        SerializingTranscoder serializingTranscoder = new SerializingTranscoder()
+        if (!compress) {
+            serializingTranscoder.setCompressionThreshold(Integer.MAX_VALUE)
+        }
+        MemTupleDataCache.DataEntry<String> entry = new MemTupleDataCache.DataEntry<String>("key", 1234, response)
+
+        expect:
+        transcoder.encode(entry).getData().length < serializingTranscoder.encode(entry).getData().length
+
+        where:
+        compress << [false, true]
+        description = compress ? "compressed" : "uncompressed"
+    }
+
+    def "Other objects, and items written by the serializing transcoder, are serialized"() {
+        given:
+        DataEntryTranscoder transcoder = new DataEntryTranscoder(new SmileCacheValueCodec(), false)
+        HashDataCache.Pair<String, String> pair = new HashDataCache.Pair<String, String>("key", "value")
+        MemTupleDataCache.DataEntry<String> entry = new MemTupleDataCache.DataEntry<String>("key", 1, "[]")
+
+        when:
+        CachedData data = transcoder.encode(pair)
+
+        then:
+        !(data.getFlags() & DataEntryTranscoder.FLAG)
+        transcoder.decode(data) == pair
+
+        and:
+        transcoder.decode(new SerializingTranscoder().encode(entry)).getValue() == "[]"
+    }
+
+    def "Items written in a different format are misses"() {
+        given:
+        CacheValueCodec otherCodec = Stub(CacheValueCodec) {
+            getFormatId() >> (byte) 99
+            encode(_) >> new byte[0]
+        }
+        CachedData data = new DataEntryTranscoder(otherCodec, false).encode(
+                new MemTupleDataCache.DataEntry<String>("key", 1, "[]")
+        )
+
+        expect:
+        new DataEntryTranscoder(new SmileCacheValueCodec(), false).decode(data) == null
+    }
+
+    def "Smile values decode to the same json as the text"() {
+        given:
+        SmileCacheValueCodec codec = new SmileCacheValueCodec()
+        String json = '{"a": [1, 2.5, "x", null, true, {"b": 12345678901234}], "c": "x"}'
+
+        when:
+        byte[] encoded = codec.encode(json)
+        JsonNode decoded = codec.decode(encoded, 0, encoded.length)
+
+        then:
+        decoded == mapper.readTree(json)
+    }
+}
@@ -19,6 +19,9 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+
 @IgnoreIf({!DRUID_CACHE.isOn()})
 class MemTupleDataCacheSpec extends Specification {
     JerseyTestBinder jtb
@@ -84,6 +87,24 @@ class MemTupleDataCacheSpec extends Specification {
         cacheValue == tuple.getValue()
     }
 
+    def "Keys are hashed with SHA-512 by default, so entries written before are still found"() {
+        given:
+        MemTupleDataCache localCache = new MemTupleDataCache<>(Mock(MemcachedClient))
+        byte[] sha512 = MessageDigest.getInstance("SHA-512").digest("key".getBytes(StandardCharsets.UTF_8))
+
+        expect:
+        localCache.hash("key") == Base64.getEncoder().encodeToString(sha512)
+        MemTupleDataCache.getHashFunction("murmur3").hashString("key", StandardCharsets.UTF_8).bits() == 128
+    }
+
+    def "An unknown key hash is rejected"() {
+        when:
+        MemTupleDataCache.getHashFunction("md5")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
     @Unroll
     def "cache set and get #key1 and #key2"() {
         when: "set"
@@ -0,0 +1,178 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import spock.lang.Specification
+
+import java.util.function.ToLongFunction
+
+class TwoTierTupleDataCacheSpec extends Specification {
+
+    TestTupleDataCache far = Spy(TestTupleDataCache)
+    ToLongFunction<String> weigher = { String value -> value.length() as long } as ToLongFunction<String>
+
+    TwoTierTupleDataCache<Integer, String> cache = new TwoTierTupleDataCache<Integer, String>(far, 3, 10, weigher)
+
+    def "A far hit is kept near, so the next read does not reach the far cache"() {
+        given:
+        far.set("key", 1, "value")
+        long nearHits = TwoTierTupleDataCache.NEAR_HITS.getCount()
+        long farHits = TwoTierTupleDataCache.FAR_HITS.getCount()
+
+        when:
+        TupleDataCache.DataEntry<String, Integer, String> first = cache.get("key")
+        TupleDataCache.DataEntry<String, Integer, String> second = cache.get("key")
+
+        then:
+        1 * far.get("key")
+        first.is(second)
+        second.getMeta() == 1
+        cache.getDataValue("key") == "value"
+        TwoTierTupleDataCache.FAR_HITS.getCount() == farHits + 1
+        TwoTierTupleDataCache.NEAR_HITS.getCount() == nearHits + 2
+    }
+
+    def "Writes go to both tiers"() {
+        when:
+        cache.set("key", 2, "value")
+
+        then:
+        far.getDataValue("key") == "value"
+        cache.get("key").getMeta() == 2
+        0 * far.get(_)
+    }
+
+    def "A miss in both tiers returns null"() {
+        expect:
+        cache.get("missing") == null
+        cache.getDataValue("missing") == null
+    }
+
+    def "The least recently used entries are evicted to stay within the entry bound"() {
+        given:
+        cache.set("a", 1, "a")
+        cache.set("b", 1, "b")
+        cache.set("c", 1, "c")
+        cache.get("a")
+
+        when:
+        cache.set("d", 1, "d")
+
+        then:
+        cache.getNearSize() == 3
+
+        when:
+        cache.get("b")
+
+        then: "b was least recently used, so it comes from the far cache"
+        1 * far.get("b")
+
+        when:
+        cache.get("a")
+
+        then:
+        0 * far.get(_)
+    }
+
+    def "Entries are evicted to stay within the byte bound, and oversized entries are not kept near"() {
+        when:
+        cache.set("a", 1, "123456")
+        cache.set("b", 1, "1234")
+
+        then:
+        cache.getNearBytes() == 10
+
+        when:
+        cache.set("c", 1, "12")
+
+        then:
+        cache.getNearSize() == 2
+        cache.getNearBytes() == 6
+
+        when:
+        cache.set("b", 1, "12345678901")
+
+        then:
+        cache.getNearSize() == 1
+        cache.getNearBytes() == 2
+        far.getDataValue("b") == "12345678901"
+    }
+
+    def "An entry stored under another key in the far cache is not kept near"() {
+        given:
+        far.set("key", new MemTupleDataCache.DataEntry<String>("otherKey", 1, "value"))
+
+        when:
+        cache.get("key")
+
+        then:
+        cache.getNearSize() == 0
+        cache.getDataValue("key") == null
+    }
+
+    def "Near entries keep their parsed value"() {
+        given:
+        cache.set("key", 1, "value")
+        Object parsed = new Object()
+
+        when:
+        cache.get("key").setParsedValue(parsed)
+
+        then:
+        cache.get("key").getParsedValue().is(parsed)
+
+        when: "the entry is replaced"
+        cache.set("key", 2, "value")
+
+        then:
+        cache.get("key").getParsedValue() == null
+    }
+
+    def "A far hit which knows its stored size is weighed by it without rendering its value"() {
+        given:
+        int rendered = 0
+        Object parsed = new Object()
+        ParsedDataEntry<Integer, String> decoded = new ParsedDataEntry<Integer, String>("key", 1, null) {
+            @Override
+            String getValue() {
+                rendered++
+                return "value"
+            }
+
+            @Override
+            long getStoredSize() {
+                return 4
+            }
+        }
+        decoded.setParsedValue(parsed)
+        far.set("key", decoded)
+
+        when:
+        TwoTierTupleDataCache.NearDataEntry<Integer, String> entry = cache.get("key")
+
+        then:
+        rendered == 0
+        cache.getNearBytes() == 4
+        entry.getParsedValue().is(parsed)
+
+        when: "the raw value is asked for"
+        String value = cache.getDataValue("key")
+
+        then:
+        value == "value"
+        rendered == 1
+    }
+
+    def "Clearing empties both tiers"() {
+        given:
+        cache.set("key", 1, "value")
+
+        when:
+        cache.clear()
+
+        then:
+        cache.getNearSize() == 0
+        cache.getNearBytes() == 0
+        cache.get("key") == null
+    }
+}
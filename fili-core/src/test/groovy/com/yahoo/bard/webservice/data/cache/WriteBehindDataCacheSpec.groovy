@@ -0,0 +1,217 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.cache
+
+import static com.yahoo.bard.webservice.data.cache.WriteBehindDataCache.DropPolicy.NEWEST
+import static com.yahoo.bard.webservice.data.cache.WriteBehindDataCache.DropPolicy.OLDEST
+
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+
+class WriteBehindDataCacheSpec extends Specification {
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+    TestTupleDataCache underlying = new TestTupleDataCache()
+    CountDownLatch writerBlocked = new CountDownLatch(1)
+    CountDownLatch releaseWriter = new CountDownLatch(1)
+
+    BlockingTupleDataCache blockingCache = new BlockingTupleDataCache(underlying, writerBlocked, releaseWriter)
+
+    def "Writes reach the underlying cache in the background and reads go straight to it"() {
+        given:
+        WriteBehindTupleDataCache<String, Integer, String> cache = new WriteBehindTupleDataCache<String, Integer, String>(
+                underlying,
+                2,
+                10,
+                NEWEST
+        )
+
+        when:
+        boolean queued = cache.set("key", 1, "value")
+
+        then:
+        queued
+        conditions.eventually {
+            assert cache.getDataValue("key") == "value"
+            assert cache.get("key").getMeta() == 1
+        }
+
+        cleanup:
+        cache.shutdown()
+    }
+
+    def "A failing write is counted and does not reach the caller"() {
+        given:
+        TupleDataCache<String, Integer, String> failingCache = Stub(TupleDataCache) {
+            set(_, _, _) >> { throw new IllegalStateException("cache down") }
+        }
+        WriteBehindTupleDataCache<String, Integer, String> cache = new WriteBehindTupleDataCache<String, Integer, String>(
+                failingCache,
+                1,
+                10,
+                NEWEST
+        )
+        long failuresBefore = WriteBehindDataCache.FAILED_WRITES.getCount()
+
+        when:
+        boolean queued = cache.set("key", 1, "value")
+
+        then:
+        noExceptionThrown()
+        queued
+        conditions.eventually {
+            assert WriteBehindDataCache.FAILED_WRITES.getCount() == failuresBefore + 1
+        }
+
+        cleanup:
+        cache.shutdown()
+    }
+
+    def "When the queue is full the newest write is dropped"() {
+        given:
+        WriteBehindTupleDataCache<String, Integer, String> cache = new WriteBehindTupleDataCache<String, Integer, String>(
+                blockingCache,
+                1,
+                1,
+                NEWEST
+        )
+        long dropsBefore = WriteBehindDataCache.DROPPED_WRITES.getCount()
+
+        when: "one write is held by the writer and one waits in the queue"
+        cache.set("inFlight", 1, "a")
+        writerBlocked.await()
+        cache.set("queued", 1, "b")
+
+        then: "the next write is dropped"
+        !cache.set("dropped", 1, "c")
+        WriteBehindDataCache.DROPPED_WRITES.getCount() == dropsBefore + 1
+
+        when:
+        releaseWriter.countDown()
+
+        then:
+        conditions.eventually {
+            assert underlying.getDataValue("queued") == "b"
+        }
+        underlying.getDataValue("inFlight") == "a"
+        underlying.getDataValue("dropped") == null
+
+        cleanup:
+        cache.shutdown()
+    }
+
+    def "When the queue is full the oldest queued write is dropped"() {
+        given:
+        WriteBehindTupleDataCache<String, Integer, String> cache = new WriteBehindTupleDataCache<String, Integer, String>(
+                blockingCache,
+                1,
+                1,
+                OLDEST
+        )
+        long dropsBefore = WriteBehindDataCache.DROPPED_WRITES.getCount()
+
+        when: "one write is held by the writer and one waits in the queue"
+        cache.set("inFlight", 1, "a")
+        writerBlocked.await()
+        cache.set("dropped", 1, "b")
+
+        then: "the next write replaces the queued one"
+        cache.set("queued", 1, "c")
+        WriteBehindDataCache.DROPPED_WRITES.getCount() == dropsBefore + 1
+
+        when:
+        releaseWriter.countDown()
+
+        then:
+        conditions.eventually {
+            assert underlying.getDataValue("queued") == "c"
+        }
+        underlying.getDataValue("inFlight") == "a"
+        underlying.getDataValue("dropped") == null
+
+        cleanup:
+        cache.shutdown()
+    }
+
+    def "Clearing drops queued writes and clears the underlying cache"() {
+        given:
+        WriteBehindTupleDataCache<String, Integer, String> cache = new WriteBehindTupleDataCache<String, Integer, String>(
+                blockingCache,
+                1,
+                10,
+                NEWEST
+        )
+        underlying.set("existing", 1, "value")
+        cache.set("inFlight", 1, "a")
+        writerBlocked.await()
+        cache.set("queued", 1, "b")
+
+        when:
+        cache.clear()
+        releaseWriter.countDown()
+        cache.shutdown()
+
+        then:
+        conditions.eventually {
+            assert underlying.getDataValue("inFlight") == "a"
+        }
+        underlying.getDataValue("existing") == null
+        underlying.getDataValue("queued") == null
+    }
+
+    def "Plain data caches can also be written behind"() {
+        given:
+        HashDataCache.Pair<String, String> pair = new HashDataCache.Pair<String, String>("key", "value")
+        WriteBehindDataCache<HashDataCache.Pair<String, String>> cache = new WriteBehindDataCache<HashDataCache.Pair<String, String>>(
+                new TestDataCache(),
+                1,
+                10,
+                NEWEST
+        )
+
+        when:
+        cache.set("key", pair)
+
+        then:
+        conditions.eventually {
+            assert cache.get("key") == pair
+        }
+
+        cleanup:
+        cache.shutdown()
+    }
+
+    /**
+     * A tuple cache whose writes wait until the test releases them, so the write behind queue can be filled up.
+     * (Spock mocks serialize their invocations, so a blocking stub would also block the test thread.)
+     */
+    static class BlockingTupleDataCache extends TestTupleDataCache {
+        TestTupleDataCache underlying
+        CountDownLatch writerBlocked
+        CountDownLatch releaseWriter
+
+        BlockingTupleDataCache(
+                TestTupleDataCache underlying,
+                CountDownLatch writerBlocked,
+                CountDownLatch releaseWriter
+        ) {
+            this.underlying = underlying
+            this.writerBlocked = writerBlocked
+            this.releaseWriter = releaseWriter
+        }
+
+        @Override
+        boolean set(String key, Integer meta, String value) {
+            writerBlocked.countDown()
+            releaseWriter.await()
+            return underlying.set(key, meta, value)
+        }
+
+        @Override
+        void clear() {
+            underlying.clear()
+        }
+    }
+}
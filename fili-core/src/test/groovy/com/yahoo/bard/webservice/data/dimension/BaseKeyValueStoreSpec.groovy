@@ -174,4 +174,26 @@ abstract class BaseKeyValueStoreSpec extends Specification {
         null == previousValues.get("key2")
         "oldValue3" == previousValues.get("key3")
     }
+
+    def "setAll sets all keys and removes keys with null values"() {
+        given:
+        store1.put("key1", "oldValue1")
+        store1.put("key2", "oldValue2")
+
+        when:
+        store1.setAll(["key1": "value1", "key2": null, "key3": "value3"])
+
+        then:
+        store1.getAll(["key1", "key2", "key3"]) == ["key1": "value1", "key3": "value3"]
+    }
+
+    def "getAll gets the values of the keys which are set"() {
+        given:
+        store1.putAll(["key1": "value1", "key3": "value3"])
+        store1.remove("key2")
+
+        expect:
+        store1.getAll(["key1", "key2", "key3"]) == ["key1": "value1", "key3": "value3"]
+        store1.getAll([]) == [:]
+    }
 }
@@ -6,6 +6,12 @@ import com.yahoo.bard.webservice.config.SystemConfigProvider
 
 import spock.lang.Requires
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicReference
+
 @Requires({ SystemConfigProvider.getInstance().getStringProperty(
         SystemConfigProvider.getInstance().getPackageVariableName("key_value_store_tests"), "memory").contains("memory") })
 class MapStoreSpec extends BaseKeyValueStoreSpec {
@@ -17,4 +23,81 @@ class MapStoreSpec extends BaseKeyValueStoreSpec {
     def void removeInstance(String storeName) {
         MapStoreManager.removeInstance(storeName);
     }
+
+    def "Readers never see part of a write of several keys"() {
+        given: "Generations of 100 keys, always written together"
+        MapStore store = new MapStore()
+        Map<String, String> generation = (1..100).collectEntries { ["key$it".toString(), "0"] }
+        store.putAll(generation)
+        AtomicReference<Throwable> failure = new AtomicReference<>()
+        boolean writing = true
+        List<Thread> readers = (1..4).collect {
+            Thread.start {
+                try {
+                    while (writing) {
+                        Set<String> seen = store.getAll(generation.keySet()).values() as Set
+                        assert seen.size() == 1
+                    }
+                } catch (Throwable t) {
+                    failure.set(t)
+                }
+            }
+        }
+
+        when:
+        (1..2000).each { int i -> store.putAll(generation.collectEntries { key, value -> [key, i as String] }) }
+        writing = false
+        readers*.join(10000)
+
+        then:
+        failure.get() == null
+        store.get("key1") == "2000"
+    }
+
+    def "Readers never see part of a write of several keys which removes them"() {
+        given: "100 keys, set and removed together"
+        MapStore store = new MapStore()
+        Map<String, String> generation = (1..100).collectEntries { ["key$it".toString(), "set"] }
+        Map<String, String> removal = generation.collectEntries { key, value -> [key, null] }
+        AtomicReference<Throwable> failure = new AtomicReference<>()
+        boolean writing = true
+        List<Thread> readers = (1..4).collect {
+            Thread.start {
+                try {
+                    while (writing) {
+                        int seen = store.getAll(generation.keySet()).size()
+                        assert seen == 0 || seen == 100
+                    }
+                } catch (Throwable t) {
+                    failure.set(t)
+                }
+            }
+        }
+
+        when:
+        (1..1000).each { store.putAll(generation); store.putAll(removal) }
+        writing = false
+        readers*.join(10000)
+
+        then:
+        failure.get() == null
+        store.get("key1") == null
+    }
+
+    def "Instances are built once per name across threads"() {
+        given:
+        ExecutorService executor = Executors.newFixedThreadPool(8)
+        List<Callable<KeyValueStore>> calls = (1..64).collect { { -> getInstance("concurrent") } as Callable }
+
+        when:
+        Set<KeyValueStore> instances = executor.invokeAll(calls).collect { Future<KeyValueStore> it -> it.get() }
+                .toSet()
+
+        then:
+        instances.size() == 1
+
+        cleanup:
+        executor.shutdown()
+        removeInstance("concurrent")
+    }
 }
@@ -0,0 +1,189 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import com.yahoo.bard.webservice.util.Utils
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.atomic.AtomicReference
+
+class MemoryMappedStoreSpec extends BaseKeyValueStoreSpec {
+
+    Path directory = Files.createTempDirectory("memory_mapped_store")
+
+    def KeyValueStore getInstance(String storeName) {
+        return MemoryMappedStoreManager.getInstance(storeName);
+    }
+
+    def void removeInstance(String storeName) {
+        MemoryMappedStoreManager.removeInstance(storeName);
+    }
+
+    def cleanup() {
+        Utils.deleteFiles(directory.toString())
+    }
+
+    def "Stored keys are still there once the store is opened again"() {
+        given:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+        store.putAll(["key1": "value1", "key2": "value2", "key3": "ünïcödé"])
+        store.remove("key2")
+        store.close()
+
+        when:
+        store = new MemoryMappedStore(directory, 4096)
+
+        then:
+        store.getAll(["key1", "key2", "key3"]) == ["key1": "value1", "key3": "ünïcödé"]
+        store.size() == 2
+
+        cleanup:
+        store.close()
+    }
+
+    def "An invalid store file is moved aside rather than overwritten"() {
+        given:
+        Files.write(directory.resolve("store.dat"), "not a store".bytes)
+
+        when:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+
+        then: "The store starts empty, and the invalid file is kept"
+        store.size() == 0
+        store.get("key1") == null
+        Files.list(directory).findAll { it.fileName.toString().startsWith("store.dat.corrupt-") }*.text ==
+                ["not a store"]
+
+        cleanup:
+        store.close()
+    }
+
+    def "Keys whose records are past the end of the data read as absent"() {
+        given: "A store file whose end of the data didn't reach the disk"
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+        store.put("key1", "value1")
+        store.close()
+        FileChannel channel = FileChannel.open(directory.resolve("store.dat"), StandardOpenOption.WRITE)
+        channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 0L), 24)
+        channel.close()
+
+        when:
+        store = new MemoryMappedStore(directory, 4096)
+
+        then:
+        store.get("key1") == null
+
+        when:
+        store.put("key1", "value2")
+
+        then:
+        store.get("key1") == "value2"
+
+        cleanup:
+        store.close()
+    }
+
+    def "The store grows past its first slots and chunks, and compacts overwritten values"() {
+        given:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+
+        when:
+        (1..5000).each { store.put("key$it".toString(), "value$it".toString()) }
+        (1..5).each { int round -> (1..100).each { store.put("key$it".toString(), "round$round".toString()) } }
+        (4001..5000).each { store.remove("key$it".toString()) }
+        store.close()
+        store = new MemoryMappedStore(directory, 4096)
+
+        then:
+        store.size() == 4000
+        store.get("key1") == "round5"
+        store.get("key101") == "value101"
+        store.get("key4000") == "value4000"
+        store.get("key4001") == null
+
+        cleanup:
+        store.close()
+    }
+
+    def "All keys can be removed at once"() {
+        given:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+        (1..1000).each { store.put("key$it".toString(), "value$it".toString()) }
+
+        when:
+        store.removeAllKeys()
+        store.put("key2", "again")
+
+        then:
+        store.size() == 1
+        store.get("key1") == null
+        store.get("key2") == "again"
+
+        cleanup:
+        store.close()
+    }
+
+    def "A store can only be opened once at a time"() {
+        given:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+
+        when:
+        new MemoryMappedStore(directory, 4096)
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        store.close()
+    }
+
+    def "Entries larger than a chunk are rejected"() {
+        given:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 64)
+
+        when:
+        store.put("key", "x" * 64)
+
+        then:
+        thrown(IllegalArgumentException)
+        store.get("key") == null
+
+        cleanup:
+        store.close()
+    }
+
+    def "Readers see every key while the writer adds keys and rebuilds the store"() {
+        given:
+        MemoryMappedStore store = new MemoryMappedStore(directory, 4096)
+        (1..100).each { store.put("stable$it".toString(), "value$it".toString()) }
+        AtomicReference<Throwable> failure = new AtomicReference<>()
+        boolean writing = true
+        List<Thread> readers = (1..4).collect {
+            Thread.start {
+                try {
+                    while (writing) {
+                        (1..100).each { assert store.get("stable$it".toString()) == "value$it".toString() }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t)
+                }
+            }
+        }
+
+        when:
+        (1..20000).each { store.put("added$it".toString(), "value$it".toString()) }
+        writing = false
+        readers*.join(10000)
+
+        then:
+        failure.get() == null
+        store.size() == 20100
+
+        cleanup:
+        store.close()
+    }
+}
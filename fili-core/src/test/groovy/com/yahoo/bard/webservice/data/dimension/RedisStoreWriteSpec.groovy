@@ -0,0 +1,122 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisPool
+import redis.clients.jedis.Pipeline
+import redis.clients.jedis.Response
+import redis.clients.jedis.ScanParams
+import redis.clients.jedis.ScanResult
+import redis.clients.jedis.exceptions.JedisDataException
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class RedisStoreWriteSpec extends Specification {
+
+    Jedis jedis = Mock(Jedis)
+    JedisPool pool = Mock(JedisPool)
+    Pipeline pipeline = Mock(Pipeline)
+
+    def setup() {
+        pool.getResource() >> jedis
+        jedis.ping() >> "PONG"
+        jedis.pipelined() >> pipeline
+    }
+
+    Response<String> response(String value) {
+        Response<String> response = Mock(Response)
+        response.get() >> value
+        response
+    }
+
+    @Unroll
+    def "Entries are written in pipelined batches of #batchSize, #description"() {
+        given:
+        RedisStore store = new RedisStore("store", pool, "ns", batchSize, transactional)
+        Map<String, String> entries = ["a": "1", "b": "2", "c": null]
+
+        when:
+        store.setAll(entries)
+
+        then:
+        (batches * (transactional ? 1 : 0)) * pipeline.multi()
+        (batches * (transactional ? 1 : 0)) * pipeline.exec()
+        batches * pipeline.sync()
+        1 * pipeline.set("ns-store-a", "1") >> response("OK")
+        1 * pipeline.set("ns-store-b", "2") >> response("OK")
+        1 * pipeline.del("ns-store-c")
+        0 * pipeline.get(_)
+        0 * jedis.get(_)
+        0 * jedis.set(*_)
+
+        where:
+        batchSize | transactional | batches | description
+        1000      | false         | 1       | "without transactions"
+        2         | false         | 2       | "without transactions"
+        2         | true          | 2       | "each applied in a transaction"
+    }
+
+    def "putAll reads the previous values back along with the writes"() {
+        given:
+        RedisStore store = new RedisStore("store", pool, "ns", 1000, false)
+        pipeline.set(_, _) >> response("OK")
+
+        when:
+        Map<String, String> previous = store.putAll(["a": "1", "b": "2"])
+
+        then:
+        1 * pipeline.get("ns-store-a") >> response("old")
+        1 * pipeline.get("ns-store-b") >> response(null)
+        1 * pipeline.sync()
+        previous == ["a": "old", "b": null]
+    }
+
+    def "A write Redis doesn't acknowledge fails and marks the store unhealthy"() {
+        given:
+        RedisStore store = new RedisStore("store", pool, "ns", 1000, false)
+        pipeline.set(_, _) >> response("ERR")
+
+        when:
+        store.setAll(["a": "1"])
+
+        then:
+        thrown(RuntimeException)
+        !store.isHealthy()
+    }
+
+    def "All keys are removed incrementally, scanning with a cursor and unlinking each batch"() {
+        given:
+        RedisStore store = new RedisStore("store", pool, "ns", 1000, false)
+
+        when:
+        long removed = store.removeAllKeys()
+
+        then:
+        1 * jedis.scan("0", _ as ScanParams) >> new ScanResult<String>("17", ["ns-store-a", "ns-store-b"])
+        1 * jedis.scan("17", _ as ScanParams) >> new ScanResult<String>("42", [])
+        1 * jedis.scan("42", _ as ScanParams) >> new ScanResult<String>("0", ["ns-store-c"])
+        1 * jedis.eval(_, ["ns-store-a", "ns-store-b"], []) >> 2L
+        1 * jedis.eval(_, ["ns-store-c"], []) >> 1L
+        0 * jedis.keys(_)
+        0 * jedis.del(*_)
+        removed == 3
+    }
+
+    def "Keys are removed with DEL when the server doesn't support UNLINK"() {
+        given:
+        RedisStore store = new RedisStore("store", pool, "ns", 1000, false)
+        jedis.scan("0", _ as ScanParams) >> new ScanResult<String>("17", ["ns-store-a"])
+        jedis.scan("17", _ as ScanParams) >> new ScanResult<String>("0", ["ns-store-b"])
+
+        when:
+        long removed = store.removeAllKeys()
+
+        then:
+        1 * jedis.eval(*_) >> { throw new JedisDataException("ERR unknown command 'UNLINK'") }
+        1 * jedis.del(["ns-store-a"] as String[]) >> 1L
+        1 * jedis.del(["ns-store-b"] as String[]) >> 1L
+        removed == 2
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl
+
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DimensionRowCodecSpec extends Specification {
+
+    ObjectMapper objectMapper = new ObjectMapper()
+    LinkedHashSet<DimensionField> fields = [BardDimensionField.ID, BardDimensionField.DESC]
+
+    DimensionRow row(String id, String desc) {
+        new DimensionRow(BardDimensionField.ID, [(BardDimensionField.ID): id, (BardDimensionField.DESC): desc])
+    }
+
+    DimensionRow toRow(Map<String, String> decoded) {
+        new DimensionRow(BardDimensionField.ID, fields.collectEntries { [(it): decoded[it.name]] })
+    }
+
+    @Unroll
+    def "Rows are stored positionally in the compact form and decoded back, for #desc"() {
+        given:
+        DimensionRowCodec codec = new DimensionRowCodec(fields, true, objectMapper)
+
+        when:
+        String encoded = codec.encode(row("123", desc))
+
+        then:
+        encoded == DimensionRowCodec.COMPACT_FORMAT_VERSION.toString() + "3:123" + desc.length() + ":" + desc
+        codec.decode(encoded) == ["id": "123", "desc": desc]
+
+        where:
+        desc << ["", "us", "12:34:56", "Ünïcödé ☃ 日本", "{\"desc\": 1}"]
+    }
+
+    def "Json rows are still decoded, whichever form rows are encoded to"() {
+        given:
+        DimensionRowCodec jsonCodec = new DimensionRowCodec(fields, false, objectMapper)
+        DimensionRowCodec compactCodec = new DimensionRowCodec(fields, true, objectMapper)
+        String json = jsonCodec.encode(row("123", "us"))
+
+        expect:
+        json.startsWith("{")
+        compactCodec.decode(json) == ["id": "123", "desc": "us"]
+        jsonCodec.decode(compactCodec.encode(row("123", "us"))) == ["id": "123", "desc": "us"]
+    }
+
+    def "A representative row is smaller in the compact form than as json, and both forms decode to the same row"() {
+        given:
+        DimensionRowCodec jsonCodec = new DimensionRowCodec(fields, false, objectMapper)
+        DimensionRowCodec compactCodec = new DimensionRowCodec(fields, true, objectMapper)
+        DimensionRow original = row("840", "United States of America")
+
+        when:
+        String json = jsonCodec.encode(original)
+        String compact = compactCodec.encode(original)
+
+        then:
+        compact.length() < json.length()
+        toRow(compactCodec.decode(compact)) == original
+        toRow(compactCodec.decode(json)) == original
+        toRow(jsonCodec.decode(compact)) == original
+    }
+
+    def "Compact rows stored before fields were added are missing the values of those fields"() {
+        given:
+        String encoded = new DimensionRowCodec([BardDimensionField.ID] as LinkedHashSet, true, objectMapper)
+                .encode(row("123", "us"))
+
+        expect:
+        new DimensionRowCodec(fields, true, objectMapper).decode(encoded) == ["id": "123"]
+    }
+
+    @Unroll
+    def "Corrupt compact row #encoded cannot be decoded"() {
+        given:
+        DimensionRowCodec codec = new DimensionRowCodec(fields, true, objectMapper)
+
+        when:
+        codec.decode(DimensionRowCodec.COMPACT_FORMAT_VERSION.toString() + encoded)
+
+        then:
+        thrown(IOException)
+
+        where:
+        encoded << ["3:12", "3", ":123", "x:123"]
+    }
+}
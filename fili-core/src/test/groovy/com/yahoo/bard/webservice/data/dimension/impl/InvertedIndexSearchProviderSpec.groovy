@@ -0,0 +1,150 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl
+
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.DESC
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.ID
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.makeDimensionRow
+
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStore
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
+import com.yahoo.bard.webservice.web.ApiFilter
+import com.yahoo.bard.webservice.web.FilterOperation
+
+import spock.lang.Unroll
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Specification for behavior specific to the InvertedIndexSearchProvider.
+ */
+class InvertedIndexSearchProviderSpec extends SearchProviderSpec<InvertedIndexSearchProvider> {
+
+    @Override
+    InvertedIndexSearchProvider getSearchProvider(String dimensionName) {
+        InvertedIndexSearchProviderManager.getInstance(dimensionName)
+    }
+
+    @Override
+    void cleanSearchProvider(String dimensionName) {
+        InvertedIndexSearchProviderManager.removeInstance(dimensionName)
+    }
+
+    @Override
+    boolean indicesHaveBeenCleared() {
+        MapStore keyValueStore = MapStoreManager.getInstance("animal")
+        return keyValueStore.store.size() == 2 &&
+                keyValueStore[DimensionStoreKeyUtils.getCardinalityKey()] == "0" &&
+                keyValueStore[DimensionStoreKeyUtils.getAllValuesKey()] == "[]" &&
+                searchProvider.findFilteredDimensionRows([] as Set).isEmpty()
+    }
+
+    @Unroll
+    def "The filter #filterQuery matches the rows #expectedIds"() {
+        expect:
+        searchProvider.findFilteredDimensionRows([buildFilter(filterQuery)] as Set)*.get(ID) == expectedIds
+
+        where:
+        filterQuery                                  | expectedIds
+        "animal|desc-startswith[Monkeys,Spiders]"    | ["bonobo", "brownrecluse", "chimpanzee", "spidermonkey", "tarantula", "wolfspider"]
+        "animal|desc-startswith[this is a]"          | ["eagle", "hawk", "owl"]
+        "animal|id-startswith[b,c]"                  | ["bonobo", "brownrecluse", "chimpanzee", "crocodile"]
+        "animal|desc-contains[eight]"                | ["brownrecluse", "tarantula", "wolfspider"]
+        "animal|desc-contains[n o,worst]"            | ["alligator", "aneurysm", "crocodile", "owl"]
+        "animal|desc-contains[ee]"                   | ["bonobo", "chimpanzee", "spidermonkey"]
+        "animal|id-contains[关卡]"                    | ["完成关卡"]
+        "animal|desc-contains[have teeth legs]"      | []
+        "animal|desc-contains[.*]"                   | []
+    }
+
+    def "Filters are served from the in memory indexes once they are built"() {
+        given:
+        MapStore store = Spy(MapStore)
+        InvertedIndexSearchProvider provider = new InvertedIndexSearchProvider()
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "bird",
+                "Some birds.",
+                "bird-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                store,
+                provider
+        )
+        dimension.addAllDimensionRows((1..10).collect { makeDimensionRow(dimension, "bird$it", "plain") } as Set)
+        Set<ApiFilter> filters = [new ApiFilter(dimension, DESC, FilterOperation.in, ["plain"] as Set)]
+        provider.findFilteredDimensionRows(filters)
+
+        and: "A row updated after the indexes are built"
+        DimensionRow fancy = makeDimensionRow(dimension, "bird1", "fancy")
+        dimension.addDimensionRow(fancy)
+
+        when:
+        Set<DimensionRow> plain = provider.findFilteredDimensionRows(filters)
+
+        then: "The rows are not read from the store again"
+        0 * store.get(_)
+        0 * store.getAll(_)
+        plain.size() == 9
+        provider.findFilteredDimensionRows(
+                [new ApiFilter(dimension, DESC, FilterOperation.startswith, ["fan"] as Set)] as Set
+        ) == [fancy] as Set
+    }
+
+    def "Rows written while the indexes are being built are indexed"() {
+        given: "A build of the indexes that pauses after reading the store, until a row is written to the store"
+        CountDownLatch scanned = new CountDownLatch(1)
+        CountDownLatch written = new CountDownLatch(1)
+        boolean pausing = false
+        MapStore store = new MapStore() {
+            @Override
+            Map<String, String> putAll(Map<String, String> entries) {
+                Map<String, String> previous = super.putAll(entries)
+                if (pausing) {
+                    written.countDown()
+                }
+                return previous
+            }
+        }
+        InvertedIndexSearchProvider provider = new InvertedIndexSearchProvider() {
+            @Override
+            LinkedHashSet<DimensionRow> findAllDimensionRows() {
+                LinkedHashSet<DimensionRow> rows = super.findAllDimensionRows()
+                if (pausing) {
+                    scanned.countDown()
+                    written.await(10, TimeUnit.SECONDS)
+                }
+                return rows
+            }
+        }
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "fish",
+                "Some fish.",
+                "fish-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                store,
+                provider
+        )
+        dimension.addAllDimensionRows((1..10).collect { makeDimensionRow(dimension, "fish$it", "plain") } as Set)
+        pausing = true
+
+        when: "A row is written while the indexes are built by the first filtered search"
+        Thread loader = Thread.start {
+            scanned.await(10, TimeUnit.SECONDS)
+            dimension.addDimensionRow(makeDimensionRow(dimension, "fish11", "plain"))
+        }
+        Set<DimensionRow> firstSearch = provider.findFilteredDimensionRows(
+                [new ApiFilter(dimension, DESC, FilterOperation.in, ["plain"] as Set)] as Set
+        )
+        loader.join(10000)
+
+        then: "The row is in the indexes once the write completes, and may already be in the first search"
+        !loader.isAlive()
+        firstSearch.size() >= 10
+        provider.findFilteredDimensionRows(
+                [new ApiFilter(dimension, DESC, FilterOperation.in, ["plain"] as Set)] as Set
+        ).size() == 11
+    }
+}
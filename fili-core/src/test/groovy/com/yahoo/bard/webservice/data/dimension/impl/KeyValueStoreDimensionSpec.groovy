@@ -2,21 +2,31 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory
+import com.yahoo.bard.webservice.config.SystemConfig
+import com.yahoo.bard.webservice.config.SystemConfigProvider
 import com.yahoo.bard.webservice.data.config.dimension.DimensionBackend
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
+import com.yahoo.bard.webservice.data.dimension.MapStore
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.MemoryMappedStoreManager
 import com.yahoo.bard.webservice.data.dimension.RedisStoreManager
 import com.yahoo.bard.webservice.data.dimension.SearchProvider
 
+import com.codahale.metrics.Meter
+
 import org.joda.time.DateTime
 
 import spock.lang.Shared
 import spock.lang.Specification
 
 import java.text.SimpleDateFormat
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 class KeyValueStoreDimensionSpec extends Specification {
 
@@ -61,6 +71,9 @@ class KeyValueStoreDimensionSpec extends Specification {
             case DimensionBackend.MEMORY:
                 keyValueStore = MapStoreManager.getInstance(fileName)
                 break
+            case DimensionBackend.MEMORY_MAPPED:
+                keyValueStore = MemoryMappedStoreManager.getInstance(fileName)
+                break
         }
 
 
@@ -192,4 +205,147 @@ class KeyValueStoreDimensionSpec extends Specification {
         threads.each { it.join(10000) }
         threads.each { if ( it.cause != null ) throw it.cause }
     }
+
+    KeyValueStoreDimension buildCachingDimension(KeyValueStore store, String name) {
+        SystemConfig systemConfig = SystemConfigProvider.getInstance()
+        systemConfig.setProperty(KeyValueStoreDimension.ROW_CACHE_MAX_ENTRIES_KEY, "2")
+        try {
+            LinkedHashSet<DimensionField> dimensionFields = [BardDimensionField.ID, BardDimensionField.DESC]
+            return new KeyValueStoreDimension(name, name, name, dimensionFields, store, ScanSearchProviderManager.getInstance(name))
+        } finally {
+            systemConfig.clearProperty(KeyValueStoreDimension.ROW_CACHE_MAX_ENTRIES_KEY)
+        }
+    }
+
+    def "Decoded rows are cached, absent rows included, and handed out as copies"() {
+        given:
+        KeyValueStore store = Spy(MapStore)
+        KeyValueStoreDimension dimension = buildCachingDimension(store, "cachedPlatform")
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "row1", "this is a row"))
+
+        when:
+        DimensionRow first = dimension.findDimensionRowByKeyValue("row1")
+        first.put(BardDimensionField.DESC, "changed")
+        DimensionRow second = dimension.findDimensionRowByKeyValue("row1")
+        dimension.findDimensionRowByKeyValue("missing")
+        dimension.findDimensionRowByKeyValue("missing")
+
+        then:
+        1 * store.get("id_row1_row_key")
+        1 * store.get("id_missing_row_key")
+        second.get(BardDimensionField.DESC) == "this is a row"
+        MetricRegistryFactory.registry.meter("dimension.row_cache.hits.cachedPlatform").count == 2
+        MetricRegistryFactory.registry.meter("dimension.row_cache.misses.cachedPlatform").count == 2
+    }
+
+    def "The row cache is bounded and cleared by writes through the dimension"() {
+        given:
+        KeyValueStoreDimension dimension = buildCachingDimension(new MapStore(), "boundedPlatform")
+        Meter misses = MetricRegistryFactory.registry.meter("dimension.row_cache.misses.boundedPlatform")
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "row1", "this is a row"))
+        ["row1", "row2", "row3"].each { dimension.findDimensionRowByKeyValue(it) }
+
+        expect: "Rows beyond the bound are evicted"
+        MetricRegistryFactory.registry.meter("dimension.row_cache.evictions.boundedPlatform").count == 1
+
+        when:
+        dimension.findDimensionRowByKeyValue("row3")
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "row3", "this is a row3"))
+        DimensionRow added = dimension.findDimensionRowByKeyValue("row3")
+        dimension.setLastUpdated(new DateTime())
+        dimension.findDimensionRowByKeyValue("row3")
+        dimension.deleteAllDimensionRows()
+        DimensionRow deleted = dimension.findDimensionRowByKeyValue("row3")
+
+        then: "Each clear makes the next lookup read the store again"
+        misses.count == 6
+        added.get(BardDimensionField.DESC) == "this is a row3"
+        deleted == null
+    }
+
+    def "A row read before a write is not cached once the write is done"() {
+        given: "A store which holds the first read of row1 until row1 has been rewritten"
+        CountDownLatch read = new CountDownLatch(1)
+        CountDownLatch written = new CountDownLatch(1)
+        AtomicBoolean holdRead = new AtomicBoolean(false)
+        KeyValueStore store = new MapStore() {
+            @Override
+            String get(String key) {
+                String value = super.get(key)
+                if (key == "id_row1_row_key" && holdRead.compareAndSet(true, false)) {
+                    read.countDown()
+                    written.await(10, TimeUnit.SECONDS)
+                }
+                return value
+            }
+        }
+        KeyValueStoreDimension dimension = buildCachingDimension(store, "racingPlatform")
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "row1", "old"))
+        holdRead.set(true)
+
+        when: "A lookup reads the old row, and the row is rewritten before the lookup caches it"
+        DimensionRow looked = null
+        Thread lookup = Thread.start { looked = dimension.findDimensionRowByKeyValue("row1") }
+        read.await(10, TimeUnit.SECONDS)
+        dimension.addDimensionRow(BardDimensionField.makeDimensionRow(dimension, "row1", "new"))
+        written.countDown()
+        lookup.join(10000)
+
+        then: "The racing lookup may answer with the old row, but the next lookup sees the new one"
+        looked.get(BardDimensionField.DESC) == "old"
+        dimension.findDimensionRowByKeyValue("row1").get(BardDimensionField.DESC) == "new"
+    }
+
+    def "Rows are looked up in one read of the store, absent rows left out"() {
+        given:
+        KeyValueStore store = Spy(MapStore)
+        KeyValueStoreDimension dimension = buildCachingDimension(store, "batchPlatform")
+        DimensionRow row1 = BardDimensionField.makeDimensionRow(dimension, "row1", "this is a row")
+        DimensionRow row2 = BardDimensionField.makeDimensionRow(dimension, "row2", "this is a row2")
+        dimension.addAllDimensionRows([row1, row2] as Set)
+
+        when:
+        Map<String, DimensionRow> rows = dimension.findDimensionRowsByKeyValues(["row1", "row2", "missing"])
+
+        then:
+        1 * store.getAll({ it as List == ["id_row1_row_key", "id_row2_row_key", "id_missing_row_key"] })
+        0 * store.get(_)
+        rows == ["row1": row1, "row2": row2]
+
+        when: "The rows are looked up again"
+        rows = dimension.findDimensionRowsByKeyValues(["row2", "missing"])
+
+        then: "They come from the row cache"
+        0 * store.getAll(_)
+        0 * store.get(_)
+        rows == ["row2": row2]
+    }
+
+    def "Rows are stored in the compact form if enabled, and rows stored as json are still read"() {
+        given:
+        SystemConfig systemConfig = SystemConfigProvider.getInstance()
+        LinkedHashSet<DimensionField> dimensionFields = [BardDimensionField.ID, BardDimensionField.DESC]
+        KeyValueStore store = new MapStore()
+        KeyValueStoreDimension jsonDimension = new KeyValueStoreDimension("compactPlatform", "compactPlatform",
+                "compactPlatform", dimensionFields, store, ScanSearchProviderManager.getInstance("compactPlatform"))
+        DimensionRow row1 = BardDimensionField.makeDimensionRow(jsonDimension, "row1", "this is a row")
+        DimensionRow row2 = BardDimensionField.makeDimensionRow(jsonDimension, "row2", "this is a row2")
+        jsonDimension.addDimensionRow(row1)
+
+        when:
+        systemConfig.setProperty(KeyValueStoreDimension.ROW_COMPACT_FORMAT_KEY, "true")
+        KeyValueStoreDimension compactDimension = new KeyValueStoreDimension("compactPlatform", "compactPlatform",
+                "compactPlatform", dimensionFields, store, ScanSearchProviderManager.getInstance("compactPlatform"))
+        compactDimension.addDimensionRow(row2)
+
+        then:
+        store.get("id_row1_row_key").startsWith("{")
+        store.get("id_row2_row_key") == DimensionRowCodec.COMPACT_FORMAT_VERSION.toString() + "4:row214:this is a row2"
+        compactDimension.findDimensionRowByKeyValue("row1") == row1
+        compactDimension.findDimensionRowByKeyValue("row2") == row2
+        ScanSearchProviderManager.getInstance("compactPlatform").findAllDimensionRows() == [row1, row2] as Set
+
+        cleanup:
+        systemConfig.clearProperty(KeyValueStoreDimension.ROW_COMPACT_FORMAT_KEY)
+    }
 }
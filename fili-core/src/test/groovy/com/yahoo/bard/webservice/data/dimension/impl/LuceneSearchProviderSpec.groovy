@@ -2,13 +2,30 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.DESC
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.ID
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.makeDimensionRow
+
 import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionField
 import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStore
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
+import com.yahoo.bard.webservice.util.Pagination
+import com.yahoo.bard.webservice.util.Utils
+import com.yahoo.bard.webservice.web.ApiFilter
+import com.yahoo.bard.webservice.web.FilterOperation
 import com.yahoo.bard.webservice.web.RowLimitReachedException
+import com.yahoo.bard.webservice.web.util.PaginationParameters
 
+import org.apache.lucene.index.DirectoryReader
+import org.apache.lucene.store.Directory
 import org.apache.lucene.store.FSDirectory
 
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.atomic.AtomicReference
+
 /**
  * Specification for behavior specific to the LuceneSearchProvider
  */
@@ -77,6 +94,46 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
         thrown RowLimitReachedException
     }
 
+    def "findAllDimensionRowsPaged throws RowLimitReachedException when the real cardinality is more than the limit"() {
+        given:
+        searchProvider.maxResultsWithoutFilters = dimensionRows.size() - 1
+
+        when:
+        searchProvider.findAllDimensionRowsPaged(new PaginationParameters(1, 1))
+
+        then:
+        thrown RowLimitReachedException
+    }
+
+    def "The next page is searched after the last hit of the page before, until the index changes"() {
+        given:
+        List<DimensionRow> orderedRows = searchProvider.findAllOrderedDimensionRows() as List
+        searchProvider.pageCursors.invalidateAll()
+
+        when: "The first page is served"
+        Pagination<DimensionRow> first = searchProvider.findAllDimensionRowsPaged(new PaginationParameters(3, 1))
+
+        then: "Its last hit is kept as the cursor of the page"
+        first.pageOfData == orderedRows.subList(0, 3)
+        searchProvider.pageCursors.size() == 1
+
+        when: "A row sorting before the second page is added, and the second page is served"
+        DimensionRow aardvark = makeDimensionRow(keyValueStoreDimension, "aardvark", "An early riser")
+        keyValueStoreDimension.addDimensionRow(aardvark)
+        List<DimensionRow> reordered = ([aardvark] + orderedRows) as List
+        Pagination<DimensionRow> second = searchProvider.findAllDimensionRowsPaged(new PaginationParameters(3, 2))
+
+        then: "The cursor of the first page is stale, so the second page starts where it now starts"
+        second.pageOfData == reordered.subList(3, 6)
+
+        when: "The third page follows the second page's cursor"
+        Pagination<DimensionRow> third = searchProvider.findAllDimensionRowsPaged(new PaginationParameters(3, 3))
+
+        then:
+        third.pageOfData == reordered.subList(6, 9)
+        third.numResults == reordered.size()
+    }
+
     @Override
     boolean indicesHaveBeenCleared() {
         //A file is a Lucene index file iff it has one of the following extensions
@@ -129,4 +186,108 @@ class LuceneSearchProviderSpec extends SearchProviderSpec<LuceneSearchProvider>
         threads.each { it.join(10000) }
         threads.each { if ( it.cause != null ) throw it.cause }
     }
+
+    def "Searches run while the index is being updated"() {
+        given:
+        AtomicReference<Throwable> failure = new AtomicReference<>()
+        boolean writing = true
+        List<Thread> readers = (1..4).collect {
+            Thread.start {
+                try {
+                    while (writing) {
+                        assert searchProvider.findAllDimensionRows().size() >= dimensionRows.size()
+                    }
+                } catch (Throwable t) {
+                    failure.set(t)
+                }
+            }
+        }
+
+        when:
+        (1..50).each { keyValueStoreDimension.addDimensionRow(makeDimensionRow(keyValueStoreDimension, "bird$it", "")) }
+        writing = false
+        readers*.join(10000)
+
+        then:
+        failure.get() == null
+        searchProvider.dimensionCardinality == dimensionRows.size() + 50
+    }
+
+    def "With a commit interval, updates are searchable right away and committed later"() {
+        given:
+        Path indexPath = Files.createTempDirectory("lucene_commit_interval")
+        LuceneSearchProvider provider = new LuceneSearchProvider(indexPath.toString(), 100, 100, 3600000, false)
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "bird",
+                "Some birds.",
+                "bird-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                new MapStore(),
+                provider
+        )
+        DimensionRow owl = makeDimensionRow(dimension, "owl", "this is an owl")
+        Directory directory = FSDirectory.open(indexPath)
+
+        when:
+        dimension.addDimensionRow(owl)
+
+        then:
+        provider.findAllDimensionRows() == [owl] as Set
+        committedDocs(directory) == 0
+
+        when:
+        provider.commitChanges()
+
+        then:
+        committedDocs(directory) == 1
+
+        cleanup:
+        provider.close()
+        directory.close()
+        Utils.deleteFiles(indexPath.toString())
+    }
+
+    def "With all fields stored, the rows of hits are rebuilt from the index without reading the store"() {
+        given:
+        Path indexPath = Files.createTempDirectory("lucene_store_all_fields")
+        LuceneSearchProvider provider = new LuceneSearchProvider(indexPath.toString(), 100, 100, 0, true)
+        MapStore store = Spy(MapStore)
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "bird",
+                "Some birds.",
+                "bird-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                store,
+                provider
+        )
+        DimensionRow owl = makeDimensionRow(dimension, "owl", "this is an owl")
+        DimensionRow hawk = makeDimensionRow(dimension, "hawk", "this is a raptor")
+        dimension.addAllDimensionRows([owl, hawk] as Set)
+        Set<ApiFilter> raptors = [
+                new ApiFilter(dimension, DESC, FilterOperation.eq, ["this is a raptor"] as Set)
+        ] as Set
+
+        when:
+        Set<DimensionRow> filteredRows = provider.findFilteredDimensionRows(raptors)
+        Pagination<DimensionRow> page = provider.findAllDimensionRowsPaged(new PaginationParameters(1, 2))
+
+        then:
+        0 * store.getAll(_)
+        filteredRows == [hawk] as Set
+        page.pageOfData == [owl]
+        page.pageOfData[0].get(DESC) == "this is an owl"
+
+        cleanup:
+        provider.close()
+        Utils.deleteFiles(indexPath.toString())
+    }
+
+    int committedDocs(Directory directory) {
+        DirectoryReader reader = DirectoryReader.open(directory)
+        try {
+            return reader.numDocs()
+        } finally {
+            reader.close()
+        }
+    }
 }
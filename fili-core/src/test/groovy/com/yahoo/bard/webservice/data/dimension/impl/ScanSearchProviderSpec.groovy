@@ -2,6 +2,13 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.dimension.impl
 
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.DESC
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.ID
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.makeDimensionRow
+
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStore
 import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
 
 /**
@@ -25,4 +32,45 @@ class ScanSearchProviderSpec extends SearchProviderSpec<ScanSearchProvider> {
                 searchProvider.keyValueStore[DimensionStoreKeyUtils.getCardinalityKey()] == "0" &&
                 searchProvider.keyValueStore[DimensionStoreKeyUtils.getAllValuesKey()] == "[]"
     }
+
+    def "A batch of rows reads and writes each index key once"() {
+        given:
+        MapStore store = Spy(MapStore)
+        ScanSearchProvider provider = new ScanSearchProvider()
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "bird",
+                "Some birds.",
+                "bird-description",
+                [ID, DESC] as LinkedHashSet<DimensionField>,
+                store,
+                provider
+        )
+        Set<DimensionRow> birds = (1..100).collect {
+            makeDimensionRow(dimension, "bird$it", it % 2 == 0 ? "even" : "odd")
+        } as Set
+
+        when:
+        dimension.addAllDimensionRows(birds)
+
+        then:
+        1 * store.get(DimensionStoreKeyUtils.getAllValuesKey())
+        0 * store.get({ it.startsWith("desc_") })
+        provider.dimensionCardinality == 100
+        provider.findAllDimensionRows() == birds
+        provider.findAllDimensionRowsByField(DESC, "even").size() == 50
+    }
+
+    def "Rows trading field values in one batch are indexed under their new values"() {
+        given:
+        DimensionRow owl = makeDimensionRow(keyValueStoreDimension, "owl", "this is a raptor")
+        DimensionRow hawk = makeDimensionRow(keyValueStoreDimension, "hawk", "this is an owl")
+
+        when:
+        keyValueStoreDimension.addAllDimensionRows([owl, hawk] as Set)
+
+        then:
+        searchProvider.findAllDimensionRowsByField(DESC, "this is an owl") == [hawk] as Set
+        searchProvider.findAllDimensionRowsByField(DESC, "this is a raptor") == [owl, dimensionRow2a] as Set
+        searchProvider.dimensionCardinality == dimensionRows.size()
+    }
 }
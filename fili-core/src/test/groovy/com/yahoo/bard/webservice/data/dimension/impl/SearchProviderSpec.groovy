@@ -16,8 +16,11 @@ import com.yahoo.bard.webservice.data.dimension.KeyValueStore
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.SearchProvider
 import com.yahoo.bard.webservice.table.LogicalTable
+import com.yahoo.bard.webservice.util.Pagination
 import com.yahoo.bard.webservice.web.ApiFilter
 import com.yahoo.bard.webservice.web.FilterOperation
+import com.yahoo.bard.webservice.web.PageNotFoundException
+import com.yahoo.bard.webservice.web.util.PaginationParameters
 
 import org.joda.time.DateTime
 
@@ -441,6 +444,44 @@ abstract class SearchProviderSpec<T extends SearchProvider> extends Specificatio
         searchProvider.findFilteredDimensionRows(filters) == expectedResponse
     }
 
+    def "Pages of all rows are the pages of all ordered rows"() {
+        given:
+        List<DimensionRow> orderedRows = searchProvider.findAllOrderedDimensionRows() as List
+
+        expect:
+        (1..5).every { int page ->
+            Pagination<DimensionRow> paged = searchProvider.findAllDimensionRowsPaged(new PaginationParameters(3, page))
+            paged.pageOfData == orderedRows.subList(3 * (page - 1), Math.min(3 * page, orderedRows.size())) &&
+                    paged.numResults == dimensionRows.size()
+        }
+    }
+
+    def "Pages of filtered rows are the pages of the ordered filtered rows"() {
+        given:
+        Set<ApiFilter> filters = [
+                new ApiFilter(keyValueStoreDimension, DESC, FilterOperation.notin, ["this is an owl"] as Set)
+        ] as Set
+        List<DimensionRow> filteredRows = searchProvider.findFilteredDimensionRows(filters) as List
+
+        when:
+        Pagination<DimensionRow> paged = searchProvider.findFilteredDimensionRowsPaged(
+                filters,
+                new PaginationParameters(4, 2)
+        )
+
+        then:
+        paged.pageOfData == filteredRows.subList(4, 8)
+        paged.numResults == dimensionRows.size() - 1
+    }
+
+    def "A page past the last page of rows is not found"() {
+        when:
+        searchProvider.findAllDimensionRowsPaged(new PaginationParameters(dimensionRows.size(), 2))
+
+        then:
+        thrown(PageNotFoundException)
+    }
+
     def "resetIndices clears the indices"() {
         when:
         searchProvider.clearDimension()
@@ -0,0 +1,142 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.druid.model.query
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.data.dimension.Dimension
+import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation
+import com.yahoo.bard.webservice.druid.model.aggregation.LongSumAggregation
+import com.yahoo.bard.webservice.druid.model.datasource.QueryDataSource
+import com.yahoo.bard.webservice.druid.model.datasource.TableDataSource
+import com.yahoo.bard.webservice.druid.model.filter.AndFilter
+import com.yahoo.bard.webservice.druid.model.filter.Filter
+import com.yahoo.bard.webservice.druid.model.filter.NotFilter
+import com.yahoo.bard.webservice.druid.model.filter.OrFilter
+import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter
+import com.yahoo.bard.webservice.druid.model.postaggregation.ArithmeticPostAggregation
+import com.yahoo.bard.webservice.druid.model.postaggregation.FieldAccessorPostAggregation
+import com.yahoo.bard.webservice.druid.model.postaggregation.PostAggregation
+import com.yahoo.bard.webservice.util.Utils
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DruidQueryKeyGeneratorSpec extends Specification {
+
+    ObjectMapper mapper = new ObjectMapper().registerModule(new Jdk8Module().configureAbsentsAsNulls(false))
+    DruidQueryKeyGenerator keyGenerator = new DruidQueryKeyGenerator(mapper)
+
+    Filter filter
+    List<Aggregation> aggregations
+    List<PostAggregation> postAggregations
+
+    def setup() {
+        Dimension locale = Mock(Dimension)
+        locale.getDruidName() >> "locale"
+        Filter selector = new SelectorFilter(locale, "US")
+        filter = new AndFilter([new OrFilter([selector, new NotFilter(selector)]), selector])
+
+        Aggregation pageViews = new LongSumAggregation("pageViews", "pageViews")
+        aggregations = [pageViews]
+        postAggregations = [
+                new ArithmeticPostAggregation(
+                        "doublePageViews",
+                        ArithmeticPostAggregation.ArithmeticPostAggregationFunction.PLUS,
+                        [new FieldAccessorPostAggregation(pageViews), new FieldAccessorPostAggregation(pageViews)]
+                )
+        ]
+    }
+
+    GroupByQuery buildQuery(String queryId, Interval interval, Filter filter = this.filter) {
+        QueryContext context = new QueryContext(Collections.<QueryContext.Param, Object> emptyMap(), null)
+                .withQueryId(queryId)
+        new GroupByQuery(
+                new TableDataSource<GroupByQuery>("table_name"),
+                DAY,
+                [],
+                filter,
+                null,
+                aggregations,
+                postAggregations,
+                [interval],
+                null,
+                context,
+                false
+        )
+    }
+
+    /**
+     * The key as it was built from a json tree before keys were serialized straight from the query.
+     */
+    String treeKey(DruidQuery<?> query) {
+        JsonNode root = mapper.valueToTree(query)
+        Utils.emitField(root, "context", mapper)
+        return mapper.writer().writeValueAsString(root)
+    }
+
+    @Unroll
+    def "The key of a #description query is its json with empty contexts"() {
+        given:
+        Interval interval = new Interval("2014-01-01/2014-02-01")
+        GroupByQuery query = buildQuery("id", interval, filtered ? filter : null)
+        if (nested) {
+            query = buildQuery("outer", interval).withDataSource(new QueryDataSource<GroupByQuery>(query))
+        }
+
+        expect:
+        keyGenerator.getKey(query) == treeKey(query)
+        !keyGenerator.getKey(query).contains("queryId")
+
+        where:
+        filtered | nested
+        true     | false
+        false    | false
+        true     | true
+        description = (filtered ? "filtered" : "unfiltered") + (nested ? " nested" : "")
+    }
+
+    def "Queries which only differ in their context have the same key"() {
+        expect:
+        keyGenerator.getKey(buildQuery("a", new Interval("2014-01-01/2014-02-01"))) ==
+                keyGenerator.getKey(buildQuery("b", new Interval("2014-01-01/2014-02-01")))
+    }
+
+    def "Queries sharing components keep their own keys"() {
+        given: "Split queries sharing the filter and aggregations"
+        GroupByQuery january = buildQuery("id", new Interval("2014-01-01/2014-02-01"))
+        GroupByQuery february = buildQuery("id", new Interval("2014-02-01/2014-03-01"))
+
+        when:
+        String januaryKey = keyGenerator.getKey(january)
+        String februaryKey = keyGenerator.getKey(february)
+
+        then:
+        januaryKey != februaryKey
+        januaryKey == treeKey(january)
+        februaryKey == treeKey(february)
+        keyGenerator.getKey(january) == januaryKey
+    }
+
+    def "Equal but distinct components are serialized on their own"() {
+        given:
+        Dimension country = Mock(Dimension)
+        country.getDruidName() >> "country"
+        GroupByQuery query = buildQuery("id", new Interval("2014-01-01/2014-02-01"))
+        GroupByQuery otherQuery = buildQuery(
+                "id",
+                new Interval("2014-01-01/2014-02-01"),
+                new SelectorFilter(country, "US")
+        )
+
+        expect:
+        keyGenerator.getKey(query) == treeKey(query)
+        keyGenerator.getKey(otherQuery) == treeKey(otherQuery)
+    }
+}
@@ -13,6 +13,9 @@ import com.yahoo.bard.webservice.data.filterbuilders.ConjunctionDruidFilterBuild
 import com.yahoo.bard.webservice.druid.model.filter.Filter
 import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter
 import com.yahoo.bard.webservice.web.ApiFilter
+import com.yahoo.bard.webservice.web.FilterOperation
+
+import org.joda.time.DateTime
 
 import spock.lang.Shared
 import spock.lang.Specification
@@ -101,6 +104,78 @@ class ConjunctionDruidFilterBuilderSpec extends Specification {
 
     }
 
+    def "Filter clauses are cached by dimension and filters until the dimension is updated"() {
+        given: "A builder caching its clauses"
+        int built = 0
+        ConjunctionDruidFilterBuilder cachingBuilder = new ConjunctionDruidFilterBuilder(10) {
+            @Override
+            protected Filter buildDimensionFilter(
+                    Dimension dimension,
+                    Set<ApiFilter> filters
+            ) throws DimensionRowNotFoundException {
+                built++
+                return new SelectorFilter(resources.d3, "1")
+            }
+        }
+        DateTime updated = new DateTime(10000)
+        Dimension dimension = Mock(Dimension) { getLastUpdated() >> { updated } }
+        ApiFilter eq = apiFilters.ageIdEq1234
+        ApiFilter inFilter = eq.withOperation(FilterOperation.in)
+
+        when: "The same filters are built again, eq filters as in filters"
+        Filter first = cachingBuilder.buildFilters([(dimension): [eq, apiFilters.ageIdNotin56] as Set])
+        Filter second = cachingBuilder.buildFilters([(dimension): [apiFilters.ageIdNotin56, inFilter] as Set])
+
+        then: "The clause is built once"
+        built == 1
+        second.is(first)
+
+        when: "Other filters are built"
+        cachingBuilder.buildFilters([(dimension): [apiFilters.ageIdNotin56] as Set])
+
+        then:
+        built == 2
+
+        when: "The dimension is updated"
+        updated = new DateTime(20000)
+        cachingBuilder.buildFilters([(dimension): [eq, apiFilters.ageIdNotin56] as Set])
+
+        then: "The clause is built again"
+        built == 3
+    }
+
+    def "Filters matching no rows are not cached"() {
+        given:
+        int built = 0
+        ConjunctionDruidFilterBuilder cachingBuilder = new ConjunctionDruidFilterBuilder(10) {
+            @Override
+            protected Filter buildDimensionFilter(
+                    Dimension dimension,
+                    Set<ApiFilter> filters
+            ) throws DimensionRowNotFoundException {
+                built++
+                getFilteredDimensionRows(dimension, filters)
+                return null
+            }
+        }
+        Map<Dimension, Set<ApiFilter>> filters = [
+                (resources.d3): [new ApiFilter("ageBracket|id-in[7]", resources.dimensionDictionary)] as Set
+        ]
+
+        when:
+        cachingBuilder.buildFilters(filters)
+
+        then:
+        thrown(DimensionRowNotFoundException)
+
+        when:
+        cachingBuilder.buildFilters(filters)
+
+        then:
+        thrown(DimensionRowNotFoundException)
+        built == 2
+    }
+
     TreeSet<DimensionRow> getDimensionRows(List<String> ids) {
         return ids.collect {resources.d3.findDimensionRowByKeyValue(it)} as TreeSet<DimensionRow>
     }
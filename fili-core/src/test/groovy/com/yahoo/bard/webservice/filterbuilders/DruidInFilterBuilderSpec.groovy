@@ -0,0 +1,95 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.filterbuilders
+
+import com.yahoo.bard.webservice.data.QueryBuildingTestingResources
+import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException
+import com.yahoo.bard.webservice.data.filterbuilders.DruidFilterBuilder
+import com.yahoo.bard.webservice.data.filterbuilders.DruidInFilterBuilder
+import com.yahoo.bard.webservice.druid.model.filter.AndFilter
+import com.yahoo.bard.webservice.druid.model.filter.Filter
+import com.yahoo.bard.webservice.druid.model.filter.InFilter
+import com.yahoo.bard.webservice.druid.model.filter.NotFilter
+import com.yahoo.bard.webservice.druid.model.filter.RegularExpressionFilter
+import com.yahoo.bard.webservice.druid.model.filter.SelectorFilter
+import com.yahoo.bard.webservice.util.GroovyTestUtils
+import com.yahoo.bard.webservice.web.ApiFilter
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DruidInFilterBuilderSpec extends Specification {
+
+    @Shared QueryBuildingTestingResources resources
+
+    DruidFilterBuilder filterBuilder = new DruidInFilterBuilder()
+
+    def setupSpec() {
+        resources = new QueryBuildingTestingResources()
+    }
+
+    Filter build(String... filterStrings) {
+        Set<ApiFilter> filters = filterStrings.collect { new ApiFilter(it, resources.dimensionDictionary) } as Set
+        // resources.d3 is the ageBracket dimension.
+        filterBuilder.buildFilters([(resources.d3): filters])
+    }
+
+    @Unroll
+    def "#filterString is built as #expected"() {
+        expect:
+        build(filterString) == expected
+
+        where:
+        filterString                      | expected
+        "ageBracket|id-in[1]"             | new SelectorFilter(resources.d3, "1")
+        "ageBracket|id-in[1,2,4]"         | new InFilter(resources.d3, ["1", "2", "4"])
+        "ageBracket|desc-eq[11-14,14-29]" | new InFilter(resources.d3, ["2", "3"])
+        "ageBracket|id-notin[5,6]"        | new NotFilter(new InFilter(resources.d3, ["5", "6"]))
+        "ageBracket|desc-contains[4]"     | new InFilter(resources.d3, ["2", "3", "4", "5"])
+    }
+
+    def "Each filter term on a dimension is an in filter of the conjunction"() {
+        expect:
+        build("ageBracket|id-in[1,2,3]", "ageBracket|desc-notin[14-29]") == new AndFilter([
+                new InFilter(resources.d3, ["1", "2", "3"]),
+                new NotFilter(new SelectorFilter(resources.d3, "3"))
+        ])
+    }
+
+    def "A filter term matching no rows is not found"() {
+        when:
+        build("ageBracket|id-in[7]")
+
+        then:
+        thrown(DimensionRowNotFoundException)
+    }
+
+    @Unroll
+    def "With a pushdown cardinality of #minCardinality, #filterString is built as #expected"() {
+        given:
+        filterBuilder = new DruidInFilterBuilder(minCardinality)
+
+        expect:
+        build(filterString) == expected
+
+        where:
+        minCardinality | filterString                          | expected
+        6              | "ageBracket|id-startswith[1,2]"       | new RegularExpressionFilter(resources.d3, ~/^(\Q1\E|\Q2\E)/)
+        6              | "ageBracket|id-contains[.]"           | new RegularExpressionFilter(resources.d3, ~/(\Q.\E)/)
+        6              | "ageBracket|desc-startswith[1]"       | new InFilter(resources.d3, ["2", "3"])
+        6              | "ageBracket|id-in[1,2]"               | new InFilter(resources.d3, ["1", "2"])
+        7              | "ageBracket|id-startswith[1,2]"       | new InFilter(resources.d3, ["1", "2"])
+        0              | "ageBracket|id-startswith[1,2]"       | new InFilter(resources.d3, ["1", "2"])
+    }
+
+    def "An in filter serializes to a druid in filter"() {
+        expect:
+        GroovyTestUtils.compareJson(
+                new ObjectMapper().writeValueAsString(new InFilter(resources.d3, ["1", "2"])),
+                '{"type": "in", "dimension": "age_bracket", "values": ["1", "2"]}'
+        )
+    }
+}
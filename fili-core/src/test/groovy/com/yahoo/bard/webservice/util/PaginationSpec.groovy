@@ -150,4 +150,28 @@ class PaginationSpec extends Specification {
     String getExpectedErrorMessage(Integer page, Integer rowsPerPage, Integer numPages) {
         "Requested page '$page' with '$rowsPerPage' rows per page, but there are only '$numPages' pages."
     }
+
+    def "A page fetched on its own is paginated like the same page of the entire collection"() {
+        when:
+        Pagination<Integer> pagination = new Pagination<>(
+                [6, 7, 8, 9, 10],
+                CONTENT.size(),
+                new PaginationParameters(ROWS_PER_PAGE, 2)
+        )
+
+        then:
+        pagination.getPageOfData() == pagination2.getPageOfData()
+        pagination.getNumResults() == pagination2.getNumResults()
+        pagination.getLastPage() == pagination2.getLastPage()
+        pagination.getNextPage() == pagination2.getNextPage()
+        pagination.getPreviousPage() == pagination2.getPreviousPage()
+    }
+
+    def "A page fetched on its own past the last page is not found"() {
+        when:
+        new Pagination<Integer>([], CONTENT.size(), new PaginationParameters(ROWS_PER_PAGE, NUM_PAGES + 1))
+
+        then:
+        thrown(PageNotFoundException)
+    }
 }
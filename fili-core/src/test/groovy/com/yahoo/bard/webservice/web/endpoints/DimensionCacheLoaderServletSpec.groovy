@@ -19,6 +19,9 @@ import org.joda.time.DateTime
 import org.joda.time.DateTimeZone
 
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
 
 import javax.ws.rs.client.Entity
 import javax.ws.rs.core.Response
@@ -27,6 +30,11 @@ import javax.ws.rs.core.Response.Status
 class DimensionCacheLoaderServletSpec extends Specification {
     private static final ObjectMappersSuite MAPPERS = new ObjectMappersSuite()
 
+    static final String USA = """{"field1": "foo", "description": "United_States_of_America", "id": "usa"}"""
+    static final String CANADA = """{"field2": "can2", "description": "Canada", "id": "can"}"""
+    static final String MEXICO = """{"description": "Mexico", "id": "mex"}"""
+    static final String BRAZIL = """{"description": "Brazil", "id": "bra"}"""
+
     static final DateTimeZone ORIGINAL_TIME_ZONE = DateTimeZone.getDefault();
 
     DimensionCacheLoaderServlet dimensionCacheLoaderServlet
@@ -259,6 +267,135 @@ class DimensionCacheLoaderServletSpec extends Specification {
                 containsAll(dimensionUserCountry.searchProvider.findAllDimensionRows())
     }
 
+    def "addUpdateDimensionRows writes each merged row once"() {
+        setup:
+        Dimension spiedUserCountry = Spy(KeyValueStoreDimension, constructorArgs: [
+                "user_country",
+                "druid-user_country",
+                "user_country-description",
+                dimensionUserCountryFields,
+                MapStoreManager.getInstance("user_country"),
+                ScanSearchProviderManager.getInstance("user_country")
+        ])
+        DimensionCacheLoaderServlet servlet = new DimensionCacheLoaderServlet(
+                new DimensionDictionary([spiedUserCountry] as Set),
+                Mock(DataCache),
+                MAPPERS
+        )
+        String post = """{"dimensionRows": [{"description": "United_States", "id": "usa"}, $CANADA]}"""
+
+        when:
+        Response r = servlet.addUpdateDimensionRows("user_country", post)
+
+        then: "Both rows are written together, the existing one merged"
+        1 * spiedUserCountry.addAllDimensionRows({ Set<DimensionRow> rows ->
+            rows.size() == 2 &&
+                    rows.find { it.get(BardDimensionField.ID) == "usa" }.get(BardDimensionField.DESC) ==
+                    "United_States" &&
+                    rows.find { it.get(BardDimensionField.ID) == "usa" }.get(BardDimensionField.FIELD1) == "usa1" &&
+                    rows.find { it.get(BardDimensionField.ID) == "can" }.get(BardDimensionField.FIELD2) == "can2"
+        })
+        r.getStatusInfo() == Status.OK
+    }
+
+    @Unroll
+    def "Streamed dimension rows are loaded in chunks from #format"() {
+        setup:
+        DimensionCacheLoaderServlet chunkingServlet = new DimensionCacheLoaderServlet(
+                dimensionCacheLoaderServlet.dimensionDictionary,
+                Mock(DataCache),
+                MAPPERS,
+                2
+        )
+
+        when:
+        Response r = chunkingServlet.addReplaceDimensionRowsStream("user_country", stream(body))
+
+        then: "Each row is written, two at a time"
+        r.getStatusInfo() == Status.OK
+        GroovyTestUtils.compareJson(r.getEntity(), """{"name":"user_country","rows":3,"chunks":2}""")
+        dimensionUserCountry.findDimensionRowByKeyValue("usa").get(BardDimensionField.FIELD1) == "foo"
+        dimensionUserCountry.findDimensionRowByKeyValue("usa").get(BardDimensionField.FIELD2) == ""
+        dimensionUserCountry.findDimensionRowByKeyValue("can").get(BardDimensionField.FIELD2) == "can2"
+        dimensionUserCountry.findDimensionRowByKeyValue("mex").get(BardDimensionField.DESC) == "Mexico"
+        dimensionUserCountry.findDimensionRowByKeyValue("ind") == dimensionRowIndia
+
+        where:
+        format           | body
+        "a json object"  | """{"dimensionRows": [$USA, $CANADA, $MEXICO]}"""
+        "a json array"   | """[$USA, $CANADA, $MEXICO]"""
+        "delimited rows" | """$USA\n$CANADA\n$MEXICO\n"""
+    }
+
+    def "Streamed dimension rows are merged into the existing rows on PATCH"() {
+        setup:
+        DimensionCacheLoaderServlet chunkingServlet = new DimensionCacheLoaderServlet(
+                dimensionCacheLoaderServlet.dimensionDictionary,
+                Mock(DataCache),
+                MAPPERS,
+                1
+        )
+
+        when:
+        Response r = chunkingServlet.addUpdateDimensionRowsStream("user_country", stream("$USA\n$CANADA"))
+
+        then: "Only the fields given are overwritten"
+        r.getStatusInfo() == Status.OK
+        dimensionUserCountry.findDimensionRowByKeyValue("usa").get(BardDimensionField.DESC) ==
+                "United_States_of_America"
+        dimensionUserCountry.findDimensionRowByKeyValue("usa").get(BardDimensionField.FIELD1) == "foo"
+        dimensionUserCountry.findDimensionRowByKeyValue("usa").get(BardDimensionField.FIELD2) == "usa2"
+        dimensionUserCountry.findDimensionRowByKeyValue("can").get(BardDimensionField.FIELD2) == "can2"
+    }
+
+    def "Streamed dimension rows written before an invalid row are kept"() {
+        setup:
+        DimensionCacheLoaderServlet chunkingServlet = new DimensionCacheLoaderServlet(
+                dimensionCacheLoaderServlet.dimensionDictionary,
+                Mock(DataCache),
+                MAPPERS,
+                1
+        )
+
+        when:
+        Response r = chunkingServlet.addReplaceDimensionRowsStream(
+                "user_country",
+                stream("""[$CANADA, {"id": ["mex"]}]""")
+        )
+
+        then:
+        r.getStatusInfo() == Status.BAD_REQUEST
+        dimensionUserCountry.findDimensionRowByKeyValue("can").get(BardDimensionField.DESC) == "Canada"
+        r.getEntity().toString().contains("after 1 row(s)")
+    }
+
+    @Unroll
+    def "Streamed dimension rows followed by #trailing are rejected"() {
+        when:
+        Response r = dimensionCacheLoaderServlet.addReplaceDimensionRowsStream("user_country", stream(body))
+
+        then: "Nothing is loaded"
+        r.getStatusInfo() == Status.BAD_REQUEST
+        dimensionUserCountry.findDimensionRowByKeyValue("bra") == null
+
+        where:
+        trailing         | body
+        "another array"  | """[$BRAZIL] [$MEXICO]"""
+        "garbage"        | """[$BRAZIL] x"""
+        "another field"  | """{"dimensionRows": [$BRAZIL], "other": 1}"""
+        "another object" | """{"dimensionRows": [$BRAZIL]} $MEXICO"""
+    }
+
+    def "Streamed dimension rows for a missing dimension fail"() {
+        expect:
+        dimensionCacheLoaderServlet.addReplaceDimensionRowsStream("unknown", stream("[$USA]")).getStatusInfo() ==
+                Status.BAD_REQUEST
+    }
+
+    InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))
+    }
+
     def "Check servet getDimensionLastUpdated"() {
         setup:
         String expected = """{"name":"gender","lastUpdated":"$lastUpdated"}"""
@@ -2,11 +2,16 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers
 
+import com.yahoo.bard.webservice.config.BardFeatureFlag
 import com.yahoo.bard.webservice.druid.client.DruidWebService
+import com.yahoo.bard.webservice.druid.client.StreamingSuccessCallback
 import com.yahoo.bard.webservice.druid.client.SuccessCallback
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.web.DataApiRequest
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
+import com.yahoo.bard.webservice.web.responseprocessors.StreamingResponseProcessor
+
+import com.fasterxml.jackson.core.JsonParser
 
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
@@ -50,4 +55,42 @@ class AsyncWebServiceRequestHandlerSpec extends Specification {
         then:
         1 * response.processResponse(rootNode, groupByQuery, _)
     }
+
+    def "Test handle request streams the response to a streaming response processor when enabled"() {
+        setup:
+        boolean streamingStatus = BardFeatureFlag.DRUID_STREAMING_RESPONSE.isOn()
+        BardFeatureFlag.DRUID_STREAMING_RESPONSE.setOn(true)
+
+        DruidWebService dws = Mock(DruidWebService)
+        RequestContext rc = Mock(RequestContext)
+        DataApiRequest request = Mock(DataApiRequest)
+        GroupByQuery groupByQuery = Mock(GroupByQuery)
+        StreamingResponseProcessor response = Mock(StreamingResponseProcessor)
+        JsonParser jsonParser = Mock(JsonParser)
+
+        ObjectMapper mapper = Mock(ObjectMapper)
+        AsyncWebServiceRequestHandler handler = new AsyncWebServiceRequestHandler(dws, mapper)
+
+        SuccessCallback sc = null
+
+        when:
+        handler.handleRequest(rc, request, groupByQuery, response)
+
+        then:
+        1 * dws.postDruidQuery(rc, _, null, null, groupByQuery) >> { a0, a1, a2, a3, a4 ->
+            // Save the success callback
+            sc = a1
+        }
+        sc instanceof StreamingSuccessCallback
+
+        when:
+        ((StreamingSuccessCallback) sc).invoke(jsonParser)
+
+        then:
+        1 * response.processResponse(jsonParser, groupByQuery, _)
+        0 * response.processResponse(_ as JsonNode, _, _)
+
+        cleanup:
+        BardFeatureFlag.DRUID_STREAMING_RESPONSE.setOn(streamingStatus)
+    }
 }
@@ -2,16 +2,21 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.handlers
 
+import static com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys.MISSING_INTERVALS_CONTEXT_KEY
+
 import com.yahoo.bard.webservice.data.cache.MemTupleDataCache
 import com.yahoo.bard.webservice.data.cache.TupleDataCache
+import com.yahoo.bard.webservice.data.cache.TwoTierTupleDataCache
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.druid.model.query.TimeSeriesQuery
 import com.yahoo.bard.webservice.druid.model.query.TopNQuery
 import com.yahoo.bard.webservice.metadata.QuerySigningService
 import com.yahoo.bard.webservice.metadata.SegmentIntervalsHashIdGenerator
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList
 import com.yahoo.bard.webservice.web.DataApiRequest
 import com.yahoo.bard.webservice.web.RequestUtils
 import com.yahoo.bard.webservice.web.responseprocessors.CacheV2ResponseProcessor
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
 
 import com.fasterxml.jackson.core.JsonProcessingException
@@ -21,8 +26,13 @@ import com.fasterxml.jackson.databind.ObjectWriter
 import com.fasterxml.jackson.databind.node.JsonNodeFactory
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
 
+import org.joda.time.Interval
+
 import spock.lang.Specification
 
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
 import javax.ws.rs.container.ContainerRequestContext
 import javax.ws.rs.core.MultivaluedHashMap
 
@@ -69,7 +79,7 @@ class CacheV2RequestHandlerSpec extends Specification {
         boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
 
         then: "Check the cache and return valid json"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 1234, "[]")
+        1 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 1234, "[]") }
 
         then: "Process the Json response"
         1 * response.processResponse(json, groupByQuery, _)
@@ -83,7 +93,7 @@ class CacheV2RequestHandlerSpec extends Specification {
         boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, topNQuery, response)
 
         then: "Check the cache and return valid json"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 1234, "[]")
+        1 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 1234, "[]") }
 
         then: "Process the Json response"
         1 * response.processResponse(json, topNQuery, _)
@@ -97,7 +107,7 @@ class CacheV2RequestHandlerSpec extends Specification {
         boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, timeseriesQuery, response)
 
         then: "Check the cache and return valid json"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 1234, "[]")
+        1 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 1234, "[]") }
 
         then: "Process the Json response"
         1 * response.processResponse(json, timeseriesQuery, _)
@@ -106,6 +116,29 @@ class CacheV2RequestHandlerSpec extends Specification {
         requestProcessed
     }
 
+    def "Cache hits on a near cache entry parse its json once"() {
+        given:
+        TwoTierTupleDataCache.NearDataEntry<Integer, String> entry =
+                new TwoTierTupleDataCache.NearDataEntry<Integer, String>(
+                        handler.getKey(groupByQuery),
+                        1234,
+                        '[{"a": 1}]'
+                )
+        dataCache.get(_) >> entry
+        List<JsonNode> processed = []
+        response.processResponse(_, _, _) >> { JsonNode node, query, context -> processed.add(node) }
+
+        when: "The same query hits the same entry twice"
+        handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+        handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "Both hits are answered with the same parsed json"
+        processed.size() == 2
+        processed[0].is(processed[1])
+        processed[0] == mapper.readTree('[{"a": 1}]')
+        entry.getParsedValue().is(processed[0])
+    }
+
     def "Test handle request cache miss delegates response to next handler"() {
         when: "A request is sent that has a cache miss"
         boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
@@ -128,7 +161,7 @@ class CacheV2RequestHandlerSpec extends Specification {
         boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
 
         then: "Check the cache and return a stale entry"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 5678, "[]")
+        1 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
 
         then: "We delegate to the next handler, wrapping in a CacheV2ResponseProcessor"
         1 * next.handleRequest(requestContext, apiRequest, groupByQuery, _ as CacheV2ResponseProcessor) >> true
@@ -140,6 +173,218 @@ class CacheV2RequestHandlerSpec extends Specification {
         requestProcessed
     }
 
+    def "With stale-while-revalidate, a stale entry is served flagged as stale and refreshed in the background"() {
+        setup:
+        handler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                { Runnable refresh -> refresh.run() } as Executor,
+                60000
+        )
+        Map<String, Object> responseContext = [:]
+        response.getResponseContext() >> responseContext
+
+        when: "A request finds a stale entry"
+        boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "Check the cache and return a stale entry"
+        1 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+
+        then: "The entry is refreshed through the next handler, on a request context of its own"
+        1 * next.handleRequest(
+                { it != requestContext },
+                apiRequest,
+                groupByQuery,
+                _ as CacheV2ResponseProcessor
+        ) >> { RequestContext context, DataApiRequest request, GroupByQuery query, ResponseProcessor refresh ->
+            refresh.processResponse(json, query, new ResponseContext(null, request))
+            true
+        }
+        1 * dataCache.set(handler.getKey(groupByQuery), 1234, "[]")
+
+        then: "The stale value is served, flagged as stale"
+        1 * response.processResponse(json, groupByQuery, _)
+        responseContext[CacheV2RequestHandler.STALE_DATA_HEADER] == true
+        requestProcessed
+    }
+
+    def "With stale-while-revalidate, a stale entry is only refreshed once at a time"() {
+        setup:
+        List<Runnable> refreshes = []
+        handler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                { Runnable refresh -> refreshes.add(refresh) } as Executor,
+                60000
+        )
+        response.getResponseContext() >> [:]
+        dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+        handler.handleRequest(new RequestContext(containerRequestContext, true), apiRequest, groupByQuery, response)
+
+        then: "Both requests are served, but only one refresh is queued"
+        2 * response.processResponse(json, groupByQuery, _)
+        0 * next.handleRequest(*_)
+        refreshes.size() == 1
+    }
+
+    def "With stale-while-revalidate, an entry stops being stale once its refresh is stored"() {
+        setup:
+        handler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                { Runnable refresh -> refresh.run() } as Executor,
+                60000
+        )
+        response.getResponseContext() >> [:]
+        dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+        next.handleRequest(*_) >> { RequestContext context, DataApiRequest request, GroupByQuery query,
+                ResponseProcessor refresh ->
+            refresh.processResponse(json, query, new ResponseContext(null, request))
+            true
+        }
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "The refresh is stored with the current segment set id"
+        1 * dataCache.set(handler.getKey(groupByQuery), 1234, "[]") >> true
+        !handler.refreshScheduler.staleSince.containsKey(handler.getKey(groupByQuery))
+    }
+
+    def "With stale-while-revalidate, an entry whose refresh is partial is still stale"() {
+        setup:
+        handler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                { Runnable refresh -> refresh.run() } as Executor,
+                60000
+        )
+        GroupByQuery partialQuery = groupByQuery.withIntervals([new Interval("2016-01-01/2016-02-01")])
+        response.getResponseContext() >> [
+                (MISSING_INTERVALS_CONTEXT_KEY.name): new SimplifiedIntervalList(partialQuery.intervals)
+        ]
+        dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+        next.handleRequest(*_) >> { RequestContext context, DataApiRequest request, GroupByQuery query,
+                ResponseProcessor refresh ->
+            refresh.processResponse(json, query, new ResponseContext(null, request))
+            true
+        }
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, partialQuery, response)
+
+        then: "The partial refresh isn't stored, so the entry is still stale"
+        0 * dataCache.set(*_)
+        handler.refreshScheduler.staleSince.containsKey(handler.getKey(partialQuery))
+    }
+
+    def "With stale-while-revalidate, handlers sharing a scheduler refresh a stale entry once at a time"() {
+        setup:
+        List<Runnable> refreshes = []
+        StaleRefreshScheduler scheduler = new StaleRefreshScheduler(
+                { Runnable refresh -> refreshes.add(refresh) } as Executor,
+                60000
+        )
+        CacheV2RequestHandler uiHandler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                scheduler
+        )
+        CacheV2RequestHandler nonUiHandler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                scheduler
+        )
+        response.getResponseContext() >> [:]
+        dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+
+        when:
+        uiHandler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+        nonUiHandler.handleRequest(new RequestContext(containerRequestContext, true), apiRequest, groupByQuery, response)
+
+        then: "Both requests are served, but only one refresh is queued"
+        2 * response.processResponse(json, groupByQuery, _)
+        refreshes.size() == 1
+    }
+
+    def "With stale-while-revalidate, an entry stale for longer than the maximum staleness stays a miss"() {
+        setup:
+        handler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                { Runnable refresh -> } as Executor,
+                60000
+        )
+        handler.refreshScheduler.staleSince.put(handler.getKey(groupByQuery), System.currentTimeMillis() - 120000)
+
+        when: "The entry is requested again and again, without its refresh ever being stored"
+        List<Boolean> requestsProcessed = (1..3).collect {
+            handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+        }
+
+        then:
+        3 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+        3 * next.handleRequest(requestContext, apiRequest, groupByQuery, _ as CacheV2ResponseProcessor) >> true
+        0 * response.processResponse(*_)
+        requestsProcessed == [true, true, true]
+    }
+
+    def "With stale-while-revalidate, a stale entry is still served when the refresh queue is full"() {
+        setup:
+        handler = new CacheV2RequestHandler(
+                next,
+                dataCache,
+                querySigningService,
+                mapper,
+                { Runnable refresh -> throw new RejectedExecutionException() } as Executor,
+                60000
+        )
+        response.getResponseContext() >> [:]
+
+        when:
+        handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then:
+        1 * dataCache.get(_) >> { String key -> new MemTupleDataCache.DataEntry<String>(key, 5678, "[]") }
+        1 * response.processResponse(json, groupByQuery, _)
+        0 * next.handleRequest(*_)
+        handler.refreshScheduler.refreshing.isEmpty()
+    }
+
+    def "A cache entry stored under another key is a miss"() {
+        when: "A request is sent whose hashed key collides with another query's"
+        boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
+
+        then: "The cache returns the entry of the other query"
+        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("otherKey", 1234, "[]")
+
+        then: "We delegate to the next handler, wrapping in a CacheV2ResponseProcessor"
+        1 * next.handleRequest(requestContext, apiRequest, groupByQuery, _ as CacheV2ResponseProcessor) >> true
+
+        and: "We don't process the other query's response"
+        0 * response.processResponse(_, _, _)
+
+        and: "The request is marked as processed"
+        requestProcessed
+    }
+
     def "Test handle request cache skip delegates response to next handler"() {
         setup:
         RequestContext requestContext = new RequestContext(containerRequestContext, false)
@@ -165,7 +410,9 @@ class CacheV2RequestHandlerSpec extends Specification {
         boolean requestProcessed = handler.handleRequest(requestContext, apiRequest, groupByQuery, response)
 
         then: "The cache returns an invalid cache hit"
-        1 * dataCache.get(_) >> new MemTupleDataCache.DataEntry<String>("key1", 1234, "...NOT VALID JSON")
+        1 * dataCache.get(_) >> { String key ->
+            new MemTupleDataCache.DataEntry<String>(key, 1234, "...NOT VALID JSON")
+        }
 
         then: "Continue the request to the next handler with a CacheV2ResponseProcessor"
         1 * next.handleRequest(requestContext, apiRequest, groupByQuery, _ as CacheV2ResponseProcessor) >> true
@@ -179,6 +426,7 @@ class CacheV2RequestHandlerSpec extends Specification {
         mapper = Mock(ObjectMapper)
         ObjectWriter writer = Mock(ObjectWriter)
         mapper.writer() >> writer
+        mapper.copy() >> new ObjectMapper()
         handler = Spy(CacheV2RequestHandler, constructorArgs: [next, dataCache, querySigningService, mapper])
 
         when: "A request is sent with an invalid cache key"
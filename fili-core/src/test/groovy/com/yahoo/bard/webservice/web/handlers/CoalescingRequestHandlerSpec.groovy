@@ -0,0 +1,209 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+
+import com.yahoo.bard.webservice.druid.client.FailureCallback
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
+import com.yahoo.bard.webservice.druid.model.datasource.TableDataSource
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.druid.model.query.QueryContext
+import com.yahoo.bard.webservice.logging.RequestLog
+import com.yahoo.bard.webservice.web.DataApiRequest
+import com.yahoo.bard.webservice.web.responseprocessors.CoalescingResponseProcessor
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+
+import org.joda.time.Interval
+
+import spock.lang.Specification
+
+class CoalescingRequestHandlerSpec extends Specification {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new Jdk8Module().configureAbsentsAsNulls(false))
+
+    DataRequestHandler next = Mock(DataRequestHandler)
+    CoalescingRequestHandler handler = new CoalescingRequestHandler(next, MAPPER)
+
+    DataApiRequest apiRequest = Mock(DataApiRequest)
+    JsonNode json = MAPPER.readTree('[{"version": "v1"}]')
+
+    ResponseProcessor leaderResponse = Mock(ResponseProcessor)
+    ResponseProcessor followerResponse = Mock(ResponseProcessor)
+    HttpErrorCallback followerError = Mock(HttpErrorCallback)
+    FailureCallback followerFailure = Mock(FailureCallback)
+
+    CoalescingResponseProcessor pending
+
+    def setup() {
+        leaderResponse.getErrorCallback(_) >> Mock(HttpErrorCallback)
+        leaderResponse.getFailureCallback(_) >> Mock(FailureCallback)
+        followerResponse.getErrorCallback(_) >> followerError
+        followerResponse.getFailureCallback(_) >> followerFailure
+        RequestLog.startTiming("leader")
+    }
+
+    def cleanup() {
+        RequestLog.dump()
+    }
+
+    GroupByQuery buildQuery(String queryId, String interval = "2014-01-01/2014-02-01") {
+        new GroupByQuery(
+                new TableDataSource<GroupByQuery>("table_name"),
+                DAY,
+                [],
+                null,
+                null,
+                [],
+                [],
+                [new Interval(interval)],
+                null,
+                new QueryContext(Collections.<QueryContext.Param, Object> emptyMap()).withQueryId(queryId),
+                false
+        )
+    }
+
+    def "An identical query in flight is only sent once, and its response handed to every request"() {
+        given:
+        GroupByQuery leaderQuery = buildQuery("leader")
+        GroupByQuery followerQuery = buildQuery("follower")
+        RequestContext followerContext = new RequestContext(null, true)
+
+        when: "The first request sends the query"
+        handler.handleRequest(new RequestContext(null, true), apiRequest, leaderQuery, leaderResponse)
+
+        then:
+        1 * next.handleRequest(_, apiRequest, leaderQuery, _ as CoalescingResponseProcessor) >> {
+            pending = it[3]
+            true
+        }
+        handler.inFlightCount == 1
+
+        when: "An identical request arrives while the query is in flight"
+        RequestLog.startTiming("follower")
+        String followerLogId = RequestLog.getId()
+        handler.handleRequest(followerContext, apiRequest, followerQuery, followerResponse)
+
+        then:
+        0 * next.handleRequest(*_)
+        pending.subscriberCount == 1
+        followerContext.numberOfOutgoing.get() == 0
+
+        when: "The response arrives"
+        RequestLog.startTiming("leader")
+        String leaderLogId = RequestLog.getId()
+        pending.processResponse(json, leaderQuery, new ResponseContext(RequestLog.copy(), apiRequest))
+
+        then: "Each request gets it, with its own query and request log"
+        1 * followerResponse.processResponse(json, followerQuery, _) >> { JsonNode node, query, ResponseContext ctx ->
+            assert RequestLog.getId() == followerLogId
+        }
+        1 * leaderResponse.processResponse(json, leaderQuery, _)
+        RequestLog.getId() == leaderLogId
+        followerContext.numberOfIncoming.get() == 0
+        handler.inFlightCount == 0
+    }
+
+    def "Once the query has completed, an identical request sends it again"() {
+        given:
+        GroupByQuery query = buildQuery("id")
+        next.handleRequest(*_) >> {
+            pending = it[3]
+            true
+        }
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, leaderResponse)
+        pending.processResponse(json, query, new ResponseContext(RequestLog.copy(), apiRequest))
+
+        when:
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, followerResponse)
+
+        then:
+        1 * next.handleRequest(_, apiRequest, query, _ as CoalescingResponseProcessor) >> true
+        handler.inFlightCount == 1
+    }
+
+    def "Different queries are sent on their own"() {
+        when:
+        handler.handleRequest(new RequestContext(null, true), apiRequest, buildQuery("a"), leaderResponse)
+        handler.handleRequest(
+                new RequestContext(null, true),
+                apiRequest,
+                buildQuery("b", "2014-02-01/2014-03-01"),
+                followerResponse
+        )
+
+        then:
+        2 * next.handleRequest(*_) >> true
+        handler.inFlightCount == 2
+    }
+
+    def "Errors and failures of the query are handed to every request"() {
+        given:
+        GroupByQuery query = buildQuery("id")
+        Throwable error = new IllegalStateException()
+        next.handleRequest(*_) >> {
+            pending = it[3]
+            true
+        }
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, leaderResponse)
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, followerResponse)
+
+        when:
+        pending.getErrorCallback(query).invoke(500, "Internal Server Error", "body")
+
+        then:
+        1 * followerError.invoke(500, "Internal Server Error", "body")
+        handler.inFlightCount == 0
+
+        when:
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, leaderResponse)
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, followerResponse)
+        pending.getFailureCallback(query).invoke(error)
+
+        then:
+        1 * followerFailure.invoke(error)
+        handler.inFlightCount == 0
+    }
+
+    def "A query which cannot be sent fails the requests waiting on it"() {
+        given:
+        GroupByQuery query = buildQuery("id")
+        RuntimeException error = new IllegalStateException()
+        next.handleRequest(*_) >> {
+            pending = it[3]
+            handler.handleRequest(new RequestContext(null, true), apiRequest, query, followerResponse)
+            throw error
+        }
+
+        when:
+        handler.handleRequest(new RequestContext(null, true), apiRequest, query, leaderResponse)
+
+        then:
+        thrown(IllegalStateException)
+        1 * followerFailure.invoke(error)
+        handler.inFlightCount == 0
+    }
+
+    def "A query which the next handler doesn't send fails the requests waiting on it"() {
+        given:
+        GroupByQuery query = buildQuery("id")
+        next.handleRequest(*_) >> {
+            pending = it[3]
+            handler.handleRequest(new RequestContext(null, true), apiRequest, query, followerResponse)
+            false
+        }
+
+        when:
+        boolean handled = handler.handleRequest(new RequestContext(null, true), apiRequest, query, leaderResponse)
+
+        then: "The request isn't handled, and the waiting request fails rather than waiting forever"
+        !handled
+        1 * followerFailure.invoke(_ as IllegalStateException)
+        handler.inFlightCount == 0
+    }
+}
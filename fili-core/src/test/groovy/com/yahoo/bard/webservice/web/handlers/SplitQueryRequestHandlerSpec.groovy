@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.web.handlers
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.MONTH
 
+import com.yahoo.bard.webservice.druid.client.FailureCallback
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.web.DataApiRequest
@@ -68,6 +69,43 @@ class SplitQueryRequestHandlerSpec extends Specification {
         12        | MONTH     | year
     }
 
+    def "Handler sends no more split queries than the scheduler allows for a request"() {
+        given:
+        handler = new SplitQueryRequestHandler(next, new SplitQueryScheduler(0, 2), SplitQueryScheduler.UI_PRIORITY)
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        groupByQuery.withAllIntervals(_) >> groupByQuerySplit
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then:
+        2 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _ as SplitQueryResponseProcessor)
+    }
+
+    def "A split query which cannot be sent fails the request and drops the split queries not sent yet"() {
+        given:
+        FailureCallback failure = Mock(FailureCallback)
+        response.getFailureCallback(_) >> failure
+        RuntimeException error = new IllegalStateException()
+        handler = new SplitQueryRequestHandler(next, new SplitQueryScheduler(0, 2), SplitQueryScheduler.UI_PRIORITY)
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        groupByQuery.withAllIntervals(_) >> groupByQuerySplit
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then:
+        1 * next.handleRequest(*_) >> { throw error }
+        1 * next.handleRequest(*_) >> true
+        1 * failure.invoke(error)
+    }
+
     def "Handler sends error on no duration request"() {
         setup:
         Interval none = new Interval(startInstant, startInstant)
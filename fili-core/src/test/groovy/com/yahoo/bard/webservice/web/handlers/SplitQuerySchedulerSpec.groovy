@@ -0,0 +1,178 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.handlers
+
+import static com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler.NON_UI_PRIORITY
+import static com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler.UI_PRIORITY
+
+import com.yahoo.bard.webservice.logging.RequestLog
+
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+
+class SplitQuerySchedulerSpec extends Specification {
+
+    List<String> sent = []
+    Executor sameThread = { Runnable runnable -> runnable.run() } as Executor
+
+    List<Runnable> splitQueries(String name, int count) {
+        (1..count).collect { int i -> { -> sent << "$name$i".toString() } as Runnable }
+    }
+
+    def "Without limits, every split query is sent at once"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 0, sameThread)
+
+        when:
+        scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump()).submit(splitQueries("a", 5))
+
+        then:
+        sent == ["a1", "a2", "a3", "a4", "a5"]
+        scheduler.inFlight == 5
+    }
+
+    def "Split queries of a request wait for room in their request"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 2, sameThread)
+        SplitQueryScheduler.Batch a = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        SplitQueryScheduler.Batch b = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+
+        when:
+        a.submit(splitQueries("a", 3))
+        b.submit(splitQueries("b", 1))
+
+        then: "Another request isn't held up by the first"
+        sent == ["a1", "a2", "b1"]
+        a.waiting == 1
+
+        when:
+        a.complete()
+
+        then:
+        sent == ["a1", "a2", "b1", "a3"]
+        scheduler.inFlight == 3
+    }
+
+    def "Split queries wait for room across requests, UI requests first"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(2, 0, sameThread)
+        SplitQueryScheduler.Batch first = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        SplitQueryScheduler.Batch nonUi = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        SplitQueryScheduler.Batch ui = scheduler.newBatch(UI_PRIORITY, RequestLog.dump())
+
+        when:
+        first.submit(splitQueries("first", 2))
+        nonUi.submit(splitQueries("nonUi", 1))
+        ui.submit(splitQueries("ui", 1))
+
+        then:
+        sent == ["first1", "first2"]
+        scheduler.inFlight == 2
+
+        when:
+        first.complete()
+
+        then:
+        sent == ["first1", "first2", "ui1"]
+
+        when:
+        first.complete()
+
+        then:
+        sent == ["first1", "first2", "ui1", "nonUi1"]
+        scheduler.inFlight == 2
+    }
+
+    def "Split queries a completion makes room for are sent by the sender, not the completing thread"() {
+        given:
+        List<Runnable> handedOff = []
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(
+                0,
+                1,
+                { Runnable runnable -> handedOff << runnable } as Executor
+        )
+        SplitQueryScheduler.Batch batch = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        batch.submit(splitQueries("a", 2))
+
+        when:
+        batch.complete()
+
+        then:
+        sent == ["a1"]
+        handedOff.size() == 1
+
+        when:
+        handedOff[0].run()
+
+        then:
+        sent == ["a1", "a2"]
+
+        when: "Nothing is left to send"
+        batch.complete()
+
+        then:
+        handedOff.size() == 1
+    }
+
+    def "Cancelled split queries are never sent"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 1, sameThread)
+        SplitQueryScheduler.Batch batch = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        batch.submit(splitQueries("a", 3))
+
+        when:
+        batch.cancel()
+        batch.complete()
+
+        then:
+        sent == ["a1"]
+        batch.waiting == 0
+        scheduler.inFlight == 0
+    }
+
+    def "Split queries completing while they are sent don't send the next ones recursively"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 1, sameThread)
+        SplitQueryScheduler.Batch batch = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        int depth = 0
+        int maxDepth = 0
+        List<Runnable> cacheHits = (1..100).collect {
+            { ->
+                depth++
+                maxDepth = Math.max(depth, maxDepth)
+                batch.complete()
+                depth--
+            } as Runnable
+        }
+
+        when:
+        batch.submit(cacheHits)
+
+        then:
+        maxDepth == 1
+        batch.waiting == 0
+        scheduler.inFlight == 0
+    }
+
+    def "Split queries are sent under the request log of their request"() {
+        given:
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 0, sameThread)
+        RequestLog.startTiming("request")
+        String requestLogId = RequestLog.getId()
+        SplitQueryScheduler.Batch batch = scheduler.newBatch(NON_UI_PRIORITY, RequestLog.dump())
+        RequestLog.startTiming("caller")
+        String callerLogId = RequestLog.getId()
+        String sentLogId = null
+
+        when:
+        batch.submit([{ -> sentLogId = RequestLog.getId() } as Runnable])
+
+        then:
+        sentLogId == requestLogId
+        RequestLog.getId() == callerLogId
+
+        cleanup:
+        RequestLog.dump()
+    }
+}
@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.web.handlers.workflow
 
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.DRUID_CACHE
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.DRUID_CACHE_V2
+import static com.yahoo.bard.webservice.config.BardFeatureFlag.DRUID_QUERY_COALESCING
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.QUERY_SPLIT
 
 import com.yahoo.bard.webservice.data.PartialDataHandler
@@ -16,6 +17,7 @@ import com.yahoo.bard.webservice.table.PhysicalTableDictionary
 import com.yahoo.bard.webservice.web.handlers.AsyncWebServiceRequestHandler
 import com.yahoo.bard.webservice.web.handlers.CacheRequestHandler
 import com.yahoo.bard.webservice.web.handlers.CacheV2RequestHandler
+import com.yahoo.bard.webservice.web.handlers.CoalescingRequestHandler
 import com.yahoo.bard.webservice.web.handlers.DataRequestHandler
 import com.yahoo.bard.webservice.web.handlers.DebugRequestHandler
 import com.yahoo.bard.webservice.web.handlers.DefaultWebServiceHandlerSelector
@@ -36,6 +38,7 @@ class DruidWorkflowSpec extends Specification {
     boolean cacheStatus
     boolean cacheV2Status
     boolean splittingStatus
+    boolean coalescingStatus
 
     DruidWorkflow dw
     DataCache dataCache = Mock(DataCache)
@@ -50,12 +53,14 @@ class DruidWorkflowSpec extends Specification {
         cacheStatus = DRUID_CACHE.isOn()
         cacheV2Status = DRUID_CACHE_V2.isOn()
         splittingStatus = QUERY_SPLIT.isOn()
+        coalescingStatus = DRUID_QUERY_COALESCING.isOn()
     }
 
     def cleanup() {
         DRUID_CACHE.setOn(cacheStatus)
         DRUID_CACHE_V2.setOn(cacheV2Status)
         QUERY_SPLIT.setOn(splittingStatus)
+        DRUID_QUERY_COALESCING.setOn(coalescingStatus)
     }
 
     def "Test workflow config controls workflow stages"() {
@@ -175,6 +180,36 @@ class DruidWorkflowSpec extends Specification {
     }
 
 
+    def "Test workflow coalesces right before sending the query when on"() {
+        setup:
+        DRUID_QUERY_COALESCING.setOn(true)
+
+        dw = new DruidWorkflow(
+                dataCache,
+                uiWebService,
+                nonUiWebService,
+                weightUtil,
+                physicalTableDictionary,
+                partialDataHandler,
+                querySigningService,
+                MAPPER
+        )
+        DataRequestHandler workflow = dw.buildWorkflow()
+        List<DataRequestHandler> handlers = getHandlerChain(workflow)
+        WebServiceSelectorRequestHandler select = handlers.find(byClass(WebServiceSelectorRequestHandler))
+        def defaultHandler = select.handlerSelector as DefaultWebServiceHandlerSelector
+
+        when:
+        def handlers1 = getHandlerChain(defaultHandler.uiWebServiceHandler.next)
+        def handlers2 = getHandlerChain(defaultHandler.nonUiWebServiceHandler.next)
+
+        then:
+        [handlers1, handlers2].every {
+            it[-1] instanceof AsyncWebServiceRequestHandler && it[-2] instanceof CoalescingRequestHandler
+        }
+    }
+
+
     List<DataRequestHandler> getHandlerChain(DataRequestHandler fromHandler) {
         def handler = fromHandler
         def result = new ArrayList([handler])
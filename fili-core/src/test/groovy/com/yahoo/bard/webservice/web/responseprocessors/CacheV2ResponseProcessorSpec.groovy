@@ -42,6 +42,7 @@ class CacheV2ResponseProcessorSpec extends Specification {
     List<ResultSetMapper> mappers = new ArrayList<ResultSetMapper>()
     @Shared SimplifiedIntervalList intervals = NO_INTERVALS
     @Shared SimplifiedIntervalList nonEmptyIntervals = new SimplifiedIntervalList([new Interval(0, 1)])
+    @Shared SimplifiedIntervalList otherIntervals = new SimplifiedIntervalList([new Interval(1, 2)])
 
     Map<String, Object> responseContext = [(MISSING_INTERVALS_CONTEXT_KEY.getName()): (intervals)]
 
@@ -55,6 +56,7 @@ class CacheV2ResponseProcessorSpec extends Specification {
 
     def setup() {
         querySigningService.getSegmentSetId(_) >> Optional.of(1234)
+        groupByQuery.getIntervals() >> [new Interval(0, 1)]
         segmentId = querySigningService.getSegmentSetId(groupByQuery).get()
         crp = new CacheV2ResponseProcessor(next, cacheKey, dataCache, querySigningService, MAPPER)
     }
@@ -76,7 +78,7 @@ class CacheV2ResponseProcessorSpec extends Specification {
         2 * next.getResponseContext() >> context
 
         expect:
-        crp.cacheable == expected
+        crp.isCacheable(groupByQuery) == expected
 
         where:
         expected | context
@@ -89,6 +91,10 @@ class CacheV2ResponseProcessorSpec extends Specification {
         true     | [(VOLATILE_INTERVALS_CONTEXT_KEY.name): NO_INTERVALS ]
         false    | [(MISSING_INTERVALS_CONTEXT_KEY.name): NO_INTERVALS, (VOLATILE_INTERVALS_CONTEXT_KEY.name):
                 nonEmptyIntervals]
+        true     | [(MISSING_INTERVALS_CONTEXT_KEY.name): otherIntervals ]
+        true     | [(VOLATILE_INTERVALS_CONTEXT_KEY.name): otherIntervals ]
+        false    | [(MISSING_INTERVALS_CONTEXT_KEY.name): otherIntervals, (VOLATILE_INTERVALS_CONTEXT_KEY.name):
+                nonEmptyIntervals]
     }
 
     def "Process response stored and continues without partial and good cache key"() {
@@ -156,6 +162,19 @@ class CacheV2ResponseProcessorSpec extends Specification {
         0 * dataCache.set(cacheKey, '[]')
     }
 
+    def "Volatile data outside of the intervals of a split query caches and then continues"() {
+        setup:
+        Map<String, Object> responseContext = [(VOLATILE_INTERVALS_CONTEXT_KEY.getName()): (otherIntervals)]
+
+        when:
+        crp.processResponse(json, groupByQuery, null)
+
+        then:
+        2 * next.getResponseContext() >> responseContext
+        1 * next.processResponse(json, groupByQuery, null)
+        1 * dataCache.set(cacheKey, segmentId, '[]')
+    }
+
     def "Test proxy calls"() {
         setup:
         HttpErrorCallback hec = Mock(HttpErrorCallback)
@@ -2,12 +2,12 @@
 // Licensed under the terms of the Apache license. Please see LICENSE file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.responseprocessors
 
-import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair
 import com.yahoo.bard.webservice.druid.client.FailureCallback
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.logging.RequestLog
 import com.yahoo.bard.webservice.web.DataApiRequest
+import com.yahoo.bard.webservice.web.handlers.SplitQueryScheduler
 
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
@@ -18,6 +18,7 @@ import org.joda.time.Interval
 
 import spock.lang.Specification
 
+import java.util.concurrent.Executor
 import java.util.concurrent.atomic.AtomicInteger
 
 public class SplitQueryResponseProcessorSpec extends Specification {
@@ -32,7 +33,6 @@ public class SplitQueryResponseProcessorSpec extends Specification {
     GroupByQuery groupByQuery2 = Mock(GroupByQuery)
 
     Map<Interval, Integer> expectedIntervals = new LinkedHashMap<>()
-    List<Pair<JsonNode, ResponseContext>> completedIntervals = new ArrayList<>()
 
     String json1 = """ [ {"cow": 1}, {"dog": 2} ]"""
     String json2 = """ [ {"elephant": 3}, {"pig": 4} ] """
@@ -112,14 +112,66 @@ public class SplitQueryResponseProcessorSpec extends Specification {
 
     def "Test stitch Json"() {
         setup:
-        completedIntervals.add(new Pair<>(node1, new ResponseContext(RequestLog.dump(), apiRequest)))
-        completedIntervals.add(new Pair<>(node2, new ResponseContext(RequestLog.dump(), apiRequest)))
+        groupByQuery2.getIntervals() >> [interval1] >> [interval2]
+
+        when: "The first response arrives"
+        sqrp.processResponse(node1, groupByQuery2, new ResponseContext(RequestLog.dump(), apiRequest))
+
+        then: "It is merged right away and let go of"
+        sqrp.mergedJson == node1
+        sqrp.completedIntervals[0].key == null
+
+        when:
+        sqrp.processResponse(node2, groupByQuery2, new ResponseContext(RequestLog.dump(), apiRequest))
+
+        then:
+        sqrp.mergedJson == nodeExpected
+        1 * next.processResponse(nodeExpected, groupByQuery1, _)
+    }
+
+    def "Responses arriving ahead of an earlier one are held until it arrives"() {
+        setup:
+        groupByQuery2.getIntervals() >> [interval2]
 
         when:
-        Pair<JsonNode, ResponseContext> result = sqrp.mergeResponses(completedIntervals)
+        sqrp.processResponse(node2, groupByQuery2, new ResponseContext(RequestLog.dump(), apiRequest))
+
+        then:
+        sqrp.mergedJson.size() == 0
+        sqrp.completedIntervals[1].key == node2
+    }
+
+    def "Each split query completes its slot in the scheduler batch, and a failure drops the waiting ones"() {
+        setup:
+        Executor sameThread = { Runnable runnable -> runnable.run() } as Executor
+        SplitQueryScheduler scheduler = new SplitQueryScheduler(0, 1, sameThread)
+        SplitQueryScheduler.Batch batch = scheduler.newBatch(SplitQueryScheduler.NON_UI_PRIORITY, RequestLog.dump())
+        sqrp = new SplitQueryResponseProcessor(next, apiRequest, groupByQuery1, expectedIntervals, RequestLog.dump(), batch)
+        List<String> sent = []
+        groupByQuery2.getIntervals() >> [interval1]
+        next.getFailureCallback(_) >> nextFail
+
+        when: "The first of three split queries is sent"
+        batch.submit([{ sent << "first" }, { sent << "second" }, { sent << "third" }] as List<Runnable>)
 
         then:
-        result.getKey().equals(nodeExpected)
+        sent == ["first"]
+        scheduler.inFlight == 1
+
+        when: "It completes"
+        sqrp.processResponse(node1, groupByQuery2, new ResponseContext(RequestLog.dump(), apiRequest))
+
+        then: "The next one is sent"
+        sent == ["first", "second"]
+        scheduler.inFlight == 1
+
+        when: "It fails"
+        sqrp.getFailureCallback(groupByQuery2).invoke(new IllegalStateException())
+
+        then: "The last one is never sent"
+        sent == ["first", "second"]
+        scheduler.inFlight == 0
+        batch.waiting == 0
     }
 
     def "Test process response with good Data"() {
@@ -143,6 +195,19 @@ public class SplitQueryResponseProcessorSpec extends Specification {
         1 * next.processResponse(nodeExpected, groupByQuery1, _)
     }
 
+    def "Responses arriving out of order, such as cached and queried split queries, are merged in interval order"() {
+        setup:
+        groupByQuery2.getIntervals() >> [interval2] >> [interval1]
+
+        when:
+        sqrp.processResponse(node2, groupByQuery2, new ResponseContext(RequestLog.dump(), apiRequest))
+        sqrp.processResponse(node1, groupByQuery2, new ResponseContext(RequestLog.dump(), apiRequest))
+
+        then:
+        !sqrp.failed.get()
+        1 * next.processResponse(nodeExpected, groupByQuery1, _)
+    }
+
     def "Test error on response with unexpected data and fails after"() {
         setup:
         Interval i = new Interval(5, 10)
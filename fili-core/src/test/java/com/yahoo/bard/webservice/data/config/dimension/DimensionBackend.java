@@ -14,7 +14,8 @@ import org.slf4j.LoggerFactory;
 public enum DimensionBackend {
 
     REDIS,
-    MEMORY;
+    MEMORY,
+    MEMORY_MAPPED;
 
     private static final Logger LOG = LoggerFactory.getLogger(DimensionBackend.class);
 
@@ -29,6 +30,9 @@ public enum DimensionBackend {
         if ("redis".equalsIgnoreCase(dimensionBackend)) {
             return REDIS;
         }
+        if ("memory_mapped".equalsIgnoreCase(dimensionBackend)) {
+            return MEMORY_MAPPED;
+        }
         return MEMORY;
     }
 }
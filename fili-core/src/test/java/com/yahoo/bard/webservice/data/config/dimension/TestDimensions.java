@@ -18,6 +18,8 @@ import com.yahoo.bard.webservice.data.config.names.TestLogicalTableName;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager;
+import com.yahoo.bard.webservice.data.dimension.MemoryMappedStore;
+import com.yahoo.bard.webservice.data.dimension.MemoryMappedStoreManager;
 import com.yahoo.bard.webservice.data.dimension.RedisStore;
 import com.yahoo.bard.webservice.data.dimension.RedisStoreManager;
 import com.yahoo.bard.webservice.data.dimension.SearchProvider;
@@ -108,6 +110,12 @@ public class TestDimensions {
                 store.removeAllKeys();
                 return store;
 
+            case MEMORY_MAPPED:
+                MemoryMappedStore mappedStore = MemoryMappedStoreManager.getInstance(storeName.asName());
+                // Stored keys persist between tests too, so remove them as well.
+                mappedStore.removeAllKeys();
+                return mappedStore;
+
             case MEMORY:
             default:
                 return MapStoreManager.getInstance(storeName.asName());
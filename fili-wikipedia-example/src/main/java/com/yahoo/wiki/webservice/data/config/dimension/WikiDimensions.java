@@ -8,7 +8,9 @@ import com.yahoo.bard.webservice.data.config.dimension.DimensionConfig;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager;
+import com.yahoo.bard.webservice.data.dimension.MemoryMappedStoreManager;
 import com.yahoo.bard.webservice.data.dimension.SearchProvider;
+import com.yahoo.bard.webservice.data.dimension.impl.InvertedIndexSearchProviderManager;
 import com.yahoo.bard.webservice.data.dimension.impl.LuceneSearchProviderManager;
 import com.yahoo.bard.webservice.data.dimension.impl.NoOpSearchProviderManager;
 import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager;
@@ -32,6 +34,7 @@ public class WikiDimensions {
     private final SystemConfig systemConfig = SystemConfigProvider.getInstance();
 
     private final String defaultDimensionBackendKey = systemConfig.getPackageVariableName("dimension_backend");
+    private final String defaultSearchProviderKey = systemConfig.getPackageVariableName("dimension_search_provider");
 
     private final Set<DimensionConfig> dimensionConfigs;
     private final LinkedHashMap<String, DimensionConfig> wikiApiDimensionNameToConfig;
@@ -81,10 +84,20 @@ public class WikiDimensions {
     }
 
     private KeyValueStore getDefaultKeyValueStore(WikiApiDimensionName storeName) {
+        if ("memory_mapped".equalsIgnoreCase(systemConfig.getStringProperty(defaultDimensionBackendKey, "memory"))) {
+            return MemoryMappedStoreManager.getInstance(storeName.asName());
+        }
         return MapStoreManager.getInstance(storeName.asName());
     }
 
     private SearchProvider getDefaultSearchProvider(WikiApiDimensionName providerName) {
+        String searchProvider = systemConfig.getStringProperty(defaultSearchProviderKey, "scan");
+        if ("lucene".equalsIgnoreCase(searchProvider)) {
+            return getLuceneSearchProvider(providerName);
+        }
+        if ("inverted_index".equalsIgnoreCase(searchProvider)) {
+            return InvertedIndexSearchProviderManager.getInstance(providerName.asName());
+        }
         return ScanSearchProviderManager.getInstance(providerName.asName());
     }
 